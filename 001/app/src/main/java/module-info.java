@@ -1,8 +1,10 @@
 module pattern.generator.app.patterngenerator {
     requires javafx.controls;
     requires javafx.fxml;
+    requires pattern.generator.core;
+    requires jdk.jfr;
 
 
     opens pattern.generator.app to javafx.fxml;
     exports pattern.generator.app;
-}
\ No newline at end of file
+}
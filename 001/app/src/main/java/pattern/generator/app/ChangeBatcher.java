@@ -0,0 +1,82 @@
+package pattern.generator.app;
+
+import javafx.animation.AnimationTimer;
+
+import pattern.generator.core.PatternModel;
+
+import java.util.function.Consumer;
+
+// Collects a model's change events into one dirty region and hands it on at the next pulse, so a
+// burst of edits (a paste, a held key, a multi-channel fill) costs one repaint rather than one per
+// bit. The region is the bounding box of the changes; call from the FX thread.
+final class ChangeBatcher implements PatternModel.ChangeListener {
+    private final Consumer<Region> onFlush;
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            flush();
+        }
+    };
+    private boolean pending;
+    private int fromChannel;
+    private int toChannel;
+    private long fromStep;
+    private long toStep;
+
+    // Channels [fromChannel, toChannel) and steps [fromStep, toStep) that may have changed.
+    static final class Region {
+        final int fromChannel;
+        final int toChannel;
+        final long fromStep;
+        final long toStep;
+
+        Region(int fromChannel, int toChannel, long fromStep, long toStep) {
+            this.fromChannel = fromChannel;
+            this.toChannel = toChannel;
+            this.fromStep = fromStep;
+            this.toStep = toStep;
+        }
+
+        // The bounding box of this region and `other`, which may be null.
+        Region union(Region other) {
+            if (other == null) return this;
+            return new Region(Math.min(fromChannel, other.fromChannel), Math.max(toChannel, other.toChannel),
+                    Math.min(fromStep, other.fromStep), Math.max(toStep, other.toStep));
+        }
+    }
+
+    ChangeBatcher(Consumer<Region> onFlush) {
+        this.onFlush = onFlush;
+    }
+
+    @Override
+    public void patternChanged(int fromChannel, int toChannel, long fromStep, long toStep) {
+        if (!pending) {
+            this.fromChannel = fromChannel;
+            this.toChannel = toChannel;
+            this.fromStep = fromStep;
+            this.toStep = toStep;
+            pending = true;
+            timer.start();
+            return;
+        }
+        this.fromChannel = Math.min(this.fromChannel, fromChannel);
+        this.toChannel = Math.max(this.toChannel, toChannel);
+        this.fromStep = Math.min(this.fromStep, fromStep);
+        this.toStep = Math.max(this.toStep, toStep);
+    }
+
+    // Hands on the pending region now instead of at the next pulse.
+    void flush() {
+        timer.stop();
+        if (!pending) return;
+        pending = false;
+        onFlush.accept(new Region(fromChannel, toChannel, fromStep, toStep));
+    }
+
+    // Drops the pending region, e.g. once everything has been redrawn anyway.
+    void discard() {
+        timer.stop();
+        pending = false;
+    }
+}
@@ -0,0 +1,1017 @@
+package pattern.generator.app;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
+import javafx.fxml.FXML;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.control.*;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.stage.FileChooser;
+import javafx.util.converter.LongStringConverter;
+
+import pattern.generator.core.BitPattern;
+import pattern.generator.core.ChannelConfig;
+import pattern.generator.core.EdgeIndex;
+import pattern.generator.core.Lfsr;
+import pattern.generator.core.PatternExporter;
+import pattern.generator.core.PatternFileHandler;
+import pattern.generator.core.PatternHistory;
+import pattern.generator.core.PatternMemory;
+import pattern.generator.core.PatternModel;
+import pattern.generator.core.PatternSearch;
+import pattern.generator.core.PatternSender;
+import pattern.generator.core.PatternStore;
+import pattern.generator.core.TaskProgress;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+public class PatternController {
+
+    @FXML private PatternGrid patternGrid;
+    @FXML private Button fillOneButton;
+    @FXML private Button fillZeroButton;
+    @FXML private Button invertButton;
+    @FXML private TextField bitStringField;
+    @FXML private Button pasteBitsButton;
+    @FXML private Canvas waveformCanvas;
+    @FXML private Pane waveformPane;
+    @FXML private ScrollBar waveformHScroll;
+    @FXML private ScrollBar waveformVScroll;
+    @FXML private Button zoomInButton;
+    @FXML private Button zoomOutButton;
+    @FXML private Button zoomFitButton;
+    @FXML private Button previousEdgeButton;
+    @FXML private Button nextEdgeButton;
+    @FXML private Label channelStatsLabel;
+    @FXML private TextField searchField;
+    @FXML private CheckBox searchBusCheck;
+    @FXML private Button findButton;
+    @FXML private Button previousMatchButton;
+    @FXML private Button nextMatchButton;
+    @FXML private Label waveformInfoLabel;
+    @FXML private ToggleButton playButton;
+    @FXML private ComboBox<String> timeScaleCombo;
+    @FXML private Spinner<Integer> channelSpinner;
+    @FXML private Spinner<Long> stepSpinner;
+    @FXML private Spinner<Double> sampleRateSpinner;
+    @FXML private ComboBox<String> bitWidthCombo;
+    @FXML private ComboBox<String> ioStandardCombo;
+    @FXML private ComboBox<String> memoryCombo;
+    @FXML private Button clearButton;
+    @FXML private Button randomizeButton;
+    @FXML private Button saveButton;
+    @FXML private Button loadButton;
+    @FXML private Button exportButton;
+    @FXML private Button streamButton;
+    @FXML private Button undoButton;
+    @FXML private Button redoButton;
+    @FXML private Label statusLabel;
+    @FXML private ProgressBar taskProgressBar;
+    @FXML private Button cancelTaskButton;
+    @FXML private Label voltageInfoLabel;
+    @FXML private ComboBox<String> patternTypeCombo;
+    @FXML private ComboBox<String> channelTargetCombo;
+    @FXML private Spinner<Double> phaseSpinner;
+    @FXML private HBox prbsOptionsBox;
+    @FXML private Label prbsPolynomialLabel;
+    @FXML private ComboBox<String> prbsPolynomialCombo;
+    @FXML private TextField prbsSeedField;
+    @FXML private CheckBox prbsInvertCheck;
+    @FXML private CheckBox prbsDecorrelateCheck;
+    @FXML private Spinner<Double> dutyCycleSpinner;
+    @FXML private Spinner<Double> patternFrequencySpinner;
+    @FXML private TextField expressionField;
+    @FXML private Button generateButton;
+
+    private PatternModel model;
+    private final ChangeBatcher changes = new ChangeBatcher(this::patternChanged);
+    private ChannelConfig lastAllChannelsConfig;
+    private WaveformRenderer waveformRenderer;
+    private WaveformSummary waveformSummary; // null while the current store's is being built
+    private PatternStore summarizing; // store whose summary is being built off the FX thread
+    private ChangeBatcher.Region summaryEdits; // edits made to it meanwhile
+    private EdgeIndex edgeIndex;
+    private List<PatternSearch.Result> searchResults = List.of();
+    private boolean updatingScrollBars;
+    private boolean syncingControls; // set while the spinners are updated from the model, suppresses resizes
+    private Task<?> currentTask;
+    private PatternMemory offHeapMemory;
+    private Playback playback; // while playing
+    private String streamTarget = "localhost:5555"; // host:port last streamed to
+    private Task<PatternSender.Result> streamTask; // while streaming
+    private List<Node> busyControls;
+    // One worker so generate/load/save never overlap; generation itself still fans out on the fork-join pool.
+    private static final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "pattern-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Streams loop until stopped, so they get their own thread rather than holding up the worker.
+    private static final ExecutorService streamer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "pattern-stream");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Builds waveform summaries of stores replaced on the FX thread (undo, resize, clear...).
+    private static final ExecutorService summarizer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "waveform-summary");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final long INLINE_SUMMARY_WORDS = 1 << 16; // words of all channels summarized on the FX thread
+    private static final double ZOOM_STEP = 2.0;
+    private static final String ALL_CHANNELS = "All Channels";
+    private static final long MAX_STEPS = 1L << 36; // 8 GiB per channel; beyond 1e9 wants off-heap memory
+    private static final int MAX_MATCHES = 1_000_000; // positions kept per search pattern
+    // Playback speed relative to the sample rate.
+    private static final List<String> TIME_SCALES = List.of("1x", "1/10x", "1/100x", "1/1000x", "1/10^4x", "1/10^5x", "1/10^6x");
+
+    @FXML
+    public void initialize() {
+        model = new PatternModel(16, 4, 8, 1.0, "TTL", "Manual", 50.0, 1000.0, "");
+        model.addChangeListener(changes);
+
+        bitWidthCombo.setItems(FXCollections.observableArrayList("8-bit", "16-bit", "32-bit"));
+        bitWidthCombo.setValue("16-bit");
+        channelSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(1, 16, 4));
+        stepSpinner.setValueFactory(new LongSpinnerValueFactory(1, MAX_STEPS, 8));
+        sampleRateSpinner.setValueFactory(new SpinnerValueFactory.DoubleSpinnerValueFactory(0.1, 100.0, 1.0, 0.1));
+        ioStandardCombo.setItems(FXCollections.observableArrayList("TTL", "LVTTL", "LVCMOS", "LVDS"));
+        ioStandardCombo.setValue("TTL");
+        memoryCombo.setItems(FXCollections.observableArrayList("Heap", "Off-heap"));
+        memoryCombo.setValue("Heap");
+        memoryCombo.setTooltip(new Tooltip("Off-heap keeps pattern data in a memory-mapped temporary file, for patterns larger than the heap"));
+        patternTypeCombo.setItems(FXCollections.observableArrayList("Manual", "PWM", "PRBS", "Clock", "Random", "Expression"));
+        patternTypeCombo.setValue("Manual");
+        dutyCycleSpinner.setValueFactory(new SpinnerValueFactory.DoubleSpinnerValueFactory(0.0, 100.0, 50.0, 1.0));
+        patternFrequencySpinner.setValueFactory(new SpinnerValueFactory.DoubleSpinnerValueFactory(1.0, 1_000_000.0, 1000.0, 100.0));
+        phaseSpinner.setValueFactory(new SpinnerValueFactory.DoubleSpinnerValueFactory(0.0, 360.0, 0.0, 15.0));
+        prbsPolynomialCombo.setItems(FXCollections.observableArrayList(Lfsr.STANDARD));
+        prbsPolynomialCombo.setValue("PRBS7");
+        prbsPolynomialCombo.setTooltip(new Tooltip("PRBS7..PRBS31, a polynomial such as x^7+x^6+1, or taps such as 7,6"));
+        prbsSeedField.setTooltip(new Tooltip("PRBS: initial register value, empty for all ones. Random and Randomize: stream seed. Decimal or 0x hex"));
+        expressionField.setText("");
+        expressionField.setTooltip(new Tooltip("High where the value is >= 0.5, e.g. sin(2*pi*freq*t) > 0.3, square(freq*t + ch/8), x < 0.25\n"
+                + "Variables: t (s), n (step), x (0..1), ch; constants: pi, freq, rate, steps\n"
+                + "Functions: sin cos tan abs sqrt exp log floor ceil round min max pow mod clamp square saw tri"));
+        timeScaleCombo.setItems(FXCollections.observableArrayList(TIME_SCALES));
+        timeScaleCombo.setValue("1/10^6x");
+        timeScaleCombo.setTooltip(new Tooltip("Playback speed: output time per second of real time"));
+        statusLabel.setText("Ready");
+        updateVoltageInfo();
+        updatePatternControlsVisibility();
+
+        updateChannelTargets();
+        setupGrid();
+        setupWaveformView();
+        updateWaveform();
+
+        // Event handlers
+        bitWidthCombo.setOnAction(e -> updateChannelLimit());
+        channelSpinner.valueProperty().addListener((obs, oldVal, newVal) -> resizePattern());
+        stepSpinner.valueProperty().addListener((obs, oldVal, newVal) -> resizePattern());
+        sampleRateSpinner.valueProperty().addListener((obs, oldVal, newVal) -> {
+            model.setSampleRate(newVal);
+            restartPlayback();
+            redrawWaveform();
+            statusLabel.setText("Sample rate set to " + newVal + " MHz (" + String.format("%.2f", 1000/newVal) + " ns/step)");
+        });
+        ioStandardCombo.setOnAction(e -> {
+            model.setIoStandard(ioStandardCombo.getValue());
+            updateVoltageInfo();
+            statusLabel.setText("I/O Standard set to " + ioStandardCombo.getValue());
+        });
+        memoryCombo.setOnAction(e -> changeMemory());
+        playButton.setOnAction(e -> {
+            if (playButton.isSelected()) startPlayback(); else stopPlayback();
+        });
+        timeScaleCombo.setOnAction(e -> restartPlayback());
+        patternTypeCombo.setOnAction(e -> {
+            model.setPatternType(patternTypeCombo.getValue());
+            updatePatternControlsVisibility();
+            patternGrid.setEditable(model.getPatternType().equals("Manual"));
+            statusLabel.setText("Pattern type set to " + patternTypeCombo.getValue());
+        });
+        dutyCycleSpinner.valueProperty().addListener((obs, oldVal, newVal) -> model.setDutyCycle(newVal));
+        patternFrequencySpinner.valueProperty().addListener((obs, oldVal, newVal) -> {
+            model.setPatternFrequency(newVal);
+            updateGenerateButtonState();
+        });
+        expressionField.textProperty().addListener((obs, oldVal, newVal) -> {
+            model.setExpression(newVal);
+            updateGenerateButtonState();
+        });
+        clearButton.setOnAction(e -> clearPattern());
+        randomizeButton.setOnAction(e -> randomizePattern());
+        saveButton.setOnAction(e -> savePattern());
+        loadButton.setOnAction(e -> loadPattern());
+        exportButton.setOnAction(e -> exportPattern());
+        streamButton.setOnAction(e -> streamPattern());
+        generateButton.setOnAction(e -> generatePattern());
+        undoButton.setOnAction(e -> undoRedo(true));
+        redoButton.setOnAction(e -> undoRedo(false));
+        undoButton.sceneProperty().addListener((obs, oldScene, scene) -> {
+            if (scene == null) return;
+            scene.getAccelerators().put(new KeyCodeCombination(KeyCode.Z, KeyCombination.SHORTCUT_DOWN), undoButton::fire);
+            scene.getAccelerators().put(new KeyCodeCombination(KeyCode.Y, KeyCombination.SHORTCUT_DOWN), redoButton::fire);
+            scene.getAccelerators().put(new KeyCodeCombination(KeyCode.Z, KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN), redoButton::fire);
+        });
+        cancelTaskButton.setOnAction(e -> {
+            if (currentTask != null) currentTask.cancel();
+        });
+        busyControls = List.of(patternGrid, generateButton, clearButton, randomizeButton, saveButton, loadButton, exportButton, memoryCombo,
+                undoButton, redoButton, findButton, channelSpinner, stepSpinner, bitWidthCombo, fillOneButton, fillZeroButton, invertButton, pasteBitsButton);
+    }
+
+    interface BackgroundWork<T> {
+        T run(TaskProgress progress) throws Exception;
+    }
+
+    // Runs `work` on the worker thread with progress in the status bar. The model is only touched by
+    // `onSuccess`, which runs on the FX thread, so the UI keeps showing the previous data until then.
+    private <T> void runInBackground(String action, BackgroundWork<T> work, Consumer<T> onSuccess) {
+        if (currentTask != null && currentTask.isRunning()) {
+            statusLabel.setText("Busy: wait for the current task or cancel it");
+            return;
+        }
+        Task<T> task = new Task<>() {
+            @Override
+            protected T call() throws Exception {
+                return work.run(new TaskProgress() {
+                    @Override
+                    public void update(long done, long total) { updateProgress(done, total); }
+
+                    @Override
+                    public boolean cancelled() { return isCancelled(); }
+                });
+            }
+        };
+        task.setOnSucceeded(e -> {
+            finishTask();
+            onSuccess.accept(task.getValue());
+        });
+        task.setOnCancelled(e -> {
+            finishTask();
+            statusLabel.setText(action + " cancelled");
+        });
+        task.setOnFailed(e -> {
+            finishTask();
+            Throwable error = task.getException();
+            statusLabel.setText("Error " + action.toLowerCase() + ": " + error.getMessage());
+        });
+        currentTask = task;
+        busyControls.forEach(control -> control.setDisable(true));
+        taskProgressBar.progressProperty().bind(task.progressProperty());
+        setTaskControlsVisible(true);
+        statusLabel.setText(action + "...");
+        worker.execute(task);
+    }
+
+    private void finishTask() {
+        currentTask = null;
+        taskProgressBar.progressProperty().unbind();
+        setTaskControlsVisible(false);
+        busyControls.forEach(control -> control.setDisable(false));
+        updateGenerateButtonState();
+        updateUndoButtons();
+    }
+
+    private void setTaskControlsVisible(boolean visible) {
+        taskProgressBar.setVisible(visible);
+        taskProgressBar.setManaged(visible);
+        cancelTaskButton.setVisible(visible);
+        cancelTaskButton.setManaged(visible);
+    }
+
+    private void updateChannelLimit() {
+        String bitWidth = bitWidthCombo.getValue();
+        int maxChannels = switch (bitWidth) {
+            case "8-bit" -> 8;
+            case "16-bit" -> 16;
+            case "32-bit" -> 32;
+            default -> 16;
+        };
+        model.setMaxChannels(maxChannels);
+        channelSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(1, maxChannels, Math.min(model.getChannels(), maxChannels)));
+        resizePattern();
+        statusLabel.setText("Bit width set to " + bitWidth + " (max " + maxChannels + " channels)");
+    }
+
+    private void updateChannelTargets() {
+        String selected = channelTargetCombo.getValue();
+        channelTargetCombo.getItems().setAll(ALL_CHANNELS);
+        for (int channel = 0; channel < model.getChannels(); channel++) {
+            channelTargetCombo.getItems().add("Ch " + channel);
+        }
+        channelTargetCombo.setValue(channelTargetCombo.getItems().contains(selected) ? selected : ALL_CHANNELS);
+    }
+
+    private void updateVoltageInfo() {
+        String standard = ioStandardCombo.getValue();
+        String info = switch (standard) {
+            case "TTL" -> "TTL: 0V (low), 5V (high)";
+            case "LVTTL" -> "LVTTL: 0V (low), 3.3V (high)";
+            case "LVCMOS" -> "LVCMOS: 0V (low), 1.8V–3.3V (high)";
+            case "LVDS" -> "LVDS: Differential, ~1.2V common mode";
+            default -> "Unknown standard";
+        };
+        voltageInfoLabel.setText(info);
+    }
+
+    private void updatePatternControlsVisibility() {
+        String patternType = patternTypeCombo.getValue();
+        boolean isPWMorClock = patternType.equals("PWM") || patternType.equals("Clock");
+        boolean isExpression = patternType.equals("Expression");
+        boolean isPRBS = patternType.equals("PRBS");
+        boolean isRandom = patternType.equals("Random"); // duty cycle is the density of ones
+        boolean isGenerated = !patternType.equals("Manual");
+        dutyCycleSpinner.setVisible(isPWMorClock || isRandom);
+        dutyCycleSpinner.setManaged(isPWMorClock || isRandom);
+        phaseSpinner.setVisible(isGenerated);
+        phaseSpinner.setManaged(isGenerated);
+        patternFrequencySpinner.setVisible(isPWMorClock || isExpression);
+        patternFrequencySpinner.setManaged(isPWMorClock || isExpression);
+        // Manual keeps the seed field for Randomize.
+        prbsOptionsBox.setVisible(isPRBS || isRandom || !isGenerated);
+        prbsOptionsBox.setManaged(isPRBS || isRandom || !isGenerated);
+        for (Node node : List.of(prbsPolynomialLabel, prbsPolynomialCombo, prbsInvertCheck, prbsDecorrelateCheck)) {
+            node.setVisible(isPRBS);
+            node.setManaged(isPRBS);
+        }
+        expressionField.setVisible(isExpression);
+        expressionField.setManaged(isExpression);
+        generateButton.setVisible(!patternType.equals("Manual"));
+        generateButton.setManaged(!patternType.equals("Manual"));
+        updateGenerateButtonState();
+    }
+
+    private void updateGenerateButtonState() {
+        String patternType = patternTypeCombo.getValue();
+        if (patternType.equals("Manual")) {
+            generateButton.setDisable(true);
+        } else if (patternType.equals("PWM") || patternType.equals("Clock")) {
+            double freq = patternFrequencySpinner.getValue();
+            double sampleRateHz = sampleRateSpinner.getValue() * 1_000_000;
+            generateButton.setDisable(freq > sampleRateHz / 2); // Nyquist limit
+        } else if (patternType.equals("Expression")) {
+            generateButton.setDisable(expressionField.getText().trim().isEmpty());
+        } else {
+            generateButton.setDisable(false); // PRBS, Random
+        }
+    }
+
+    private void setupGrid() {
+        patternGrid.setModel(model);
+        patternGrid.setEditable(model.getPatternType().equals("Manual"));
+        patternGrid.setOnEdit(statusLabel::setText);
+        fillOneButton.setOnAction(e -> patternGrid.fillSelection(true));
+        fillZeroButton.setOnAction(e -> patternGrid.fillSelection(false));
+        invertButton.setOnAction(e -> patternGrid.invertSelection());
+        pasteBitsButton.setOnAction(e -> patternGrid.pasteBits(bitStringField.getText()));
+    }
+
+    // Wires the waveform view up once; resizes and undo only need resetWaveformView().
+    private void setupWaveformView() {
+        waveformRenderer = new WaveformRenderer(waveformCanvas);
+        waveformCanvas.widthProperty().bind(waveformPane.widthProperty());
+        waveformCanvas.heightProperty().bind(waveformPane.heightProperty());
+        waveformCanvas.widthProperty().addListener((obs, oldVal, newVal) -> redrawWaveform());
+        waveformCanvas.heightProperty().addListener((obs, oldVal, newVal) -> redrawWaveform());
+        waveformHScroll.valueProperty().addListener((obs, oldVal, newVal) -> {
+            if (updatingScrollBars) return;
+            waveformRenderer.setViewStart(newVal.doubleValue(), viewSteps());
+            redrawWaveform();
+        });
+        waveformVScroll.valueProperty().addListener((obs, oldVal, newVal) -> {
+            if (updatingScrollBars) return;
+            waveformRenderer.setScrollY(newVal.doubleValue(), model.getChannels());
+            redrawWaveform();
+        });
+        waveformCanvas.addEventHandler(ScrollEvent.SCROLL, e -> {
+            if (e.isControlDown()) {
+                waveformRenderer.zoom(e.getDeltaY() > 0 ? ZOOM_STEP : 1 / ZOOM_STEP, e.getX(), viewSteps());
+            } else if (e.isShiftDown() || e.getDeltaX() != 0) {
+                double delta = e.getDeltaX() != 0 ? e.getDeltaX() : e.getDeltaY();
+                waveformRenderer.setViewStart(waveformRenderer.getViewStart() - delta * waveformRenderer.getStepsPerPixel(), viewSteps());
+            } else {
+                waveformRenderer.setScrollY(waveformRenderer.getScrollY() - e.getDeltaY(), model.getChannels());
+            }
+            redrawWaveform();
+            e.consume();
+        });
+        zoomInButton.setOnAction(e -> zoomWaveform(ZOOM_STEP));
+        zoomOutButton.setOnAction(e -> zoomWaveform(1 / ZOOM_STEP));
+        zoomFitButton.setOnAction(e -> {
+            waveformRenderer.fit(viewSteps());
+            redrawWaveform();
+        });
+        waveformCanvas.setOnMouseClicked(e -> {
+            int channel = waveformRenderer.channelAt(e.getY());
+            if (channel >= model.getChannels()) return;
+            waveformRenderer.setSelectedChannel(channel);
+            if (playback == null) waveformRenderer.setCursorStep(Math.min(model.getSteps() - 1, waveformRenderer.stepAt(e.getX())));
+            redrawWaveform();
+            updateChannelStats();
+        });
+        previousEdgeButton.setOnAction(e -> jumpToEdge(false));
+        nextEdgeButton.setOnAction(e -> jumpToEdge(true));
+        searchField.setTooltip(new Tooltip("Bits in time order on the selected channel, x or ? for any; ';' between patterns.\n"
+                + "With Bus: comma-separated bus words, binary highest channel first (1x01) or hex (0xA5, 0x?F)"));
+        searchField.setOnAction(e -> findPattern());
+        findButton.setOnAction(e -> findPattern());
+        previousMatchButton.setOnAction(e -> jumpToMatch(false));
+        nextMatchButton.setOnAction(e -> jumpToMatch(true));
+    }
+
+    private void findPattern() {
+        if (playback != null) {
+            statusLabel.setText("Stop playback to search the pattern");
+            return;
+        }
+        List<BitPattern> patterns;
+        try {
+            patterns = BitPattern.parseAll(searchField.getText(), searchBusCheck.isSelected(),
+                    waveformRenderer.getSelectedChannel(), model.getChannels());
+        } catch (IllegalArgumentException e) {
+            statusLabel.setText("Invalid search: " + e.getMessage());
+            return;
+        }
+        PatternModel searched = model;
+        long start = System.nanoTime();
+        runInBackground("Searching", progress -> PatternSearch.findAll(searched.getStore(), patterns, MAX_MATCHES, progress), results -> {
+            if (model != searched) return;
+            searchResults = results;
+            waveformRenderer.setMatches(results);
+            StringBuilder status = new StringBuilder();
+            for (PatternSearch.Result result : results) {
+                if (status.length() > 0) status.append("; ");
+                status.append(result);
+            }
+            statusLabel.setText(status.append(" (").append((System.nanoTime() - start) / 1_000_000).append(" ms)").toString());
+            waveformRenderer.setCursorStep(-1);
+            jumpToMatch(true);
+            redrawWaveform();
+        });
+    }
+
+    // Moves the cursor to the nearest match after (or before) it among all search patterns.
+    private void jumpToMatch(boolean forward) {
+        long cursor = waveformRenderer.getCursorStep();
+        long best = -1;
+        for (PatternSearch.Result result : searchResults) {
+            long match = forward ? result.next(cursor) : result.previous(cursor < 0 ? model.getSteps() : cursor);
+            if (match >= 0 && (best < 0 || (forward ? match < best : match > best))) best = match;
+        }
+        if (best < 0) return;
+        waveformRenderer.setCursorStep(best);
+        waveformRenderer.reveal(best, model.getSteps());
+        redrawWaveform();
+    }
+
+    // Moves the cursor to the selected channel's next or previous edge, scrolling it into view.
+    private void jumpToEdge(boolean forward) {
+        int channel = waveformRenderer.getSelectedChannel();
+        long cursor = waveformRenderer.getCursorStep();
+        if (cursor < 0) cursor = forward ? (long) waveformRenderer.getViewStart() - 1 : (long) waveformRenderer.getViewStart();
+        long edge = forward ? edgeIndex.nextEdge(channel, cursor) : edgeIndex.previousEdge(channel, cursor);
+        if (edge < 0) {
+            statusLabel.setText("No " + (forward ? "later" : "earlier") + " edge on Ch " + channel);
+            return;
+        }
+        waveformRenderer.setCursorStep(edge);
+        waveformRenderer.reveal(edge, model.getSteps());
+        redrawWaveform();
+        long index = edgeIndex.edgesBefore(channel, edge);
+        statusLabel.setText("Ch " + channel + ": " + (model.getPattern(channel, edge) == 1 ? "rising" : "falling")
+                + " edge " + (index + 1) + " of " + edgeIndex.getTransitions(channel) + " at step " + edge);
+    }
+
+    private void updateChannelStats() {
+        int channel = waveformRenderer.getSelectedChannel();
+        channelStatsLabel.setText("Ch " + channel + ": " + edgeIndex.stats(channel, model.getSampleRate() * 1_000_000));
+    }
+
+    private void zoomWaveform(double factor) {
+        waveformRenderer.zoom(factor, WaveformRenderer.LABEL_WIDTH + waveformRenderer.getPlotWidth() / 2, viewSteps());
+        redrawWaveform();
+    }
+
+    // Keeps the waveform in step with the model, once per pulse however many edits were made. A
+    // replaced store is summarized afresh; an edit in place updates the summary words it covers and
+    // redraws just its part of the plot, so an edit costs the same on any pattern size.
+    private void patternChanged(ChangeBatcher.Region region) {
+        if (summarizing == model.getStore()) {
+            summaryEdits = region.union(summaryEdits);
+            updateUndoButtons();
+            return;
+        }
+        if (waveformSummary == null || waveformSummary.getStore() != model.getStore()) {
+            updateWaveform();
+            return;
+        }
+        int toChannel = Math.min(region.toChannel, model.getChannels());
+        long toStep = Math.min(region.toStep, model.getSteps());
+        for (int channel = region.fromChannel; channel < toChannel; channel++) {
+            waveformSummary.update(channel, region.fromStep, toStep);
+        }
+        // Matches are positions in the data they were found in; their marks go with a full redraw.
+        boolean marked = !searchResults.isEmpty();
+        searchResults = List.of();
+        waveformRenderer.setMatches(searchResults);
+        if (playback != null) {
+            followPlayback();
+        } else if (marked) {
+            redrawWaveform();
+        } else {
+            waveformRenderer.drawChange(waveformSummary, region.fromChannel, toChannel, region.fromStep, toStep);
+        }
+        if (!channelStatsLabel.getText().isEmpty()) updateChannelStats();
+        updateUndoButtons();
+    }
+
+    // After the pattern changed size: keeps the view inside it and rebuilds the summary.
+    private void resetWaveformView() {
+        waveformRenderer.clampView(viewSteps(), model.getChannels());
+        updateWaveform();
+    }
+
+    private void updateWaveform() {
+        updateWaveform(null);
+    }
+
+    // Rebuilds the zoom summary for the model's store, then redraws. A task that produced the store
+    // passes its summary in `prepared`; otherwise a large store is summarized on another thread and
+    // the waveform keeps its last picture until then.
+    private void updateWaveform(WaveformSummary prepared) {
+        changes.discard(); // covered by the rebuild
+        PatternStore store = model.getStore();
+        summarizing = null;
+        if (prepared != null && prepared.getStore() == store) {
+            waveformSummary = prepared;
+        } else if ((long) store.getWordCount() * store.getChannels() <= INLINE_SUMMARY_WORDS) {
+            waveformSummary = new WaveformSummary(store);
+        } else {
+            waveformSummary = null;
+            summarize(store);
+        }
+        // The index follows edits to its store by itself; a replaced store reuses what it shares.
+        if (edgeIndex == null || edgeIndex.getStore() != model.getStore()) edgeIndex = new EdgeIndex(model.getStore(), edgeIndex);
+        if (waveformRenderer.getSelectedChannel() >= model.getChannels()) waveformRenderer.setSelectedChannel(0);
+        if (waveformRenderer.getCursorStep() >= model.getSteps()) waveformRenderer.setCursorStep(-1);
+        // Matches are positions in the data they were found in; drop them once it changes.
+        searchResults = List.of();
+        waveformRenderer.setMatches(searchResults);
+        followPlayback();
+        redrawWaveform();
+        if (!channelStatsLabel.getText().isEmpty()) updateChannelStats();
+        updateUndoButtons();
+    }
+
+    // Summarizes a snapshot of `store` on the summarizer thread, then takes the summary over for the
+    // store itself, with the edits made to it meanwhile, unless the store was replaced again.
+    private void summarize(PatternStore store) {
+        summarizing = store;
+        summaryEdits = null;
+        PatternStore snapshot = store.snapshot();
+        CompletableFuture.supplyAsync(() -> new WaveformSummary(snapshot), summarizer).thenAcceptAsync(summary -> {
+            if (summarizing != store) return;
+            summarizing = null;
+            waveformSummary = new WaveformSummary(summary, store);
+            if (summaryEdits != null) {
+                for (int channel = summaryEdits.fromChannel; channel < Math.min(summaryEdits.toChannel, store.getChannels()); channel++) {
+                    waveformSummary.update(channel, summaryEdits.fromStep, Math.min(summaryEdits.toStep, store.getSteps()));
+                }
+            }
+            redrawWaveform();
+        }, Platform::runLater);
+    }
+
+    // Redraws the visible window only; used for zoom, scroll and canvas resizes, and for every
+    // playback frame, where the view ends at the output played so far.
+    private void redrawWaveform() {
+        if (waveformRenderer == null || (waveformSummary == null && playback == null)) return;
+        if (playback != null) {
+            waveformRenderer.setViewStart(playback.getWindowPosition() - waveformRenderer.getVisibleSteps(), Playback.SCOPE_STEPS);
+            waveformRenderer.draw(playback.getSummary());
+        } else {
+            waveformRenderer.draw(waveformSummary);
+        }
+        updatingScrollBars = true;
+        double visible = waveformRenderer.getVisibleSteps();
+        waveformHScroll.setMin(0);
+        waveformHScroll.setMax(Math.max(0, viewSteps() - visible));
+        waveformHScroll.setVisibleAmount(Math.min(visible, viewSteps()));
+        waveformHScroll.setBlockIncrement(visible * 0.9);
+        waveformHScroll.setUnitIncrement(Math.max(1, visible / 20));
+        waveformHScroll.setValue(waveformRenderer.getViewStart());
+        double contentHeight = model.getChannels() * WaveformRenderer.WAVEFORM_HEIGHT;
+        waveformVScroll.setMin(0);
+        waveformVScroll.setMax(Math.max(0, contentHeight - waveformCanvas.getHeight()));
+        waveformVScroll.setVisibleAmount(Math.min(waveformCanvas.getHeight(), contentHeight));
+        waveformVScroll.setUnitIncrement(WaveformRenderer.WAVEFORM_HEIGHT);
+        waveformVScroll.setValue(waveformRenderer.getScrollY());
+        updatingScrollBars = false;
+
+        if (playback != null) {
+            waveformInfoLabel.setText("Playing at " + playback.getTimeScale() + ": " + playback.getStepsPlayed() + " steps | "
+                    + playback.getUnderruns() + " underruns | " + playback.getDroppedFrames() + " dropped frames | "
+                    + String.format("%.3g", waveformRenderer.getStepsPerPixel()) + " steps/px");
+            return;
+        }
+        double period = 1000.0 / model.getSampleRate(); // ns
+        long first = (long) waveformRenderer.getViewStart();
+        long last = Math.min(model.getSteps(), (long) Math.ceil(waveformRenderer.getViewStart() + visible));
+        waveformInfoLabel.setText("Time per step: " + String.format("%.2f", period) + " ns | Steps " + first + "-" + last
+                + " of " + model.getSteps() + " | " + String.format("%.3g", waveformRenderer.getStepsPerPixel()) + " steps/px");
+    }
+
+    // Steps the view scrolls over: the pattern, or the playback window while playing.
+    private long viewSteps() {
+        return playback != null ? Playback.SCOPE_STEPS : model.getSteps();
+    }
+
+    private void startPlayback() {
+        double factor = Math.pow(10, -TIME_SCALES.indexOf(timeScaleCombo.getValue()));
+        playback = new Playback(model.getStore().snapshot(), model.getSampleRate() * 1_000_000 * factor, timeScaleCombo.getValue(), this::redrawWaveform);
+        // Cursor and matches are pattern positions, which the scrolling view does not show.
+        waveformRenderer.setCursorStep(-1);
+        searchResults = List.of();
+        waveformRenderer.setMatches(searchResults);
+        setPlaybackControlsDisabled(true);
+        playback.start();
+        statusLabel.setText("Playing at " + timeScaleCombo.getValue() + " speed");
+    }
+
+    private void stopPlayback() {
+        if (playback == null) return;
+        playback.stop();
+        statusLabel.setText("Playback stopped after " + playback.getStepsPlayed() + " steps, " + playback.getUnderruns() + " underruns, "
+                + playback.getDroppedFrames() + " dropped frames");
+        playback = null;
+        playButton.setSelected(false);
+        setPlaybackControlsDisabled(false);
+        waveformRenderer.setViewStart(0, model.getSteps());
+        redrawWaveform();
+    }
+
+    // Starts over with the current pattern and speed, if playing.
+    private void restartPlayback() {
+        if (playback == null) return;
+        stopPlayback();
+        playButton.setSelected(true);
+        startPlayback();
+    }
+
+    // Playback streams a snapshot; hand it the changed pattern, or start over if the channels changed.
+    private void followPlayback() {
+        if (playback == null) return;
+        if (playback.getChannels() != model.getChannels()) {
+            restartPlayback();
+        } else {
+            playback.setSource(model.getStore().snapshot());
+        }
+    }
+
+    private void setPlaybackControlsDisabled(boolean disabled) {
+        for (Node node : List.of(waveformHScroll, previousEdgeButton, nextEdgeButton, previousMatchButton, nextMatchButton)) {
+            node.setDisable(disabled);
+        }
+    }
+
+    private void resizePattern() {
+        if (syncingControls) return;
+        if (channelSpinner.getValue() == model.getChannels() && stepSpinner.getValue() == model.getSteps()) return;
+        model.resize(channelSpinner.getValue(), stepSpinner.getValue());
+        updateChannelTargets();
+        resetWaveformView();
+        statusLabel.setText("Pattern resized to " + model.getChannels() + " channels, " + model.getSteps() + " steps");
+    }
+
+    private void clearPattern() {
+        model.clear();
+        statusLabel.setText("Pattern cleared");
+    }
+
+    private void randomizePattern() {
+        if (model.getPatternType().equals("Manual")) {
+            long seed;
+            try {
+                seed = parseSeed();
+            } catch (IllegalArgumentException e) {
+                statusLabel.setText(e.getMessage());
+                return;
+            }
+            model.randomize(seed, 0.5);
+            statusLabel.setText("Pattern randomized (seed " + seed + ")");
+        } else {
+            statusLabel.setText("Randomize only available in Manual mode");
+        }
+    }
+
+    private void savePattern() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Save Pattern");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Pattern Files", "*.pat"));
+        File file = fileChooser.showSaveDialog(patternGrid.getScene().getWindow());
+        if (file != null) {
+            PatternModel saved = model;
+            runInBackground("Saving pattern", progress -> {
+                PatternFileHandler.savePattern(saved, file, true, progress);
+                return null;
+            }, result -> statusLabel.setText("Pattern saved to " + file.getName()));
+        }
+    }
+
+    private void exportPattern() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Export Pattern");
+        List<PatternExporter> exporters = PatternExporter.all();
+        for (PatternExporter exporter : exporters) {
+            fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter(
+                    exporter.getName() + " (*." + exporter.getExtension() + ")", "*." + exporter.getExtension()));
+        }
+        File file = fileChooser.showSaveDialog(patternGrid.getScene().getWindow());
+        if (file == null) return;
+        PatternExporter exporter = PatternExporter.forFile(file);
+        if (exporter == null) {
+            // No known extension typed: use the selected filter's format and add its extension.
+            exporter = exporters.get(fileChooser.getExtensionFilters().indexOf(fileChooser.getSelectedExtensionFilter()));
+            file = new File(file.getPath() + "." + exporter.getExtension());
+        }
+        PatternModel exported = model;
+        PatternExporter format = exporter;
+        File target = file;
+        runInBackground("Exporting pattern", progress -> {
+            PatternFileHandler.exportPattern(exported, target, format, progress);
+            return null;
+        }, result -> statusLabel.setText("Pattern exported to " + target.getName() + " (" + format.getName() + ", "
+                + target.length() / 1024 + " KB)"));
+    }
+
+    // Streams the pattern to a generator, or a LoopbackReceiver, looping it until the task is cancelled.
+    // Starts streaming a snapshot of the pattern, or stops the running stream. Editing and other
+    // tasks carry on meanwhile; the stream keeps sending what the pattern was when it started.
+    private void streamPattern() {
+        if (streamTask != null) {
+            // Without interrupting, so the sender notices between frames and still ends the stream.
+            streamTask.cancel(false);
+            return;
+        }
+        TextInputDialog dialog = new TextInputDialog(streamTarget);
+        dialog.setTitle("Stream Pattern");
+        dialog.setHeaderText("Stream the pattern to a generator; it loops until cancelled");
+        dialog.setContentText("Host:port");
+        Optional<String> input = dialog.showAndWait();
+        if (input.isEmpty()) return;
+        String target = input.get().trim();
+        int colon = target.lastIndexOf(':');
+        int port;
+        try {
+            port = Integer.parseInt(target.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            port = -1;
+        }
+        if (colon < 1 || port < 1 || port > 65535) {
+            statusLabel.setText("Stream target must be host:port");
+            return;
+        }
+        streamTarget = target;
+        String host = target.substring(0, colon);
+        int targetPort = port;
+        PatternSender sender = new PatternSender(model);
+        Task<PatternSender.Result> task = new Task<>() {
+            @Override
+            protected PatternSender.Result call() throws Exception {
+                return sender.send(new InetSocketAddress(host, targetPort), 0, new TaskProgress() {
+                    @Override
+                    public void update(long done, long total) {}
+
+                    @Override
+                    public boolean cancelled() { return isCancelled(); }
+                });
+            }
+        };
+        task.setOnSucceeded(e -> {
+            finishStream();
+            statusLabel.setText("Streamed " + task.getValue());
+        });
+        task.setOnCancelled(e -> {
+            finishStream();
+            statusLabel.setText("Streaming to " + target + " stopped");
+        });
+        task.setOnFailed(e -> {
+            finishStream();
+            statusLabel.setText("Error streaming pattern: " + task.getException().getMessage());
+        });
+        streamTask = task;
+        streamButton.setText("Stop Stream");
+        statusLabel.setText("Streaming pattern to " + target + "...");
+        streamer.execute(task);
+    }
+
+    private void finishStream() {
+        streamTask = null;
+        streamButton.setText("Stream...");
+    }
+
+    private void loadPattern() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Load Pattern");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Pattern Files", "*.pat"));
+        File file = fileChooser.showOpenDialog(patternGrid.getScene().getWindow());
+        if (file != null) {
+            PatternMemory memory;
+            try {
+                memory = selectedMemory();
+            } catch (IOException e) {
+                statusLabel.setText("Cannot allocate off-heap memory: " + e.getMessage());
+                return;
+            }
+            runInBackground("Loading pattern", progress -> {
+                PatternModel loaded = PatternFileHandler.loadPattern(file, progress, memory);
+                return new Summarized<>(loaded, new WaveformSummary(loaded.getStore()));
+            }, loaded -> showLoadedPattern(loaded.value, loaded.summary, file));
+        }
+    }
+
+    // The memory chosen in the UI; the off-heap one is created on first use and kept for the session.
+    private PatternMemory selectedMemory() throws IOException {
+        if (!memoryCombo.getValue().equals("Off-heap")) return PatternMemory.HEAP;
+        if (offHeapMemory == null) offHeapMemory = PatternMemory.offHeap();
+        return offHeapMemory;
+    }
+
+    private void changeMemory() {
+        try {
+            model.setMemory(selectedMemory());
+        } catch (IOException | IllegalStateException e) {
+            statusLabel.setText("Cannot allocate off-heap memory: " + e.getMessage());
+            memoryCombo.setValue(model.getMemory().isOffHeap() ? "Off-heap" : "Heap");
+            return;
+        }
+        PatternMemory memory = model.getMemory();
+        statusLabel.setText("Pattern data moved to " + memory.getName() + " memory"
+                + (memory.isOffHeap() ? " (" + memory.getReservedBytes() / (1024 * 1024) + " MB mapped)" : ""));
+    }
+
+    private void showLoadedPattern(PatternModel loaded, WaveformSummary summary, File file) {
+        model.removeChangeListener(changes);
+        model = loaded;
+        model.addChangeListener(changes);
+        lastAllChannelsConfig = null;
+        syncSizeControls();
+        sampleRateSpinner.getValueFactory().setValue(model.getSampleRate());
+        ioStandardCombo.setValue(model.getIoStandard());
+        patternTypeCombo.setValue(model.getPatternType());
+        dutyCycleSpinner.getValueFactory().setValue(model.getDutyCycle());
+        patternFrequencySpinner.getValueFactory().setValue(model.getPatternFrequency());
+        expressionField.setText(model.getExpression());
+        updateChannelLimit();
+        updateVoltageInfo();
+        updatePatternControlsVisibility();
+        patternGrid.setModel(model);
+        patternGrid.setEditable(model.getPatternType().equals("Manual"));
+        updateWaveform(summary);
+        statusLabel.setText("Pattern loaded from " + file.getName());
+    }
+
+    // Shows the model's bit width, channel and step count without resizing it from half-updated spinners.
+    private void syncSizeControls() {
+        syncingControls = true;
+        try {
+            bitWidthCombo.setValue(model.getMaxChannels() + "-bit");
+            channelSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(1, model.getMaxChannels(), model.getChannels()));
+            stepSpinner.getValueFactory().setValue(model.getSteps());
+        } finally {
+            syncingControls = false;
+        }
+    }
+
+    private void undoRedo(boolean undo) {
+        String label = undo ? model.undo() : model.redo();
+        if (label == null) return;
+        syncSizeControls();
+        updateChannelTargets();
+        resetWaveformView();
+        statusLabel.setText((undo ? "Undo: " : "Redo: ") + label);
+    }
+
+    private void updateUndoButtons() {
+        PatternHistory history = model.getHistory();
+        undoButton.setDisable(!history.canUndo());
+        redoButton.setDisable(!history.canRedo());
+        undoButton.setTooltip(new Tooltip(history.canUndo() ? "Undo " + history.getUndoLabel() + " (Ctrl+Z)" : "Nothing to undo"));
+        redoButton.setTooltip(new Tooltip(history.canRedo() ? "Redo " + history.getRedoLabel() + " (Ctrl+Y)" : "Nothing to redo"));
+    }
+
+    // The seed field: a PRBS register value or Random stream seed, -1 (all ones) when empty.
+    private long parseSeed() {
+        String seedText = prbsSeedField.getText().trim();
+        try {
+            return seedText.isEmpty() ? -1L : Long.decode(seedText);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid seed: " + seedText);
+        }
+    }
+
+    private void applyChannelConfigs() {
+        long seed = parseSeed();
+        ChannelConfig config = new ChannelConfig(patternTypeCombo.getValue(), patternFrequencySpinner.getValue(),
+                dutyCycleSpinner.getValue(), phaseSpinner.getValue(), expressionField.getText())
+                .withPrbs(prbsPolynomialCombo.getValue(), seed, prbsInvertCheck.isSelected(), prbsDecorrelateCheck.isSelected())
+                .withRandom(seed, dutyCycleSpinner.getValue() / 100);
+        String target = channelTargetCombo.getValue();
+        if (target == null || target.equals(ALL_CHANNELS)) {
+            model.clearChannelConfigs();
+            if (!config.equals(model.getDefaultConfig())) {
+                for (int channel = 0; channel < model.getChannels(); channel++) {
+                    model.setChannelConfig(channel, config);
+                }
+            }
+            lastAllChannelsConfig = config;
+        } else {
+            // Pin the other channels to what they were last generated with before the shared settings change.
+            ChannelConfig others = lastAllChannelsConfig != null ? lastAllChannelsConfig
+                    : new ChannelConfig("Manual", config.getFrequency(), config.getDutyCycle(), 0.0, "");
+            for (int channel = 0; channel < model.getChannels(); channel++) {
+                if (!model.hasChannelConfig(channel)) model.setChannelConfig(channel, others);
+            }
+            model.setChannelConfig(Integer.parseInt(target.substring(3)), config);
+        }
+    }
+
+    private void generatePattern() {
+        PatternModel.Generation generation;
+        try {
+            applyChannelConfigs();
+            generation = model.newGeneration();
+        } catch (Exception e) {
+            statusLabel.setText("Error generating pattern: " + e.getMessage());
+            return;
+        }
+        runInBackground("Generating pattern", progress -> {
+            String status = generation.run(ForkJoinPool.commonPool(), progress);
+            return new Summarized<>(status, new WaveformSummary(generation.getResult()));
+        }, generated -> {
+            if (!generation.commit()) {
+                statusLabel.setText("Pattern changed during generation; result discarded");
+                return;
+            }
+            updateWaveform(generated.summary);
+            statusLabel.setText(generated.value);
+        });
+    }
+
+    // A task's result with the waveform summary of the store it produced, built on the worker thread.
+    private static final class Summarized<T> {
+        final T value;
+        final WaveformSummary summary;
+
+        Summarized(T value, WaveformSummary summary) {
+            this.value = value;
+            this.summary = summary;
+        }
+    }
+
+    // IntegerSpinnerValueFactory for step counts past the int range.
+    private static final class LongSpinnerValueFactory extends SpinnerValueFactory<Long> {
+        private final long min;
+        private final long max;
+
+        LongSpinnerValueFactory(long min, long max, long initial) {
+            this.min = min;
+            this.max = max;
+            setConverter(new LongStringConverter());
+            valueProperty().addListener((obs, oldVal, newVal) -> {
+                if (newVal == null || newVal < min || newVal > max) setValue(newVal == null ? oldVal : Math.max(min, Math.min(max, newVal)));
+            });
+            setValue(initial);
+        }
+
+        @Override
+        public void decrement(int steps) {
+            setValue(Math.max(min, getValue() - steps));
+        }
+
+        @Override
+        public void increment(int steps) {
+            setValue(Math.min(max, getValue() + steps));
+        }
+    }
+}
\ No newline at end of file
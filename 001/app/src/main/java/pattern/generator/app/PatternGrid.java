@@ -0,0 +1,402 @@
+package pattern.generator.app;
+
+import javafx.geometry.Orientation;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+import pattern.generator.core.PatternModel;
+import pattern.generator.core.PatternStore;
+
+import java.util.function.Consumer;
+
+// Channel x step grid that draws only the cells in view, reading straight from the model's packed
+// storage. A rectangular selection supports bulk edits: fill with 0/1, invert, and pasting a bit
+// string at the cursor. Keys: arrows (Shift extends), 0/1/Delete fill, Space or I inverts,
+// Ctrl+C copies the selection as bit strings, Ctrl+V pastes from the clipboard.
+//
+// The grid follows the model's change events, batched to one repaint per pulse: an edit redraws
+// just the cells it changed that are in view, a change of size re-reads the scroll ranges.
+public class PatternGrid extends Region {
+    private static final double ROW_HEIGHT = 24.0;
+    private static final double HEADER_HEIGHT = 24.0;
+    private static final double LABEL_WIDTH = 60.0;
+    private static final double MIN_CELL_WIDTH = 24.0;
+    private static final Font FONT = new Font("Consolas", 12);
+    private static final int MAX_CLIPBOARD_BITS = 64 * 1024 * 1024;
+
+    private final Canvas canvas = new Canvas();
+    private final ScrollBar hScroll = new ScrollBar();
+    private final ScrollBar vScroll = new ScrollBar();
+    private final ChangeBatcher changes = new ChangeBatcher(this::patternChanged);
+    private PatternModel model;
+    private int shownChannels; // size at the last refresh()
+    private long shownSteps;
+    private boolean editable;
+    private Consumer<String> onEdit = status -> {};
+    private double cellWidth = MIN_CELL_WIDTH;
+
+    // Selection is the rectangle spanned by the anchor and the focus cell, inclusive.
+    private int anchorChannel;
+    private long anchorStep;
+    private int focusChannel;
+    private long focusStep;
+
+    public PatternGrid() {
+        vScroll.setOrientation(Orientation.VERTICAL);
+        getChildren().addAll(canvas, hScroll, vScroll);
+        getStyleClass().add("pattern-grid");
+        setFocusTraversable(true);
+        hScroll.valueProperty().addListener((obs, oldVal, newVal) -> draw());
+        vScroll.valueProperty().addListener((obs, oldVal, newVal) -> draw());
+        canvas.addEventHandler(MouseEvent.MOUSE_PRESSED, this::onMousePressed);
+        canvas.addEventHandler(MouseEvent.MOUSE_DRAGGED, this::onMouseDragged);
+        canvas.addEventHandler(ScrollEvent.SCROLL, this::onScroll);
+        addEventHandler(KeyEvent.KEY_PRESSED, this::onKeyPressed);
+    }
+
+    public void setModel(PatternModel model) {
+        if (this.model != null) this.model.removeChangeListener(changes);
+        changes.discard();
+        this.model = model;
+        model.addChangeListener(changes);
+        clampSelection();
+        refresh();
+    }
+
+    public void setEditable(boolean editable) {
+        this.editable = editable;
+    }
+
+    public boolean isEditable() { return editable; }
+
+    // Called after every edit with a status line.
+    public void setOnEdit(Consumer<String> onEdit) {
+        this.onEdit = onEdit;
+    }
+
+    // Re-reads sizes from the model and redraws.
+    public void refresh() {
+        if (model == null) return;
+        shownChannels = model.getChannels();
+        shownSteps = model.getSteps();
+        cellWidth = Math.max(MIN_CELL_WIDTH, 8 * String.valueOf(model.getSteps()).length() + 8);
+        clampSelection();
+        requestLayout();
+        updateScrollBars();
+        draw();
+    }
+
+    private void patternChanged(ChangeBatcher.Region region) {
+        if (model.getChannels() != shownChannels || model.getSteps() != shownSteps) {
+            refresh();
+        } else {
+            repaint(region.fromChannel, region.toChannel, region.fromStep, region.toStep);
+        }
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double barWidth = vScroll.prefWidth(-1);
+        double barHeight = hScroll.prefHeight(-1);
+        double width = Math.max(0, getWidth() - barWidth);
+        double height = Math.max(0, getHeight() - barHeight);
+        canvas.setWidth(width);
+        canvas.setHeight(height);
+        canvas.relocate(0, 0);
+        vScroll.resizeRelocate(width, 0, barWidth, height);
+        hScroll.resizeRelocate(0, height, width, barHeight);
+        updateScrollBars();
+        draw();
+    }
+
+    private int visibleColumns() {
+        return Math.max(1, (int) ((canvas.getWidth() - LABEL_WIDTH) / cellWidth));
+    }
+
+    private int visibleRows() {
+        return Math.max(1, (int) ((canvas.getHeight() - HEADER_HEIGHT) / ROW_HEIGHT));
+    }
+
+    private long firstStep() { return (long) hScroll.getValue(); }
+    private int firstChannel() { return (int) vScroll.getValue(); }
+
+    private void updateScrollBars() {
+        if (model == null) return;
+        int columns = visibleColumns();
+        int rows = visibleRows();
+        hScroll.setMin(0);
+        hScroll.setMax(Math.max(0, model.getSteps() - columns));
+        hScroll.setVisibleAmount(Math.min(columns, model.getSteps()));
+        hScroll.setUnitIncrement(1);
+        hScroll.setBlockIncrement(Math.max(1, columns - 1));
+        vScroll.setMin(0);
+        vScroll.setMax(Math.max(0, model.getChannels() - rows));
+        vScroll.setVisibleAmount(Math.min(rows, model.getChannels()));
+        vScroll.setUnitIncrement(1);
+        vScroll.setBlockIncrement(Math.max(1, rows - 1));
+    }
+
+    private void draw() {
+        if (model == null) return;
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        gc.setFill(Color.WHITE);
+        gc.fillRect(0, 0, width, height);
+
+        long firstStep = firstStep();
+        int firstChannel = firstChannel();
+        long lastStep = Math.min(model.getSteps(), firstStep + visibleColumns() + 1);
+        int lastChannel = Math.min(model.getChannels(), firstChannel + visibleRows() + 1);
+        drawCells(gc, firstChannel, lastChannel, firstStep, lastStep);
+
+        gc.setFill(Color.web("#c0c0c0"));
+        gc.fillRect(0, 0, width, HEADER_HEIGHT);
+        gc.fillRect(0, 0, LABEL_WIDTH, height);
+        gc.setFill(Color.BLACK);
+        for (long step = firstStep; step < lastStep; step++) {
+            gc.fillText(String.valueOf(step), LABEL_WIDTH + (step - firstStep) * cellWidth + cellWidth / 2, HEADER_HEIGHT - 7);
+        }
+        gc.setTextAlign(TextAlignment.LEFT);
+        for (int channel = firstChannel; channel < lastChannel; channel++) {
+            gc.fillText("Ch " + channel, 5, HEADER_HEIGHT + (channel - firstChannel) * ROW_HEIGHT + ROW_HEIGHT - 7);
+        }
+    }
+
+    // Redraws the cells of channels [fromChannel, toChannel) and steps [fromStep, toStep) that are in view.
+    private void repaint(int fromChannel, int toChannel, long fromStep, long toStep) {
+        int firstChannel = Math.max(fromChannel, firstChannel());
+        long firstStep = Math.max(fromStep, firstStep());
+        int lastChannel = Math.min(Math.min(toChannel, model.getChannels()), firstChannel() + visibleRows() + 1);
+        long lastStep = Math.min(Math.min(toStep, model.getSteps()), firstStep() + visibleColumns() + 1);
+        if (firstChannel < lastChannel && firstStep < lastStep) {
+            drawCells(canvas.getGraphicsContext2D(), firstChannel, lastChannel, firstStep, lastStep);
+        }
+    }
+
+    // Cells, grid lines and focus mark of channels [fromChannel, toChannel) and steps [fromStep, toStep),
+    // which must be in view.
+    private void drawCells(GraphicsContext gc, int fromChannel, int toChannel, long fromStep, long toStep) {
+        gc.setFont(FONT);
+        gc.setTextAlign(TextAlignment.CENTER);
+        PatternStore store = model.getStore();
+        long firstStep = firstStep();
+        int firstChannel = firstChannel();
+        long selStepLo = Math.min(anchorStep, focusStep);
+        long selStepHi = Math.max(anchorStep, focusStep);
+        int selChLo = Math.min(anchorChannel, focusChannel);
+        int selChHi = Math.max(anchorChannel, focusChannel);
+
+        for (int channel = fromChannel; channel < toChannel; channel++) {
+            double y = HEADER_HEIGHT + (channel - firstChannel) * ROW_HEIGHT;
+            for (long step = fromStep; step < toStep; step++) {
+                double x = LABEL_WIDTH + (step - firstStep) * cellWidth;
+                boolean high = store.get(channel, step);
+                boolean selected = channel >= selChLo && channel <= selChHi && step >= selStepLo && step <= selStepHi;
+                gc.setFill(selected ? (high ? Color.web("#8fb8e8") : Color.web("#c8dcf4")) : (high ? Color.web("#dde8ff") : Color.WHITE));
+                gc.fillRect(x, y, cellWidth, ROW_HEIGHT);
+                gc.setFill(Color.BLACK);
+                gc.fillText(high ? "1" : "0", x + cellWidth / 2, y + ROW_HEIGHT - 7);
+            }
+        }
+
+        gc.setStroke(Color.web("#c0c0c0"));
+        gc.setLineWidth(1.0);
+        for (long step = fromStep; step <= toStep; step++) {
+            double x = LABEL_WIDTH + (step - firstStep) * cellWidth + 0.5;
+            gc.strokeLine(x, HEADER_HEIGHT + (fromChannel - firstChannel) * ROW_HEIGHT, x, HEADER_HEIGHT + (toChannel - firstChannel) * ROW_HEIGHT);
+        }
+        for (int channel = fromChannel; channel <= toChannel; channel++) {
+            double y = HEADER_HEIGHT + (channel - firstChannel) * ROW_HEIGHT + 0.5;
+            gc.strokeLine(LABEL_WIDTH + (fromStep - firstStep) * cellWidth, y, LABEL_WIDTH + (toStep - firstStep) * cellWidth, y);
+        }
+
+        if (focusChannel >= fromChannel && focusChannel < toChannel && focusStep >= fromStep && focusStep < toStep) {
+            gc.setStroke(Color.BLACK);
+            gc.setLineWidth(2.0);
+            gc.strokeRect(LABEL_WIDTH + (focusStep - firstStep) * cellWidth + 1,
+                    HEADER_HEIGHT + (focusChannel - firstChannel) * ROW_HEIGHT + 1, cellWidth - 2, ROW_HEIGHT - 2);
+        }
+    }
+
+    // ---- Interaction ----
+
+    private int channelAt(double y) {
+        return firstChannel() + (int) Math.floor((y - HEADER_HEIGHT) / ROW_HEIGHT);
+    }
+
+    private long stepAt(double x) {
+        return firstStep() + (int) Math.floor((x - LABEL_WIDTH) / cellWidth);
+    }
+
+    private void onMousePressed(MouseEvent e) {
+        requestFocus();
+        if (model == null || e.getX() < LABEL_WIDTH || e.getY() < HEADER_HEIGHT) return;
+        int channel = channelAt(e.getY());
+        long step = stepAt(e.getX());
+        if (channel >= model.getChannels() || step >= model.getSteps()) return;
+        moveFocus(channel, step, e.isShiftDown());
+        if (e.getClickCount() == 2) invertSelection();
+    }
+
+    private void onMouseDragged(MouseEvent e) {
+        if (model == null) return;
+        moveFocus(channelAt(Math.max(HEADER_HEIGHT, e.getY())), stepAt(Math.max(LABEL_WIDTH, e.getX())), true);
+    }
+
+    private void onScroll(ScrollEvent e) {
+        if (e.isShiftDown() || e.getDeltaX() != 0) {
+            double delta = e.getDeltaX() != 0 ? e.getDeltaX() : e.getDeltaY();
+            hScroll.setValue(clamp(hScroll.getValue() - Math.signum(delta) * 3, hScroll.getMin(), hScroll.getMax()));
+        } else {
+            vScroll.setValue(clamp(vScroll.getValue() - Math.signum(e.getDeltaY()), vScroll.getMin(), vScroll.getMax()));
+        }
+        e.consume();
+    }
+
+    private void onKeyPressed(KeyEvent e) {
+        if (model == null) return;
+        KeyCode code = e.getCode();
+        boolean shift = e.isShiftDown();
+        if (code == KeyCode.LEFT) moveFocus(focusChannel, focusStep - 1, shift);
+        else if (code == KeyCode.RIGHT) moveFocus(focusChannel, focusStep + 1, shift);
+        else if (code == KeyCode.UP) moveFocus(focusChannel - 1, focusStep, shift);
+        else if (code == KeyCode.DOWN) moveFocus(focusChannel + 1, focusStep, shift);
+        else if (code == KeyCode.HOME) moveFocus(focusChannel, 0, shift);
+        else if (code == KeyCode.END) moveFocus(focusChannel, model.getSteps() - 1, shift);
+        else if (code == KeyCode.PAGE_DOWN) moveFocus(focusChannel, focusStep + visibleColumns(), shift);
+        else if (code == KeyCode.PAGE_UP) moveFocus(focusChannel, focusStep - visibleColumns(), shift);
+        else if (code == KeyCode.DIGIT1 || code == KeyCode.NUMPAD1) fillSelection(true);
+        else if (code == KeyCode.DIGIT0 || code == KeyCode.NUMPAD0 || code == KeyCode.DELETE) fillSelection(false);
+        else if (code == KeyCode.SPACE || code == KeyCode.I) invertSelection();
+        else if (code == KeyCode.C && e.isShortcutDown()) copySelection();
+        else if (code == KeyCode.V && e.isShortcutDown()) pasteFromClipboard();
+        else return;
+        e.consume();
+    }
+
+    private void moveFocus(int channel, long step, boolean extend) {
+        focusChannel = (int) clamp(channel, 0, model.getChannels() - 1);
+        focusStep = (long) clamp(step, 0, model.getSteps() - 1);
+        if (!extend) {
+            anchorChannel = focusChannel;
+            anchorStep = focusStep;
+        }
+        scrollToFocus();
+        draw();
+    }
+
+    private void scrollToFocus() {
+        int columns = visibleColumns();
+        int rows = visibleRows();
+        if (focusStep < firstStep()) hScroll.setValue(focusStep);
+        else if (focusStep >= firstStep() + columns) hScroll.setValue(Math.min(hScroll.getMax(), focusStep - columns + 1));
+        if (focusChannel < firstChannel()) vScroll.setValue(focusChannel);
+        else if (focusChannel >= firstChannel() + rows) vScroll.setValue(Math.min(vScroll.getMax(), focusChannel - rows + 1));
+    }
+
+    private void clampSelection() {
+        if (model == null) return;
+        anchorChannel = (int) clamp(anchorChannel, 0, model.getChannels() - 1);
+        focusChannel = (int) clamp(focusChannel, 0, model.getChannels() - 1);
+        anchorStep = (long) clamp(anchorStep, 0, model.getSteps() - 1);
+        focusStep = (long) clamp(focusStep, 0, model.getSteps() - 1);
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    // ---- Bulk editing ----
+
+    private boolean checkEditable() {
+        if (!editable) onEdit.accept("Editing only available in Manual mode");
+        return editable;
+    }
+
+    private String selectionText() {
+        int chLo = Math.min(anchorChannel, focusChannel);
+        int chHi = Math.max(anchorChannel, focusChannel);
+        long stepLo = Math.min(anchorStep, focusStep);
+        long stepHi = Math.max(anchorStep, focusStep);
+        if (chLo == chHi && stepLo == stepHi) return "Channel " + chLo + ", Step " + stepLo;
+        return "Channels " + chLo + "-" + chHi + ", Steps " + stepLo + "-" + stepHi;
+    }
+
+    public void fillSelection(boolean value) {
+        if (model == null || !checkEditable()) return;
+        long stepLo = Math.min(anchorStep, focusStep);
+        long stepHi = Math.max(anchorStep, focusStep);
+        model.checkpoint("Fill with " + (value ? 1 : 0));
+        for (int channel = Math.min(anchorChannel, focusChannel); channel <= Math.max(anchorChannel, focusChannel); channel++) {
+            model.fillRange(channel, stepLo, stepHi + 1, value);
+        }
+        onEdit.accept("Pattern set to " + (value ? 1 : 0) + " at " + selectionText());
+    }
+
+    public void invertSelection() {
+        if (model == null || !checkEditable()) return;
+        long stepLo = Math.min(anchorStep, focusStep);
+        long stepHi = Math.max(anchorStep, focusStep);
+        model.checkpoint("Invert");
+        for (int channel = Math.min(anchorChannel, focusChannel); channel <= Math.max(anchorChannel, focusChannel); channel++) {
+            model.invertRange(channel, stepLo, stepHi + 1);
+        }
+        onEdit.accept("Pattern inverted at " + selectionText());
+    }
+
+    // Writes a bit string starting at the cursor. Lines go to consecutive channels; characters other
+    // than 0 and 1 (spaces, underscores) are skipped; bits past the last step are dropped.
+    public void pasteBits(String text) {
+        if (model == null || !checkEditable()) return;
+        String[] lines = text.split("\\R");
+        model.checkpoint("Paste");
+        int pasted = 0;
+        for (int line = 0; line < lines.length && focusChannel + line < model.getChannels(); line++) {
+            int channel = focusChannel + line;
+            long step = focusStep;
+            for (int i = 0; i < lines[line].length() && step < model.getSteps(); i++) {
+                char c = lines[line].charAt(i);
+                if (c == '0' || c == '1') {
+                    model.setPattern(channel, step++, c - '0');
+                    pasted++;
+                }
+            }
+        }
+        onEdit.accept("Pasted " + pasted + " bits at Channel " + focusChannel + ", Step " + focusStep);
+    }
+
+    private void pasteFromClipboard() {
+        String text = Clipboard.getSystemClipboard().getString();
+        if (text != null) pasteBits(text);
+    }
+
+    private void copySelection() {
+        long stepLo = Math.min(anchorStep, focusStep);
+        long stepHi = Math.max(anchorStep, focusStep);
+        long bits = (stepHi - stepLo + 1) * (Math.abs(anchorChannel - focusChannel) + 1);
+        if (bits > MAX_CLIPBOARD_BITS) {
+            onEdit.accept("Selection too large to copy (" + bits + " bits)");
+            return;
+        }
+        StringBuilder sb = new StringBuilder((int) bits + 8);
+        for (int channel = Math.min(anchorChannel, focusChannel); channel <= Math.max(anchorChannel, focusChannel); channel++) {
+            if (sb.length() > 0) sb.append('\n');
+            for (long step = stepLo; step <= stepHi; step++) sb.append(model.getPattern(channel, step));
+        }
+        ClipboardContent content = new ClipboardContent();
+        content.putString(sb.toString());
+        Clipboard.getSystemClipboard().setContent(content);
+    }
+}
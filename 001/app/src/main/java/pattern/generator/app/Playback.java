@@ -0,0 +1,141 @@
+package pattern.generator.app;
+
+import javafx.animation.AnimationTimer;
+
+import pattern.generator.core.PatternStore;
+import pattern.generator.core.PatternStreamer;
+import pattern.generator.core.WordRing;
+
+import java.util.concurrent.locks.LockSupport;
+
+// Live preview of the generator output. A PatternStreamer thread fills a WordRing with the looping
+// pattern; an AnimationTimer takes out what the hardware would have played since the last pulse,
+// at the sample rate times the time scale, and appends it to the scope, a window of recent output
+// with its own WaveformSummary that the waveform view scrolls along.
+//
+// Two counters tell how well it keeps up: an underrun is a pulse that found the ring short of the
+// steps due, so the preview stalled; dropped frames are pulses that came late and were skipped.
+// Time lost to long stalls is not made up, so the preview slows down rather than jumping.
+final class Playback {
+    static final long SCOPE_STEPS = 1L << 22;
+    private static final int SCOPE_WORDS = (int) (SCOPE_STEPS >>> 6);
+    private static final int BLOCK_FRAMES = 256;
+    private static final int POLL_FRAMES = 4096;
+    private static final long FRAME_NANOS = 1_000_000_000L / 60;
+    private static final long MAX_CATCH_UP_NANOS = 4 * FRAME_NANOS;
+
+    private final int channels;
+    private final double stepsPerSecond;
+    private final String timeScale;
+    private final PatternStreamer streamer;
+    private final WordRing ring;
+    private final Thread producer;
+    private final long[] frames;
+    private final long[] channelWords = new long[POLL_FRAMES];
+    private final long[] kept = new long[SCOPE_WORDS / 2];
+    private final PatternStore window; // the scope's data
+    private final Runnable onFrame;
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            frame(now);
+        }
+    };
+    private WaveformSummary summary;
+    private long windowStart; // steps played before window step 0
+    private int windowWords; // words written into the window
+    private double played; // steps played, fractional
+    private long lastPulse;
+    private long underruns;
+    private long droppedFrames;
+
+    // Plays `source`, which must not change afterwards (pass a snapshot), at `stepsPerSecond`.
+    Playback(PatternStore source, double stepsPerSecond, String timeScale, Runnable onFrame) {
+        this.channels = source.getChannels();
+        this.stepsPerSecond = stepsPerSecond;
+        this.timeScale = timeScale;
+        this.onFrame = onFrame;
+        // Eight pulses of output, within reason, so the producer can fall behind for a while.
+        long perPulse = (long) Math.ceil(stepsPerSecond / 60 / PatternStore.WORD_BITS) * channels;
+        int capacity = (int) Math.max((long) BLOCK_FRAMES * channels * 4, Math.min(1 << 24, perPulse * 8));
+        this.ring = new WordRing(capacity);
+        this.streamer = new PatternStreamer(source, ring, BLOCK_FRAMES);
+        this.frames = new long[POLL_FRAMES * channels];
+        this.window = new PatternStore(channels, SCOPE_STEPS);
+        this.summary = new WaveformSummary(window);
+        this.producer = new Thread(streamer, "pattern-playback");
+        producer.setDaemon(true);
+    }
+
+    void start() {
+        producer.start();
+        timer.start();
+    }
+
+    void stop() {
+        timer.stop();
+        streamer.stop();
+        LockSupport.unpark(producer);
+    }
+
+    // Takes effect from the next block the producer streams.
+    void setSource(PatternStore source) {
+        streamer.setSource(source);
+    }
+
+    int getChannels() { return channels; }
+    String getTimeScale() { return timeScale; }
+    WaveformSummary getSummary() { return summary; }
+    long getStepsPlayed() { return (long) played; }
+    long getUnderruns() { return underruns; }
+    long getDroppedFrames() { return droppedFrames; }
+
+    // Window step up to which output has been played; the view ends here.
+    double getWindowPosition() {
+        return played - windowStart;
+    }
+
+    private void frame(long now) {
+        if (lastPulse != 0) {
+            long elapsed = now - lastPulse;
+            if (elapsed > FRAME_NANOS * 3 / 2) droppedFrames += Math.round((double) elapsed / FRAME_NANOS) - 1;
+            consume(played + Math.min(elapsed, MAX_CATCH_UP_NANOS) / 1e9 * stepsPerSecond);
+        }
+        lastPulse = now;
+        onFrame.run();
+    }
+
+    // Moves the play position to `target`, taking whole frames out of the ring as it gets there.
+    private void consume(double target) {
+        while (windowStart + (long) windowWords * PatternStore.WORD_BITS < target) {
+            if (windowWords == SCOPE_WORDS) slide();
+            long due = (long) Math.ceil((target - windowStart) / PatternStore.WORD_BITS) - windowWords;
+            int wanted = (int) Math.min(Math.min(due, POLL_FRAMES), SCOPE_WORDS - windowWords);
+            int got = ring.poll(frames, 0, wanted * channels) / channels;
+            if (got == 0) {
+                underruns++;
+                target = windowStart + (long) windowWords * PatternStore.WORD_BITS;
+                break;
+            }
+            for (int channel = 0; channel < channels; channel++) {
+                for (int f = 0; f < got; f++) channelWords[f] = frames[f * channels + channel];
+                window.writeWords(channel, windowWords, channelWords, 0, got);
+                summary.update(channel, (long) windowWords * PatternStore.WORD_BITS, (long) (windowWords + got) * PatternStore.WORD_BITS);
+            }
+            windowWords += got;
+        }
+        played = target;
+    }
+
+    // Keeps the newer half of a full window at its start, making room for the next half.
+    private void slide() {
+        int half = SCOPE_WORDS / 2;
+        for (int channel = 0; channel < channels; channel++) {
+            window.readWords(channel, half, kept, 0, half);
+            window.writeWords(channel, 0, kept, 0, half);
+        }
+        windowStart += (long) half * PatternStore.WORD_BITS;
+        windowWords = half;
+        summary = new WaveformSummary(window);
+    }
+}
@@ -0,0 +1,35 @@
+package pattern.generator.app;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("pattern.generator.Redraw")
+@Label("Waveform Redraw")
+@Category("Pattern Generator")
+@Description("One WaveformRenderer.draw or drawChange call")
+final class RedrawEvent extends Event {
+    @Label("Channels Drawn")
+    int channels;
+
+    @Label("First Step")
+    long firstStep;
+
+    @Label("Visible Steps")
+    long steps;
+
+    @Label("Steps per Pixel")
+    double stepsPerPixel;
+
+    @Label("Width")
+    int width;
+
+    @Label("Rasterized")
+    boolean rasterized;
+
+    @Label("Partial")
+    @Description("Only an edited region was redrawn; channels and steps give the region")
+    boolean partial;
+}
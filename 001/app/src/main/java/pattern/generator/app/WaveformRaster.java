@@ -0,0 +1,246 @@
+package pattern.generator.app;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import pattern.generator.core.PatternSearch;
+import pattern.generator.core.PatternStore;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+
+// Software rasterizer for the waveform plot. The plot is cut into tiles of one channel lane by
+// TILE_WIDTH pixel columns, rendered in parallel straight into an int ARGB array with horizontal and
+// vertical span fills, and shown as one image backed by that array. Each pixel column of a lane is
+// one WaveformSummary query, as in the vector path, so the cost follows the plot size alone.
+//
+// Tiles write disjoint pixels, so they need no locking; a column's level on the left of its tile is
+// read from the store, so tiles do not depend on each other either. The same independence lets an
+// edit re-render just the columns it touched on the lanes it touched, over the last render's image.
+final class WaveformRaster {
+    private static final int TILE_WIDTH = 256;
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int BLUE = 0xFF0000FF;
+    private static final int RED = 0xFFFF0000;
+    private static final int MATCH = 0xFFFFDEA6; // rgb(255, 160, 0) at 35% over white
+    // Tiles get their own few threads, so a redraw does not queue behind generation in the common pool.
+    private static final ForkJoinPool pool = new ForkJoinPool(Math.min(4, Runtime.getRuntime().availableProcessors()), p -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+        thread.setName("waveform-raster-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }, null, false);
+
+    private int width;
+    private int height;
+    private int[] pixels;
+    private PixelBuffer<IntBuffer> pixelBuffer;
+    private WritableImage image;
+    private View view; // of the last full render
+
+    // What to draw: the same view parameters WaveformRenderer uses for the vector path.
+    static final class View {
+        final double viewStart;
+        final double stepsPerPixel;
+        final double scrollY;
+        final long cursorStep;
+        final List<PatternSearch.Result> matches;
+
+        View(double viewStart, double stepsPerPixel, double scrollY, long cursorStep, List<PatternSearch.Result> matches) {
+            this.viewStart = viewStart;
+            this.stepsPerPixel = stepsPerPixel;
+            this.scrollY = scrollY;
+            this.cursorStep = cursorStep;
+            this.matches = matches;
+        }
+
+        // Pixel column of `step`, possibly outside the plot.
+        double columnOf(double step) {
+            return (step - viewStart) / stepsPerPixel;
+        }
+    }
+
+    // Renders the plot at `width` x `height` pixels and returns the image; call on the FX thread.
+    // Tiles run on the raster pool while the caller waits.
+    WritableImage render(WaveformSummary summary, View view, int width, int height) {
+        if (width != this.width || height != this.height || image == null) allocate(width, height);
+        this.view = view;
+        PatternStore store = summary.getStore();
+        int firstChannel = (int) (view.scrollY / WaveformRenderer.WAVEFORM_HEIGHT);
+        int lastChannel = Math.min(store.getChannels() - 1, (int) ((view.scrollY + height) / WaveformRenderer.WAVEFORM_HEIGHT));
+        // Rows below the last lane.
+        int bottom = laneTop(view, lastChannel + 1);
+        if (bottom < height) {
+            Arrays.fill(pixels, bottom * width, height * width, WHITE);
+            drawCursor(view, bottom, height, 0, width, store.getSteps());
+        }
+        renderTiles(summary, view, firstChannel, lastChannel, 0, width);
+        pixelBuffer.updateBuffer(buffer -> null);
+        return image;
+    }
+
+    // Re-renders what steps [fromStep, toStep) of channels [fromChannel, toChannel) cover after an
+    // edit, keeping the view of the last render(). Returns the pixels redrawn, relative to the image,
+    // or null if none are in view.
+    Rectangle2D renderRegion(WaveformSummary summary, int fromChannel, int toChannel, long fromStep, long toStep) {
+        if (image == null) return null;
+        int firstChannel = Math.max(fromChannel, (int) (view.scrollY / WaveformRenderer.WAVEFORM_HEIGHT));
+        int lastChannel = Math.min(toChannel - 1, (int) ((view.scrollY + height) / WaveformRenderer.WAVEFORM_HEIGHT));
+        // A column's transition mark depends on the column before it, so the one after the range is
+        // redrawn as well, with a column of margin for rounding. Whole tiles are redrawn so the
+        // result matches a full render, marks clipped at tile edges included.
+        long first = (long) Math.max(0, Math.floor(view.columnOf(fromStep)) - 1);
+        long last = (long) Math.min(width, Math.ceil(view.columnOf(toStep)) + 2);
+        int x0 = (int) Math.min(width, first / TILE_WIDTH * TILE_WIDTH);
+        int x1 = (int) Math.min(width, (last + TILE_WIDTH - 1) / TILE_WIDTH * TILE_WIDTH);
+        int top = Math.max(0, laneTop(view, firstChannel));
+        int bottom = Math.min(height, laneTop(view, lastChannel + 1));
+        if (firstChannel > lastChannel || x0 >= x1 || top >= bottom) return null;
+        renderTiles(summary, view, firstChannel, lastChannel, x0, x1);
+        Rectangle2D dirty = new Rectangle2D(x0, top, x1 - x0, bottom - top);
+        pixelBuffer.updateBuffer(buffer -> dirty);
+        return dirty;
+    }
+
+    WritableImage getImage() { return image; }
+
+    private static int laneTop(View view, int channel) {
+        return Math.max(0, (int) Math.round(channel * WaveformRenderer.WAVEFORM_HEIGHT - view.scrollY));
+    }
+
+    // Columns [x0, x1) of lanes firstChannel..lastChannel, one tile per lane and TILE_WIDTH columns.
+    private void renderTiles(WaveformSummary summary, View view, int firstChannel, int lastChannel, int x0, int x1) {
+        List<Callable<Void>> tiles = new ArrayList<>();
+        for (int channel = firstChannel; channel <= lastChannel; channel++) {
+            for (int x = x0; x < x1; x += TILE_WIDTH) {
+                int ch = channel;
+                int from = x;
+                tiles.add(() -> {
+                    renderTile(summary, view, ch, from, Math.min(x1, from + TILE_WIDTH));
+                    return null;
+                });
+            }
+        }
+        if (tiles.size() == 1) {
+            renderTile(summary, view, firstChannel, x0, x1);
+        } else if (!tiles.isEmpty()) {
+            for (Future<Void> tile : pool.invokeAll(tiles)) {
+                try {
+                    tile.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Waveform tile failed", e.getCause());
+                }
+            }
+        }
+    }
+
+    private void allocate(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+        this.pixelBuffer = new PixelBuffer<>(width, height, IntBuffer.wrap(pixels), PixelFormat.getIntArgbPreInstance());
+        this.image = new WritableImage(pixelBuffer);
+    }
+
+    // Columns [x0, x1) of one channel lane, clipped to the image.
+    private void renderTile(WaveformSummary summary, View view, int channel, int x0, int x1) {
+        PatternStore store = summary.getStore();
+        double yOffset = channel * WaveformRenderer.WAVEFORM_HEIGHT - view.scrollY;
+        int top = Math.max(0, (int) Math.round(yOffset));
+        int bottom = Math.min(height, (int) Math.round(yOffset + WaveformRenderer.WAVEFORM_HEIGHT));
+        if (top >= bottom) return;
+        for (int y = top; y < bottom; y++) Arrays.fill(pixels, y * width + x0, y * width + x1, WHITE);
+        drawMatches(view, channel, top, bottom, (int) Math.round(yOffset), x0, x1);
+
+        int yHigh = (int) Math.round(yOffset + 10);
+        int yLow = (int) Math.round(yOffset + WaveformRenderer.WAVEFORM_HEIGHT - 10);
+        long steps = store.getSteps();
+        if (steps == 0) return;
+        // Level at the end of the column left of the tile; a change from it is a transition.
+        boolean level = store.get(channel, Math.min(steps - 1, x0 == 0 ? columnStart(view, 0) : columnEnd(view, x0 - 1) - 1));
+        for (int x = x0; x < x1; x++) {
+            long from = columnStart(view, x);
+            if (from >= steps) break;
+            long to = Math.min(steps, columnEnd(view, x));
+            boolean hasHigh = summary.anyHigh(channel, from, to);
+            boolean hasLow = summary.anyLow(channel, from, to);
+            boolean end = hasHigh && hasLow ? store.get(channel, to - 1) : hasHigh;
+            if ((hasHigh && hasLow) || hasHigh != level) {
+                fillColumn(x, x0, x1, yHigh - 1, yLow + 1, top, bottom);
+            }
+            fillRow(end ? yHigh : yLow, x, x + 1, top, bottom);
+            level = end;
+        }
+        drawCursor(view, top, bottom, x0, x1, steps);
+    }
+
+    // First step that overlaps pixel column `x`.
+    private static long columnStart(View view, int x) {
+        return (long) Math.floor(view.viewStart + x * view.stepsPerPixel);
+    }
+
+    // End (exclusive) of the steps that column `x` shows. Zoomed out, columns split the steps between
+    // them; zoomed in, a column on a step boundary shows both steps, so a transition there is drawn.
+    private static long columnEnd(View view, int x) {
+        double end = view.viewStart + (x + 1) * view.stepsPerPixel;
+        long to = (long) (view.stepsPerPixel > 1 ? Math.floor(end) : Math.ceil(end));
+        return Math.max(to, columnStart(view, x) + 1);
+    }
+
+    // A two-pixel line between rows y0 and y1 at column x (and x + 1 when it is in the tile).
+    private void fillColumn(int x, int x0, int x1, int y0, int y1, int top, int bottom) {
+        for (int y = Math.max(top, y0); y < Math.min(bottom, y1); y++) {
+            pixels[y * width + x] = BLUE;
+            if (x + 1 < x1) pixels[y * width + x + 1] = BLUE;
+        }
+    }
+
+    // A two-pixel-high line at row y over columns [x0, x1).
+    private void fillRow(int y, int x0, int x1, int top, int bottom) {
+        for (int row = y - 1; row <= y; row++) {
+            if (row >= top && row < bottom) Arrays.fill(pixels, row * width + x0, row * width + x1, BLUE);
+        }
+    }
+
+    // Shades matches of patterns that use `channel`: at most one match per column starts a mark.
+    private void drawMatches(View view, int channel, int top, int bottom, int laneTop, int x0, int x1) {
+        int y0 = Math.max(top, laneTop + 4);
+        int y1 = Math.min(bottom, laneTop + (int) WaveformRenderer.WAVEFORM_HEIGHT - 4);
+        for (PatternSearch.Result result : view.matches) {
+            if (!result.getPattern().uses(channel)) continue;
+            int length = result.getPattern().getLength();
+            long[] positions = result.getPositions();
+            long first = (long) Math.floor(view.viewStart + x0 * view.stepsPerPixel) - length + 1;
+            int i = Arrays.binarySearch(positions, first);
+            if (i < 0) i = -i - 1;
+            while (i < positions.length) {
+                int start = (int) Math.max(x0, Math.floor(view.columnOf(positions[i])));
+                if (start >= x1) break;
+                int end = (int) Math.min(x1, Math.max(start + 1, Math.ceil(view.columnOf(positions[i] + length))));
+                for (int y = y0; y < y1; y++) Arrays.fill(pixels, y * width + start, y * width + end, MATCH);
+                i = Arrays.binarySearch(positions, i + 1, positions.length, columnEnd(view, start));
+                if (i < 0) i = -i - 1;
+            }
+        }
+    }
+
+    private void drawCursor(View view, int top, int bottom, int x0, int x1, long steps) {
+        if (view.cursorStep < 0 || view.cursorStep >= steps) return;
+        double column = view.columnOf(view.cursorStep);
+        if (column < x0 || column >= x1) return;
+        int x = (int) column;
+        for (int y = top; y < bottom; y++) pixels[y * width + x] = RED;
+    }
+}
@@ -0,0 +1,280 @@
+package pattern.generator.app;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+
+import pattern.generator.core.PatternSearch;
+import pattern.generator.core.PatternStore;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Draws the visible time window of a pattern onto a viewport-sized canvas. Zoomed in, every
+// visible step is drawn; zoomed out, each pixel column asks the WaveformSummary whether its steps
+// are all low, all high or mixed, so the cost follows the canvas width rather than the step count.
+// A cursor (one step, drawn as a vertical line) and a selected channel mark where edge jumps start.
+// Search matches are shaded on the channels their pattern uses, at most one mark per pixel column.
+//
+// The plot is rasterized in parallel tiles by WaveformRaster and drawn as one image; channel labels
+// stay canvas text. -Dpattern.generator.vectorWaveform=true draws the plot with canvas paths instead.
+// After an edit, drawChange() redraws only the part of the plot the edited steps cover.
+public class WaveformRenderer {
+    public static final double WAVEFORM_HEIGHT = 50.0;
+    public static final double LABEL_WIDTH = 40.0;
+    private static final double MAX_PIXELS_PER_STEP = 200.0;
+    private static final Font FONT = new Font("System", 12);
+
+    private final Canvas canvas;
+    private double viewStart; // first visible step, fractional
+    private double stepsPerPixel = 1.0 / 50.0;
+    private double scrollY; // pixels
+    private long cursorStep = -1; // -1 for none
+    private int selectedChannel;
+    private List<PatternSearch.Result> matches = List.of();
+    private final boolean vector = Boolean.getBoolean("pattern.generator.vectorWaveform");
+    private final WaveformRaster raster = new WaveformRaster();
+
+    public WaveformRenderer(Canvas canvas) {
+        this.canvas = canvas;
+    }
+
+    public double getViewStart() { return viewStart; }
+    public double getStepsPerPixel() { return stepsPerPixel; }
+    public double getScrollY() { return scrollY; }
+    public long getCursorStep() { return cursorStep; }
+    public int getSelectedChannel() { return selectedChannel; }
+
+    public void setCursorStep(long cursorStep) { this.cursorStep = cursorStep; }
+    public void setSelectedChannel(int selectedChannel) { this.selectedChannel = selectedChannel; }
+    public void setMatches(List<PatternSearch.Result> matches) { this.matches = matches; }
+
+    // Step under canvas x-coordinate `x`, and channel under y-coordinate `y`.
+    public long stepAt(double x) {
+        return (long) Math.floor(viewStart + Math.max(0, x - LABEL_WIDTH) * stepsPerPixel);
+    }
+
+    public int channelAt(double y) {
+        return (int) ((y + scrollY) / WAVEFORM_HEIGHT);
+    }
+
+    // Scrolls so `step` is in view, centring it if it was not.
+    public void reveal(long step, long steps) {
+        if (step >= viewStart && step < viewStart + getVisibleSteps()) return;
+        setViewStart(step - getVisibleSteps() / 2, steps);
+    }
+
+    public double getPlotWidth() {
+        return Math.max(1, canvas.getWidth() - LABEL_WIDTH);
+    }
+
+    public double getVisibleSteps() {
+        return getPlotWidth() * stepsPerPixel;
+    }
+
+    public void setViewStart(double viewStart, long steps) {
+        double max = Math.max(0, steps - getVisibleSteps());
+        this.viewStart = Math.max(0, Math.min(viewStart, max));
+    }
+
+    public void setScrollY(double scrollY, int channels) {
+        double max = Math.max(0, channels * WAVEFORM_HEIGHT - canvas.getHeight());
+        this.scrollY = Math.max(0, Math.min(scrollY, max));
+    }
+
+    // Zooms by `factor` (> 1 zooms in) keeping the step under canvas x-coordinate `anchorX` in place.
+    public void zoom(double factor, double anchorX, long steps) {
+        double plotX = Math.max(0, anchorX - LABEL_WIDTH);
+        double anchorStep = viewStart + plotX * stepsPerPixel;
+        double maxStepsPerPixel = Math.max(1.0 / MAX_PIXELS_PER_STEP, steps / getPlotWidth());
+        stepsPerPixel = Math.max(1.0 / MAX_PIXELS_PER_STEP, Math.min(maxStepsPerPixel, stepsPerPixel / factor));
+        setViewStart(anchorStep - plotX * stepsPerPixel, steps);
+    }
+
+    // Keeps zoom and scroll position where they still fit a pattern of `steps` x `channels`.
+    public void clampView(long steps, int channels) {
+        zoom(1, LABEL_WIDTH, steps);
+        setScrollY(scrollY, channels);
+    }
+
+    public void fit(long steps) {
+        stepsPerPixel = Math.max(1.0 / MAX_PIXELS_PER_STEP, steps / getPlotWidth());
+        viewStart = 0;
+    }
+
+    public void draw(WaveformSummary summary) {
+        RedrawEvent event = new RedrawEvent();
+        event.begin();
+        PatternStore store = summary.getStore();
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.setFill(Color.WHITE);
+        gc.fillRect(0, 0, width, height);
+        setViewStart(viewStart, store.getSteps());
+
+        int firstChannel = (int) (scrollY / WAVEFORM_HEIGHT);
+        int lastChannel = Math.min(store.getChannels() - 1, (int) ((scrollY + height) / WAVEFORM_HEIGHT));
+        if (vector) {
+            drawVector(gc, summary, firstChannel, lastChannel, height);
+        } else {
+            WritableImage image = raster.render(summary, new WaveformRaster.View(viewStart, stepsPerPixel, scrollY, cursorStep, matches),
+                    (int) Math.max(1, width - LABEL_WIDTH), (int) Math.max(1, height));
+            gc.drawImage(image, LABEL_WIDTH, 0);
+        }
+
+        gc.setFill(Color.WHITE);
+        gc.fillRect(0, 0, LABEL_WIDTH, height);
+        gc.setFont(FONT);
+        for (int channel = firstChannel; channel <= lastChannel; channel++) {
+            gc.setFill(channel == selectedChannel ? Color.RED : Color.BLACK);
+            gc.fillText("Ch " + channel, 0, channel * WAVEFORM_HEIGHT - scrollY + WAVEFORM_HEIGHT / 2);
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.channels = Math.max(0, lastChannel - firstChannel + 1);
+            event.firstStep = (long) viewStart;
+            event.steps = (long) Math.ceil(getVisibleSteps());
+            event.stepsPerPixel = stepsPerPixel;
+            event.width = (int) width;
+            event.rasterized = !vector;
+            event.commit();
+        }
+    }
+
+    // Redraws the plot where steps [fromStep, toStep) of channels [fromChannel, toChannel) are shown,
+    // after they changed and `summary` was updated; nothing if they are out of view. The view must
+    // not have changed since the last draw(). The vector path and visible search marks redraw fully.
+    public void drawChange(WaveformSummary summary, int fromChannel, int toChannel, long fromStep, long toStep) {
+        if (vector || !matches.isEmpty()) {
+            draw(summary);
+            return;
+        }
+        RedrawEvent event = new RedrawEvent();
+        event.begin();
+        Rectangle2D dirty = raster.renderRegion(summary, fromChannel, toChannel, fromStep, toStep);
+        if (dirty == null) return;
+        canvas.getGraphicsContext2D().drawImage(raster.getImage(), dirty.getMinX(), dirty.getMinY(), dirty.getWidth(), dirty.getHeight(),
+                LABEL_WIDTH + dirty.getMinX(), dirty.getMinY(), dirty.getWidth(), dirty.getHeight());
+        event.end();
+        if (event.shouldCommit()) {
+            event.channels = toChannel - fromChannel;
+            event.firstStep = fromStep;
+            event.steps = toStep - fromStep;
+            event.stepsPerPixel = stepsPerPixel;
+            event.width = (int) dirty.getWidth();
+            event.rasterized = true;
+            event.partial = true;
+            event.commit();
+        }
+    }
+
+    private void drawVector(GraphicsContext gc, WaveformSummary summary, int firstChannel, int lastChannel, double height) {
+        drawMatches(gc, firstChannel, lastChannel);
+        gc.setStroke(Color.BLUE);
+        gc.setLineWidth(2.0);
+        for (int channel = firstChannel; channel <= lastChannel; channel++) {
+            double yOffset = channel * WAVEFORM_HEIGHT - scrollY;
+            if (stepsPerPixel <= 1.0) {
+                drawSteps(gc, summary.getStore(), channel, yOffset);
+            } else {
+                drawColumns(gc, summary, channel, yOffset);
+            }
+        }
+
+        if (cursorStep >= 0 && cursorStep >= viewStart && cursorStep < viewStart + getVisibleSteps()) {
+            double x = LABEL_WIDTH + (cursorStep - viewStart) / stepsPerPixel;
+            gc.setStroke(Color.RED);
+            gc.setLineWidth(1.0);
+            gc.strokeLine(x, 0, x, height);
+        }
+    }
+
+    // Matches overlapping the view, found by binary search in the sorted positions.
+    private void drawMatches(GraphicsContext gc, int firstChannel, int lastChannel) {
+        double viewEnd = viewStart + getVisibleSteps();
+        gc.setFill(Color.rgb(255, 160, 0, 0.35));
+        for (PatternSearch.Result result : matches) {
+            int length = result.getPattern().getLength();
+            long[] positions = result.getPositions();
+            int i = Arrays.binarySearch(positions, (long) Math.floor(viewStart) - length + 1);
+            if (i < 0) i = -i - 1;
+            double lastX = Double.NEGATIVE_INFINITY;
+            for (; i < positions.length && positions[i] < viewEnd; i++) {
+                double x = LABEL_WIDTH + (positions[i] - viewStart) / stepsPerPixel;
+                if (x < lastX + 1) continue;
+                double w = Math.max(1, length / stepsPerPixel);
+                for (int channel = firstChannel; channel <= lastChannel; channel++) {
+                    if (result.getPattern().uses(channel)) gc.fillRect(x, channel * WAVEFORM_HEIGHT - scrollY + 4, w, WAVEFORM_HEIGHT - 8);
+                }
+                lastX = x;
+            }
+        }
+    }
+
+    private double levelY(double yOffset, boolean high) {
+        return yOffset + (high ? 10 : WAVEFORM_HEIGHT - 10);
+    }
+
+    // One path per channel through every visible step; runs of equal samples become one segment.
+    private void drawSteps(GraphicsContext gc, PatternStore store, int channel, double yOffset) {
+        long steps = store.getSteps();
+        long first = (long) Math.floor(viewStart);
+        long last = Math.min(steps, (long) Math.ceil(viewStart + getVisibleSteps()) + 1);
+        if (first >= last) return;
+        double pixelsPerStep = 1.0 / stepsPerPixel;
+        boolean level = store.get(channel, first);
+        gc.beginPath();
+        gc.moveTo(LABEL_WIDTH + (first - viewStart) * pixelsPerStep, levelY(yOffset, level));
+        for (long step = first + 1; step < last; step++) {
+            boolean next = store.get(channel, step);
+            if (next != level) {
+                double x = LABEL_WIDTH + (step - viewStart) * pixelsPerStep;
+                gc.lineTo(x, levelY(yOffset, level));
+                gc.lineTo(x, levelY(yOffset, next));
+                level = next;
+            }
+        }
+        gc.lineTo(LABEL_WIDTH + (last - viewStart) * pixelsPerStep, levelY(yOffset, level));
+        gc.stroke();
+    }
+
+    // One path per channel with at most four points per pixel column.
+    private void drawColumns(GraphicsContext gc, WaveformSummary summary, int channel, double yOffset) {
+        PatternStore store = summary.getStore();
+        long steps = store.getSteps();
+        int columns = (int) Math.ceil(getPlotWidth());
+        double yHigh = levelY(yOffset, true);
+        double yLow = levelY(yOffset, false);
+        long columnStart = (long) Math.floor(viewStart);
+        if (columnStart >= steps) return;
+        boolean level = store.get(channel, columnStart);
+        gc.beginPath();
+        gc.moveTo(LABEL_WIDTH, level ? yHigh : yLow);
+        for (int column = 0; column < columns && columnStart < steps; column++) {
+            long columnEnd = Math.min(steps, (long) Math.floor(viewStart + (column + 1) * stepsPerPixel));
+            if (columnEnd <= columnStart) continue;
+            boolean hasHigh = summary.anyHigh(channel, columnStart, columnEnd);
+            boolean hasLow = summary.anyLow(channel, columnStart, columnEnd);
+            double x = LABEL_WIDTH + column;
+            if (hasHigh && hasLow) {
+                boolean lastLevel = store.get(channel, columnEnd - 1);
+                gc.lineTo(x + 0.5, level ? yHigh : yLow);
+                gc.lineTo(x + 0.5, level ? yLow : yHigh);
+                gc.lineTo(x + 0.5, lastLevel ? yHigh : yLow);
+                level = lastLevel;
+            } else if (hasHigh != level) {
+                gc.lineTo(x, level ? yHigh : yLow);
+                gc.lineTo(x, hasHigh ? yHigh : yLow);
+                level = hasHigh;
+            }
+            columnStart = columnEnd;
+        }
+        gc.lineTo(LABEL_WIDTH + (columnStart - viewStart) / stepsPerPixel, level ? yHigh : yLow);
+        gc.stroke();
+    }
+}
@@ -0,0 +1,141 @@
+package pattern.generator.app;
+
+import pattern.generator.core.PatternStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Multi-resolution summary of a PatternStore for zoomed-out drawing. Level L (L >= 1) splits each
+// channel into buckets of 64^L steps and keeps two bits per bucket: "has a high sample" and "has a
+// low sample"; both set means the bucket contains transitions. Level 0 is the packed data itself.
+// Each level is built from the one below by testing whole words, so the summary costs about 1/32
+// of the data and a range query touches at most a couple of words per level.
+public class WaveformSummary {
+    private final PatternStore store;
+    private final List<long[][]> high = new ArrayList<>(); // [level - 1][channel] -> bucket bits
+    private final List<long[][]> low = new ArrayList<>();
+
+    public WaveformSummary(PatternStore store) {
+        this.store = store;
+        int channels = store.getChannels();
+        long buckets = store.getWordCount();
+        long[][] levelHigh = new long[channels][];
+        long[][] levelLow = new long[channels][];
+        for (int ch = 0; ch < channels; ch++) {
+            levelHigh[ch] = new long[PatternStore.wordCount(buckets)];
+            levelLow[ch] = new long[PatternStore.wordCount(buckets)];
+            for (int w = 0; w < buckets; w++) updateWordBits(ch, w, levelHigh[ch], levelLow[ch]);
+        }
+        high.add(levelHigh);
+        low.add(levelLow);
+        while (buckets > 1) {
+            long[][] belowHigh = levelHigh;
+            long[][] belowLow = levelLow;
+            buckets = (buckets + PatternStore.WORD_BITS - 1) / PatternStore.WORD_BITS;
+            levelHigh = new long[channels][PatternStore.wordCount(buckets)];
+            levelLow = new long[channels][PatternStore.wordCount(buckets)];
+            for (int ch = 0; ch < channels; ch++) {
+                for (int b = 0; b < buckets; b++) {
+                    if (belowHigh[ch][b] != 0) levelHigh[ch][b >>> 6] |= 1L << b;
+                    if (belowLow[ch][b] != 0) levelLow[ch][b >>> 6] |= 1L << b;
+                }
+            }
+            high.add(levelHigh);
+            low.add(levelLow);
+        }
+    }
+
+    // `summary` taken over for `store`, which must hold the data it summarizes, e.g. the store a
+    // summarized snapshot was taken of; edits made to the store since then need update() calls.
+    public WaveformSummary(WaveformSummary summary, PatternStore store) {
+        this.store = store;
+        this.high.addAll(summary.high);
+        this.low.addAll(summary.low);
+    }
+
+    public PatternStore getStore() { return store; }
+
+    private void updateWordBits(int channel, int word, long[] levelHigh, long[] levelLow) {
+        long value = store.getWord(channel, word);
+        long bit = 1L << word;
+        if (value != 0) levelHigh[word >>> 6] |= bit; else levelHigh[word >>> 6] &= ~bit;
+        if (value != PatternStore.validMask(store.getSteps(), word)) levelLow[word >>> 6] |= bit; else levelLow[word >>> 6] &= ~bit;
+    }
+
+    // Refreshes the summary after the sample at `step` changed.
+    public void update(int channel, long step) {
+        update(channel, step, step + 1);
+    }
+
+    // Refreshes the summary after steps [fromStep, toStep) changed: the data words they cover, then
+    // the buckets above those on each level, so the cost follows the range rather than the pattern.
+    public void update(int channel, long fromStep, long toStep) {
+        if (fromStep >= toStep) return;
+        long first = fromStep >>> 6;
+        long last = (toStep - 1) >>> 6;
+        for (long word = first; word <= last; word++) updateWordBits(channel, (int) word, high.get(0)[channel], low.get(0)[channel]);
+        for (int level = 1; level < high.size(); level++) {
+            first >>>= 6;
+            last >>>= 6;
+            for (long below = first; below <= last; below++) {
+                setBit(high.get(level)[channel], below, high.get(level - 1)[channel][(int) below] != 0);
+                setBit(low.get(level)[channel], below, low.get(level - 1)[channel][(int) below] != 0);
+            }
+        }
+    }
+
+    private static void setBit(long[] bits, long index, boolean value) {
+        if (value) bits[(int) (index >>> 6)] |= 1L << index; else bits[(int) (index >>> 6)] &= ~(1L << index);
+    }
+
+    public boolean anyHigh(int channel, long from, long to) {
+        return any(channel, true, high.size(), clamp(from), clamp(to));
+    }
+
+    public boolean anyLow(int channel, long from, long to) {
+        return any(channel, false, high.size(), clamp(from), clamp(to));
+    }
+
+    private long clamp(long step) {
+        return Math.max(0, Math.min(store.getSteps(), step));
+    }
+
+    // Full buckets of `level` are answered from its bits, the partial ends from the level below.
+    private boolean any(int channel, boolean wantHigh, int level, long from, long to) {
+        if (from >= to) return false;
+        if (level == 0) return anyRaw(channel, wantHigh, from, to);
+        long bucketSize = 1L << (6 * level);
+        long firstFull = (from + bucketSize - 1) / bucketSize;
+        long lastFull = to / bucketSize;
+        if (firstFull >= lastFull) return any(channel, wantHigh, level - 1, from, to);
+        long[] bits = (wantHigh ? high : low).get(level - 1)[channel];
+        return anySet(bits, firstFull, lastFull)
+                || any(channel, wantHigh, level - 1, from, firstFull * bucketSize)
+                || any(channel, wantHigh, level - 1, lastFull * bucketSize, to);
+    }
+
+    private boolean anyRaw(int channel, boolean wantHigh, long from, long to) {
+        int first = (int) (from >>> 6);
+        int last = (int) ((to - 1) >>> 6);
+        for (int w = first; w <= last; w++) {
+            long mask = -1L;
+            if (w == first) mask &= -1L << from;
+            if (w == last) mask &= -1L >>> (63 - ((to - 1) & 63));
+            long value = store.getWord(channel, w);
+            if (wantHigh ? (value & mask) != 0 : (~value & mask) != 0) return true;
+        }
+        return false;
+    }
+
+    private static boolean anySet(long[] bits, long from, long to) {
+        int first = (int) (from >>> 6);
+        int last = (int) ((to - 1) >>> 6);
+        for (int w = first; w <= last; w++) {
+            long mask = -1L;
+            if (w == first) mask &= -1L << from;
+            if (w == last) mask &= -1L >>> (63 - ((to - 1) & 63));
+            if ((bits[w] & mask) != 0) return true;
+        }
+        return false;
+    }
+}
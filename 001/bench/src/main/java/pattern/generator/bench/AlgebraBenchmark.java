@@ -0,0 +1,64 @@
+package pattern.generator.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pattern.generator.core.PatternModel;
+import pattern.generator.core.PatternStore;
+import pattern.generator.core.Signal;
+import pattern.generator.core.TaskProgress;
+
+import java.util.concurrent.TimeUnit;
+
+// A chain of signal operations (xor, shift, and, not, slice, concat) on random channels, evaluated
+// fused in one pass (chain) and with every intermediate materialized (stepwise).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms6g", "-Xmx6g"})
+public class AlgebraBenchmark {
+    @Param({"100000", "10000000", "100000000"})
+    public int steps;
+
+    private PatternModel model;
+    private PatternStore target;
+
+    @Setup
+    public void setup() {
+        model = new PatternModel(32, 4, steps, 100.0, "TTL", "Manual", 50.0, 1000.0, "");
+        model.randomize(42, 0.5);
+        target = new PatternStore(1, steps);
+    }
+
+    @Benchmark
+    public PatternStore chain(SampleCounter counter) {
+        Signal[] in = model.signals();
+        in[1].xor(in[2]).and(in[0].shift(17)).or(in[3].not().slice(5, steps).concat(Signal.constant(5, false)))
+                .writeTo(target, 0, TaskProgress.NONE);
+        counter.add(1, steps);
+        return target;
+    }
+
+    @Benchmark
+    public PatternStore stepwise(SampleCounter counter) {
+        Signal[] in = model.signals();
+        Signal x = in[1].xor(in[2]).materialize(TaskProgress.NONE);
+        Signal shifted = in[0].shift(17).materialize(TaskProgress.NONE);
+        Signal gated = x.and(shifted).materialize(TaskProgress.NONE);
+        Signal inverted = in[3].not().materialize(TaskProgress.NONE);
+        Signal advanced = inverted.slice(5, steps).concat(Signal.constant(5, false)).materialize(TaskProgress.NONE);
+        gated.or(advanced).writeTo(target, 0, TaskProgress.NONE);
+        counter.add(1, steps);
+        return target;
+    }
+}
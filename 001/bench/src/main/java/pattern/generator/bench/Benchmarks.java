@@ -0,0 +1,23 @@
+package pattern.generator.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Entry point of benchmarks.jar: the usual JMH command line with the GC profiler always on, so
+// every result comes with its allocation rate (gc.alloc.rate.norm is bytes per operation).
+//
+//   mvn -B package -pl bench -am
+//   java -jar bench/target/benchmarks.jar                          # everything
+//   java -jar bench/target/benchmarks.jar Generate -p steps=1000000 -p channels=16
+//
+// Throughput is reported twice: ops/s for whole operations and "samples" (steps x channels) per second.
+public final class Benchmarks {
+    private Benchmarks() {}
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class).build()).run();
+    }
+}
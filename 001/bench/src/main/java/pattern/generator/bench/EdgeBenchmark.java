@@ -0,0 +1,68 @@
+package pattern.generator.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pattern.generator.core.ChannelStats;
+import pattern.generator.core.EdgeIndex;
+import pattern.generator.core.PatternModel;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Edge index on a random channel (an edge on about every other step): building the index, full
+// statistics from scratch, statistics after a one-bit edit, and next-edge queries.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms6g", "-Xmx6g"})
+public class EdgeBenchmark {
+    @Param({"100000", "10000000", "100000000"})
+    public int steps;
+
+    private PatternModel model;
+    private EdgeIndex index;
+    private final SplittableRandom random = new SplittableRandom(1);
+
+    @Setup
+    public void setup() {
+        model = new PatternModel(32, 1, steps, 100.0, "TTL", "Manual", 50.0, 1000.0, "");
+        model.randomize(42, 0.5);
+        index = new EdgeIndex(model.getStore());
+        index.stats(0, 1e8);
+    }
+
+    @Benchmark
+    public long build(SampleCounter counter) {
+        counter.add(1, steps);
+        return new EdgeIndex(model.getStore()).getTransitions(0);
+    }
+
+    @Benchmark
+    public ChannelStats stats(SampleCounter counter) {
+        counter.add(1, steps);
+        return new EdgeIndex(model.getStore()).stats(0, 1e8);
+    }
+
+    @Benchmark
+    public ChannelStats statsAfterEdit() {
+        int step = random.nextInt(steps);
+        model.setPattern(0, step, 1 - model.getPattern(0, step));
+        return index.stats(0, 1e8);
+    }
+
+    @Benchmark
+    public long nextEdge() {
+        return index.nextEdge(0, random.nextInt(steps));
+    }
+}
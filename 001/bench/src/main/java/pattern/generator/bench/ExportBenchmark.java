@@ -0,0 +1,74 @@
+package pattern.generator.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pattern.generator.core.ChannelConfig;
+import pattern.generator.core.PatternExporter;
+import pattern.generator.core.PatternFileHandler;
+import pattern.generator.core.PatternGenerator;
+import pattern.generator.core.PatternModel;
+import pattern.generator.core.TaskProgress;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Export to VCD, raw binary and CSV. Clock data has one edge per 50 steps, so VCD output is small;
+// PRBS31 data changes on about every other step, the worst case for VCD.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms6g", "-Xmx6g"})
+public class ExportBenchmark {
+    @Param({"vcd", "bin", "csv"})
+    public String format;
+
+    @Param({"Clock", "PRBS"})
+    public String type;
+
+    @Param({"8", "32"})
+    public int channels;
+
+    @Param({"100000", "10000000"})
+    public int steps;
+
+    private PatternModel model;
+    private PatternExporter exporter;
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        model = new PatternModel(32, channels, steps, 100.0, "TTL", type, 50.0, 1_000_000.0, "");
+        ChannelConfig[] configs = new ChannelConfig[channels];
+        Arrays.fill(configs, model.getDefaultConfig().withPrbs("PRBS31", -1L, false, true));
+        new PatternGenerator(model.getSampleRate() * 1_000_000).generate(model.getStore(), configs);
+        file = Files.createTempFile("pattern-bench", "." + format).toFile();
+        exporter = PatternExporter.forFile(file);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public File export(SampleCounter counter) throws IOException {
+        PatternFileHandler.exportPattern(model, file, exporter, TaskProgress.NONE);
+        counter.add(channels, steps);
+        return file;
+    }
+}
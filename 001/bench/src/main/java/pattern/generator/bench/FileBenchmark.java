@@ -0,0 +1,78 @@
+package pattern.generator.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pattern.generator.core.ChannelConfig;
+import pattern.generator.core.PatternFileHandler;
+import pattern.generator.core.PatternGenerator;
+import pattern.generator.core.PatternModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Save and load through the version 2 file format. Clock data compresses to a single period and
+// PRBS31 data is stored raw, which brackets the codec cost; compress=false skips the codec scan.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms6g", "-Xmx6g"})
+public class FileBenchmark {
+    @Param({"Clock", "PRBS"})
+    public String type;
+
+    @Param({"true", "false"})
+    public boolean compress;
+
+    @Param({"8", "16", "32"})
+    public int channels;
+
+    @Param({"1000", "100000", "10000000", "100000000"})
+    public int steps;
+
+    private PatternModel model;
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        model = new PatternModel(32, channels, steps, 100.0, "TTL", type, 50.0, 1_000_000.0, "");
+        ChannelConfig[] configs = new ChannelConfig[channels];
+        Arrays.fill(configs, model.getDefaultConfig().withPrbs("PRBS31", -1L, false, true));
+        new PatternGenerator(model.getSampleRate() * 1_000_000).generate(model.getStore(), configs);
+        file = Files.createTempFile("pattern-bench", ".pat").toFile();
+        PatternFileHandler.savePattern(model, file, compress);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public File save(SampleCounter counter) throws IOException {
+        PatternFileHandler.savePattern(model, file, compress);
+        counter.add(channels, steps);
+        return file;
+    }
+
+    @Benchmark
+    public PatternModel load(SampleCounter counter) throws IOException {
+        PatternModel loaded = PatternFileHandler.loadPattern(file);
+        counter.add(channels, steps);
+        return loaded;
+    }
+}
@@ -0,0 +1,81 @@
+package pattern.generator.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pattern.generator.core.ChannelConfig;
+import pattern.generator.core.GenerationCache;
+import pattern.generator.core.PatternGenerator;
+import pattern.generator.core.PatternModel;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// Pattern generation per type at 100 MHz. Clock/PWM run at 1 MHz (100 steps per cycle), PRBS uses
+// PRBS31 so the sequence never repeats within the pattern, and the expression is a thresholded sine.
+// `generate` fills the store in place; `generatePattern` is the model path, which generates into a
+// fresh store and swaps it in, so it also pays for that allocation. Both run with the generation
+// cache off; `generateCached` repeats the same parameters and is served from a cache after the first call.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms6g", "-Xmx6g"})
+public class GenerateBenchmark {
+    @Param({"Clock", "PWM", "PRBS", "Random", "Expression"})
+    public String type;
+
+    @Param({"8", "16", "32"})
+    public int channels;
+
+    @Param({"1000", "100000", "10000000", "100000000"})
+    public int steps;
+
+    private PatternModel model;
+    private PatternGenerator generator;
+    private PatternGenerator cachedGenerator;
+    private ChannelConfig[] configs;
+
+    @Setup
+    public void setup() {
+        model = new PatternModel(32, channels, steps, 100.0, "TTL", type, 30.0, 1_000_000.0, "sin(2*pi*freq*t) > 0.3");
+        ChannelConfig config = model.getDefaultConfig().withPrbs("PRBS31", -1L, false, true);
+        configs = new ChannelConfig[channels];
+        Arrays.fill(configs, config);
+        for (int channel = 0; channel < channels; channel++) model.setChannelConfig(channel, config);
+        generator = new PatternGenerator(model.getSampleRate() * 1_000_000);
+        cachedGenerator = new PatternGenerator(model.getSampleRate() * 1_000_000, new GenerationCache(1L << 30));
+        GenerationCache.DEFAULT.setCapacity(0);
+    }
+
+    @Benchmark
+    public String generate(SampleCounter counter) {
+        String status = generator.generate(model.getStore(), configs, ForkJoinPool.commonPool());
+        counter.add(channels, steps);
+        return status;
+    }
+
+    @Benchmark
+    public String generateCached(SampleCounter counter) {
+        String status = cachedGenerator.generate(model.getStore(), configs, ForkJoinPool.commonPool());
+        counter.add(channels, steps);
+        return status;
+    }
+
+    @Benchmark
+    public String generatePattern(SampleCounter counter) {
+        String status = model.generatePattern();
+        counter.add(channels, steps);
+        return status;
+    }
+}
@@ -0,0 +1,23 @@
+package pattern.generator.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Counts samples (steps x channels) processed, which JMH reports as a samples/s rate next to ops/s.
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+@State(Scope.Thread)
+public class SampleCounter {
+    public long samples;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        samples = 0;
+    }
+
+    void add(long channels, long steps) {
+        samples += channels * steps;
+    }
+}
@@ -0,0 +1,66 @@
+package pattern.generator.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pattern.generator.core.BitPattern;
+import pattern.generator.core.PatternModel;
+import pattern.generator.core.PatternSearch;
+import pattern.generator.core.TaskProgress;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Pattern search on random data: a 16-bit sync word on one channel, a two-word bus pattern with
+// wildcards, and both plus a 40-bit run in one multi-pattern pass.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms6g", "-Xmx6g"})
+public class SearchBenchmark {
+    private static final int LIMIT = 1_000_000;
+
+    @Param({"100000", "10000000", "100000000"})
+    public int steps;
+
+    private PatternModel model;
+    private BitPattern syncWord;
+    private BitPattern busWords;
+
+    @Setup
+    public void setup() {
+        model = new PatternModel(32, 16, steps, 100.0, "TTL", "Manual", 50.0, 1000.0, "");
+        model.randomize(42, 0.5);
+        syncWord = BitPattern.channel(3, "1010110011110000");
+        busWords = BitPattern.bus(16, "0xBEEF,0x??00");
+    }
+
+    @Benchmark
+    public PatternSearch.Result channel(SampleCounter counter) {
+        counter.add(1, steps);
+        return PatternSearch.find(model.getStore(), syncWord, LIMIT, TaskProgress.NONE);
+    }
+
+    @Benchmark
+    public PatternSearch.Result bus(SampleCounter counter) {
+        counter.add(16, steps);
+        return PatternSearch.find(model.getStore(), busWords, LIMIT, TaskProgress.NONE);
+    }
+
+    @Benchmark
+    public List<PatternSearch.Result> multi(SampleCounter counter) {
+        counter.add(16, steps);
+        return PatternSearch.findAll(model.getStore(), List.of(syncWord, busWords, BitPattern.channel(0, "1".repeat(40))),
+                LIMIT, TaskProgress.NONE);
+    }
+}
@@ -0,0 +1,89 @@
+package pattern.generator.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pattern.generator.core.PatternMemory;
+import pattern.generator.core.PatternModel;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Whole-pattern edits on the model. resize alternates between two lengths that differ by one
+// step; the new store shares every chunk but the last with the old one. Every edit also records an
+// undo snapshot, so these include the history's cost. `memory` puts the chunks on the heap or in a
+// memory-mapped temporary file.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms6g", "-Xmx6g"})
+public class StoreBenchmark {
+    @Param({"8", "16", "32"})
+    public int channels;
+
+    @Param({"1000", "100000", "10000000", "100000000"})
+    public int steps;
+
+    @Param({"Heap", "Off-heap"})
+    public String memory;
+
+    private PatternMemory patternMemory;
+    private PatternModel model;
+    private boolean shorter;
+
+    @Setup
+    public void setup() throws IOException {
+        patternMemory = memory.equals("Heap") ? PatternMemory.HEAP : PatternMemory.offHeap();
+        model = new PatternModel(32, channels, steps, 100.0, "TTL", "Manual", 50.0, 1000.0, "");
+        model.setMemory(patternMemory);
+        model.randomize(42, 0.5);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        patternMemory.close();
+    }
+
+    @Benchmark
+    public PatternModel resize(SampleCounter counter) {
+        shorter = !shorter;
+        model.resize(channels, shorter ? steps - 1 : steps);
+        counter.add(channels, steps);
+        return model;
+    }
+
+    @Benchmark
+    public PatternModel clear(SampleCounter counter) {
+        model.clear();
+        counter.add(channels, steps);
+        return model;
+    }
+
+    // A single-bit undoable edit and its undo: one snapshot plus one copied chunk.
+    @Benchmark
+    public PatternModel editAndUndo(SampleCounter counter) {
+        model.checkpoint("Edit");
+        model.setPattern(0, steps / 2, 1);
+        model.undo();
+        counter.add(channels, steps);
+        return model;
+    }
+
+    @Benchmark
+    public PatternModel randomize(SampleCounter counter) {
+        model.randomize(42, 0.5);
+        counter.add(channels, steps);
+        return model;
+    }
+}
@@ -0,0 +1,76 @@
+package pattern.generator.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pattern.generator.core.ChannelConfig;
+import pattern.generator.core.LoopbackReceiver;
+import pattern.generator.core.PatternGenerator;
+import pattern.generator.core.PatternModel;
+import pattern.generator.core.PatternSender;
+import pattern.generator.core.TaskProgress;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Streams four loops of a PRBS pattern to a LoopbackReceiver on localhost. At 1M steps a loop is
+// encoded once and re-sent from the cache, so this measures the socket and credit path; at 32M
+// steps of 32 channels (128 MB) every loop is encoded again, as for a long pattern.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms6g", "-Xmx6g"})
+public class StreamBenchmark {
+    private static final int LOOPS = 4;
+
+    @Param({"8", "32"})
+    public int channels;
+
+    @Param({"1000000", "32000000"})
+    public int steps;
+
+    @Param({"262144", "8388608"})
+    public int window;
+
+    private PatternModel model;
+    private PatternSender sender;
+    private LoopbackReceiver receiver;
+
+    @Setup
+    public void setup() throws IOException {
+        model = new PatternModel(32, channels, steps, 100.0, "TTL", "PRBS", 50.0, 1_000_000.0, "");
+        ChannelConfig[] configs = new ChannelConfig[channels];
+        Arrays.fill(configs, model.getDefaultConfig().withPrbs("PRBS31", -1L, false, true));
+        new PatternGenerator(model.getSampleRate() * 1_000_000).generate(model.getStore(), configs);
+        sender = new PatternSender(model);
+        // A stream the receiver rejects fails the sender too, as the connection closes under it.
+        receiver = new LoopbackReceiver(0, window, stream -> {});
+        Thread thread = new Thread(receiver, "loopback-receiver");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        receiver.close();
+    }
+
+    @Benchmark
+    public PatternSender.Result send(SampleCounter counter) throws IOException {
+        PatternSender.Result result = sender.send(receiver.getAddress(), LOOPS, TaskProgress.NONE);
+        counter.add(channels, (long) steps * LOOPS);
+        return result;
+    }
+}
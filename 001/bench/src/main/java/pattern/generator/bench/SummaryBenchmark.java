@@ -0,0 +1,69 @@
+package pattern.generator.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pattern.generator.app.WaveformSummary;
+import pattern.generator.core.PatternModel;
+import pattern.generator.core.PatternStore;
+
+import java.util.concurrent.TimeUnit;
+
+// The data side of waveform drawing without a JavaFX canvas: building the zoom summary after a
+// pattern change, and the per-column high/low queries a fully zoomed-out 1920 px redraw makes.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms6g", "-Xmx6g"})
+public class SummaryBenchmark {
+    private static final int COLUMNS = 1920;
+
+    @Param({"8", "16", "32"})
+    public int channels;
+
+    @Param({"1000", "100000", "10000000", "100000000"})
+    public int steps;
+
+    private PatternStore store;
+    private WaveformSummary summary;
+
+    @Setup
+    public void setup() {
+        PatternModel model = new PatternModel(32, channels, steps, 100.0, "TTL", "Manual", 50.0, 1000.0, "");
+        model.randomize(42, 0.5);
+        store = model.getStore();
+        summary = new WaveformSummary(store);
+    }
+
+    @Benchmark
+    public WaveformSummary build(SampleCounter counter) {
+        counter.add(channels, steps);
+        return new WaveformSummary(store);
+    }
+
+    @Benchmark
+    public int columns(SampleCounter counter) {
+        int mixed = 0;
+        double stepsPerColumn = (double) steps / COLUMNS;
+        for (int channel = 0; channel < channels; channel++) {
+            long from = 0;
+            for (int column = 0; column < COLUMNS; column++) {
+                long to = Math.min(steps, (long) ((column + 1) * stepsPerColumn));
+                if (summary.anyHigh(channel, from, to) && summary.anyLow(channel, from, to)) mixed++;
+                from = to;
+            }
+        }
+        counter.add(channels, steps);
+        return mixed;
+    }
+}
@@ -0,0 +1,5 @@
+module pattern.generator.core {
+    requires jdk.jfr;
+
+    exports pattern.generator.core;
+}
@@ -0,0 +1,279 @@
+package pattern.generator.cli;
+
+import pattern.generator.core.ChannelConfig;
+import pattern.generator.core.GenerationCache;
+import pattern.generator.core.Metrics;
+import pattern.generator.core.PatternExporter;
+import pattern.generator.core.PatternFileHandler;
+import pattern.generator.core.PatternGenerator;
+import pattern.generator.core.PatternMemory;
+import pattern.generator.core.PatternModel;
+import pattern.generator.core.PatternStore;
+import pattern.generator.core.TaskProgress;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+// One line of a batch spec: the pattern to generate and the file to write it to. A line is either
+// whitespace-separated key=value pairs or a flat JSON object with the same keys:
+//
+//   out=clk.pat type=Clock channels=8 steps=1000000 rate=100 freq=1e6 duty=25
+//   {"out": "prbs.pat", "type": "PRBS", "poly": "PRBS31", "channels": 16, "steps": 50000000, "decorrelate": true}
+//
+// An out file ending in .vcd, .bin or .csv is exported in that format (see PatternExporter) instead
+// of saved as a pattern file.
+//
+// Keys: out (required), type, channels, maxChannels, steps, rate (MHz), io, freq (Hz), duty (%),
+// phase (deg), expr, poly, seed, invert, decorrelate, compress, memory (heap or offheap). For
+// type=Random, duty is the density of ones and seed picks the stream. Off-heap jobs keep their data
+// in a memory-mapped temporary file and do not count against the heap budget.
+final class BatchJob {
+    final String name;
+    final File output;
+    final int channels;
+    final long steps;
+    final ChannelConfig config;
+    final boolean compress;
+    final boolean offHeap;
+    private final int maxChannels;
+    private final double rate;
+    private final String io;
+
+    private BatchJob(String name, File output, int maxChannels, int channels, long steps, double rate, String io,
+                     ChannelConfig config, boolean compress, boolean offHeap) {
+        this.name = name;
+        this.output = output;
+        this.maxChannels = maxChannels;
+        this.channels = channels;
+        this.steps = steps;
+        this.rate = rate;
+        this.io = io;
+        this.config = config;
+        this.compress = compress;
+        this.offHeap = offHeap;
+    }
+
+    static BatchJob parse(String line, File outputDir) {
+        Map<String, String> values = line.startsWith("{") ? parseJson(line) : parsePairs(line);
+        String out = values.remove("out");
+        if (out == null || out.isEmpty()) throw new IllegalArgumentException("Missing out=<file>");
+        String type = values.getOrDefault("type", "Clock");
+        int channels = intValue(values, "channels", 1);
+        int maxChannels = intValue(values, "maxChannels", channels <= 8 ? 8 : channels <= 16 ? 16 : 32);
+        long steps = longValue(values, "steps", 1024);
+        double rate = doubleValue(values, "rate", 1.0);
+        double freq = doubleValue(values, "freq", 1000.0);
+        double duty = doubleValue(values, "duty", 50.0);
+        String expr = values.getOrDefault("expr", "");
+        if (channels < 1 || channels > maxChannels) throw new IllegalArgumentException("channels must be 1.." + maxChannels);
+        if (steps < 1) throw new IllegalArgumentException("steps must be positive");
+
+        String seedText = values.get("seed");
+        long seed = seedText == null ? -1L : Long.decode(seedText);
+        ChannelConfig config = new ChannelConfig(type, freq, duty, doubleValue(values, "phase", 0.0), expr)
+                .withPrbs(values.getOrDefault("poly", "PRBS7"), seed, booleanValue(values, "invert", false),
+                        booleanValue(values, "decorrelate", false))
+                .withRandom(seed, duty / 100);
+        String io = values.getOrDefault("io", "TTL");
+        boolean compress = booleanValue(values, "compress", true);
+        String memory = values.getOrDefault("memory", "heap");
+        if (!memory.equals("heap") && !memory.equals("offheap")) throw new IllegalArgumentException("memory must be heap or offheap");
+        for (String key : new String[]{"type", "channels", "maxChannels", "steps", "rate", "io", "freq", "duty",
+                "phase", "expr", "poly", "seed", "invert", "decorrelate", "compress", "memory"}) {
+            values.remove(key);
+        }
+        if (!values.isEmpty()) throw new IllegalArgumentException("Unknown keys " + values.keySet());
+        File output = new File(out);
+        if (!output.isAbsolute() && outputDir != null) output = new File(outputDir, out);
+        return new BatchJob(out, output, maxChannels, channels, steps, rate, io, config, compress, memory.equals("offheap"));
+    }
+
+    // Bytes of packed pattern data the job holds on the heap while it runs.
+    long memoryBytes() {
+        if (offHeap) return 0;
+        return (long) channels * PatternStore.wordCount(steps) * Long.BYTES;
+    }
+
+    // The model is built here and dropped on return, so only running jobs hold pattern data.
+    // Generates straight into the model's store; nothing else sees the model, so no double buffer.
+    String run(ForkJoinPool pool) throws IOException {
+        PatternModel model = new PatternModel(maxChannels, channels, steps, rate, io, config.getPatternType(),
+                config.getDutyCycle(), config.getFrequency(), config.getExpression());
+        if (!offHeap) return generateAndWrite(model, pool);
+        // Closing deletes the temporary file; the mapped chunks stay valid until they are unreachable.
+        try (PatternMemory memory = PatternMemory.offHeap()) {
+            model.setMemory(memory);
+            return generateAndWrite(model, pool);
+        }
+    }
+
+    private String generateAndWrite(PatternModel model, ForkJoinPool pool) throws IOException {
+        ChannelConfig[] configs = new ChannelConfig[model.getChannels()];
+        Arrays.fill(configs, config);
+        String status = config.isManual() ? "Manual pattern (all zero)."
+                : new PatternGenerator(model.getSampleRate() * 1_000_000, GenerationCache.DEFAULT).generate(model.getStore(), configs, pool);
+        Metrics.dump(name + " (ch 0)", model.getStore(), 0);
+        File parent = output.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) throw new IOException("Cannot create " + parent);
+        PatternExporter exporter = PatternExporter.forFile(output);
+        if (exporter != null) {
+            PatternFileHandler.exportPattern(model, output, exporter, TaskProgress.NONE);
+        } else {
+            PatternFileHandler.savePattern(model, output, compress);
+        }
+        return status;
+    }
+
+    private static int intValue(Map<String, String> values, String key, int fallback) {
+        String value = values.get(key);
+        try {
+            return value == null ? fallback : (int) Long.parseLong(value.replace("_", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + value);
+        }
+    }
+
+    private static long longValue(Map<String, String> values, String key, long fallback) {
+        String value = values.get(key);
+        try {
+            return value == null ? fallback : Long.parseLong(value.replace("_", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + value);
+        }
+    }
+
+    private static double doubleValue(Map<String, String> values, String key, double fallback) {
+        String value = values.get(key);
+        try {
+            return value == null ? fallback : Double.parseDouble(value.replace("_", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + value);
+        }
+    }
+
+    private static boolean booleanValue(Map<String, String> values, String key, boolean fallback) {
+        String value = values.get(key);
+        if (value == null) return fallback;
+        if (value.equalsIgnoreCase("true") || value.equals("1")) return true;
+        if (value.equalsIgnoreCase("false") || value.equals("0")) return false;
+        throw new IllegalArgumentException("Invalid " + key + ": " + value);
+    }
+
+    // key=value pairs separated by whitespace; a value may be double-quoted to contain spaces.
+    private static Map<String, String> parsePairs(String line) {
+        Map<String, String> values = new LinkedHashMap<>();
+        int i = 0;
+        while (i < line.length()) {
+            while (i < line.length() && Character.isWhitespace(line.charAt(i))) i++;
+            if (i >= line.length()) break;
+            int eq = line.indexOf('=', i);
+            if (eq < 0) throw new IllegalArgumentException("Expected key=value at: " + line.substring(i));
+            String key = line.substring(i, eq).trim();
+            i = eq + 1;
+            String value;
+            if (i < line.length() && line.charAt(i) == '"') {
+                int close = line.indexOf('"', i + 1);
+                if (close < 0) throw new IllegalArgumentException("Unterminated quote for " + key);
+                value = line.substring(i + 1, close);
+                i = close + 1;
+            } else {
+                int end = i;
+                while (end < line.length() && !Character.isWhitespace(line.charAt(end))) end++;
+                value = line.substring(i, end);
+                i = end;
+            }
+            values.put(key, value);
+        }
+        return values;
+    }
+
+    // Flat JSON object: string, number and boolean values only.
+    private static Map<String, String> parseJson(String line) {
+        Map<String, String> values = new LinkedHashMap<>();
+        JsonReader reader = new JsonReader(line);
+        reader.expect('{');
+        if (!reader.consume('}')) {
+            do {
+                String key = reader.string();
+                reader.expect(':');
+                values.put(key, reader.value());
+            } while (reader.consume(','));
+            reader.expect('}');
+        }
+        reader.end();
+        return values;
+    }
+
+    private static final class JsonReader {
+        private final String text;
+        private int pos;
+
+        JsonReader(String text) {
+            this.text = text;
+        }
+
+        private void skipSpace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+        }
+
+        boolean consume(char c) {
+            skipSpace();
+            if (pos < text.length() && text.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(char c) {
+            if (!consume(c)) throw error("expected '" + c + "'");
+        }
+
+        void end() {
+            skipSpace();
+            if (pos != text.length()) throw error("unexpected trailing text");
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (pos < text.length() && text.charAt(pos) != '"') {
+                char c = text.charAt(pos++);
+                if (c == '\\' && pos < text.length()) {
+                    char e = text.charAt(pos++);
+                    switch (e) {
+                        case 'n': sb.append('\n'); break;
+                        case 't': sb.append('\t'); break;
+                        case 'u':
+                            if (pos + 4 > text.length()) throw error("bad escape");
+                            sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                            pos += 4;
+                            break;
+                        default: sb.append(e);
+                    }
+                } else {
+                    sb.append(c);
+                }
+            }
+            expect('"');
+            return sb.toString();
+        }
+
+        String value() {
+            skipSpace();
+            if (pos < text.length() && text.charAt(pos) == '"') return string();
+            int start = pos;
+            while (pos < text.length() && ",} \t".indexOf(text.charAt(pos)) < 0) pos++;
+            if (start == pos) throw error("expected a value");
+            return text.substring(start, pos);
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid JSON job at position " + pos + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package pattern.generator.cli;
+
+import pattern.generator.core.GenerationCache;
+import pattern.generator.core.Metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+// Headless batch generator: reads a spec file (see BatchJob), runs the jobs in parallel and writes
+// one pattern file per job, then prints per-job timing and throughput.
+//
+//   java -p core.jar -m pattern.generator.core/pattern.generator.cli.BatchMain [options] spec.txt
+//
+// Options: --jobs N (parallel jobs, default: available processors), --memory MB (budget for the
+// pattern data of running jobs, default: half the max heap), --out-dir DIR (base for relative
+// outputs, default: the spec file's directory), --cache MB (generation cache for channels repeated
+// across jobs, default 256, 0 to disable), --debug-dump (print the start of channel 0 of every
+// generated pattern). Exit status is 1 if any job failed.
+public final class BatchMain {
+    private static final long MB = 1 << 20;
+
+    private BatchMain() {}
+
+    public static void main(String[] args) {
+        int jobs = Runtime.getRuntime().availableProcessors();
+        long memoryMb = Math.max(1, Runtime.getRuntime().maxMemory() / 2 / MB);
+        File outDir = null;
+        File spec = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--jobs": jobs = Integer.parseInt(next(args, ++i)); break;
+                    case "--memory": memoryMb = Long.parseLong(next(args, ++i)); break;
+                    case "--out-dir": outDir = new File(next(args, ++i)); break;
+                    case "--cache": GenerationCache.DEFAULT.setCapacity(Long.parseLong(next(args, ++i)) * MB); break;
+                    case "--debug-dump": Metrics.setDebugDump(true); break;
+                    case "-h":
+                    case "--help":
+                        usage();
+                        return;
+                    default:
+                        if (args[i].startsWith("--") || spec != null) throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                        spec = new File(args[i]);
+                }
+            }
+            if (spec == null) throw new IllegalArgumentException("Missing spec file");
+            if (jobs < 1 || memoryMb < 1) throw new IllegalArgumentException("--jobs and --memory must be positive");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+            System.exit(2);
+            return;
+        }
+        if (outDir == null) outDir = spec.getAbsoluteFile().getParentFile();
+        try {
+            System.exit(run(spec, outDir, jobs, memoryMb) ? 0 : 1);
+        } catch (IOException e) {
+            System.err.println("Cannot read " + spec + ": " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    private static String next(String[] args, int i) {
+        if (i >= args.length) throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        return args[i];
+    }
+
+    private static void usage() {
+        System.err.println("Usage: BatchMain [--jobs N] [--memory MB] [--out-dir DIR] [--cache MB] [--debug-dump] spec-file");
+    }
+
+    // Returns true if every job succeeded.
+    static boolean run(File spec, File outDir, int parallelism, long memoryMb) throws IOException {
+        List<String> lines = Files.readAllLines(spec.toPath(), StandardCharsets.UTF_8);
+        List<BatchJob> jobs = new ArrayList<>();
+        boolean ok = true;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            try {
+                jobs.add(BatchJob.parse(line, outDir));
+            } catch (IllegalArgumentException e) {
+                System.err.println(spec.getName() + ":" + (i + 1) + ": " + e.getMessage());
+                ok = false;
+            }
+        }
+        if (!ok) return false;
+
+        // Memory is handed out in whole MB; a job larger than the budget waits for all of it and runs alone.
+        int budget = (int) Math.min(Integer.MAX_VALUE, memoryMb);
+        Semaphore memory = new Semaphore(budget, true);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, jobs.size())));
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        List<Future<String>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (BatchJob job : jobs) {
+            int permits = (int) Math.min(budget, Math.max(1, (job.memoryBytes() + MB - 1) / MB));
+            results.add(executor.submit(() -> {
+                memory.acquire(permits);
+                try {
+                    long jobStart = System.nanoTime();
+                    String status = job.run(pool);
+                    return report(job, System.nanoTime() - jobStart, status);
+                } finally {
+                    memory.release(permits);
+                }
+            }));
+        }
+        long totalSteps = 0;
+        for (int i = 0; i < jobs.size(); i++) {
+            try {
+                System.out.println(results.get(i).get());
+                totalSteps += jobs.get(i).steps * jobs.get(i).channels;
+            } catch (Exception e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                System.out.println(String.format("%-24s FAILED  %s", jobs.get(i).name, cause.toString()));
+                ok = false;
+            }
+        }
+        executor.shutdown();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("%d jobs in %.3f s, %.1f Msample/s overall", jobs.size(), seconds, totalSteps / seconds / 1e6));
+        System.out.println(Metrics.summary());
+        System.out.println(GenerationCache.DEFAULT.summary());
+        return ok;
+    }
+
+    private static String report(BatchJob job, long nanos, String status) {
+        double seconds = nanos / 1e9;
+        long samples = job.steps * job.channels;
+        return String.format("%-24s %10d steps x %2d ch  %9.3f s  %9.1f Msample/s  %8.1f MB/s  %s", job.name,
+                job.steps, job.channels, seconds, samples / seconds / 1e6,
+                job.output.length() / seconds / MB, status);
+    }
+}
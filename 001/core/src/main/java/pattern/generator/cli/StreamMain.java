@@ -0,0 +1,98 @@
+package pattern.generator.cli;
+
+import pattern.generator.core.LoopbackReceiver;
+import pattern.generator.core.PatternFileHandler;
+import pattern.generator.core.PatternModel;
+import pattern.generator.core.PatternSender;
+import pattern.generator.core.TaskProgress;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+// Streams a pattern file to a generator (see PatternSender), or stands in for one.
+//
+//   java -p core.jar -m pattern.generator.core/pattern.generator.cli.StreamMain receive [options]
+//   java -p core.jar -m pattern.generator.core/pattern.generator.cli.StreamMain send [options] file.pat
+//
+// receive: runs a LoopbackReceiver until killed and prints a line per stream. Options: --port N
+// (default 5555), --window KB (credit window, default 8192).
+// send: sends the file and prints the throughput. Options: --host H (default localhost), --port N
+// (default 5555), --loops N (times to play the pattern, default 1, 0 to loop until killed).
+public final class StreamMain {
+    private static final int DEFAULT_PORT = 5555;
+
+    private StreamMain() {}
+
+    public static void main(String[] args) {
+        String host = "localhost";
+        int port = DEFAULT_PORT;
+        int windowKb = 8192;
+        long loops = 1;
+        File file = null;
+        boolean send;
+        try {
+            if (args.length == 0 || args[0].equals("-h") || args[0].equals("--help")) {
+                usage();
+                return;
+            }
+            if (!args[0].equals("send") && !args[0].equals("receive")) throw new IllegalArgumentException("Unknown command " + args[0]);
+            send = args[0].equals("send");
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--host": host = next(args, ++i); break;
+                    case "--port": port = Integer.parseInt(next(args, ++i)); break;
+                    case "--window": windowKb = Integer.parseInt(next(args, ++i)); break;
+                    case "--loops": loops = Long.parseLong(next(args, ++i)); break;
+                    default:
+                        if (args[i].startsWith("--") || !send || file != null) throw new IllegalArgumentException("Unexpected argument " + args[i]);
+                        file = new File(args[i]);
+                }
+            }
+            if (send && file == null) throw new IllegalArgumentException("Missing pattern file");
+            if (port < 0 || port > 65535 || windowKb < 1 || windowKb > 1 << 20 || loops < 0) {
+                throw new IllegalArgumentException("--port must be 0..65535, --window 1..1048576 and --loops 0 or more");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+            System.exit(2);
+            return;
+        }
+        try {
+            if (send) {
+                send(file, new InetSocketAddress(host, port), loops);
+            } else {
+                receive(port, windowKb * 1024);
+            }
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static String next(String[] args, int i) {
+        if (i >= args.length) throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        return args[i];
+    }
+
+    private static void usage() {
+        System.err.println("Usage: StreamMain receive [--port N] [--window KB]");
+        System.err.println("       StreamMain send [--host H] [--port N] [--loops N] pattern-file");
+    }
+
+    private static void send(File file, InetSocketAddress address, long loops) throws IOException {
+        PatternModel model = PatternFileHandler.loadPattern(file);
+        PatternSender sender = new PatternSender(model);
+        System.out.println(String.format("Sending %s to %s: %d ch x %d steps, %d bytes/step, %s", file.getName(), address,
+                model.getChannels(), model.getSteps(), sender.getBytesPerStep(), loops == 0 ? "until stopped" : loops + " loops"));
+        System.out.println(sender.send(address, loops, TaskProgress.NONE));
+    }
+
+    private static void receive(int port, int windowBytes) throws IOException {
+        try (LoopbackReceiver receiver = new LoopbackReceiver(port, windowBytes, System.out::println)) {
+            System.out.println("Listening on " + receiver.getAddress() + ", window " + windowBytes / 1024 + " KB");
+            receiver.run();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package pattern.generator.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// A search pattern: a set of fixed bits at (channel, step offset) positions relative to the match
+// start. A channel pattern is a bit sequence on one channel; a bus pattern is a sequence of bus
+// words, each fixing the channels it does not leave as wildcards. Steps the pattern leaves open
+// match anything; the match length covers them.
+//
+// Channel syntax: 0, 1 and x or ? for any, in time order, e.g. "1010 x1". Bus syntax: words
+// separated by commas, each either binary with one character per channel, highest channel first
+// ("1x01" on a 4-channel bus), or hex with ? for a don't-care nibble ("0xA5", "0x?F"). A word
+// starting with 0x is always hex, so a binary word that would start that way is written "0?..".
+public final class BitPattern {
+    private final String text;
+    private final int length;
+    final int[] channels;
+    final int[] offsets;
+    final boolean[] values;
+
+    private BitPattern(String text, int length, List<int[]> terms) {
+        this.text = text;
+        this.length = length;
+        this.channels = new int[terms.size()];
+        this.offsets = new int[terms.size()];
+        this.values = new boolean[terms.size()];
+        for (int i = 0; i < terms.size(); i++) {
+            channels[i] = terms.get(i)[0];
+            offsets[i] = terms.get(i)[1];
+            values[i] = terms.get(i)[2] != 0;
+        }
+        if (channels.length == 0) throw new IllegalArgumentException("Pattern has no fixed bits: " + text);
+    }
+
+    public String getText() { return text; }
+
+    // Steps a match spans.
+    public int getLength() { return length; }
+
+    // Whether the pattern fixes any bit of `channel`.
+    public boolean uses(int channel) {
+        for (int c : channels) {
+            if (c == channel) return true;
+        }
+        return false;
+    }
+
+    public static BitPattern channel(int channel, String bits) {
+        List<int[]> terms = new ArrayList<>();
+        int offset = 0;
+        for (int i = 0; i < bits.length(); i++) {
+            char ch = bits.charAt(i);
+            if (Character.isWhitespace(ch) || ch == '_') continue;
+            if (ch == '0' || ch == '1') terms.add(new int[]{channel, offset, ch - '0'});
+            else if (ch != 'x' && ch != 'X' && ch != '?') throw new IllegalArgumentException("Invalid pattern character '" + ch + "'");
+            offset++;
+        }
+        return new BitPattern("Ch " + channel + ": " + bits.trim(), offset, terms);
+    }
+
+    public static BitPattern bus(int busWidth, String words) {
+        List<int[]> terms = new ArrayList<>();
+        String[] parts = words.split(",");
+        for (int offset = 0; offset < parts.length; offset++) {
+            String word = parts[offset].replace("_", "").replace(" ", "");
+            if (word.toLowerCase(Locale.ROOT).startsWith("0x")) {
+                parseHexWord(word, busWidth, offset, terms);
+            } else {
+                if (word.length() != busWidth) {
+                    throw new IllegalArgumentException("Bus word '" + word + "' needs " + busWidth + " bits, highest channel first");
+                }
+                for (int i = 0; i < word.length(); i++) {
+                    char ch = word.charAt(i);
+                    int channel = busWidth - 1 - i;
+                    if (ch == '0' || ch == '1') terms.add(new int[]{channel, offset, ch - '0'});
+                    else if (ch != 'x' && ch != 'X' && ch != '?') throw new IllegalArgumentException("Invalid bus word '" + word + "'");
+                }
+            }
+        }
+        return new BitPattern("Bus: " + words.trim(), parts.length, terms);
+    }
+
+    private static void parseHexWord(String word, int busWidth, int offset, List<int[]> terms) {
+        String digits = word.substring(2);
+        if (digits.isEmpty()) throw new IllegalArgumentException("Invalid bus word '" + word + "'");
+        for (int i = 0; i < digits.length(); i++) {
+            char ch = digits.charAt(i);
+            int lowChannel = 4 * (digits.length() - 1 - i);
+            if (ch == '?') continue;
+            int nibble = Character.digit(ch, 16);
+            if (nibble < 0) throw new IllegalArgumentException("Invalid bus word '" + word + "'");
+            for (int bit = 0; bit < 4; bit++) {
+                int channel = lowChannel + bit;
+                boolean set = (nibble >>> bit & 1) != 0;
+                if (channel < busWidth) terms.add(new int[]{channel, offset, set ? 1 : 0});
+                else if (set) throw new IllegalArgumentException("Bus word '" + word + "' is wider than " + busWidth + " channels");
+            }
+        }
+    }
+
+    // Several patterns separated by ';', each a channel pattern on `channel` or a bus pattern.
+    public static List<BitPattern> parseAll(String text, boolean bus, int channel, int busWidth) {
+        List<BitPattern> patterns = new ArrayList<>();
+        for (String part : text.split(";")) {
+            if (part.trim().isEmpty()) continue;
+            patterns.add(bus ? bus(busWidth, part) : channel(channel, part));
+        }
+        if (patterns.isEmpty()) throw new IllegalArgumentException("Nothing to search for");
+        return patterns;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,76 @@
+package pattern.generator.core;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+// One export in progress: reads all channels a block of words at a time and hands each block to the
+// format. Formats keep their running state (last values, counters) in the subclass.
+abstract class BlockWriter {
+    static final int BLOCK_WORDS = 1 << 10; // 64K steps per block
+
+    final PatternStore store;
+    final int channels;
+    final ExportBuffer out;
+    final long[][] words;
+
+    BlockWriter(PatternStore store, WritableByteChannel channel) {
+        this.store = store;
+        this.channels = store.getChannels();
+        this.out = new ExportBuffer(channel);
+        this.words = new long[channels][BLOCK_WORDS];
+    }
+
+    void run(TaskProgress progress) throws IOException {
+        int wordCount = store.getWordCount();
+        begin();
+        for (int from = 0; from < wordCount; from += BLOCK_WORDS) {
+            progress.checkCancelled();
+            int count = Math.min(BLOCK_WORDS, wordCount - from);
+            for (int channel = 0; channel < channels; channel++) store.readWords(channel, from, words[channel], 0, count);
+            for (int i = 0; i < count; i++) {
+                long first = (long) (from + i) << 6;
+                word(i, first, (int) Math.min(PatternStore.WORD_BITS, store.getSteps() - first));
+            }
+            progress.update(from + count, wordCount);
+        }
+        end();
+        out.flush();
+    }
+
+    void begin() throws IOException {}
+
+    // Steps [firstStep, firstStep + steps) of every channel, held in words[channel][index].
+    abstract void word(int index, long firstStep, int steps) throws IOException;
+
+    void end() throws IOException {}
+
+    // Per-step channel masks for word `index`: bit c of masks[g][s] is channel 64g + c at step s of
+    // the word. masks needs (channels + 63) / 64 rows of 64.
+    void stepMasks(int index, long[][] masks) {
+        for (int g = 0; g < masks.length; g++) {
+            long[] m = masks[g];
+            for (int c = 0; c < 64; c++) {
+                int channel = (g << 6) + c;
+                m[c] = channel < channels ? words[channel][index] : 0L;
+            }
+            transpose64(m);
+        }
+    }
+
+    static long[][] newMasks(int channels) {
+        return new long[(channels + 63) >>> 6][64];
+    }
+
+    // In-place transpose of a 64x64 bit matrix, one row per long: bit c of a[r] swaps with bit r of
+    // a[c]. Each pass swaps the off-diagonal blocks of the next smaller block size.
+    static void transpose64(long[] a) {
+        long m = 0x00000000FFFFFFFFL;
+        for (int j = 32; j != 0; j >>>= 1, m ^= m << j) {
+            for (int k = 0; k < 64; k = ((k | j) + 1) & ~j) {
+                long t = ((a[k] >>> j) ^ a[k | j]) & m;
+                a[k] ^= t << j;
+                a[k | j] ^= t;
+            }
+        }
+    }
+}
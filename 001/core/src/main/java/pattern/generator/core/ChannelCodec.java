@@ -0,0 +1,306 @@
+package pattern.generator.core;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+// Compressed encodings for one channel of a pattern file, chosen per channel by size.
+//
+//   RAW       packed words exactly as in PatternStore
+//   RUNS      first level (1 byte), then the length of every run between transitions as an
+//             unsigned LEB128 varint; equivalent to a delta-coded edge list
+//   PERIODIC  period length in bits (long), then one period of packed words; the channel is that
+//             period repeated up to the step count
+//
+// Encoding reads the channel word by word and writes through a fixed buffer; decoding streams
+// from the file and only materialises the requested step range. PERIODIC channels decode to lazy
+// periodic channels of the store.
+final class ChannelCodec {
+    static final int ENCODING_RAW = 0;
+    static final int ENCODING_RUNS = 1;
+    static final int ENCODING_PERIODIC = 2;
+
+    private static final int MAX_PERIOD_CANDIDATES = 16;
+    // Longest PERIODIC period: decoding takes the period as an int count of bits.
+    static final long MAX_PERIOD = Integer.MAX_VALUE - PatternStore.WORD_BITS;
+    private static final int IO_BUFFER_SIZE = 1 << 20;
+
+    private ChannelCodec() {}
+
+    // Result of scanning a channel: the smallest encoding and its exact byte length.
+    static final class Choice {
+        final int encoding;
+        final long length;
+        final long period;
+
+        Choice(int encoding, long length, long period) {
+            this.encoding = encoding;
+            this.length = length;
+            this.period = period;
+        }
+    }
+
+    static Choice choose(PatternStore store, int channel) {
+        long rawLength = (long) store.getWordCount() * Long.BYTES;
+        Choice best = new Choice(ENCODING_RAW, rawLength, 0);
+        // A lazily periodic channel knows its period, which spares the search; the run scan then
+        // stops as soon as it is longer than the period.
+        long period = store.getPeriod(channel);
+        if (period <= 0) period = findPeriod(store, channel);
+        if (period > 0 && period <= MAX_PERIOD) {
+            long periodicLength = Long.BYTES + (long) PatternStore.wordCount(period) * Long.BYTES;
+            if (periodicLength < best.length) best = new Choice(ENCODING_PERIODIC, periodicLength, period);
+        }
+        long runsLength = runsLength(store, channel, best.length);
+        if (runsLength < best.length) best = new Choice(ENCODING_RUNS, runsLength, 0);
+        return best;
+    }
+
+    // ---- Run-length ----
+
+    // Byte size of the RUNS encoding, or Long.MAX_VALUE once it exceeds `limit`.
+    private static long runsLength(PatternStore store, int channel, long limit) {
+        long length = 1;
+        RunScanner scanner = new RunScanner(store, channel);
+        long run;
+        while ((run = scanner.next()) > 0) {
+            length += varintSize(run);
+            if (length >= limit) return Long.MAX_VALUE;
+        }
+        return length;
+    }
+
+    // Walks a channel run by run, skipping whole words with no transition.
+    private static final class RunScanner {
+        private final PatternStore store;
+        private final int channel;
+        private final long steps;
+        private long position;
+        private boolean level;
+
+        RunScanner(PatternStore store, int channel) {
+            this.store = store;
+            this.channel = channel;
+            this.steps = store.getSteps();
+            this.level = steps > 0 && store.get(channel, 0);
+        }
+
+        boolean level() { return level; }
+
+        // Length of the next run, or 0 at the end of the channel.
+        long next() {
+            if (position >= steps) return 0;
+            long start = position;
+            long flip = level ? -1L : 0L;
+            while (position < steps) {
+                int index = (int) (position >>> 6);
+                long differing = (store.getWord(channel, index) ^ flip) >>> position;
+                if (differing != 0) {
+                    position += Long.numberOfTrailingZeros(differing);
+                    break;
+                }
+                position = (long) (index + 1) << 6;
+            }
+            if (position > steps) position = steps;
+            level = !level;
+            return position - start;
+        }
+    }
+
+    // ---- Period detection ----
+
+    // Smallest period up to MAX_PERIOD that makes the channel repeat exactly, or 0. Candidates are the distances from
+    // the first rising edge to later rising edges whose following 64 steps match those after the
+    // first one; the few that pass are verified by comparing the channel with itself shifted by the
+    // candidate, 64 steps at a time.
+    static long findPeriod(PatternStore store, int channel) {
+        long steps = store.getSteps();
+        RunScanner scanner = new RunScanner(store, channel);
+        boolean level = scanner.level();
+        long position = 0;
+        long firstRise = -1;
+        long firstWindow = 0;
+        int verified = 0;
+        long run;
+        while ((run = scanner.next()) > 0) {
+            position += run;
+            level = !level;
+            if (!level || position >= steps) continue;
+            if (firstRise < 0) {
+                firstRise = position;
+                firstWindow = store.extractBits(channel, firstRise);
+                continue;
+            }
+            long candidate = position - firstRise;
+            if (candidate > Math.min(steps / 2, MAX_PERIOD)) return 0;
+            if (store.extractBits(channel, position) != firstWindow) continue;
+            if (repeatsWithPeriod(store, channel, candidate)) return candidate;
+            if (++verified == MAX_PERIOD_CANDIDATES) return 0;
+        }
+        return 0;
+    }
+
+    private static boolean repeatsWithPeriod(PatternStore store, int channel, long period) {
+        long compared = store.getSteps() - period;
+        for (long offset = 0; offset < compared; offset += PatternStore.WORD_BITS) {
+            long mask = PatternStore.runMask((int) Math.min(PatternStore.WORD_BITS, compared - offset));
+            long a = store.extractBits(channel, offset);
+            long b = store.extractBits(channel, offset + period);
+            if (((a ^ b) & mask) != 0) return false;
+        }
+        return true;
+    }
+
+    // ---- Encoding ----
+
+    static void encode(PatternStore store, int channel, Choice choice, FileChannel out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        int wordCount = store.getWordCount();
+        switch (choice.encoding) {
+            case ENCODING_RAW: {
+                LongBuffer longs = buffer.asLongBuffer();
+                long[] words = new long[Math.min(longs.capacity(), wordCount)];
+                for (int start = 0; start < wordCount; start += longs.capacity()) {
+                    int count = Math.min(longs.capacity(), wordCount - start);
+                    store.readWords(channel, start, words, 0, count);
+                    longs.clear();
+                    longs.put(words, 0, count);
+                    buffer.position(count * Long.BYTES);
+                    drain(buffer, out);
+                }
+                break;
+            }
+            case ENCODING_RUNS: {
+                RunScanner scanner = new RunScanner(store, channel);
+                buffer.put((byte) (scanner.level() ? 1 : 0));
+                long run;
+                while ((run = scanner.next()) > 0) {
+                    if (buffer.remaining() < 10) drain(buffer, out);
+                    putVarint(buffer, run);
+                }
+                break;
+            }
+            case ENCODING_PERIODIC: {
+                buffer.putLong(choice.period);
+                int periodWords = PatternStore.wordCount(choice.period);
+                for (int i = 0; i < periodWords; i++) {
+                    if (buffer.remaining() < Long.BYTES) drain(buffer, out);
+                    // The stored period must not carry the bits that follow it.
+                    buffer.putLong(store.getWord(channel, i) & PatternStore.validMask(choice.period, i));
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown encoding " + choice.encoding);
+        }
+        drain(buffer, out);
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) out.write(buffer);
+        buffer.clear();
+    }
+
+    static int varintSize(long value) {
+        return (63 - Long.numberOfLeadingZeros(value | 1)) / 7 + 1;
+    }
+
+    private static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    // ---- Decoding ----
+
+    // Decodes steps [fromStep, fromStep + target.getSteps()) of a RUNS or PERIODIC channel stored at
+    // [offset, offset + length) into row `targetChannel` of `target`, which must be zeroed.
+    static void decode(FileChannel in, long offset, long length, int encoding, long fromStep,
+                       PatternStore target, int targetChannel) throws IOException {
+        ByteSource source = new ByteSource(in, offset, length);
+        long toStep = fromStep + target.getSteps();
+        switch (encoding) {
+            case ENCODING_RUNS: {
+                boolean level = source.get() != 0;
+                long position = 0;
+                while (position < toStep) {
+                    long run = source.getVarint();
+                    if (run <= 0) throw new IOException("Corrupt run-length data");
+                    long end = position + run;
+                    if (level && end > fromStep) {
+                        target.fill(targetChannel, Math.max(position, fromStep) - fromStep, Math.min(end, toStep) - fromStep, true);
+                    }
+                    position = end;
+                    level = !level;
+                }
+                break;
+            }
+            case ENCODING_PERIODIC: {
+                long period = source.getLong();
+                if (period <= 0 || period > MAX_PERIOD) throw new IOException("Corrupt period");
+                long[] periodWords = new long[PatternStore.wordCount(period)];
+                for (int i = 0; i < periodWords.length; i++) periodWords[i] = source.getLong();
+                // Kept lazy: the channel costs one period in memory however long it is.
+                target.fillPeriodic(targetChannel, periodWords, (int) period, fromStep);
+                break;
+            }
+            default:
+                throw new IOException("Unknown channel encoding " + encoding);
+        }
+    }
+
+    // Sequential little-endian reader over a region of a file through a fixed buffer.
+    private static final class ByteSource {
+        private final FileChannel in;
+        private final ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+        private final long end;
+
+        ByteSource(FileChannel in, long offset, long length) {
+            this.in = in;
+            this.position = offset;
+            this.end = offset + length;
+            buffer.limit(0);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) return;
+            buffer.compact();
+            int wanted = (int) Math.min(buffer.remaining(), end - position);
+            buffer.limit(buffer.position() + wanted);
+            while (buffer.hasRemaining()) {
+                int read = in.read(buffer, position);
+                if (read < 0) break;
+                position += read;
+            }
+            buffer.flip();
+            if (buffer.remaining() < bytes) throw new EOFException("Unexpected end of channel data");
+        }
+
+        byte get() throws IOException {
+            ensure(1);
+            return buffer.get();
+        }
+
+        long getLong() throws IOException {
+            ensure(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        long getVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+            throw new IOException("Corrupt varint");
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package pattern.generator.core;
+
+import java.util.Objects;
+
+// Generator settings for a single channel. Channels without their own config follow the
+// model-wide settings in PatternModel.
+public final class ChannelConfig {
+    private final String patternType; // Manual, PWM, PRBS, Clock, Random, Expression
+    private final double frequency; // Hz
+    private final double dutyCycle; // 0-100%
+    private final double phaseOffset; // degrees of one cycle
+    private final String expression;
+    private String prbsPolynomial = "PRBS7"; // PRBS7..PRBS31, "x^7+x^6+1" or "7,6"
+    private long prbsSeed = -1L; // initial register, truncated to the polynomial degree
+    private boolean prbsInverted;
+    private boolean prbsDecorrelated; // spread channels evenly over the sequence period
+    private long randomSeed = -1L;
+    private double randomDensity = 0.5; // probability of a 1
+
+    public ChannelConfig(String patternType, double frequency, double dutyCycle, double phaseOffset, String expression) {
+        if (frequency <= 0) throw new IllegalArgumentException("Frequency must be positive");
+        if (dutyCycle < 0 || dutyCycle > 100) throw new IllegalArgumentException("Duty cycle must be 0-100%");
+        this.patternType = Objects.requireNonNull(patternType);
+        this.frequency = frequency;
+        this.dutyCycle = dutyCycle;
+        this.phaseOffset = phaseOffset;
+        this.expression = expression == null ? "" : expression;
+    }
+
+    public String getPatternType() { return patternType; }
+    public double getFrequency() { return frequency; }
+    public double getDutyCycle() { return dutyCycle; }
+    public double getPhaseOffset() { return phaseOffset; }
+    public String getExpression() { return expression; }
+
+    public String getPrbsPolynomial() { return prbsPolynomial; }
+    public long getPrbsSeed() { return prbsSeed; }
+    public boolean isPrbsInverted() { return prbsInverted; }
+    public boolean isPrbsDecorrelated() { return prbsDecorrelated; }
+
+    public long getRandomSeed() { return randomSeed; }
+    public double getRandomDensity() { return randomDensity; }
+
+    public ChannelConfig withPrbs(String polynomial, long seed, boolean inverted, boolean decorrelated) {
+        ChannelConfig copy = copy();
+        copy.prbsPolynomial = Objects.requireNonNull(polynomial);
+        copy.prbsSeed = seed;
+        copy.prbsInverted = inverted;
+        copy.prbsDecorrelated = decorrelated;
+        return copy;
+    }
+
+    public ChannelConfig withRandom(long seed, double density) {
+        if (!(density >= 0 && density <= 1)) throw new IllegalArgumentException("Density must be 0-1");
+        ChannelConfig copy = copy();
+        copy.randomSeed = seed;
+        copy.randomDensity = density;
+        return copy;
+    }
+
+    private ChannelConfig copy() {
+        ChannelConfig copy = new ChannelConfig(patternType, frequency, dutyCycle, phaseOffset, expression);
+        copy.prbsPolynomial = prbsPolynomial;
+        copy.prbsSeed = prbsSeed;
+        copy.prbsInverted = prbsInverted;
+        copy.prbsDecorrelated = prbsDecorrelated;
+        copy.randomSeed = randomSeed;
+        copy.randomDensity = randomDensity;
+        return copy;
+    }
+
+    public boolean isManual() { return patternType.equals("Manual"); }
+
+    // Phase offset converted to whole steps of a cycle that is `cycleSteps` long.
+    public long phaseSteps(double cycleSteps) {
+        return Math.round(cycleSteps * phaseOffset / 360.0);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ChannelConfig)) return false;
+        ChannelConfig other = (ChannelConfig) o;
+        return Double.compare(frequency, other.frequency) == 0
+                && Double.compare(dutyCycle, other.dutyCycle) == 0
+                && Double.compare(phaseOffset, other.phaseOffset) == 0
+                && patternType.equals(other.patternType)
+                && expression.equals(other.expression)
+                && prbsPolynomial.equals(other.prbsPolynomial)
+                && prbsSeed == other.prbsSeed
+                && prbsInverted == other.prbsInverted
+                && prbsDecorrelated == other.prbsDecorrelated
+                && randomSeed == other.randomSeed
+                && Double.compare(randomDensity, other.randomDensity) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(patternType, frequency, dutyCycle, phaseOffset, expression,
+                prbsPolynomial, prbsSeed, prbsInverted, prbsDecorrelated, randomSeed, randomDensity);
+    }
+
+    @Override
+    public String toString() {
+        return patternType + " (" + frequency + " Hz, " + dutyCycle + "%, " + phaseOffset + " deg)";
+    }
+}
@@ -0,0 +1,91 @@
+package pattern.generator.core;
+
+import java.util.Locale;
+
+// Measured properties of one channel, from EdgeIndex.stats. Periods are measured between
+// consecutive rising edges; jitter is their spread. Times are in steps unless the getter says
+// seconds or Hz.
+public final class ChannelStats {
+    private final long steps;
+    private final long ones;
+    private final long transitions;
+    private final long risingEdges;
+    private final long periods;
+    private final long periodSpan; // steps from the first to the last rising edge
+    private final long minPeriod;
+    private final long maxPeriod;
+    private final double periodDeviation;
+    private final long longestHigh;
+    private final long longestLow;
+    private final double sampleRateHz;
+
+    ChannelStats(long steps, long ones, long transitions, long risingEdges, long periods, long periodSpan,
+                 long minPeriod, long maxPeriod, double periodDeviation, long longestHigh, long longestLow,
+                 double sampleRateHz) {
+        this.steps = steps;
+        this.ones = ones;
+        this.transitions = transitions;
+        this.risingEdges = risingEdges;
+        this.periods = periods;
+        this.periodSpan = periodSpan;
+        this.minPeriod = minPeriod;
+        this.maxPeriod = maxPeriod;
+        this.periodDeviation = periodDeviation;
+        this.longestHigh = longestHigh;
+        this.longestLow = longestLow;
+        this.sampleRateHz = sampleRateHz;
+    }
+
+    public long getSteps() { return steps; }
+    public long getOnes() { return ones; }
+    public long getTransitions() { return transitions; }
+    public long getRisingEdges() { return risingEdges; }
+    public long getFallingEdges() { return transitions - risingEdges; }
+    public long getPeriods() { return periods; }
+    public long getMinPeriod() { return minPeriod; }
+    public long getMaxPeriod() { return maxPeriod; }
+    public long getLongestHigh() { return longestHigh; }
+    public long getLongestLow() { return longestLow; }
+
+    // Percentage of steps that are high.
+    public double getDutyCycle() {
+        return steps == 0 ? 0 : 100.0 * ones / steps;
+    }
+
+    // Mean period in steps; 0 with fewer than two rising edges.
+    public double getMeanPeriod() {
+        return periods == 0 ? 0 : (double) periodSpan / periods;
+    }
+
+    public double getFrequency() {
+        return periods == 0 ? 0 : sampleRateHz * periods / periodSpan;
+    }
+
+    // Standard deviation of the period, in seconds.
+    public double getJitterRms() {
+        return periodDeviation / sampleRateHz;
+    }
+
+    public double getJitterPeakToPeak() {
+        return periods == 0 ? 0 : (maxPeriod - minPeriod) / sampleRateHz;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT, "duty %.2f%%, %d transitions", getDutyCycle(), transitions));
+        if (periods > 0) {
+            sb.append(String.format(Locale.ROOT, ", f %s, period %.1f steps (%d-%d), jitter %s rms / %s p-p",
+                    engineering(getFrequency(), "Hz"), getMeanPeriod(), minPeriod, maxPeriod,
+                    engineering(getJitterRms(), "s"), engineering(getJitterPeakToPeak(), "s")));
+        }
+        return sb.append(", longest high ").append(longestHigh).append(" / low ").append(longestLow).toString();
+    }
+
+    private static String engineering(double value, String unit) {
+        if (value == 0) return "0 " + unit;
+        String[] prefixes = {"p", "n", "µ", "m", "", "k", "M", "G"};
+        int exponent = (int) Math.floor(Math.log10(Math.abs(value)) / 3);
+        exponent = Math.max(-4, Math.min(3, exponent));
+        return String.format(Locale.ROOT, "%.3g %s%s", value / Math.pow(1000, exponent), prefixes[exponent + 4], unit);
+    }
+}
@@ -0,0 +1,60 @@
+package pattern.generator.core;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+// One row per step: the step index followed by 0/1 for each channel, under a header row
+// "step,ch0,ch1,...".
+final class CsvExporter implements PatternExporter {
+    // ",b0,b1,...,b7" for every byte value: the columns of eight channels in one copy.
+    private static final byte[][] COLUMNS = new byte[256][16];
+
+    static {
+        for (int value = 0; value < 256; value++) {
+            for (int bit = 0; bit < 8; bit++) {
+                COLUMNS[value][2 * bit] = ',';
+                COLUMNS[value][2 * bit + 1] = (byte) ('0' + ((value >>> bit) & 1));
+            }
+        }
+    }
+
+    @Override
+    public String getName() { return "CSV"; }
+
+    @Override
+    public String getExtension() { return "csv"; }
+
+    @Override
+    public void write(PatternModel model, WritableByteChannel out, TaskProgress progress) throws IOException {
+        new Writer(model, out).run(progress);
+    }
+
+    private static final class Writer extends BlockWriter {
+        private final long[][] masks;
+
+        Writer(PatternModel model, WritableByteChannel channel) {
+            super(model.getStore(), channel);
+            masks = newMasks(channels);
+        }
+
+        @Override
+        void begin() throws IOException {
+            out.putAscii("step");
+            for (int channel = 0; channel < channels; channel++) out.putAscii(",ch" + channel);
+            out.put((byte) '\n');
+        }
+
+        @Override
+        void word(int index, long firstStep, int steps) throws IOException {
+            stepMasks(index, masks);
+            for (int s = 0; s < steps; s++) {
+                out.putDecimal(firstStep + s);
+                for (int g = 0; g < channels; g += 8) {
+                    int value = (int) (masks[g >>> 6][s] >>> (g & 63)) & 0xFF;
+                    out.put(COLUMNS[value], 0, 2 * Math.min(8, channels - g));
+                }
+                out.put((byte) '\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package pattern.generator.core;
+
+// Transition index of a store for analysis and navigation. An edge is a step whose sample differs
+// from the one before it; it is rising if the new sample is 1. Edges alternate, so the k-th rising
+// edge is edge 2k or 2k + 1 depending on the first sample.
+//
+// Each chunk of each channel gets a summary that depends on that chunk alone: its edge and ones
+// counts, first and last edge, and edge counts per block of 64 words. Summaries are kept against
+// the store's chunk stamps and only chunks written since the last query are summarized again, so
+// the index follows edits without being told about them. Prefix counts over the chunks turn
+// "where is edge k" and "how many edges before step s" into a binary search over chunks and blocks
+// plus a scan of at most one block; next/previous edge are one of each.
+//
+// Run and period statistics visit every edge, so they are computed per chunk only when stats()
+// is asked for and kept with the chunk summary. A new index for a store derived from an older one
+// (snapshot, undo, generation keeping manual channels) reuses summaries of the chunks the stores
+// share. Not thread-safe; query from one thread.
+public class EdgeIndex {
+    private static final int BLOCK_SHIFT = 6;
+    private static final int BLOCK_WORDS = 1 << BLOCK_SHIFT; // 4K steps per block
+
+    private final PatternStore store;
+    private final Channel[] channels;
+    private final long[] words = new long[PatternStore.CHUNK_WORDS];
+
+    // Summary of one chunk. Edges here are internal: at chunk offsets 1 and up. Whether the first
+    // step of a chunk is an edge depends on the chunk before, so the channel level adds those.
+    private static final class Chunk {
+        final Object source;
+        final int stamp;
+        final int ones;
+        final int edges;
+        final boolean firstBit;
+        final boolean lastBit;
+        final int firstEdge; // offsets in steps from the chunk start, -1 if none
+        final int lastEdge;
+        final int firstRise;
+        final int lastRise;
+        final int[] blockEdges; // [block] -> internal edges before the block; one extra entry at the end
+        Runs runs;
+
+        Chunk(Object source, int stamp, int ones, int edges, boolean firstBit, boolean lastBit, int firstEdge,
+              int lastEdge, int firstRise, int lastRise, int[] blockEdges) {
+            this.source = source;
+            this.stamp = stamp;
+            this.ones = ones;
+            this.edges = edges;
+            this.firstBit = firstBit;
+            this.lastBit = lastBit;
+            this.firstEdge = firstEdge;
+            this.lastEdge = lastEdge;
+            this.firstRise = firstRise;
+            this.lastRise = lastRise;
+            this.blockEdges = blockEdges;
+        }
+
+        Chunk withStamp(int newStamp) {
+            Chunk copy = new Chunk(source, newStamp, ones, edges, firstBit, lastBit, firstEdge, lastEdge, firstRise,
+                    lastRise, blockEdges);
+            copy.runs = runs;
+            return copy;
+        }
+    }
+
+    // Runs between consecutive internal edges and periods between consecutive internal rising edges.
+    private static final class Runs {
+        long periods;
+        long periodSum;
+        double periodSquares;
+        long minPeriod = Long.MAX_VALUE;
+        long maxPeriod;
+        long longestHigh;
+        long longestLow;
+
+        void period(long period) {
+            periods++;
+            periodSum += period;
+            periodSquares += (double) period * period;
+            minPeriod = Math.min(minPeriod, period);
+            maxPeriod = Math.max(maxPeriod, period);
+        }
+
+        void run(long length, boolean high) {
+            if (high) longestHigh = Math.max(longestHigh, length);
+            else longestLow = Math.max(longestLow, length);
+        }
+
+        void add(Runs other) {
+            periods += other.periods;
+            periodSum += other.periodSum;
+            periodSquares += other.periodSquares;
+            minPeriod = Math.min(minPeriod, other.minPeriod);
+            maxPeriod = Math.max(maxPeriod, other.maxPeriod);
+            longestHigh = Math.max(longestHigh, other.longestHigh);
+            longestLow = Math.max(longestLow, other.longestLow);
+        }
+    }
+
+    private static final class Channel {
+        final Chunk[] chunks;
+        long[] edgesBefore; // [chunk] -> edges at steps before the chunk; one extra entry at the end
+        long ones;
+        int stamp;
+
+        Channel(int chunkCount) {
+            this.chunks = new Chunk[chunkCount];
+        }
+    }
+
+    public EdgeIndex(PatternStore store) {
+        this(store, null);
+    }
+
+    // Reuses the summaries `previous` holds for chunks this store shares with its store.
+    public EdgeIndex(PatternStore store, EdgeIndex previous) {
+        this.store = store;
+        this.channels = new Channel[store.getChannels()];
+        int chunkCount = store.getChunkCount();
+        boolean adopt = previous != null && previous.store.getSteps() == store.getSteps();
+        for (int ch = 0; ch < channels.length; ch++) {
+            Channel channel = channels[ch] = new Channel(chunkCount);
+            if (!adopt || ch >= previous.channels.length) continue;
+            Chunk[] old = previous.channels[ch].chunks;
+            for (int c = 0; c < chunkCount; c++) {
+                Chunk chunk = old[c];
+                if (chunk != null && chunk.stamp == previous.store.getStamp(ch, c) && chunk.source == store.getChunkSource(ch, c)) {
+                    channel.chunks[c] = chunk.withStamp(store.getStamp(ch, c));
+                }
+            }
+        }
+    }
+
+    public PatternStore getStore() { return store; }
+
+    public long getTransitions(int channel) {
+        return channel(channel).edgesBefore[channels[channel].chunks.length];
+    }
+
+    public long getOnes(int channel) {
+        return channel(channel).ones;
+    }
+
+    // Number of edges at steps before `step`.
+    public long edgesBefore(int channel, long step) {
+        Channel state = channel(channel);
+        step = Math.max(0, Math.min(store.getSteps(), step));
+        int c = (int) (step >>> (PatternStore.CHUNK_SHIFT + 6));
+        if (c == state.chunks.length) return state.edgesBefore[c];
+        long offset = step - chunkStart(c);
+        long count = state.edgesBefore[c];
+        if (offset > 0 && boundaryEdge(state, c)) count++;
+        return count + internalEdgesBefore(channel, c, state.chunks[c], (int) offset);
+    }
+
+    // Step of edge k (0-based), or -1 if there are not that many.
+    public long edge(int channel, long k) {
+        Channel state = channel(channel);
+        long[] before = state.edgesBefore;
+        if (k < 0 || k >= before[state.chunks.length]) return -1;
+        int lo = 0;
+        int hi = state.chunks.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (before[mid] <= k) lo = mid;
+            else hi = mid - 1;
+        }
+        long j = k - before[lo];
+        if (boundaryEdge(state, lo)) {
+            if (j == 0) return chunkStart(lo);
+            j--;
+        }
+        return chunkStart(lo) + internalEdge(channel, lo, state.chunks[lo], (int) j);
+    }
+
+    public long risingEdge(int channel, long k) {
+        return k < 0 ? -1 : edge(channel, 2 * k + (store.get(channel, 0) ? 1 : 0));
+    }
+
+    public long fallingEdge(int channel, long k) {
+        return k < 0 ? -1 : edge(channel, 2 * k + (store.get(channel, 0) ? 0 : 1));
+    }
+
+    // First edge after `step`, or -1.
+    public long nextEdge(int channel, long step) {
+        return edge(channel, edgesBefore(channel, step + 1));
+    }
+
+    // Last edge before `step`, or -1.
+    public long previousEdge(int channel, long step) {
+        long k = edgesBefore(channel, step);
+        return k == 0 ? -1 : edge(channel, k - 1);
+    }
+
+    public ChannelStats stats(int channel, double sampleRateHz) {
+        Channel state = channel(channel);
+        Runs total = new Runs();
+        long steps = store.getSteps();
+        long prevEdge = 0; // runs at the ends are cut by the pattern bounds
+        long prevRise = -1;
+        long firstRise = -1;
+        boolean lastBit = false;
+        for (int c = 0; c < state.chunks.length; c++) {
+            Chunk chunk = state.chunks[c];
+            long base = chunkStart(c);
+            // Edges that runs and periods cross into this chunk from before: the boundary edge, the
+            // first internal edge and the first internal rising edge. The rest are inside Runs.
+            if (boundaryEdge(state, c)) {
+                total.run(base - prevEdge, lastBit);
+                prevEdge = base;
+                if (chunk.firstBit) {
+                    if (prevRise >= 0) total.period(base - prevRise);
+                    if (firstRise < 0) firstRise = base;
+                    prevRise = base;
+                }
+            }
+            if (chunk.edges > 0) {
+                total.run(base + chunk.firstEdge - prevEdge, chunk.firstEdge != chunk.firstRise);
+                if (chunk.firstRise >= 0) {
+                    if (prevRise >= 0) total.period(base + chunk.firstRise - prevRise);
+                    if (firstRise < 0) firstRise = base + chunk.firstRise;
+                    prevRise = base + chunk.lastRise;
+                }
+                total.add(runs(channel, c, chunk));
+                prevEdge = base + chunk.lastEdge;
+            }
+            lastBit = chunk.lastBit;
+        }
+        if (steps > 0) total.run(steps - prevEdge, lastBit);
+        long transitions = state.edgesBefore[state.chunks.length];
+        long rising = store.get(channel, 0) ? transitions / 2 : (transitions + 1) / 2;
+        double deviation = 0;
+        if (total.periods > 0) {
+            double mean = (double) total.periodSum / total.periods;
+            deviation = Math.sqrt(Math.max(0, total.periodSquares / total.periods - mean * mean));
+        }
+        return new ChannelStats(steps, state.ones, transitions, rising, total.periods,
+                total.periods == 0 ? 0 : prevRise - firstRise, total.periods == 0 ? 0 : total.minPeriod,
+                total.maxPeriod, deviation, total.longestHigh, total.longestLow, sampleRateHz);
+    }
+
+    private static long chunkStart(int chunk) {
+        return (long) chunk << (PatternStore.CHUNK_SHIFT + 6);
+    }
+
+    private static boolean boundaryEdge(Channel state, int chunk) {
+        return chunk > 0 && state.chunks[chunk].firstBit != state.chunks[chunk - 1].lastBit;
+    }
+
+    // Brings a channel's chunk summaries and prefix counts up to date with the store.
+    private Channel channel(int ch) {
+        Channel state = channels[ch];
+        int stamp = store.getStamp(ch);
+        if (state.edgesBefore != null && state.stamp == stamp) return state;
+        Chunk[] chunks = state.chunks;
+        long[] before = new long[chunks.length + 1];
+        long ones = 0;
+        for (int c = 0; c < chunks.length; c++) {
+            if (chunks[c] == null || chunks[c].stamp != store.getStamp(ch, c)) chunks[c] = summarize(ch, c);
+            ones += chunks[c].ones;
+            before[c + 1] = before[c] + chunks[c].edges;
+            if (boundaryEdge(state, c)) before[c + 1]++;
+        }
+        state.edgesBefore = before;
+        state.ones = ones;
+        state.stamp = stamp;
+        return state;
+    }
+
+    // Internal edge bits of word i of a chunk whose previous word is `previous`.
+    private long edgeBits(int chunk, int i, long word, long previous) {
+        long edges = word ^ ((word << 1) | (previous >>> 63));
+        if (i == 0) edges &= ~1L;
+        return edges & PatternStore.validMask(store.getSteps(), (chunk << PatternStore.CHUNK_SHIFT) + i);
+    }
+
+    private Chunk summarize(int ch, int c) {
+        int length = store.getChunkLength(c);
+        store.readWords(ch, c << PatternStore.CHUNK_SHIFT, words, 0, length);
+        int[] blockEdges = new int[((length + BLOCK_WORDS - 1) >>> BLOCK_SHIFT) + 1];
+        int ones = 0;
+        int edges = 0;
+        int firstEdge = -1;
+        int lastEdge = -1;
+        int firstRise = -1;
+        int lastRise = -1;
+        long previous = 0;
+        for (int i = 0; i < length; i++) {
+            long word = words[i];
+            long t = edgeBits(c, i, word, previous);
+            ones += Long.bitCount(word);
+            if (t != 0) {
+                edges += Long.bitCount(t);
+                if (firstEdge < 0) firstEdge = (i << 6) + Long.numberOfTrailingZeros(t);
+                lastEdge = (i << 6) + 63 - Long.numberOfLeadingZeros(t);
+                long rises = t & word;
+                if (rises != 0) {
+                    if (firstRise < 0) firstRise = (i << 6) + Long.numberOfTrailingZeros(rises);
+                    lastRise = (i << 6) + 63 - Long.numberOfLeadingZeros(rises);
+                }
+            }
+            previous = word;
+            if ((i & (BLOCK_WORDS - 1)) == BLOCK_WORDS - 1 || i == length - 1) blockEdges[(i >>> BLOCK_SHIFT) + 1] = edges;
+        }
+        long chunkSteps = Math.min((long) length << 6, store.getSteps() - chunkStart(c));
+        boolean lastBit = length > 0 && (words[length - 1] >>> ((chunkSteps - 1) & 63) & 1) != 0;
+        return new Chunk(store.getChunkSource(ch, c), store.getStamp(ch, c), ones, edges, length > 0 && (words[0] & 1) != 0,
+                lastBit, firstEdge, lastEdge, firstRise, lastRise, blockEdges);
+    }
+
+    private Runs runs(int ch, int c, Chunk chunk) {
+        if (chunk.runs != null) return chunk.runs;
+        Runs runs = new Runs();
+        int length = store.getChunkLength(c);
+        store.readWords(ch, c << PatternStore.CHUNK_SHIFT, words, 0, length);
+        long previous = 0;
+        long prevEdge = -1;
+        long prevRise = -1;
+        for (int i = 0; i < length; i++) {
+            long word = words[i];
+            long t = edgeBits(c, i, word, previous);
+            while (t != 0) {
+                long position = ((long) i << 6) + Long.numberOfTrailingZeros(t);
+                boolean rising = (word & t & -t) != 0;
+                if (prevEdge >= 0) runs.run(position - prevEdge, !rising);
+                if (rising) {
+                    if (prevRise >= 0) runs.period(position - prevRise);
+                    prevRise = position;
+                }
+                prevEdge = position;
+                t &= t - 1;
+            }
+            previous = word;
+        }
+        chunk.runs = runs;
+        return runs;
+    }
+
+    // Internal edges of a chunk at offsets below `offset`.
+    private long internalEdgesBefore(int ch, int c, Chunk chunk, int offset) {
+        int word = offset >>> 6;
+        int block = word >>> BLOCK_SHIFT;
+        long count = chunk.blockEdges[block];
+        int from = block << BLOCK_SHIFT;
+        int to = Math.min(word + 1, store.getChunkLength(c));
+        int base = c << PatternStore.CHUNK_SHIFT;
+        long previous = from == 0 ? 0 : store.getWord(ch, base + from - 1);
+        for (int i = from; i < to; i++) {
+            long value = store.getWord(ch, base + i);
+            long t = edgeBits(c, i, value, previous);
+            if (i == word) t &= (1L << (offset & 63)) - 1;
+            count += Long.bitCount(t);
+            previous = value;
+        }
+        return count;
+    }
+
+    // Offset of internal edge j (0-based) of a chunk.
+    private int internalEdge(int ch, int c, Chunk chunk, int j) {
+        int[] blockEdges = chunk.blockEdges;
+        int lo = 0;
+        int hi = blockEdges.length - 2;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (blockEdges[mid] <= j) lo = mid;
+            else hi = mid - 1;
+        }
+        int remaining = j - blockEdges[lo];
+        int from = lo << BLOCK_SHIFT;
+        int to = Math.min(from + BLOCK_WORDS, store.getChunkLength(c));
+        int base = c << PatternStore.CHUNK_SHIFT;
+        long previous = from == 0 ? 0 : store.getWord(ch, base + from - 1);
+        for (int i = from; i < to; i++) {
+            long value = store.getWord(ch, base + i);
+            long t = edgeBits(c, i, value, previous);
+            int count = Long.bitCount(t);
+            if (remaining < count) {
+                for (int skip = 0; skip < remaining; skip++) t &= t - 1;
+                return (i << 6) + Long.numberOfTrailingZeros(t);
+            }
+            remaining -= count;
+            previous = value;
+        }
+        throw new IllegalStateException("Edge index out of date");
+    }
+}
@@ -0,0 +1,91 @@
+package pattern.generator.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+// Fixed-size buffer in front of a channel for the exporters: small puts are collected in a byte
+// array and written out whenever it fills, so output of any size streams through BUFFER_SIZE bytes.
+final class ExportBuffer {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int MAX_DIGITS = 20;
+    private static final byte[] DIGIT_TENS = new byte[100];
+    private static final byte[] DIGIT_ONES = new byte[100];
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            DIGIT_TENS[i] = (byte) ('0' + i / 10);
+            DIGIT_ONES[i] = (byte) ('0' + i % 10);
+        }
+    }
+
+    private final WritableByteChannel out;
+    private final byte[] bytes = new byte[BUFFER_SIZE];
+    private final ByteBuffer view = ByteBuffer.wrap(bytes);
+    private int position;
+    private long written;
+
+    ExportBuffer(WritableByteChannel out) {
+        this.out = out;
+    }
+
+    long getWritten() { return written + position; }
+
+    void put(byte b) throws IOException {
+        if (position == BUFFER_SIZE) flush();
+        bytes[position++] = b;
+    }
+
+    void put(byte[] src, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (position == BUFFER_SIZE) flush();
+            int n = Math.min(length, BUFFER_SIZE - position);
+            System.arraycopy(src, offset, bytes, position, n);
+            position += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    void put(byte[] src) throws IOException {
+        put(src, 0, src.length);
+    }
+
+    // `first`, then `rest`, then a newline.
+    void putLine(byte first, byte[] rest) throws IOException {
+        if (BUFFER_SIZE - position < rest.length + 2) flush();
+        bytes[position++] = first;
+        for (byte b : rest) bytes[position++] = b;
+        bytes[position++] = '\n';
+    }
+
+    // ASCII text only; anything else is not expected in the exported formats.
+    void putAscii(CharSequence text) throws IOException {
+        for (int i = 0; i < text.length(); i++) put((byte) text.charAt(i));
+    }
+
+    // Non-negative values only (steps, times). Two digits per division, like Long.toString.
+    void putDecimal(long value) throws IOException {
+        if (BUFFER_SIZE - position < MAX_DIGITS) flush();
+        int digits = 1;
+        for (long power = 10; digits < 19 && value >= power; power *= 10) digits++;
+        int pos = position + digits;
+        while (value >= 100) {
+            long q = value / 100;
+            int r = (int) (value - q * 100);
+            bytes[--pos] = DIGIT_ONES[r];
+            bytes[--pos] = DIGIT_TENS[r];
+            value = q;
+        }
+        bytes[--pos] = DIGIT_ONES[(int) value];
+        if (value >= 10) bytes[--pos] = DIGIT_TENS[(int) value];
+        position += digits;
+    }
+
+    void flush() throws IOException {
+        view.limit(position).position(0);
+        while (view.hasRemaining()) out.write(view);
+        written += position;
+        position = 0;
+    }
+}
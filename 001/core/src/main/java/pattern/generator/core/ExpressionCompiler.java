@@ -0,0 +1,395 @@
+package pattern.generator.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+// Recursive-descent compiler for pattern expressions. The source is parsed once into a node tree,
+// sub-trees without per-sample variables are folded to constants, and evaluation is a plain
+// virtual call per node with no allocation.
+//
+// Per-sample variables: t (seconds), n / step (step index), x (position 0..1), ch (channel index).
+// Constants: pi, tau, e, freq (Hz), rate (sample rate in Hz), steps.
+// Operators: + - * / % ^, comparisons (< <= > >= == !=, yield 1 or 0), && || !, and c ? a : b.
+public final class ExpressionCompiler {
+
+    private static final int VAR_T = 0;
+    private static final int VAR_N = 1;
+    private static final int VAR_X = 2;
+    private static final int VAR_CH = 3;
+
+    private static final Map<String, Integer> VARIABLES = Map.of(
+            "t", VAR_T, "n", VAR_N, "step", VAR_N, "x", VAR_X, "ch", VAR_CH);
+
+    private static final Map<String, DoubleUnaryOperator> FUNCTIONS_1 = new HashMap<>();
+    private static final Map<String, DoubleBinaryOperator> FUNCTIONS_2 = new HashMap<>();
+
+    static {
+        FUNCTIONS_1.put("sin", Math::sin);
+        FUNCTIONS_1.put("cos", Math::cos);
+        FUNCTIONS_1.put("tan", Math::tan);
+        FUNCTIONS_1.put("asin", Math::asin);
+        FUNCTIONS_1.put("acos", Math::acos);
+        FUNCTIONS_1.put("atan", Math::atan);
+        FUNCTIONS_1.put("sinh", Math::sinh);
+        FUNCTIONS_1.put("cosh", Math::cosh);
+        FUNCTIONS_1.put("tanh", Math::tanh);
+        FUNCTIONS_1.put("sqrt", Math::sqrt);
+        FUNCTIONS_1.put("abs", Math::abs);
+        FUNCTIONS_1.put("exp", Math::exp);
+        FUNCTIONS_1.put("log", Math::log);
+        FUNCTIONS_1.put("log10", Math::log10);
+        FUNCTIONS_1.put("floor", Math::floor);
+        FUNCTIONS_1.put("ceil", Math::ceil);
+        FUNCTIONS_1.put("round", v -> Math.floor(v + 0.5));
+        FUNCTIONS_1.put("sign", Math::signum);
+        // Periodic helpers taking a phase in cycles
+        FUNCTIONS_1.put("frac", v -> v - Math.floor(v));
+        FUNCTIONS_1.put("square", v -> v - Math.floor(v) < 0.5 ? 1.0 : 0.0);
+        FUNCTIONS_1.put("saw", v -> v - Math.floor(v));
+        FUNCTIONS_1.put("tri", v -> {
+            double f = v - Math.floor(v);
+            return f < 0.5 ? 2 * f : 2 - 2 * f;
+        });
+        FUNCTIONS_2.put("min", Math::min);
+        FUNCTIONS_2.put("max", Math::max);
+        FUNCTIONS_2.put("pow", Math::pow);
+        FUNCTIONS_2.put("atan2", Math::atan2);
+        FUNCTIONS_2.put("mod", (a, b) -> a - b * Math.floor(a / b));
+        FUNCTIONS_2.put("bit", (a, b) -> ((long) a >>> (long) b) & 1);
+    }
+
+    private final String source;
+    private final Map<String, Double> constants;
+    private int pos;
+
+    private ExpressionCompiler(String source, Map<String, Double> constants) {
+        this.source = source.toLowerCase(Locale.ROOT);
+        this.constants = constants;
+    }
+
+    public static CompiledExpression compile(String source, double sampleRateHz, double frequency, long steps) {
+        if (source == null || source.trim().isEmpty()) {
+            throw new IllegalArgumentException("Expression cannot be empty");
+        }
+        Map<String, Double> constants = new HashMap<>();
+        constants.put("pi", Math.PI);
+        constants.put("tau", 2 * Math.PI);
+        constants.put("e", Math.E);
+        constants.put("freq", frequency);
+        constants.put("rate", sampleRateHz);
+        constants.put("steps", (double) steps);
+        ExpressionCompiler compiler = new ExpressionCompiler(source, constants);
+        Node root = compiler.parseExpression();
+        compiler.skipSpaces();
+        if (compiler.pos < compiler.source.length()) {
+            throw compiler.error("Unexpected '" + compiler.source.charAt(compiler.pos) + "'");
+        }
+        return new CompiledExpression(root, 1.0 / sampleRateHz, steps > 0 ? 1.0 / steps : 0.0);
+    }
+
+    // ---- Parser ----
+
+    private Node parseExpression() {
+        Node condition = parseOr();
+        if (accept("?")) {
+            Node whenTrue = parseExpression();
+            expect(":");
+            Node whenFalse = parseExpression();
+            return fold(new Conditional(condition, whenTrue, whenFalse));
+        }
+        return condition;
+    }
+
+    private Node parseOr() {
+        Node left = parseAnd();
+        while (accept("||")) {
+            left = fold(new Binary(left, parseAnd(), (a, b) -> a != 0 || b != 0 ? 1 : 0));
+        }
+        return left;
+    }
+
+    private Node parseAnd() {
+        Node left = parseComparison();
+        while (accept("&&")) {
+            left = fold(new Binary(left, parseComparison(), (a, b) -> a != 0 && b != 0 ? 1 : 0));
+        }
+        return left;
+    }
+
+    private Node parseComparison() {
+        Node left = parseAdditive();
+        while (true) {
+            DoubleBinaryOperator op;
+            if (accept("<=")) op = (a, b) -> a <= b ? 1 : 0;
+            else if (accept(">=")) op = (a, b) -> a >= b ? 1 : 0;
+            else if (accept("==")) op = (a, b) -> a == b ? 1 : 0;
+            else if (accept("!=")) op = (a, b) -> a != b ? 1 : 0;
+            else if (accept("<")) op = (a, b) -> a < b ? 1 : 0;
+            else if (accept(">")) op = (a, b) -> a > b ? 1 : 0;
+            else return left;
+            left = fold(new Binary(left, parseAdditive(), op));
+        }
+    }
+
+    private Node parseAdditive() {
+        Node left = parseMultiplicative();
+        while (true) {
+            if (accept("+")) left = fold(new Binary(left, parseMultiplicative(), Double::sum));
+            else if (accept("-")) left = fold(new Binary(left, parseMultiplicative(), (a, b) -> a - b));
+            else return left;
+        }
+    }
+
+    private Node parseMultiplicative() {
+        Node left = parseUnary();
+        while (true) {
+            if (accept("*")) left = fold(new Binary(left, parseUnary(), (a, b) -> a * b));
+            else if (accept("/")) left = fold(new Binary(left, parseUnary(), (a, b) -> a / b));
+            else if (accept("%")) left = fold(new Binary(left, parseUnary(), (a, b) -> a % b));
+            else return left;
+        }
+    }
+
+    private Node parseUnary() {
+        if (accept("-")) return fold(new Unary(parseUnary(), v -> -v));
+        if (accept("+")) return parseUnary();
+        if (peek("!") && !peek("!=")) {
+            pos++;
+            return fold(new Unary(parseUnary(), v -> v == 0 ? 1 : 0));
+        }
+        return parsePower();
+    }
+
+    private Node parsePower() {
+        Node base = parsePrimary();
+        if (accept("^")) {
+            return fold(new Binary(base, parseUnary(), Math::pow));
+        }
+        return base;
+    }
+
+    private Node parsePrimary() {
+        skipSpaces();
+        if (pos >= source.length()) throw error("Unexpected end of expression");
+        char c = source.charAt(pos);
+        if (accept("(")) {
+            Node inner = parseExpression();
+            expect(")");
+            return inner;
+        }
+        if (Character.isDigit(c) || c == '.') return parseNumber();
+        if (Character.isLetter(c) || c == '_') {
+            int start = pos;
+            while (pos < source.length() && (Character.isLetterOrDigit(source.charAt(pos)) || source.charAt(pos) == '_')) pos++;
+            String name = source.substring(start, pos);
+            if (accept("(")) return parseCall(name, start);
+            Integer variable = VARIABLES.get(name);
+            if (variable != null) return new Variable(variable);
+            Double constant = constants.get(name);
+            if (constant != null) return new Constant(constant);
+            pos = start;
+            throw error("Unknown identifier '" + name + "'");
+        }
+        throw error("Unexpected '" + c + "'");
+    }
+
+    private Node parseCall(String name, int start) {
+        List<Node> args = new ArrayList<>();
+        if (!accept(")")) {
+            do {
+                args.add(parseExpression());
+            } while (accept(","));
+            expect(")");
+        }
+        DoubleUnaryOperator f1 = FUNCTIONS_1.get(name);
+        if (f1 != null && args.size() == 1) return fold(new Unary(args.get(0), f1));
+        DoubleBinaryOperator f2 = FUNCTIONS_2.get(name);
+        if (f2 != null && args.size() == 2) return fold(new Binary(args.get(0), args.get(1), f2));
+        if (name.equals("clamp") && args.size() == 3) {
+            Node clamped = fold(new Binary(args.get(0), args.get(1), Math::max));
+            return fold(new Binary(clamped, args.get(2), Math::min));
+        }
+        pos = start;
+        if (f1 != null || f2 != null || name.equals("clamp")) {
+            throw error("Wrong number of arguments for " + name + "()");
+        }
+        throw error("Unknown function '" + name + "'");
+    }
+
+    private Node parseNumber() {
+        int start = pos;
+        while (pos < source.length() && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) pos++;
+        if (pos < source.length() && source.charAt(pos) == 'e') {
+            int mark = pos++;
+            if (pos < source.length() && (source.charAt(pos) == '+' || source.charAt(pos) == '-')) pos++;
+            if (pos < source.length() && Character.isDigit(source.charAt(pos))) {
+                while (pos < source.length() && Character.isDigit(source.charAt(pos))) pos++;
+            } else {
+                pos = mark;
+            }
+        }
+        try {
+            return new Constant(Double.parseDouble(source.substring(start, pos)));
+        } catch (NumberFormatException e) {
+            pos = start;
+            throw error("Invalid number");
+        }
+    }
+
+    private void skipSpaces() {
+        while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) pos++;
+    }
+
+    private boolean peek(String token) {
+        skipSpaces();
+        return source.startsWith(token, pos);
+    }
+
+    private boolean accept(String token) {
+        if (peek(token)) {
+            pos += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) {
+        if (!accept(token)) throw error("Expected '" + token + "'");
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Invalid expression: " + message + " at position " + pos + " in \"" + source + "\"");
+    }
+
+    // ---- Constant folding ----
+
+    private static Node fold(Node node) {
+        return node.isConstant() ? new Constant(node.eval(null)) : node;
+    }
+
+    // ---- Node tree ----
+
+    static final class Frame {
+        final double[] values = new double[4];
+    }
+
+    abstract static class Node {
+        abstract double eval(Frame frame);
+        abstract boolean isConstant();
+        abstract boolean uses(int variable);
+    }
+
+    static final class Constant extends Node {
+        private final double value;
+        Constant(double value) { this.value = value; }
+        @Override double eval(Frame frame) { return value; }
+        @Override boolean isConstant() { return true; }
+        @Override boolean uses(int variable) { return false; }
+    }
+
+    static final class Variable extends Node {
+        private final int index;
+        Variable(int index) { this.index = index; }
+        @Override double eval(Frame frame) { return frame.values[index]; }
+        @Override boolean isConstant() { return false; }
+        @Override boolean uses(int variable) { return index == variable; }
+    }
+
+    static final class Unary extends Node {
+        private final Node operand;
+        private final DoubleUnaryOperator op;
+        Unary(Node operand, DoubleUnaryOperator op) { this.operand = operand; this.op = op; }
+        @Override double eval(Frame frame) { return op.applyAsDouble(operand.eval(frame)); }
+        @Override boolean isConstant() { return operand.isConstant(); }
+        @Override boolean uses(int variable) { return operand.uses(variable); }
+    }
+
+    static final class Binary extends Node {
+        private final Node left;
+        private final Node right;
+        private final DoubleBinaryOperator op;
+        Binary(Node left, Node right, DoubleBinaryOperator op) { this.left = left; this.right = right; this.op = op; }
+        @Override double eval(Frame frame) { return op.applyAsDouble(left.eval(frame), right.eval(frame)); }
+        @Override boolean isConstant() { return left.isConstant() && right.isConstant(); }
+        @Override boolean uses(int variable) { return left.uses(variable) || right.uses(variable); }
+    }
+
+    static final class Conditional extends Node {
+        private final Node condition;
+        private final Node whenTrue;
+        private final Node whenFalse;
+        Conditional(Node condition, Node whenTrue, Node whenFalse) {
+            this.condition = condition;
+            this.whenTrue = whenTrue;
+            this.whenFalse = whenFalse;
+        }
+        @Override double eval(Frame frame) { return condition.eval(frame) != 0 ? whenTrue.eval(frame) : whenFalse.eval(frame); }
+        @Override boolean isConstant() { return condition.isConstant() && whenTrue.isConstant() && whenFalse.isConstant(); }
+        @Override boolean uses(int variable) { return condition.uses(variable) || whenTrue.uses(variable) || whenFalse.uses(variable); }
+    }
+
+    // A compiled expression bound to one sample rate, frequency and length. Thread-safe: every
+    // fill call evaluates on its own frame.
+    public static final class CompiledExpression {
+        public static final double THRESHOLD = 0.5;
+
+        private final Node root;
+        private final double samplePeriod;
+        private final double inverseSteps;
+
+        CompiledExpression(Node root, double samplePeriod, double inverseSteps) {
+            this.root = root;
+            this.samplePeriod = samplePeriod;
+            this.inverseSteps = inverseSteps;
+        }
+
+        public boolean isConstant() { return root.isConstant(); }
+        public boolean dependsOnChannel() { return root.uses(VAR_CH); }
+
+        public double evaluate(long step, int channel) {
+            Frame frame = new Frame();
+            setStep(frame, step);
+            frame.values[VAR_CH] = channel;
+            return root.eval(frame);
+        }
+
+        // Evaluates words [fromWord, toWord) of one channel and packs samples >= THRESHOLD as ones.
+        // Sample s is evaluated as step s + stepOffset.
+        public void fill(PatternStore store, int channel, int fromWord, int toWord, long stepOffset) {
+            long steps = store.getSteps();
+            if (root.isConstant()) {
+                store.fill(channel, (long) fromWord << 6, Math.min(steps, (long) toWord << 6), root.eval(null) >= THRESHOLD);
+                return;
+            }
+            Frame frame = new Frame();
+            frame.values[VAR_CH] = channel;
+            long[] words = new long[Math.min(PatternStore.CHUNK_WORDS, toWord - fromWord)];
+            for (int w = fromWord; w < toWord; ) {
+                int end = Math.min(toWord, w + words.length);
+                for (int i = 0; i < end - w; i++) {
+                    long base = (long) (w + i) << 6;
+                    int limit = (int) Math.min(PatternStore.WORD_BITS, steps - base);
+                    long word = 0;
+                    for (int bit = 0; bit < limit; bit++) {
+                        setStep(frame, base + bit + stepOffset);
+                        if (root.eval(frame) >= THRESHOLD) word |= 1L << bit;
+                    }
+                    words[i] = word;
+                }
+                store.writeWords(channel, w, words, 0, end - w);
+                w = end;
+            }
+        }
+
+        private void setStep(Frame frame, long step) {
+            frame.values[VAR_T] = step * samplePeriod;
+            frame.values[VAR_N] = step;
+            frame.values[VAR_X] = step * inverseSteps;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package pattern.generator.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("pattern.generator.FileIo")
+@Label("Pattern File I/O")
+@Category("Pattern Generator")
+@Description("Saving or loading a pattern file")
+final class FileIoEvent extends Event {
+    @Label("Operation")
+    String operation; // save, load
+
+    @Label("Path")
+    String path;
+
+    @Label("Channels")
+    int channels;
+
+    @Label("Steps")
+    long steps;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,131 @@
+package pattern.generator.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+// Generated channel data keyed by everything that determines it: the channel config (type,
+// frequency, duty cycle, phase, expression, PRBS settings), the sample rate and the step count, plus
+// channel index and count for configs whose output depends on them (decorrelated PRBS, expressions
+// using ch). An entry is a one-channel store whose chunks are shared with the pattern it was
+// generated into, so a hit is copied into a pattern in O(chunks) and a cached channel costs no extra
+// memory while a live pattern still holds the same chunks. Edits copy chunks on write and never
+// reach the cache. Entries live on the heap: off-heap patterns are not cached, and a hit for one
+// is copied into its memory.
+//
+// Eviction is least-recently-used against a byte cap, charging each entry its full storage. The
+// process-wide DEFAULT cache is capped by -Dpattern.generator.cacheMB (256 MB); 0 disables it.
+public class GenerationCache {
+    public static final GenerationCache DEFAULT = new GenerationCache(Long.getLong("pattern.generator.cacheMB", 256L) << 20);
+
+    static final class Key {
+        final ChannelConfig config;
+        final double sampleRateHz;
+        final long steps;
+        final int channel; // -1 for channel-independent output
+        final int channels;
+
+        Key(ChannelConfig config, double sampleRateHz, long steps, int channel, int channels) {
+            this.config = config;
+            this.sampleRateHz = sampleRateHz;
+            this.steps = steps;
+            this.channel = channel;
+            this.channels = channel < 0 ? 0 : channels;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return config.equals(other.config) && Double.compare(sampleRateHz, other.sampleRateHz) == 0
+                    && steps == other.steps && channel == other.channel && channels == other.channels;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(config, sampleRateHz, steps, channel, channels);
+        }
+    }
+
+    static final class Entry {
+        final PatternStore data;
+        final String warning;
+        final long bytes;
+
+        Entry(PatternStore data, String warning) {
+            this.data = data;
+            this.warning = warning;
+            this.bytes = data.getStorageBytes();
+        }
+    }
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long capacity;
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public GenerationCache(long capacity) {
+        setCapacity(capacity);
+    }
+
+    public synchronized long getCapacity() { return capacity; }
+    public synchronized long getBytes() { return bytes; }
+    public synchronized int getEntries() { return entries.size(); }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+
+    public synchronized void setCapacity(long capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Capacity must not be negative");
+        this.capacity = capacity;
+        evict(0);
+    }
+
+    // Looks the channel up under its channel-independent key first, then under its own index.
+    synchronized Entry get(ChannelConfig config, double sampleRateHz, long steps, int channel, int channels) {
+        if (capacity == 0) return null;
+        Entry entry = entries.get(new Key(config, sampleRateHz, steps, -1, channels));
+        if (entry == null) entry = entries.get(new Key(config, sampleRateHz, steps, channel, channels));
+        if (entry != null) hits++;
+        else misses++;
+        return entry;
+    }
+
+    synchronized void put(Key key, Entry entry) {
+        if (entry.bytes > capacity) return;
+        Entry old = entries.remove(key);
+        if (old != null) bytes -= old.bytes;
+        evict(entry.bytes);
+        entries.put(key, entry);
+        bytes += entry.bytes;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    public synchronized String summary() {
+        return "cache hits=" + hits + ", misses=" + misses + ", entries=" + entries.size() + ", bytes=" + bytes
+                + ", evictions=" + evictions;
+    }
+
+    // Drops least recently used entries until `incoming` more bytes fit.
+    private void evict(long incoming) {
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (bytes + incoming > capacity && it.hasNext()) {
+            bytes -= it.next().getValue().bytes;
+            it.remove();
+            evictions++;
+        }
+    }
+}
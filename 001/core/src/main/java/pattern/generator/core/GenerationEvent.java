@@ -0,0 +1,37 @@
+package pattern.generator.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("pattern.generator.Generation")
+@Label("Pattern Generation")
+@Category("Pattern Generator")
+@Description("One PatternGenerator.generate call")
+final class GenerationEvent extends Event {
+    @Label("Pattern Types")
+    String patternTypes;
+
+    @Label("Channels")
+    int channels;
+
+    @Label("Generated Channels")
+    int generatedChannels;
+
+    @Label("Cached Channels")
+    @Description("Channels copied from the generation cache instead of generated")
+    int cachedChannels;
+
+    @Label("Steps")
+    long steps;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Cancelled")
+    boolean cancelled;
+}
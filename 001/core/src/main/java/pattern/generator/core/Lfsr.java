@@ -0,0 +1,153 @@
+package pattern.generator.core;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+// Fibonacci LFSR producing PRBS sequences 64 bits per iteration.
+//
+// A polynomial x^N + ... + x^e + ... + 1 gives the recurrence s[n] = XOR over taps e of s[n - e].
+// Squaring a polynomial over GF(2) k times only scales its exponents by 2^k, so the same
+// sequence also obeys s[n] = XOR of s[n - e * 2^k]. Once the smallest scaled lag is >= 64, a whole
+// output word is the XOR of a few earlier 64-bit windows (leap-forward stepping). Jumping to an
+// arbitrary position uses the companion matrix raised to that power, which lets any word range be
+// filled independently.
+public final class Lfsr {
+    public static final String[] STANDARD = {"PRBS7", "PRBS9", "PRBS15", "PRBS23", "PRBS31"};
+
+    private final int degree;
+    private final long seed; // register contents: bit i holds s[-1 - i]
+    private final boolean inverted;
+    private final int[] leapLags; // taps scaled by 2^k so that the smallest is >= 64
+    private final int history; // largest leap lag, rounded up to whole words
+    private final long[] companion; // one-step transition matrix, row i = mask of state bits feeding bit i
+
+    public Lfsr(int[] taps, long seed, boolean inverted) {
+        int[] sorted = Arrays.stream(taps).distinct().sorted().toArray();
+        if (sorted.length < 2 || sorted[0] < 1 || sorted[sorted.length - 1] > 63) {
+            throw new IllegalArgumentException("LFSR needs at least two taps between 1 and 63");
+        }
+        this.degree = sorted[sorted.length - 1];
+        long mask = registerMask(degree);
+        this.seed = seed & mask;
+        if (this.seed == 0) throw new IllegalArgumentException("LFSR seed must not be zero");
+        this.inverted = inverted;
+
+        int scale = 1;
+        while (sorted[0] * scale < PatternStore.WORD_BITS) scale <<= 1;
+        this.leapLags = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) leapLags[i] = sorted[i] * scale;
+        this.history = (leapLags[leapLags.length - 1] + PatternStore.WORD_BITS - 1) & -PatternStore.WORD_BITS;
+
+        // Shifting in the new bit moves state bit i to i + 1; bit 0 is the XOR of the tapped bits.
+        this.companion = new long[degree];
+        for (int tap : sorted) companion[0] |= 1L << (tap - 1);
+        for (int i = 1; i < degree; i++) companion[i] = 1L << (i - 1);
+    }
+
+    // Accepts "PRBS7".."PRBS31", a polynomial such as "x^7+x^6+1", or tap exponents such as "7,6".
+    public static Lfsr parse(String spec, long seed, boolean inverted) {
+        String s = spec.trim().toUpperCase(Locale.ROOT).replace(" ", "");
+        switch (s) {
+            case "PRBS7": return new Lfsr(new int[]{7, 6}, seed, inverted);
+            case "PRBS9": return new Lfsr(new int[]{9, 5}, seed, inverted);
+            case "PRBS15": return new Lfsr(new int[]{15, 14}, seed, inverted);
+            case "PRBS23": return new Lfsr(new int[]{23, 18}, seed, inverted);
+            case "PRBS31": return new Lfsr(new int[]{31, 28}, seed, inverted);
+            default:
+                break;
+        }
+        try {
+            String[] terms = s.contains("X") ? s.split("\\+") : s.split(",");
+            int[] exponents = new int[terms.length];
+            int count = 0;
+            for (String term : terms) {
+                if (term.equals("1")) continue;
+                if (term.equals("X")) exponents[count++] = 1;
+                else exponents[count++] = Integer.parseInt(term.startsWith("X^") ? term.substring(2) : term);
+            }
+            return new Lfsr(Arrays.copyOf(exponents, count), seed, inverted);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid PRBS polynomial: " + spec);
+        }
+    }
+
+    public static long registerMask(int degree) {
+        return degree == 64 ? -1L : (1L << degree) - 1;
+    }
+
+    public int getDegree() { return degree; }
+
+    // Sequence length for a primitive polynomial.
+    public long getPeriod() {
+        return registerMask(degree);
+    }
+
+    // Register state after `steps` output bits.
+    public long stateAt(long steps) {
+        long[] power = companion.clone();
+        long state = seed;
+        while (steps > 0) {
+            if ((steps & 1) != 0) state = apply(power, state);
+            steps >>>= 1;
+            if (steps > 0) power = multiply(power, power);
+        }
+        return state;
+    }
+
+    private long apply(long[] matrix, long state) {
+        long result = 0;
+        for (int i = 0; i < degree; i++) {
+            result |= (long) (Long.bitCount(matrix[i] & state) & 1) << i;
+        }
+        return result;
+    }
+
+    private long[] multiply(long[] a, long[] b) {
+        long[] result = new long[degree];
+        for (int i = 0; i < degree; i++) {
+            long row = a[i];
+            long acc = 0;
+            while (row != 0) {
+                acc ^= b[Long.numberOfTrailingZeros(row)];
+                row &= row - 1;
+            }
+            result[i] = acc;
+        }
+        return result;
+    }
+
+    // Writes sequence bits start .. start + (toWord - fromWord) * 64 into words [fromWord, toWord)
+    // of one channel.
+    public void fill(PatternStore store, int channel, long start, int fromWord, int toWord) {
+        long[] words = new long[toWord - fromWord];
+        fillWords(words, start);
+        store.writeWords(channel, fromWord, words, 0, words.length);
+    }
+
+    // Writes sequence bits start .. start + words.length * 64. The first `history` bits are stepped
+    // serially from the jumped-to state, the rest is produced word by word from the leap-forward
+    // recurrence.
+    void fillWords(long[] words, long start) {
+        long state = stateAt(start);
+        int headWords = Math.min(words.length, history / PatternStore.WORD_BITS);
+        for (int w = 0; w < headWords; w++) {
+            long word = 0;
+            for (int bit = 0; bit < PatternStore.WORD_BITS; bit++) {
+                long next = Long.bitCount(companion[0] & state) & 1;
+                state = ((state << 1) | next) & registerMask(degree);
+                word |= next << bit;
+            }
+            words[w] = inverted ? ~word : word;
+        }
+        // With inverted output each tap reads an inverted window; an even tap count cancels that out.
+        long correction = inverted && (leapLags.length & 1) == 0 ? -1L : 0L;
+        for (int w = headWords; w < words.length; w++) {
+            long position = (long) w << 6;
+            long word = correction;
+            for (int lag : leapLags) {
+                word ^= PatternStore.extractWord(words, position - lag);
+            }
+            words[w] = word;
+        }
+    }
+}
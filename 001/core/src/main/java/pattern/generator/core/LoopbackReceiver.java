@@ -0,0 +1,187 @@
+package pattern.generator.core;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// Stand-in for the generator hardware when testing PatternSender: listens on the loopback address,
+// takes one stream at a time and keeps only a CRC-32 of the samples, so it costs little more than
+// the reads. Credit works like a device's FIFO of `windowBytes`: the whole window is granted after
+// HELLO and each half of it again once consumed, so at most a window is ever in flight; a sender
+// that goes past its credit fails the stream.
+//
+// run() serves connections until close(); each finished stream, good or failed, goes to `onStream`.
+public final class LoopbackReceiver implements Runnable, Closeable {
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private final ServerSocketChannel server;
+    private final int windowBytes;
+    private final Consumer<Stream> onStream;
+    private final ByteBuffer in = StreamProtocol.allocate(BUFFER_BYTES);
+    private final ByteBuffer credit = StreamProtocol.allocate(StreamProtocol.HEADER_BYTES + StreamProtocol.CREDIT_BYTES);
+    private final CRC32 crc = new CRC32();
+
+    // Port 0 picks a free one; see getPort().
+    public LoopbackReceiver(int port, int windowBytes, Consumer<Stream> onStream) throws IOException {
+        if (windowBytes < 8) throw new IllegalArgumentException("Window must be at least 8 bytes");
+        this.windowBytes = windowBytes;
+        this.onStream = onStream;
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public int getPort() { return server.socket().getLocalPort(); }
+
+    public InetSocketAddress getAddress() {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), getPort());
+    }
+
+    // One stream as received: what HELLO announced and what arrived.
+    public static final class Stream {
+        private int bytesPerStep;
+        private int channels;
+        private long stepsPerLoop;
+        private long loops;
+        private double sampleRate;
+        private long bytes;
+        private long frames;
+        private long crc;
+        private long nanos;
+        private boolean ended;
+        private String error;
+
+        private Stream() {}
+
+        public int getBytesPerStep() { return bytesPerStep; }
+        public int getChannels() { return channels; }
+        public long getStepsPerLoop() { return stepsPerLoop; }
+        public long getLoops() { return loops; }
+        public double getSampleRate() { return sampleRate; }
+        public long getBytes() { return bytes; }
+        public long getFrames() { return frames; }
+        public long getCrc() { return crc; }
+        public long getNanos() { return nanos; }
+
+        // Whether the sender finished with END; false if it dropped the connection or failed.
+        public boolean isEnded() { return ended; }
+
+        // Why the stream failed, or null.
+        public String getError() { return error; }
+
+        @Override
+        public String toString() {
+            double seconds = nanos / 1e9;
+            return String.format("%d ch x %d steps, %d bytes/step, %d bytes in %d frames, %.3f s, %.1f MB/s, crc %08x%s",
+                    channels, stepsPerLoop, bytesPerStep, bytes, frames, seconds, seconds == 0 ? 0 : bytes / seconds / (1 << 20),
+                    crc, error != null ? ", failed: " + error : ended ? "" : ", no END");
+        }
+    }
+
+    @Override
+    public void run() {
+        while (server.isOpen()) {
+            SocketChannel socket;
+            try {
+                socket = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                if (!server.isOpen()) return;
+                continue;
+            }
+            onStream.accept(receive(socket));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+
+    private Stream receive(SocketChannel socket) {
+        Stream stream = new Stream();
+        long start = System.nanoTime();
+        crc.reset();
+        in.clear().flip();
+        try (socket) {
+            require(socket, StreamProtocol.HEADER_BYTES + StreamProtocol.HELLO_BYTES);
+            if (in.getInt() != StreamProtocol.HELLO || in.getInt() != StreamProtocol.HELLO_BYTES
+                    || in.getInt() != StreamProtocol.MAGIC || in.getInt() != StreamProtocol.VERSION) {
+                throw new IOException("Not a pattern stream");
+            }
+            stream.bytesPerStep = in.getInt();
+            stream.channels = in.getInt();
+            stream.stepsPerLoop = in.getLong();
+            stream.loops = in.getLong();
+            stream.sampleRate = in.getDouble();
+            if (stream.bytesPerStep < 1) throw new IOException("Bad sample size " + stream.bytesPerStep);
+            long granted = windowBytes;
+            long regranted = 0; // consumed bytes already given back as credit
+            grant(socket, granted);
+            while (true) {
+                require(socket, StreamProtocol.HEADER_BYTES);
+                int type = in.getInt();
+                int length = in.getInt();
+                if (type == StreamProtocol.END) break;
+                if (type != StreamProtocol.DATA || length < 0 || length > StreamProtocol.MAX_FRAME_BYTES) {
+                    throw new IOException("Unexpected frame type " + type + " (" + length + " bytes)");
+                }
+                if (length % stream.bytesPerStep != 0) throw new IOException("DATA frame of " + length + " bytes splits a step");
+                if (stream.bytes + length > granted) throw new IOException("Sender went past its credit at byte " + stream.bytes);
+                consume(socket, length);
+                stream.bytes += length;
+                stream.frames++;
+                if (stream.bytes - regranted >= windowBytes / 2) {
+                    long more = stream.bytes - regranted;
+                    grant(socket, more);
+                    granted += more;
+                    regranted = stream.bytes;
+                }
+            }
+            stream.ended = true;
+        } catch (IOException e) {
+            stream.error = e.getMessage();
+        }
+        stream.crc = crc.getValue();
+        stream.nanos = System.nanoTime() - start;
+        return stream;
+    }
+
+    // Runs `length` bytes of samples through the CRC, straight from the read buffer.
+    private void consume(SocketChannel socket, int length) throws IOException {
+        while (length > 0) {
+            if (!in.hasRemaining()) require(socket, 1);
+            int n = Math.min(length, in.remaining());
+            int limit = in.limit();
+            in.limit(in.position() + n);
+            crc.update(in);
+            in.limit(limit);
+            length -= n;
+        }
+    }
+
+    // Reads until at least `bytes` are buffered.
+    private void require(SocketChannel socket, int bytes) throws IOException {
+        if (in.remaining() >= bytes) return;
+        in.compact();
+        while (in.position() < bytes) {
+            if (socket.read(in) < 0) throw new EOFException("Connection closed before END");
+        }
+        in.flip();
+    }
+
+    private void grant(SocketChannel socket, long bytes) throws IOException {
+        credit.clear();
+        StreamProtocol.putHeader(credit, StreamProtocol.CREDIT, StreamProtocol.CREDIT_BYTES);
+        credit.putLong(bytes).flip();
+        while (credit.hasRemaining()) socket.write(credit);
+    }
+}
@@ -0,0 +1,59 @@
+package pattern.generator.core;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Process-wide counters for generation and file I/O, plus the optional debug dump of generated
+// data. Counters are LongAdders so the generation chunks can update them from every worker without
+// contention. Timings and sizes of individual operations go to JFR (GenerationEvent, FileIoEvent);
+// record with e.g. `java -XX:StartFlightRecording=filename=run.jfr ...` and inspect with `jfr print
+// --categories "Pattern Generator" run.jfr`.
+//
+// The debug dump is off unless enabled with setDebugDump(true) or -Dpattern.generator.debugDump=true.
+public final class Metrics {
+    private static final int DUMP_LIMIT = 4096;
+
+    private static final LongAdder samplesGenerated = new LongAdder();
+    private static final LongAdder generations = new LongAdder();
+    private static final LongAdder bytesSaved = new LongAdder();
+    private static final LongAdder bytesLoaded = new LongAdder();
+    private static volatile boolean debugDump = Boolean.getBoolean("pattern.generator.debugDump");
+
+    private Metrics() {}
+
+    public static long getSamplesGenerated() { return samplesGenerated.sum(); }
+    public static long getGenerations() { return generations.sum(); }
+    public static long getBytesSaved() { return bytesSaved.sum(); }
+    public static long getBytesLoaded() { return bytesLoaded.sum(); }
+
+    public static boolean isDebugDump() { return debugDump; }
+    public static void setDebugDump(boolean enabled) { debugDump = enabled; }
+
+    static void addSamplesGenerated(long samples) { samplesGenerated.add(samples); }
+    static void addGeneration() { generations.increment(); }
+    static void addBytesSaved(long bytes) { bytesSaved.add(bytes); }
+    static void addBytesLoaded(long bytes) { bytesLoaded.add(bytes); }
+
+    public static void reset() {
+        samplesGenerated.reset();
+        generations.reset();
+        bytesSaved.reset();
+        bytesLoaded.reset();
+    }
+
+    public static String summary() {
+        return "samples generated=" + getSamplesGenerated() + ", generations=" + getGenerations()
+                + ", bytes saved=" + getBytesSaved() + ", bytes loaded=" + getBytesLoaded();
+    }
+
+    // Prints the first steps of one channel as a single line; does nothing unless the dump is on.
+    public static void dump(String label, PatternStore store, int channel) {
+        if (!debugDump || channel >= store.getChannels()) return;
+        long shown = Math.min(store.getSteps(), DUMP_LIMIT);
+        StringBuilder sb = new StringBuilder(label.length() + (int) shown * 2 + 32).append(label).append(": ");
+        for (long step = 0; step < shown; step++) {
+            sb.append(store.get(channel, step) ? '1' : '0').append(' ');
+        }
+        if (shown < store.getSteps()) sb.append("... (").append(store.getSteps() - shown).append(" more)");
+        System.out.println(sb);
+    }
+}
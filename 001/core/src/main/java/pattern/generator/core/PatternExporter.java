@@ -0,0 +1,33 @@
+package pattern.generator.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.Locale;
+
+// Writes a pattern in another tool's format. Exporters stream: the pattern is read a block of words
+// at a time and written through a fixed-size buffer, so memory use does not depend on the pattern
+// or output size. Use PatternFileHandler.exportPattern to write to a file.
+public interface PatternExporter {
+    String getName();
+
+    // File extension without the dot.
+    String getExtension();
+
+    // Progress counts words per channel written.
+    void write(PatternModel model, WritableByteChannel out, TaskProgress progress) throws IOException;
+
+    static List<PatternExporter> all() {
+        return List.of(new VcdExporter(), new RawExporter(), new CsvExporter());
+    }
+
+    // The exporter for a file's extension, or null (e.g. for .pat files).
+    static PatternExporter forFile(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        for (PatternExporter exporter : all()) {
+            if (name.endsWith("." + exporter.getExtension())) return exporter;
+        }
+        return null;
+    }
+}
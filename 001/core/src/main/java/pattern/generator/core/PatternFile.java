@@ -0,0 +1,197 @@
+package pattern.generator.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+// Random-access reader for version 2 pattern files. The header and channel directory are read up
+// front; channel data is memory-mapped window by window, so a step range of a few channels can be
+// read without touching the rest of the file.
+//
+// Layout (little-endian):
+//   0  magic "PGEN", 4 version, 8 data offset (long)
+//   16 max channels, 20 channels, 24 steps (long)
+//   32 sample rate, 40 duty cycle, 48 pattern frequency (doubles)
+//   56 directory offset (long)
+//   64 I/O standard, pattern type, expression: each an int byte length followed by UTF-8
+//   directory: per channel data offset (long), byte length (long), encoding (int), reserved (int)
+//   data: per channel, 64-byte aligned; encoding 0 = raw packed words as in PatternStore,
+//         1 = run lengths, 2 = one repeated period (see ChannelCodec)
+public final class PatternFile implements AutoCloseable {
+    static final int MAGIC = 0x4E454750; // "PGEN" read little-endian
+    static final int VERSION = 2;
+    static final int FIXED_HEADER_SIZE = 64;
+    static final int DIRECTORY_ENTRY_SIZE = 24;
+    private static final int MAP_WINDOW_WORDS = 1 << 20; // 8 MB per mapping
+
+    private final FileChannel channel;
+    private final int maxChannels;
+    private final int channels;
+    private final long steps;
+    private final double sampleRate;
+    private final double dutyCycle;
+    private final double patternFrequency;
+    private final String ioStandard;
+    private final String patternType;
+    private final String expression;
+    private final long[] dataOffsets;
+    private final long[] dataLengths;
+    private final int[] encodings;
+
+    private PatternFile(FileChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer fixed = readFully(0, FIXED_HEADER_SIZE);
+        if (fixed.getInt(0) != MAGIC) throw new IOException("Not a pattern file");
+        int version = fixed.getInt(4);
+        if (version != VERSION) throw new IOException("Unsupported pattern file version " + version);
+        maxChannels = fixed.getInt(16);
+        channels = fixed.getInt(20);
+        steps = fixed.getLong(24);
+        sampleRate = fixed.getDouble(32);
+        dutyCycle = fixed.getDouble(40);
+        patternFrequency = fixed.getDouble(48);
+        long directoryOffset = fixed.getLong(56);
+        if (channels < 0 || steps < 0 || directoryOffset < FIXED_HEADER_SIZE) throw new IOException("Corrupt pattern file header");
+
+        ByteBuffer strings = readFully(FIXED_HEADER_SIZE, (int) Math.min(directoryOffset - FIXED_HEADER_SIZE, Integer.MAX_VALUE));
+        ioStandard = readString(strings);
+        patternType = readString(strings);
+        expression = readString(strings);
+
+        ByteBuffer directory = readFully(directoryOffset, channels * DIRECTORY_ENTRY_SIZE);
+        dataOffsets = new long[channels];
+        dataLengths = new long[channels];
+        encodings = new int[channels];
+        long fileSize = channel.size();
+        for (int i = 0; i < channels; i++) {
+            dataOffsets[i] = directory.getLong();
+            dataLengths[i] = directory.getLong();
+            encodings[i] = directory.getInt();
+            directory.getInt();
+            if (dataOffsets[i] < 0 || dataLengths[i] < 0 || dataOffsets[i] + dataLengths[i] > fileSize) {
+                throw new IOException("Corrupt pattern file: channel " + i + " data out of bounds");
+            }
+        }
+    }
+
+    public static PatternFile open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return new PatternFile(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getMaxChannels() { return maxChannels; }
+    public int getChannels() { return channels; }
+    public long getSteps() { return steps; }
+    public double getSampleRate() { return sampleRate; }
+    public double getDutyCycle() { return dutyCycle; }
+    public double getPatternFrequency() { return patternFrequency; }
+    public String getIoStandard() { return ioStandard; }
+    public String getPatternType() { return patternType; }
+    public String getExpression() { return expression; }
+
+    public int getEncoding(int channel) { return encodings[channel]; }
+    public long getEncodedLength(int channel) { return dataLengths[channel]; }
+
+    // Reads steps [fromStep, toStep) of the given channels; row i of the result is selected[i].
+    public PatternStore read(int[] selected, long fromStep, long toStep) throws IOException {
+        if (fromStep < 0 || toStep > steps || fromStep > toStep) {
+            throw new IllegalArgumentException("Step range " + fromStep + ".." + toStep + " outside 0.." + steps);
+        }
+        PatternStore result = new PatternStore(selected.length, toStep - fromStep);
+        for (int i = 0; i < selected.length; i++) {
+            readChannel(selected[i], fromStep, result, i);
+        }
+        return result;
+    }
+
+    public PatternModel toModel() throws IOException {
+        return toModel(TaskProgress.NONE);
+    }
+
+    public PatternModel toModel(TaskProgress progress) throws IOException {
+        return toModel(progress, PatternMemory.HEAP);
+    }
+
+    // Loads into a model whose data lives in `memory`.
+    public PatternModel toModel(TaskProgress progress, PatternMemory memory) throws IOException {
+        PatternModel model = new PatternModel(maxChannels, channels, steps, sampleRate, ioStandard,
+                patternType, dutyCycle, patternFrequency, expression);
+        model.setMemory(memory);
+        PatternStore store = model.getStore();
+        for (int i = 0; i < store.getChannels(); i++) {
+            progress.checkCancelled();
+            readChannel(i, 0, store, i);
+            progress.update(i + 1, store.getChannels());
+        }
+        return model;
+    }
+
+    private void readChannel(int source, long fromStep, PatternStore target, int targetChannel) throws IOException {
+        if (source < 0 || source >= channels) throw new IllegalArgumentException("No channel " + source + " in file");
+        if (encodings[source] != ChannelCodec.ENCODING_RAW) {
+            ChannelCodec.decode(channel, dataOffsets[source], dataLengths[source], encodings[source], fromStep, target, targetChannel);
+            return;
+        }
+        int wordCount = target.getWordCount();
+        long[] words = new long[Math.min(PatternStore.CHUNK_WORDS, wordCount)];
+        int shift = (int) (fromStep & 63);
+        long firstSourceWord = fromStep >>> 6;
+        long sourceWords = dataLengths[source] / Long.BYTES;
+        for (int start = 0; start < wordCount; start += MAP_WINDOW_WORDS) {
+            int count = Math.min(MAP_WINDOW_WORDS, wordCount - start);
+            // One extra source word supplies the high bits of the last word when the range is unaligned.
+            long windowStart = firstSourceWord + start;
+            int windowWords = (int) Math.min(count + 1L, sourceWords - windowStart);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                    dataOffsets[source] + windowStart * Long.BYTES, (long) windowWords * Long.BYTES);
+            LongBuffer window = mapped.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            for (int offset = 0; offset < count; offset += words.length) {
+                int n = Math.min(words.length, count - offset);
+                if (shift == 0) {
+                    window.get(offset, words, 0, n);
+                } else {
+                    for (int i = 0; i < n; i++) {
+                        int k = offset + i;
+                        long low = window.get(k) >>> shift;
+                        long high = k + 1 < windowWords ? window.get(k + 1) << (64 - shift) : 0L;
+                        words[i] = low | high;
+                    }
+                }
+                target.writeWords(targetChannel, start + offset, words, 0, n);
+            }
+        }
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Unexpected end of pattern file");
+        }
+        return buffer.flip();
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < Integer.BYTES) throw new IOException("Corrupt pattern file header");
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) throw new IOException("Corrupt pattern file header");
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
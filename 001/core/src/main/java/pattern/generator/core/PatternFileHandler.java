@@ -0,0 +1,215 @@
+package pattern.generator.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class PatternFileHandler {
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+    private static final int LEGACY_STREAM_MAGIC = 0xACED; // ObjectOutputStream header of version 1 files
+
+    public static void savePattern(PatternModel model, File file) throws IOException {
+        savePattern(model, file, true);
+    }
+
+    // Writes the version 2 format described in PatternFile. With `compress`, each channel is stored
+    // in whichever ChannelCodec encoding is smallest; otherwise as raw packed words.
+    public static void savePattern(PatternModel model, File file, boolean compress) throws IOException {
+        savePattern(model, file, compress, TaskProgress.NONE);
+    }
+
+    // The file is written next to the target and moved over it when complete, so a failed or
+    // cancelled save leaves any existing file intact. Progress counts channels scanned and written.
+    public static void savePattern(PatternModel model, File file, boolean compress, TaskProgress progress) throws IOException {
+        FileIoEvent event = new FileIoEvent();
+        event.begin();
+        writePattern(model, file, compress, progress);
+        long bytes = file.length();
+        Metrics.addBytesSaved(bytes);
+        commit(event, "save", file, model, bytes);
+    }
+
+    private static void writePattern(PatternModel model, File file, boolean compress, TaskProgress progress) throws IOException {
+        PatternStore store = model.getStore();
+        ChannelCodec.Choice[] choices = new ChannelCodec.Choice[store.getChannels()];
+        long rawBytes = (long) store.getWordCount() * Long.BYTES;
+        long total = 2L * choices.length;
+        for (int i = 0; i < choices.length; i++) {
+            progress.checkCancelled();
+            choices[i] = compress ? ChannelCodec.choose(store, i) : new ChannelCodec.Choice(ChannelCodec.ENCODING_RAW, rawBytes, 0);
+            progress.update(i + 1, total);
+        }
+        byte[][] strings = {
+                utf8(model.getIoStandard()), utf8(model.getPatternType()), utf8(model.getExpression())
+        };
+        long directoryOffset = PatternFile.FIXED_HEADER_SIZE;
+        for (byte[] s : strings) directoryOffset += Integer.BYTES + s.length;
+        directoryOffset = align(directoryOffset, Long.BYTES);
+        long dataOffset = align(directoryOffset + (long) store.getChannels() * PatternFile.DIRECTORY_ENTRY_SIZE, 64);
+
+        ByteBuffer header = ByteBuffer.allocate((int) dataOffset).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(PatternFile.MAGIC);
+        header.putInt(PatternFile.VERSION);
+        header.putLong(dataOffset);
+        header.putInt(model.getMaxChannels());
+        header.putInt(store.getChannels());
+        header.putLong(store.getSteps());
+        header.putDouble(model.getSampleRate());
+        header.putDouble(model.getDutyCycle());
+        header.putDouble(model.getPatternFrequency());
+        header.putLong(directoryOffset);
+        for (byte[] s : strings) {
+            header.putInt(s.length);
+            header.put(s);
+        }
+        header.position((int) directoryOffset);
+        long channelOffset = dataOffset;
+        for (ChannelCodec.Choice choice : choices) {
+            header.putLong(channelOffset);
+            header.putLong(choice.length);
+            header.putInt(choice.encoding);
+            header.putInt(0);
+            channelOffset = align(channelOffset + choice.length, 64);
+        }
+        header.clear();
+
+        writeAtomically(file, out -> {
+            writeFully(out, header);
+            for (int i = 0; i < store.getChannels(); i++) {
+                progress.checkCancelled();
+                ChannelCodec.encode(store, i, choices[i], out);
+                long padding = align(choices[i].length, 64) - choices[i].length;
+                if (padding > 0 && i + 1 < store.getChannels()) writeFully(out, ByteBuffer.allocate((int) padding));
+                progress.update(choices.length + i + 1, total);
+            }
+        });
+    }
+
+    // Writes the pattern in another format (see PatternExporter), with the same temp file and move as
+    // savePattern. Progress is passed through to the exporter.
+    public static void exportPattern(PatternModel model, File file, PatternExporter exporter, TaskProgress progress) throws IOException {
+        FileIoEvent event = new FileIoEvent();
+        event.begin();
+        writeAtomically(file, out -> exporter.write(model, out, progress));
+        long bytes = file.length();
+        Metrics.addBytesSaved(bytes);
+        commit(event, "export " + exporter.getExtension(), file, model, bytes);
+    }
+
+    private interface FileBody {
+        void write(FileChannel out) throws IOException;
+    }
+
+    private static void writeAtomically(File file, FileBody body) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        boolean done = false;
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                body.write(out);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            done = true;
+        } finally {
+            if (!done) Files.deleteIfExists(temp);
+        }
+    }
+
+    // Loads a version 2 file, or imports a version 1 (ObjectOutputStream) file.
+    public static PatternModel loadPattern(File file) throws IOException {
+        return loadPattern(file, TaskProgress.NONE);
+    }
+
+    public static PatternModel loadPattern(File file, TaskProgress progress) throws IOException {
+        return loadPattern(file, progress, PatternMemory.HEAP);
+    }
+
+    // Builds a new model without touching any existing one, with its data in `memory`; progress
+    // counts channels read.
+    public static PatternModel loadPattern(File file, TaskProgress progress, PatternMemory memory) throws IOException {
+        FileIoEvent event = new FileIoEvent();
+        event.begin();
+        PatternModel model;
+        if (isLegacyFormat(file)) {
+            model = loadLegacyPattern(file, progress);
+            model.setMemory(memory);
+        } else {
+            try (PatternFile patternFile = PatternFile.open(file)) {
+                model = patternFile.toModel(progress, memory);
+            }
+        }
+        long bytes = file.length();
+        Metrics.addBytesLoaded(bytes);
+        commit(event, "load", file, model, bytes);
+        return model;
+    }
+
+    private static void commit(FileIoEvent event, String operation, File file, PatternModel model, long bytes) {
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.operation = operation;
+        event.path = file.getPath();
+        event.channels = model.getChannels();
+        event.steps = model.getSteps();
+        event.bytes = bytes;
+        event.commit();
+    }
+
+    private static boolean isLegacyFormat(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readUnsignedShort() == LEGACY_STREAM_MAGIC;
+        } catch (EOFException e) {
+            throw new IOException("File is too short to be a pattern file: " + file.getName());
+        }
+    }
+
+    private static PatternModel loadLegacyPattern(File file, TaskProgress progress) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file), READ_BUFFER_SIZE))) {
+            int maxChannels = ois.readInt();
+            int channels = ois.readInt();
+            int steps = ois.readInt();
+            double sampleRate = ois.readDouble();
+            String ioStandard = (String) ois.readObject();
+            String patternType = (String) ois.readObject();
+            double dutyCycle = ois.readDouble();
+            double patternFrequency = ois.readDouble();
+            String expression = (String) ois.readObject();
+            PatternModel model = new PatternModel(maxChannels, channels, steps, sampleRate, ioStandard,
+                    patternType, dutyCycle, patternFrequency, expression);
+            for (int i = 0; i < channels; i++) {
+                progress.checkCancelled();
+                for (int j = 0; j < steps; j++) {
+                    model.setPattern(i, j, ois.readInt());
+                }
+                progress.update(i + 1, channels);
+            }
+            return model;
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Corrupt version 1 pattern file: " + e.getMessage(), e);
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) out.write(buffer);
+    }
+
+    private static byte[] utf8(String s) {
+        return (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long align(long value, int alignment) {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+}
\ No newline at end of file
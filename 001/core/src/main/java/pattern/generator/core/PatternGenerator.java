@@ -0,0 +1,290 @@
+package pattern.generator.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Fills a PatternStore from per-channel configs on a fork-join pool. Work is cut into
+// (channel, word range) chunks and every word is computed from its own index only, so the
+// result does not depend on the pool size or on how the chunks were scheduled.
+//
+// With a GenerationCache, channels generated before with the same parameters are copied from the
+// cache instead, and every newly generated channel is added to it.
+public class PatternGenerator {
+    static final int CHUNK_WORDS = 1 << 14; // 1M steps per chunk
+    // Periodic outputs up to this period that repeat at least twice are stored as one lazy period.
+    static final long MAX_LAZY_PERIOD = 1L << 24;
+
+    private final double sampleRateHz;
+    private final GenerationCache cache;
+
+    public PatternGenerator(double sampleRateHz) {
+        this(sampleRateHz, null);
+    }
+
+    // `cache` may be null to always generate.
+    public PatternGenerator(double sampleRateHz, GenerationCache cache) {
+        if (sampleRateHz <= 0) throw new IllegalArgumentException("Sample rate must be positive");
+        this.sampleRateHz = sampleRateHz;
+        this.cache = cache;
+    }
+
+    interface ChannelFill {
+        void fill(PatternStore store, int channel, int fromWord, int toWord);
+    }
+
+    // Whole-channel alternative to ChannelFill for periodic output: installs one period in the store.
+    interface LazyFill {
+        void apply(PatternStore store, int channel);
+    }
+
+    // A config resolved against the sample rate and pattern length, ready to fill word ranges, or,
+    // when `lazy` is set, to be installed as a periodic channel instead.
+    static final class Prepared {
+        final ChannelFill fill;
+        final LazyFill lazy;
+        final boolean channelIndependent;
+        final String warning;
+
+        Prepared(ChannelFill fill, LazyFill lazy, boolean channelIndependent, String warning) {
+            this.fill = fill;
+            this.lazy = lazy;
+            this.channelIndependent = channelIndependent;
+            this.warning = warning;
+        }
+    }
+
+    static boolean storeLazily(long period, long steps) {
+        return period <= MAX_LAZY_PERIOD && period * 2 <= steps;
+    }
+
+    public String generate(PatternStore store, ChannelConfig[] configs) {
+        return generate(store, configs, ForkJoinPool.commonPool());
+    }
+
+    public String generate(PatternStore store, ChannelConfig[] configs, ForkJoinPool pool) {
+        return generate(store, configs, pool, TaskProgress.NONE);
+    }
+
+    // Progress is reported per finished chunk. On cancellation the remaining chunks are skipped and a
+    // CancellationException is thrown; the store is then partly written and should be discarded.
+    public String generate(PatternStore store, ChannelConfig[] configs, ForkJoinPool pool, TaskProgress progress) {
+        int channels = store.getChannels();
+        if (configs.length != channels) throw new IllegalArgumentException("Expected " + channels + " channel configs");
+
+        // Channels with equal, channel-independent configs are generated once and copied.
+        Map<ChannelConfig, Prepared> prepared = new HashMap<>();
+        Map<ChannelConfig, Integer> firstChannel = new HashMap<>();
+        int[] source = new int[channels];
+        GenerationCache.Entry[] cached = new GenerationCache.Entry[channels];
+        Set<String> types = new LinkedHashSet<>();
+        Set<String> warnings = new LinkedHashSet<>();
+        for (int channel = 0; channel < channels; channel++) {
+            ChannelConfig config = configs[channel];
+            source[channel] = -1;
+            if (config.isManual()) continue;
+            types.add(config.getPatternType());
+            if (cache != null) {
+                cached[channel] = cache.get(config, sampleRateHz, store.getSteps(), channel, channels);
+                if (cached[channel] != null) {
+                    if (cached[channel].warning != null) warnings.add(cached[channel].warning);
+                    continue;
+                }
+            }
+            Prepared p = prepared.computeIfAbsent(config, c -> prepare(c, store.getSteps()));
+            if (p.warning != null) warnings.add(p.warning);
+            Integer first = firstChannel.putIfAbsent(config, channel);
+            source[channel] = (first != null && p.channelIndependent) ? first : channel;
+        }
+        if (types.isEmpty()) return "Manual mode: edit table directly.";
+
+        List<Runnable> generateChunks = new ArrayList<>();
+        List<Runnable> copyChunks = new ArrayList<>();
+        int wordCount = store.getWordCount();
+        int generatedChannels = 0;
+        int cachedChannels = 0;
+        for (int channel = 0; channel < channels; channel++) {
+            final int ch = channel;
+            if (cached[channel] != null) {
+                PatternStore data = cached[channel].data;
+                copyChunks.add(() -> store.copyChannelFrom(data, 0, ch));
+                cachedChannels++;
+                continue;
+            }
+            if (source[channel] < 0) continue;
+            generatedChannels++;
+            final int from = source[channel];
+            Prepared p = prepared.get(configs[channel]);
+            if (from != channel) {
+                // Shares the source channel's chunks; costs O(chunks) however long the pattern is.
+                copyChunks.add(() -> store.copyChannel(from, ch));
+            } else if (p.lazy != null) {
+                generateChunks.add(() -> p.lazy.apply(store, ch));
+            } else {
+                ChannelFill fill = p.fill;
+                for (int start = 0; start < wordCount; start += CHUNK_WORDS) {
+                    final int lo = start;
+                    final int hi = Math.min(wordCount, start + CHUNK_WORDS);
+                    generateChunks.add(() -> fill.fill(store, ch, lo, hi));
+                }
+            }
+        }
+        GenerationEvent event = new GenerationEvent();
+        event.begin();
+        AtomicLong done = new AtomicLong();
+        long total = generateChunks.size() + copyChunks.size();
+        try {
+            runAll(pool, generateChunks, done, total, progress);
+            runAll(pool, copyChunks, done, total, progress);
+            event.cancelled = progress.cancelled();
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.patternTypes = String.join("/", types);
+                event.channels = channels;
+                event.generatedChannels = generatedChannels;
+                event.cachedChannels = cachedChannels;
+                event.steps = store.getSteps();
+                event.bytes = store.getStorageBytes();
+                event.commit();
+            }
+        }
+        progress.checkCancelled();
+        // The cache keeps heap chunks only; an off-heap pattern's channels would have to be copied
+        // onto the heap. Hits are still copied into an off-heap pattern's own memory.
+        if (cache != null && !store.getMemory().isOffHeap()) {
+            for (int channel = 0; channel < channels; channel++) {
+                if (source[channel] != channel) continue;
+                Prepared p = prepared.get(configs[channel]);
+                PatternStore data = new PatternStore(1, store.getSteps());
+                data.copyChannelFrom(store, channel, 0);
+                cache.put(new GenerationCache.Key(configs[channel], sampleRateHz, store.getSteps(),
+                        p.channelIndependent ? -1 : channel, channels), new GenerationCache.Entry(data, p.warning));
+            }
+        }
+        Metrics.addGeneration();
+        Metrics.addSamplesGenerated(generatedChannels * store.getSteps());
+
+        String fromCache = cachedChannels == 0 ? "" : " (" + cachedChannels + " of " + channels + " channels from cache)";
+        if (!warnings.isEmpty()) return String.join(" ", warnings) + fromCache;
+        if (types.size() == 1) return "Generated " + types.iterator().next() + " pattern." + fromCache;
+        return "Generated " + String.join("/", types) + " patterns." + fromCache;
+    }
+
+    private static void runAll(ForkJoinPool pool, List<Runnable> chunks, AtomicLong done, long total, TaskProgress progress) {
+        if (chunks.isEmpty()) return;
+        if (progress != TaskProgress.NONE) {
+            List<Runnable> tracked = new ArrayList<>(chunks.size());
+            for (Runnable chunk : chunks) {
+                tracked.add(() -> {
+                    if (progress.cancelled()) return;
+                    chunk.run();
+                    progress.update(done.incrementAndGet(), total);
+                });
+            }
+            chunks = tracked;
+        }
+        if (chunks.size() == 1) {
+            chunks.get(0).run();
+        } else {
+            pool.invoke(new ChunkTask(chunks, 0, chunks.size()));
+        }
+    }
+
+    private static final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Runnable> chunks;
+        private final int from;
+        private final int to;
+
+        ChunkTask(List<Runnable> chunks, int from, int to) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                chunks.get(from).run();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ChunkTask(chunks, from, mid), new ChunkTask(chunks, mid, to));
+        }
+    }
+
+    Prepared prepare(ChannelConfig config, long steps) {
+        double samplePeriod = 1.0 / sampleRateHz;
+        switch (config.getPatternType()) {
+            case "PWM":
+            case "Clock": {
+                double frequency = config.getFrequency();
+                if (frequency > sampleRateHz / 2) {
+                    throw new IllegalStateException("Pattern frequency exceeds Nyquist limit (" + (sampleRateHz / 2) + " Hz)");
+                }
+                long stepsPerCycle = Math.round(1.0 / frequency / samplePeriod);
+                String warning = null;
+                if (stepsPerCycle > steps) {
+                    stepsPerCycle = Math.max(2, steps / 2);
+                    double adjusted = 1.0 / (stepsPerCycle * samplePeriod);
+                    warning = "Warning: Pattern frequency too low (" + frequency + " Hz), adjusted to " + adjusted
+                            + " Hz to fit within " + steps + " steps. Increase steps or frequency.";
+                }
+                long highSteps = Math.round(stepsPerCycle * config.getDutyCycle() / 100.0);
+                highSteps = Math.max(0, Math.min(highSteps, stepsPerCycle - 1)); // Ensure at least one transition
+                final long period = stepsPerCycle;
+                final long high = highSteps;
+                final long phase = config.phaseSteps(stepsPerCycle);
+                LazyFill lazy = null;
+                if (storeLazily(period, steps)) {
+                    long[] unrolled = PatternStore.unrollPeriod(PatternStore.pulsePeriod((int) period, (int) high), (int) period);
+                    lazy = (store, channel) -> store.setUnrolled(channel, unrolled, (int) period, phase);
+                }
+                return new Prepared((store, channel, fromWord, toWord) ->
+                        store.fillPulse(channel, period, high, phase, fromWord, toWord), lazy, true, warning);
+            }
+            case "PRBS": {
+                Lfsr lfsr = Lfsr.parse(config.getPrbsPolynomial(), config.getPrbsSeed(), config.isPrbsInverted());
+                long period = lfsr.getPeriod();
+                long phase = Math.floorMod(config.phaseSteps(period), period);
+                boolean decorrelated = config.isPrbsDecorrelated();
+                LazyFill lazy = null;
+                if (storeLazily(period, steps)) {
+                    long[] periodWords = new long[PatternStore.wordCount(period)];
+                    lfsr.fillWords(periodWords, 0);
+                    long[] unrolled = PatternStore.unrollPeriod(periodWords, (int) period);
+                    lazy = (store, channel) -> {
+                        long offset = decorrelated ? channel * (period / store.getChannels()) : 0;
+                        store.setUnrolled(channel, unrolled, (int) period, (phase + offset) % period);
+                    };
+                }
+                return new Prepared((store, channel, fromWord, toWord) -> {
+                    long offset = decorrelated ? channel * (period / store.getChannels()) : 0;
+                    long start = (phase + offset + ((long) fromWord << 6) % period) % period;
+                    lfsr.fill(store, channel, start, fromWord, toWord);
+                }, lazy, !decorrelated, null);
+            }
+            case "Random": {
+                RandomBits bits = new RandomBits(config.getRandomSeed(), config.getRandomDensity());
+                return new Prepared(bits::fill, null, false, null);
+            }
+            case "Expression": {
+                ExpressionCompiler.CompiledExpression compiled = ExpressionCompiler.compile(
+                        PatternModel.normalizeLegacyExpression(config.getExpression()), sampleRateHz, config.getFrequency(), steps);
+                final long phase = config.phaseSteps(sampleRateHz / config.getFrequency());
+                return new Prepared((store, channel, fromWord, toWord) ->
+                        compiled.fill(store, channel, fromWord, toWord, phase), null, !compiled.dependsOnChannel(), null);
+            }
+            default:
+                throw new IllegalStateException("Unknown pattern type: " + config.getPatternType());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package pattern.generator.core;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// Undo/redo stacks of pattern snapshots. A snapshot shares its chunks with the pattern it was taken
+// from (PatternStore.snapshot), so taking one is cheap and keeping it costs only the chunks that were
+// changed since. Each entry is charged for the bytes it does not share with the next newer state plus
+// its chunk tables; when the total exceeds the budget the oldest undo entries are dropped first, then
+// the redo entries furthest from the current state.
+//
+// The budget defaults to -Dpattern.generator.undoBudgetMB (256 MB).
+public class PatternHistory {
+    public static final long DEFAULT_BUDGET = Long.getLong("pattern.generator.undoBudgetMB", 256L) << 20;
+    private static final long ENTRY_OVERHEAD = 64;
+
+    // One restorable state of a PatternModel. The store is never written to; restoring takes a
+    // further snapshot of it.
+    static final class Entry {
+        final String label;
+        final PatternStore store;
+        final ChannelConfig[] configs;
+        final int maxChannels;
+        long bytes;
+
+        Entry(String label, PatternStore store, ChannelConfig[] configs, int maxChannels) {
+            this.label = label;
+            this.store = store;
+            this.configs = configs;
+            this.maxChannels = maxChannels;
+        }
+    }
+
+    private final Deque<Entry> undo = new ArrayDeque<>(); // newest first
+    private final Deque<Entry> redo = new ArrayDeque<>(); // next first
+    private long budget;
+    private long usedBytes;
+    private int evicted;
+
+    public PatternHistory(long budget) {
+        setBudget(budget);
+    }
+
+    public long getBudget() { return budget; }
+    public long getUsedBytes() { return usedBytes; }
+    public int getUndoCount() { return undo.size(); }
+    public int getRedoCount() { return redo.size(); }
+    public boolean canUndo() { return !undo.isEmpty(); }
+    public boolean canRedo() { return !redo.isEmpty(); }
+    // Entries dropped to stay within the budget since the history was created or cleared.
+    public int getEvicted() { return evicted; }
+
+    public String getUndoLabel() { return undo.isEmpty() ? null : undo.peekFirst().label; }
+    public String getRedoLabel() { return redo.isEmpty() ? null : redo.peekFirst().label; }
+
+    public void setBudget(long budget) {
+        if (budget < 0) throw new IllegalArgumentException("Budget must not be negative");
+        this.budget = budget;
+        trim();
+    }
+
+    public void clear() {
+        undo.clear();
+        redo.clear();
+        usedBytes = 0;
+        evicted = 0;
+    }
+
+    // Records the state before an edit and drops everything that could be redone.
+    void push(Entry entry) {
+        for (Entry e : redo) usedBytes -= e.bytes;
+        redo.clear();
+        recharge(undo.peekFirst(), entry.store);
+        addFirst(undo, entry, null);
+        trim();
+    }
+
+    // Moves the newest undo entry out, recording `current` (the state being left) for redo.
+    Entry undo(Entry current) {
+        Entry target = undo.pollFirst();
+        if (target == null) return null;
+        usedBytes -= target.bytes;
+        recharge(redo.peekFirst(), current.store);
+        addFirst(redo, current, target.store);
+        trim();
+        return target;
+    }
+
+    Entry redo(Entry current) {
+        Entry target = redo.pollFirst();
+        if (target == null) return null;
+        usedBytes -= target.bytes;
+        recharge(undo.peekFirst(), current.store);
+        addFirst(undo, current, target.store);
+        trim();
+        return target;
+    }
+
+    // `newer` is the state the entry will sit next to once the current state moves on; until then
+    // the entry shares (almost) everything with the live pattern and is charged only its tables.
+    private void addFirst(Deque<Entry> stack, Entry entry, PatternStore newer) {
+        entry.bytes = tableBytes(entry.store) + (newer == null ? 0 : entry.store.getStorageBytesNotIn(newer));
+        usedBytes += entry.bytes;
+        stack.addFirst(entry);
+    }
+
+    // Re-charges the entry that was next to the live state against the state now next to it.
+    private void recharge(Entry entry, PatternStore newer) {
+        if (entry == null) return;
+        usedBytes -= entry.bytes;
+        entry.bytes = tableBytes(entry.store) + entry.store.getStorageBytesNotIn(newer);
+        usedBytes += entry.bytes;
+    }
+
+    private void trim() {
+        while (usedBytes > budget && !undo.isEmpty()) {
+            usedBytes -= undo.pollLast().bytes;
+            evicted++;
+        }
+        while (usedBytes > budget && !redo.isEmpty()) {
+            usedBytes -= redo.pollLast().bytes;
+            evicted++;
+        }
+    }
+
+    private static long tableBytes(PatternStore store) {
+        long chunksPerChannel = ((long) store.getWordCount() + PatternStore.CHUNK_WORDS - 1) >>> PatternStore.CHUNK_SHIFT;
+        return ENTRY_OVERHEAD + store.getChannels() * (chunksPerChannel * (Long.BYTES + 1) + ENTRY_OVERHEAD);
+    }
+}
@@ -0,0 +1,222 @@
+package pattern.generator.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Where a PatternStore keeps its chunks. HEAP allocates long arrays; the off-heap kinds carve chunks
+// out of large memory-mapped regions of a file, so a pattern can be far larger than the heap and
+// costs the collector one small object per chunk instead of its data. offHeap() maps an anonymous
+// temporary file that is deleted on close or exit; mapped(path) uses a file of your choice.
+//
+// Off-heap chunks are fixed-size slots. A slot goes back on a free list once its chunk is
+// unreachable, so copy-on-write edits and discarded snapshots reuse space instead of growing the file.
+// Stores share chunks only within one memory; copying a channel from a store in another memory
+// copies its chunks, so a store never keeps another memory's chunks alive.
+public abstract class PatternMemory implements Closeable {
+    public static final PatternMemory HEAP = new Heap();
+
+    private PatternMemory() {}
+
+    // A chunk's words.
+    abstract static class Words {
+        abstract int length();
+        abstract long get(int index);
+        abstract void set(int index, long value);
+        abstract void read(int from, long[] dest, int destPos, int count);
+        abstract void write(int to, long[] src, int srcPos, int count);
+
+        // Copies the first `count` words of `source`.
+        void copyFrom(Words source, int count) {
+            if (source instanceof HeapWords) {
+                write(0, ((HeapWords) source).words, 0, count);
+            } else {
+                long[] buffer = new long[count];
+                source.read(0, buffer, 0, count);
+                write(0, buffer, 0, count);
+            }
+        }
+    }
+
+    // A zeroed chunk of `length` words.
+    abstract Words allocate(int length);
+
+    public abstract String getName();
+
+    public boolean isOffHeap() { return false; }
+
+    // Bytes set aside outside the heap, used or not.
+    public long getReservedBytes() { return 0; }
+
+    @Override
+    public void close() throws IOException {}
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+
+    // Off-heap memory in a temporary file that is deleted on close or JVM exit.
+    public static PatternMemory offHeap() throws IOException {
+        Path file = Files.createTempFile("pattern", ".mem");
+        return new Mapped("Off-heap", FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE));
+    }
+
+    // Off-heap memory backed by `file`, which is created or truncated.
+    public static PatternMemory mapped(Path file) throws IOException {
+        return new Mapped("Mapped " + file, FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    private static final class Heap extends PatternMemory {
+        @Override
+        Words allocate(int length) {
+            return new HeapWords(new long[length]);
+        }
+
+        @Override
+        public String getName() { return "Heap"; }
+    }
+
+    static final class HeapWords extends Words {
+        final long[] words;
+
+        HeapWords(long[] words) {
+            this.words = words;
+        }
+
+        @Override int length() { return words.length; }
+        @Override long get(int index) { return words[index]; }
+        @Override void set(int index, long value) { words[index] = value; }
+
+        @Override
+        void read(int from, long[] dest, int destPos, int count) {
+            System.arraycopy(words, from, dest, destPos, count);
+        }
+
+        @Override
+        void write(int to, long[] src, int srcPos, int count) {
+            System.arraycopy(src, srcPos, words, to, count);
+        }
+
+        @Override
+        void copyFrom(Words source, int count) {
+            source.read(0, words, 0, count);
+        }
+    }
+
+    private static final class Mapped extends PatternMemory {
+        private static final int SLOT_BYTES = PatternStore.CHUNK_WORDS * Long.BYTES;
+        private static final int REGION_SLOTS = 1 << 13; // 256 MiB per mapping
+        private static final long[] ZEROS = new long[PatternStore.CHUNK_WORDS];
+        private static final Cleaner CLEANER = Cleaner.create();
+
+        private final String name;
+        private final FileChannel file;
+        private final List<MappedByteBuffer> regions = new ArrayList<>();
+        private long[] free = new long[64]; // released slots, reused first
+        private int freeCount;
+        private long nextSlot;
+        private boolean closed;
+
+        Mapped(String name, FileChannel file) {
+            this.name = name;
+            this.file = file;
+        }
+
+        @Override
+        synchronized Words allocate(int length) {
+            if (closed) throw new IllegalStateException(name + " memory is closed");
+            long slot = freeCount > 0 ? free[--freeCount] : nextSlot++;
+            int region = (int) (slot / REGION_SLOTS);
+            try {
+                while (regions.size() <= region) {
+                    long position = (long) regions.size() * REGION_SLOTS * SLOT_BYTES;
+                    regions.add(file.map(FileChannel.MapMode.READ_WRITE, position, (long) REGION_SLOTS * SLOT_BYTES));
+                }
+            } catch (IOException e) {
+                nextSlot--;
+                throw new IllegalStateException("Cannot map pattern memory: " + e.getMessage(), e);
+            }
+            ByteBuffer bytes = regions.get(region).slice((int) (slot % REGION_SLOTS) * SLOT_BYTES, length * Long.BYTES);
+            LongBuffer words = bytes.order(ByteOrder.nativeOrder()).asLongBuffer();
+            words.put(0, ZEROS, 0, length); // a reused slot holds the previous chunk
+            MappedWords result = new MappedWords(words);
+            CLEANER.register(result, new Release(this, slot));
+            return result;
+        }
+
+        private synchronized void release(long slot) {
+            if (freeCount == free.length) free = Arrays.copyOf(free, freeCount * 2);
+            free[freeCount++] = slot;
+        }
+
+        @Override
+        public String getName() { return name; }
+
+        @Override
+        public boolean isOffHeap() { return true; }
+
+        @Override
+        public synchronized long getReservedBytes() {
+            return (long) regions.size() * REGION_SLOTS * SLOT_BYTES;
+        }
+
+        // Mapped chunks stay readable; new chunks can no longer be allocated.
+        @Override
+        public synchronized void close() throws IOException {
+            closed = true;
+            file.close();
+        }
+    }
+
+    // Holds no reference to the chunk, so the chunk can become unreachable.
+    private static final class Release implements Runnable {
+        private final Mapped memory;
+        private final long slot;
+
+        Release(Mapped memory, long slot) {
+            this.memory = memory;
+            this.slot = slot;
+        }
+
+        @Override
+        public void run() {
+            memory.release(slot);
+        }
+    }
+
+    private static final class MappedWords extends Words {
+        private final LongBuffer words;
+
+        MappedWords(LongBuffer words) {
+            this.words = words;
+        }
+
+        @Override int length() { return words.capacity(); }
+        @Override long get(int index) { return words.get(index); }
+        @Override void set(int index, long value) { words.put(index, value); }
+
+        @Override
+        void read(int from, long[] dest, int destPos, int count) {
+            words.get(from, dest, destPos, count);
+        }
+
+        @Override
+        void write(int to, long[] src, int srcPos, int count) {
+            words.put(to, src, srcPos, count);
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package pattern.generator.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class PatternModel {
+    private int channels;
+    private long steps;
+    private int maxChannels; // 8, 16, or 32
+    private double sampleRate; // in MHz
+    private String ioStandard;
+    private String patternType; // Manual, PWM, PRBS, Clock, Random, Expression
+    private double dutyCycle; // 0-100%
+    private double patternFrequency; // Hz
+    private String expression;
+    private PatternStore store;
+    private PatternMemory memory = PatternMemory.HEAP;
+    private ChannelConfig[] channelConfigs;
+    private final PatternHistory history = new PatternHistory(PatternHistory.DEFAULT_BUDGET);
+    private final List<ChangeListener> listeners = new ArrayList<>();
+
+    public PatternModel(int maxChannels, int channels, long steps, double sampleRate, String ioStandard,
+                        String patternType, double dutyCycle, double patternFrequency, String expression) {
+        this.maxChannels = maxChannels;
+        this.channels = Math.min(channels, maxChannels);
+        this.steps = steps;
+        this.sampleRate = sampleRate;
+        this.ioStandard = ioStandard;
+        this.patternType = patternType;
+        this.dutyCycle = dutyCycle;
+        this.patternFrequency = patternFrequency;
+        this.expression = expression;
+        this.store = new PatternStore(this.channels, steps);
+        this.channelConfigs = new ChannelConfig[this.channels];
+    }
+
+    // Told about every change to the pattern data, on the thread that made it. Edits report the
+    // channels and steps they wrote; anything that replaces the store or its size (resize, undo,
+    // generation, ...) reports the whole pattern. Ranges are half-open.
+    public interface ChangeListener {
+        void patternChanged(int fromChannel, int toChannel, long fromStep, long toStep);
+    }
+
+    public void addChangeListener(ChangeListener listener) { listeners.add(listener); }
+    public void removeChangeListener(ChangeListener listener) { listeners.remove(listener); }
+
+    private void fireChanged(int fromChannel, int toChannel, long fromStep, long toStep) {
+        if (fromChannel >= toChannel || fromStep >= toStep) return;
+        for (ChangeListener listener : listeners) listener.patternChanged(fromChannel, toChannel, fromStep, toStep);
+    }
+
+    private void fireChanged() {
+        fireChanged(0, channels, 0, steps);
+    }
+
+    // Getters and setters
+    public int getChannels() { return channels; }
+    public long getSteps() { return steps; }
+    public int getMaxChannels() { return maxChannels; }
+    public double getSampleRate() { return sampleRate; }
+    public String getIoStandard() { return ioStandard; }
+    public String getPatternType() { return patternType; }
+    public double getDutyCycle() { return dutyCycle; }
+    public double getPatternFrequency() { return patternFrequency; }
+    public String getExpression() { return expression; }
+
+    public void setMaxChannels(int maxChannels) {
+        this.maxChannels = maxChannels;
+        if (channels > maxChannels) {
+            resize(maxChannels, steps);
+        }
+    }
+
+    public void setSampleRate(double sampleRate) {
+        if (sampleRate <= 0) throw new IllegalArgumentException("Sample rate must be positive");
+        this.sampleRate = sampleRate;
+    }
+
+    public void setIoStandard(String ioStandard) { this.ioStandard = ioStandard; }
+    public void setPatternType(String patternType) { this.patternType = patternType; }
+    public void setDutyCycle(double dutyCycle) {
+        if (dutyCycle < 0 || dutyCycle > 100) throw new IllegalArgumentException("Duty cycle must be 0-100%");
+        this.dutyCycle = dutyCycle;
+    }
+
+    public void setPatternFrequency(double patternFrequency) {
+        if (patternFrequency <= 0) throw new IllegalArgumentException("Frequency must be positive");
+        this.patternFrequency = patternFrequency;
+    }
+
+    public void setExpression(String expression) { this.expression = expression; }
+
+    public PatternStore getStore() { return store; }
+    public PatternMemory getMemory() { return memory; }
+
+    // Moves the pattern's data into `memory`, e.g. off the heap for patterns larger than it. Not an
+    // undoable edit: patterns restored by undo and redo are moved as well.
+    public void setMemory(PatternMemory memory) {
+        this.memory = memory;
+        if (store.getMemory() == memory) return;
+        store = store.movedTo(memory);
+        fireChanged();
+    }
+    public PatternHistory getHistory() { return history; }
+
+    // Records the current pattern and channel configs as an undo step, labelled with the edit about
+    // to be made. Cheap: the snapshot shares all chunks until one side writes to them.
+    public void checkpoint(String label) {
+        history.push(capture(label));
+    }
+
+    // Returns the label of the undone edit, or null if there was nothing to undo.
+    public String undo() {
+        PatternHistory.Entry target = history.undo(capture(history.getUndoLabel()));
+        if (target == null) return null;
+        restore(target);
+        fireChanged();
+        return target.label;
+    }
+
+    public String redo() {
+        String label = history.getRedoLabel();
+        PatternHistory.Entry target = history.redo(capture(label));
+        if (target == null) return null;
+        restore(target);
+        fireChanged();
+        return label;
+    }
+
+    private PatternHistory.Entry capture(String label) {
+        return new PatternHistory.Entry(label, store.snapshot(), channelConfigs.clone(), maxChannels);
+    }
+
+    private void restore(PatternHistory.Entry entry) {
+        this.store = entry.store.getMemory() == memory ? entry.store.snapshot() : entry.store.movedTo(memory);
+        this.channelConfigs = entry.configs.clone();
+        this.maxChannels = entry.maxChannels;
+        this.channels = store.getChannels();
+        this.steps = store.getSteps();
+    }
+
+    // Compatibility view: a fresh int[][] copy of the packed data; writes to it do not reach the model.
+    public int[][] getPattern() { return store.toIntArray(); }
+
+    public int getPattern(int channel, long step) {
+        return store.get(channel, step) ? 1 : 0;
+    }
+
+    public void setPattern(int channel, long step, int value) {
+        if (channel >= 0 && channel < channels && step >= 0 && step < steps) {
+            store.set(channel, step, value > 0);
+            fireChanged(channel, channel + 1, step, step + 1);
+        }
+    }
+
+    public void fillRange(int channel, long fromStep, long toStep, boolean value) {
+        store.fill(channel, clampStep(fromStep), clampStep(toStep), value);
+        fireChanged(channel, channel + 1, clampStep(fromStep), clampStep(toStep));
+    }
+
+    public void invertRange(int channel, long fromStep, long toStep) {
+        store.invert(channel, clampStep(fromStep), clampStep(toStep));
+        fireChanged(channel, channel + 1, clampStep(fromStep), clampStep(toStep));
+    }
+
+    private long clampStep(long step) {
+        return Math.max(0, Math.min(steps, step));
+    }
+
+    public void resize(int newChannels, long newSteps) {
+        if (newChannels < 1 || newSteps < 1) throw new IllegalArgumentException("Channels and steps must be positive");
+        newChannels = Math.min(newChannels, maxChannels);
+        if (newChannels == channels && newSteps == steps) return;
+        checkpoint("Resize");
+        this.store = store.resized(newChannels, newSteps);
+        this.channelConfigs = Arrays.copyOf(channelConfigs, newChannels);
+        this.channels = newChannels;
+        this.steps = newSteps;
+        fireChanged();
+    }
+
+    public void clear() {
+        checkpoint("Clear");
+        store.clear();
+        fireChanged();
+    }
+
+    // Fills every channel with the same bits as a "Random" config with this seed and `density`
+    // (probability of a 1) would generate, whatever the pool size.
+    public void randomize(long seed, double density) {
+        ChannelConfig config = new ChannelConfig("Random", patternFrequency, dutyCycle, 0.0, "").withRandom(seed, density);
+        ChannelConfig[] configs = new ChannelConfig[channels];
+        Arrays.fill(configs, config);
+        checkpoint("Randomize");
+        new PatternGenerator(sampleRate * 1_000_000).generate(store, configs);
+        fireChanged();
+    }
+
+    // The channel's current data for composing with Signal; later edits to the model do not affect it.
+    public Signal signal(int channel) {
+        return Signal.of(store, channel);
+    }
+
+    // Every channel, in order.
+    public Signal[] signals() {
+        Signal[] signals = new Signal[channels];
+        for (int channel = 0; channel < channels; channel++) signals[channel] = signal(channel);
+        return signals;
+    }
+
+    public void applySignals(String label, Signal[] signals) {
+        applySignals(label, signals, TaskProgress.NONE);
+    }
+
+    // Writes signal i into channel i as one undoable edit; null entries leave a channel as it is.
+    // The signals are evaluated into a snapshot that replaces the store only once all are written,
+    // so a signal may read any channel of the model and a cancelled run changes nothing. Written
+    // channels become Manual so that generating again keeps them.
+    public void applySignals(String label, Signal[] signals, TaskProgress progress) {
+        if (signals.length > channels) throw new IllegalArgumentException("Too many signals: " + signals.length);
+        PatternStore next = store.snapshot();
+        for (int channel = 0; channel < signals.length; channel++) {
+            if (signals[channel] != null) signals[channel].writeTo(next, channel, progress);
+        }
+        checkpoint(label);
+        store = next;
+        for (int channel = 0; channel < signals.length; channel++) {
+            if (signals[channel] != null) {
+                channelConfigs[channel] = new ChannelConfig("Manual", patternFrequency, dutyCycle, 0.0, expression);
+            }
+        }
+        fireChanged();
+    }
+
+    // Rebuilds the channel list: new channel i is old channel sources[i], or all zeros for -1.
+    // Channels may be reordered, duplicated or dropped; data and configs are shared, not copied.
+    public void remapChannels(int[] sources) {
+        if (sources.length < 1 || sources.length > maxChannels) throw new IllegalArgumentException("Channel count must be 1.." + maxChannels);
+        PatternStore next = new PatternStore(sources.length, steps, memory);
+        ChannelConfig[] configs = new ChannelConfig[sources.length];
+        for (int channel = 0; channel < sources.length; channel++) {
+            int source = sources[channel];
+            if (source < -1 || source >= channels) throw new IllegalArgumentException("No channel " + source);
+            if (source < 0) continue;
+            next.copyChannelFrom(store, source, channel);
+            configs[channel] = channelConfigs[source];
+        }
+        checkpoint("Remap channels");
+        store = next;
+        channelConfigs = configs;
+        channels = sources.length;
+        fireChanged();
+    }
+
+    // For Random the model's duty cycle is the density of ones.
+    public ChannelConfig getDefaultConfig() {
+        return new ChannelConfig(patternType, patternFrequency, dutyCycle, 0.0, expression).withRandom(-1L, dutyCycle / 100);
+    }
+
+    // The config a channel is generated with: its own if one was set, otherwise the model-wide settings.
+    public ChannelConfig getChannelConfig(int channel) {
+        ChannelConfig config = channelConfigs[channel];
+        return config != null ? config : getDefaultConfig();
+    }
+
+    public boolean hasChannelConfig(int channel) {
+        return channelConfigs[channel] != null;
+    }
+
+    // Pass null to make the channel follow the model-wide settings again.
+    public void setChannelConfig(int channel, ChannelConfig config) {
+        channelConfigs[channel] = config;
+    }
+
+    public void clearChannelConfigs() {
+        Arrays.fill(channelConfigs, null);
+    }
+
+    public String generatePattern() {
+        return generatePattern(ForkJoinPool.commonPool());
+    }
+
+    public String generatePattern(ForkJoinPool pool) {
+        Generation generation = newGeneration();
+        String status = generation.run(pool, TaskProgress.NONE);
+        generation.commit();
+        return status;
+    }
+
+    // Captures the current configs for a generation run. Call on the thread that owns the model;
+    // run() may then happen on any thread and commit() back on the owning one.
+    public Generation newGeneration() {
+        ChannelConfig[] configs = new ChannelConfig[channels];
+        for (int channel = 0; channel < channels; channel++) {
+            configs[channel] = getChannelConfig(channel);
+        }
+        return new Generation(configs);
+    }
+
+    // Generation is double-buffered: the new data is built in a separate store and swapped in by
+    // commit(), so readers of the model never see a half-generated pattern.
+    public final class Generation {
+        private final ChannelConfig[] configs;
+        private final PatternStore source;
+        private final double sampleRate;
+        private PatternStore result;
+
+        private Generation(ChannelConfig[] configs) {
+            this.configs = configs;
+            this.source = store;
+            this.sampleRate = PatternModel.this.sampleRate;
+        }
+
+        public String run(ForkJoinPool pool, TaskProgress progress) {
+            PatternStore next = new PatternStore(source.getChannels(), source.getSteps(), source.getMemory());
+            boolean allManual = true;
+            for (ChannelConfig config : configs) allManual &= config.isManual();
+            if (allManual) {
+                result = next;
+                return "Manual mode: edit table directly.";
+            }
+            // Manual channels keep their data; every other channel is fully overwritten.
+            for (int channel = 0; channel < configs.length; channel++) {
+                if (configs[channel].isManual()) next.copyChannelFrom(source, channel, channel);
+            }
+
+            String status = new PatternGenerator(sampleRate * 1_000_000, GenerationCache.DEFAULT).generate(next, configs, pool, progress);
+            Metrics.dump(configs[0].getPatternType() + " pattern (ch 0)", next, 0);
+            result = next;
+            return status;
+        }
+
+        // The generated data once run() has finished, for work on it before commit(); null before.
+        public PatternStore getResult() { return result; }
+
+        // Publishes the generated data. Returns false, leaving the model untouched, if the run did not
+        // finish or the model was resized or reloaded in the meantime.
+        public boolean commit() {
+            if (result == null || store != source) return false;
+            checkpoint("Generate");
+            store = result;
+            fireChanged();
+            return true;
+        }
+    }
+
+    // Expressions written for the old evaluator: a bare sin(...)/cos(...) was scaled to 0..1 and a
+    // bare "t" meant a ramp over the whole pattern. Keep those producing the same output.
+    static String normalizeLegacyExpression(String expr) {
+        String compact = expr.toLowerCase().replace(" ", "");
+        if (compact.equals("t")) return "x";
+        if ((compact.startsWith("sin(") || compact.startsWith("cos(")) && closingParen(compact, 3) == compact.length() - 1) {
+            return "0.5*(1+" + compact + ")";
+        }
+        return expr;
+    }
+
+    private static int closingParen(String s, int open) {
+        int depth = 0;
+        for (int i = open; i < s.length(); i++) {
+            if (s.charAt(i) == '(') depth++;
+            else if (s.charAt(i) == ')' && --depth == 0) return i;
+        }
+        return -1;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,130 @@
+package pattern.generator.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Finds every occurrence of BitPatterns in a store, 64 candidate positions at a time. This is
+// Shift-And with the roles of text and pattern swapped: the state word holds one bit per match
+// start in a 64-step window, and each fixed bit of the pattern ANDs in the text word shifted by its
+// offset (inverted for a 0). A window is done after at most one word operation per fixed bit, and
+// usually far sooner, since the state drops to zero once every start has failed. Wildcards cost
+// nothing; pattern length is not limited to 64.
+//
+// Channels are read a block at a time and the block is shared by every pattern of a multi-pattern
+// search. Each pattern keeps its exact match count and the positions of its first `limit` matches.
+public final class PatternSearch {
+    private static final int BLOCK_WORDS = 1 << 10;
+
+    public static final class Result {
+        private final BitPattern pattern;
+        private final long count;
+        private final long[] positions;
+
+        Result(BitPattern pattern, long count, long[] positions) {
+            this.pattern = pattern;
+            this.count = count;
+            this.positions = positions;
+        }
+
+        public BitPattern getPattern() { return pattern; }
+        public long getCount() { return count; }
+
+        // Match starts in ascending order, at most the search limit.
+        public long[] getPositions() { return positions; }
+
+        public boolean isTruncated() { return count > positions.length; }
+
+        // First recorded match starting after `step`, or -1.
+        public long next(long step) {
+            int i = Arrays.binarySearch(positions, step + 1);
+            if (i < 0) i = -i - 1;
+            return i < positions.length ? positions[i] : -1;
+        }
+
+        // Last recorded match starting before `step`, or -1.
+        public long previous(long step) {
+            int i = Arrays.binarySearch(positions, step);
+            if (i < 0) i = -i - 1;
+            return i > 0 ? positions[i - 1] : -1;
+        }
+
+        @Override
+        public String toString() {
+            return pattern + " - " + count + (count == 1 ? " match" : " matches") + (isTruncated() ? " (first " + positions.length + " kept)" : "");
+        }
+    }
+
+    private PatternSearch() {}
+
+    public static Result find(PatternStore store, BitPattern pattern, int limit, TaskProgress progress) {
+        return findAll(store, List.of(pattern), limit, progress).get(0);
+    }
+
+    public static List<Result> findAll(PatternStore store, List<BitPattern> patterns, int limit, TaskProgress progress) {
+        int maxLength = 0;
+        long[][] buffers = new long[store.getChannels()][];
+        for (BitPattern pattern : patterns) {
+            maxLength = Math.max(maxLength, pattern.getLength());
+            for (int channel : pattern.channels) {
+                if (channel < 0 || channel >= store.getChannels()) throw new IllegalArgumentException("No channel " + channel);
+            }
+        }
+        // Words past the block that the widest pattern reaches into, plus one for the funnel shift.
+        int extra = (maxLength + PatternStore.WORD_BITS - 1) / PatternStore.WORD_BITS + 1;
+        for (BitPattern pattern : patterns) {
+            for (int channel : pattern.channels) {
+                if (buffers[channel] == null) buffers[channel] = new long[BLOCK_WORDS + extra];
+            }
+        }
+
+        int wordCount = store.getWordCount();
+        long steps = store.getSteps();
+        long[] counts = new long[patterns.size()];
+        long[][] positions = new long[patterns.size()][16];
+        int[] sizes = new int[patterns.size()];
+        for (int from = 0; from < wordCount; from += BLOCK_WORDS) {
+            progress.checkCancelled();
+            int count = Math.min(BLOCK_WORDS, wordCount - from);
+            for (int channel = 0; channel < buffers.length; channel++) {
+                long[] buffer = buffers[channel];
+                if (buffer == null) continue;
+                int read = Math.min(count + extra, wordCount - from);
+                store.readWords(channel, from, buffer, 0, read);
+                Arrays.fill(buffer, read, buffer.length, 0L);
+            }
+            for (int p = 0; p < patterns.size(); p++) {
+                BitPattern pattern = patterns.get(p);
+                long lastStart = steps - pattern.getLength();
+                int[] channels = pattern.channels;
+                int[] offsets = pattern.offsets;
+                boolean[] values = pattern.values;
+                for (int i = 0; i < count; i++) {
+                    long base = (long) (from + i) << 6;
+                    if (base > lastStart) break;
+                    long matches = lastStart - base >= 63 ? -1L : PatternStore.runMask((int) (lastStart - base + 1));
+                    for (int t = 0; t < channels.length && matches != 0; t++) {
+                        long[] buffer = buffers[channels[t]];
+                        int k = i + (offsets[t] >>> 6);
+                        int shift = offsets[t] & 63;
+                        long text = shift == 0 ? buffer[k] : (buffer[k] >>> shift) | (buffer[k + 1] << (PatternStore.WORD_BITS - shift));
+                        matches &= values[t] ? text : ~text;
+                    }
+                    if (matches == 0) continue;
+                    counts[p] += Long.bitCount(matches);
+                    while (matches != 0 && sizes[p] < limit) {
+                        if (sizes[p] == positions[p].length) positions[p] = Arrays.copyOf(positions[p], Math.min(limit, sizes[p] * 2));
+                        positions[p][sizes[p]++] = base + Long.numberOfTrailingZeros(matches);
+                        matches &= matches - 1;
+                    }
+                }
+            }
+            progress.update(from + count, wordCount);
+        }
+        List<Result> results = new ArrayList<>(patterns.size());
+        for (int p = 0; p < patterns.size(); p++) {
+            results.add(new Result(patterns.get(p), counts[p], Arrays.copyOf(positions[p], sizes[p])));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,283 @@
+package pattern.generator.core;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CancellationException;
+
+// Streams a pattern to a receiver over TCP (see StreamProtocol), looping it as often as asked. The
+// samples are the raw binary export's, so a device gets exactly what a .bin file would hold.
+//
+// The socket is non-blocking behind a Selector: DATA frames of up to FRAME_BYTES go out with one
+// gathering write of header and payload, and the sender never has more payload in flight than the
+// receiver has granted in CREDIT frames, waiting on the selector when it runs out. A loop that
+// encodes to at most CACHE_BYTES is encoded once into a direct buffer and sent from there on
+// every pass; longer ones are encoded again on each pass, block by block like an export.
+//
+// The sender streams a snapshot of the store taken when it is created, so the model can be edited,
+// regenerated or replaced while it runs.
+public final class PatternSender {
+    private static final int FRAME_BYTES = 1 << 20;
+    private static final long CACHE_BYTES = 64L << 20;
+    private static final int SEND_BUFFER_BYTES = 4 << 20;
+    private static final long SELECT_MILLIS = 100;
+    private static final long CLOSE_NANOS = 10_000_000_000L;
+    private static final long MB = 1 << 20;
+
+    private final PatternStore store;
+    private final int bytesPerStep;
+    private final double sampleRateHz;
+    private final long loopBytes;
+
+    // Call on the thread that edits the model; send() may then run on any thread.
+    public PatternSender(PatternModel model) {
+        this.store = model.getStore().snapshot();
+        this.bytesPerStep = RawExporter.bytesPerStep(model);
+        this.sampleRateHz = model.getSampleRate() * 1_000_000;
+        this.loopBytes = store.getSteps() * bytesPerStep;
+    }
+
+    public int getBytesPerStep() { return bytesPerStep; }
+    public long getLoopBytes() { return loopBytes; }
+
+    public static final class Result {
+        private final long bytes;
+        private final long frames;
+        private final long loops;
+        private final long nanos;
+        private final long creditWaits;
+
+        Result(long bytes, long frames, long loops, long nanos, long creditWaits) {
+            this.bytes = bytes;
+            this.frames = frames;
+            this.loops = loops;
+            this.nanos = nanos;
+            this.creditWaits = creditWaits;
+        }
+
+        public long getBytes() { return bytes; }
+        public long getFrames() { return frames; }
+        public long getLoops() { return loops; }
+        public long getNanos() { return nanos; }
+
+        // Times the sender ran out of credit and had to wait for the receiver.
+        public long getCreditWaits() { return creditWaits; }
+
+        public double getMegabytesPerSecond() {
+            return nanos == 0 ? 0 : bytes / (nanos / 1e9) / MB;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d loops, %d bytes in %d frames, %.3f s, %.1f MB/s, %d credit waits",
+                    loops, bytes, frames, nanos / 1e9, getMegabytesPerSecond(), creditWaits);
+        }
+    }
+
+    // Sends the pattern `loops` times, or until cancelled if `loops` is 0. Progress counts payload
+    // bytes, with a total of -1 when looping until cancelled. A cancelled stream still ends with END.
+    public Result send(InetSocketAddress address, long loops, TaskProgress progress) throws IOException {
+        if (loopBytes == 0) throw new IllegalArgumentException("Nothing to send: the pattern is empty");
+        if (loops < 0) throw new IllegalArgumentException("Loops must be 0 (until stopped) or more");
+        if (address.isUnresolved()) throw new UnknownHostException(address.getHostString());
+        ByteBuffer cache = loops != 1 && loopBytes <= CACHE_BYTES ? encodeLoop(progress) : null;
+        try (SocketChannel socket = SocketChannel.open(); Selector selector = Selector.open()) {
+            Connection connection = new Connection(socket, selector, progress, loops == 0 ? -1 : loops * loopBytes);
+            connection.connect(address);
+            long start = System.nanoTime();
+            connection.hello(loops);
+            // Progress is counted in bytes as they go out, not by the exporter.
+            TaskProgress cancelOnly = new TaskProgress() {
+                @Override
+                public void update(long done, long total) {}
+
+                @Override
+                public boolean cancelled() { return progress.cancelled(); }
+            };
+            long done = 0;
+            try {
+                for (; loops == 0 || done < loops; done++) {
+                    if (cache != null) {
+                        connection.write(cache.duplicate());
+                    } else {
+                        RawExporter.writeSamples(store, bytesPerStep, connection, cancelOnly);
+                    }
+                }
+            } catch (CancellationException e) {
+                try {
+                    connection.end();
+                } catch (IOException | CancellationException ignored) {
+                    // The stream is being abandoned anyway.
+                }
+                throw e;
+            }
+            connection.end();
+            return new Result(connection.sent, connection.frames, done, System.nanoTime() - start, connection.creditWaits);
+        }
+    }
+
+    private ByteBuffer encodeLoop(TaskProgress progress) throws IOException {
+        ByteBuffer cache = ByteBuffer.allocateDirect((int) loopBytes);
+        RawExporter.writeSamples(store, bytesPerStep, new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) {
+                int n = src.remaining();
+                cache.put(src);
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() { return true; }
+
+            @Override
+            public void close() {}
+        }, progress);
+        return cache.flip();
+    }
+
+    // One connection to a receiver. Written to as a channel, it sends what it is given as DATA frames.
+    private final class Connection implements WritableByteChannel {
+        private final SocketChannel socket;
+        private final Selector selector;
+        private final TaskProgress progress;
+        private final long total;
+        private final ByteBuffer header = StreamProtocol.allocate(StreamProtocol.HEADER_BYTES);
+        private final ByteBuffer incoming = StreamProtocol.allocate(64 * (StreamProtocol.HEADER_BYTES + StreamProtocol.CREDIT_BYTES));
+        private final ByteBuffer[] frame = new ByteBuffer[2];
+        private SelectionKey key;
+        private boolean ending;
+        private long closeDeadline; // when to give up on the receiver while ending
+        private long credit;
+        private long sent;
+        private long frames;
+        private long creditWaits;
+
+        Connection(SocketChannel socket, Selector selector, TaskProgress progress, long total) {
+            this.socket = socket;
+            this.selector = selector;
+            this.progress = progress;
+            this.total = total;
+            frame[0] = header;
+        }
+
+        void connect(InetSocketAddress address) throws IOException {
+            socket.setOption(StandardSocketOptions.SO_SNDBUF, SEND_BUFFER_BYTES);
+            socket.configureBlocking(false);
+            key = socket.register(selector, 0);
+            if (!socket.connect(address)) {
+                do {
+                    await(SelectionKey.OP_CONNECT);
+                } while (!socket.finishConnect());
+            }
+        }
+
+        void hello(long loops) throws IOException {
+            ByteBuffer hello = StreamProtocol.allocate(StreamProtocol.HEADER_BYTES + StreamProtocol.HELLO_BYTES);
+            StreamProtocol.putHeader(hello, StreamProtocol.HELLO, StreamProtocol.HELLO_BYTES);
+            hello.putInt(StreamProtocol.MAGIC).putInt(StreamProtocol.VERSION).putInt(bytesPerStep).putInt(store.getChannels())
+                    .putLong(store.getSteps()).putLong(loops).putDouble(sampleRateHz).flip();
+            writeFully(new ByteBuffer[]{hello}, hello.remaining());
+        }
+
+        // Sends END, then waits a while for the receiver to close its side.
+        void end() throws IOException {
+            ending = true;
+            closeDeadline = System.nanoTime() + CLOSE_NANOS;
+            header.clear();
+            StreamProtocol.putHeader(header, StreamProtocol.END, 0);
+            header.flip();
+            writeFully(new ByteBuffer[]{header}, StreamProtocol.HEADER_BYTES);
+            socket.shutdownOutput();
+            incoming.clear();
+            while (socket.read(incoming) >= 0) {
+                incoming.clear();
+                await(SelectionKey.OP_READ);
+            }
+        }
+
+        // Whole steps only, which is what the exporter and the cache hand in.
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int written = src.remaining();
+            int limit = src.limit();
+            while (src.hasRemaining()) {
+                progress.checkCancelled();
+                long granted = awaitCredit();
+                int length = (int) Math.min(Math.min(src.remaining(), FRAME_BYTES), granted - granted % bytesPerStep);
+                header.clear();
+                StreamProtocol.putHeader(header, StreamProtocol.DATA, length);
+                header.flip();
+                src.limit(src.position() + length);
+                frame[1] = src;
+                writeFully(frame, StreamProtocol.HEADER_BYTES + length);
+                src.limit(limit);
+                credit -= length;
+                sent += length;
+                frames++;
+                progress.update(sent, total);
+            }
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() { return socket.isOpen(); }
+
+        @Override
+        public void close() {}
+
+        private void writeFully(ByteBuffer[] buffers, long bytes) throws IOException {
+            while (bytes > 0) {
+                long n = socket.write(buffers);
+                bytes -= n;
+                if (n == 0) await(SelectionKey.OP_WRITE);
+            }
+        }
+
+        // Credit for at least one step, waiting for the receiver to grant it if need be.
+        private long awaitCredit() throws IOException {
+            readCredits();
+            while (credit < bytesPerStep) {
+                creditWaits++;
+                await(SelectionKey.OP_READ);
+                readCredits();
+            }
+            return credit;
+        }
+
+        // Takes in the CREDIT frames that have arrived, without blocking.
+        private void readCredits() throws IOException {
+            if (socket.read(incoming) < 0) throw new EOFException("Receiver closed the connection");
+            incoming.flip();
+            while (incoming.remaining() >= StreamProtocol.HEADER_BYTES + StreamProtocol.CREDIT_BYTES) {
+                int type = incoming.getInt();
+                int length = incoming.getInt();
+                if (type != StreamProtocol.CREDIT || length != StreamProtocol.CREDIT_BYTES) {
+                    throw new IOException("Unexpected frame type " + type + " (" + length + " bytes) from receiver");
+                }
+                credit += incoming.getLong();
+            }
+            incoming.compact();
+        }
+
+        // Waits until the socket is ready for `ops`, checking for cancellation (or, while ending the
+        // stream, the deadline) every SELECT_MILLIS.
+        private void await(int ops) throws IOException {
+            key.interestOps(ops);
+            while (selector.select(SELECT_MILLIS) == 0) {
+                if (!ending) {
+                    progress.checkCancelled();
+                } else if (System.nanoTime() - closeDeadline > 0) {
+                    throw new IOException("Timed out waiting for the receiver to close");
+                }
+            }
+            selector.selectedKeys().clear();
+        }
+    }
+}
@@ -0,0 +1,591 @@
+package pattern.generator.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import pattern.generator.core.PatternMemory.Words;
+
+// Bit-packed pattern storage: step s lives in bit (s & 63) of word (s >>> 6) of its channel.
+// Bits past the last step are always kept zero so whole words can be compared, counted and copied.
+//
+// Each channel is a row of chunks of CHUNK_WORDS words, allocated on first write. A chunk that was
+// never written reads as zero, or, if the channel has a periodic source, as that source: one
+// period of bits repeated up to the channel length. Periodic channels (clocks, PWM, short PRBS)
+// therefore cost O(period) memory, and writing to one materializes only the chunks it touches.
+//
+// Chunks are shared structurally: snapshot(), resized() and copyChannelFrom() hand the same chunks
+// to both stores and mark them as not owned, and a write to a chunk the store does not own
+// copies that chunk first. An edit to a snapshotted pattern therefore costs one chunk, not the pattern.
+//
+// Chunks live in the store's PatternMemory, on the heap unless the store was created off-heap.
+//
+// Every write bumps a stamp for the chunk and its channel, so derived data (EdgeIndex) can tell
+// which chunks changed since it last looked without being told about edits.
+public class PatternStore {
+    public static final int WORD_BITS = 64;
+    static final int CHUNK_SHIFT = 12;
+    public static final int CHUNK_WORDS = 1 << CHUNK_SHIFT; // 256K steps per chunk
+    private static final int CHUNK_MASK = CHUNK_WORDS - 1;
+
+    private final int channels;
+    private final long steps;
+    private final int wordCount;
+    private final PatternMemory memory;
+    private final Words[][] chunks; // [channel][chunk] -> words, null where the chunk is implicit
+    private final Periodic[] periodic; // [channel] -> source of implicit chunks, null for zeros
+    private final boolean[][] owned; // [channel][chunk] -> chunk array is private to this store
+    private final int[][] stamps; // [channel][chunk] -> bumped on every write access
+    // [channel] -> bumped with any of its chunks. Atomic because generation writes the chunks of one
+    // channel from several threads; those tasks cover whole chunks, so `stamps` entries are not shared.
+    private final AtomicIntegerArray channelStamps;
+
+    // One period of bits, unrolled so any 64-bit window inside the first period is contiguous.
+    // Step s reads bit (phase + s) mod periodBits; steps at or past `end` read as zero. Immutable,
+    // so channels and stores share it freely.
+    static final class Periodic {
+        final long[] unrolled;
+        final int periodBits;
+        final long phase;
+        final long end;
+
+        Periodic(long[] unrolled, int periodBits, long phase, long end) {
+            this.unrolled = unrolled;
+            this.periodBits = periodBits;
+            this.phase = Math.floorMod(phase, (long) periodBits);
+            this.end = end;
+        }
+
+        long word(int wordIndex) {
+            long base = (long) wordIndex << 6;
+            if (base >= end) return 0L;
+            long word = extractWord(unrolled, (phase + base % periodBits) % periodBits);
+            return end - base < WORD_BITS ? word & runMask((int) (end - base)) : word;
+        }
+
+        // word() for `count` consecutive words, stepping the period offset instead of dividing.
+        void words(int fromWord, long[] dest, int destPos, int count) {
+            long base = (long) fromWord << 6;
+            long offset = (phase + base % periodBits) % periodBits;
+            for (int i = 0; i < count; i++, base += WORD_BITS) {
+                if (base >= end) {
+                    dest[destPos + i] = 0L;
+                    continue;
+                }
+                long word = extractWord(unrolled, offset);
+                dest[destPos + i] = end - base < WORD_BITS ? word & runMask((int) (end - base)) : word;
+                offset += WORD_BITS;
+                if (offset >= periodBits) offset = periodBits >= WORD_BITS ? offset - periodBits : offset % periodBits;
+            }
+        }
+
+        boolean bit(long step) {
+            if (step >= end) return false;
+            long offset = (phase + step % periodBits) % periodBits;
+            return (unrolled[(int) (offset >>> 6)] & (1L << offset)) != 0;
+        }
+
+        Periodic truncated(long newEnd) {
+            return newEnd >= end ? this : new Periodic(unrolled, periodBits, phase, newEnd);
+        }
+    }
+
+    public PatternStore(int channels, long steps) {
+        this(channels, steps, PatternMemory.HEAP);
+    }
+
+    public PatternStore(int channels, long steps, PatternMemory memory) {
+        if (channels < 0 || steps < 0) throw new IllegalArgumentException("Channels and steps must not be negative");
+        this.channels = channels;
+        this.steps = steps;
+        this.wordCount = wordCount(steps);
+        this.memory = memory;
+        this.chunks = new Words[channels][(wordCount + CHUNK_WORDS - 1) >>> CHUNK_SHIFT];
+        this.periodic = new Periodic[channels];
+        this.owned = new boolean[channels][chunks.length == 0 ? 0 : chunks[0].length];
+        this.stamps = new int[channels][owned.length == 0 ? 0 : owned[0].length];
+        this.channelStamps = new AtomicIntegerArray(channels);
+    }
+
+    // A copy that shares every chunk with this store; O(chunks), independent of the pattern length.
+    // Later writes to either store copy the chunks they touch.
+    public PatternStore snapshot() {
+        PatternStore copy = new PatternStore(channels, steps, memory);
+        for (int channel = 0; channel < channels; channel++) {
+            copy.chunks[channel] = chunks[channel].clone();
+            Arrays.fill(owned[channel], false);
+        }
+        System.arraycopy(periodic, 0, copy.periodic, 0, channels);
+        return copy;
+    }
+
+    // A copy with every concrete chunk copied into `memory`; periodic sources are still shared.
+    public PatternStore movedTo(PatternMemory memory) {
+        PatternStore copy = new PatternStore(channels, steps, memory);
+        for (int channel = 0; channel < channels; channel++) {
+            copy.periodic[channel] = periodic[channel];
+            for (int c = 0; c < chunks[channel].length; c++) {
+                Words words = chunks[channel][c];
+                if (words == null) continue;
+                Words moved = memory.allocate(words.length());
+                moved.copyFrom(words, words.length());
+                copy.chunks[channel][c] = moved;
+                copy.owned[channel][c] = true;
+            }
+        }
+        return copy;
+    }
+
+    public static int wordCount(long steps) {
+        long count = (steps + WORD_BITS - 1) >>> 6;
+        if (count > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Too many steps: " + steps);
+        return (int) count;
+    }
+
+    // Mask of the valid bits in the given word; all ones except for a partial last word.
+    public static long validMask(long steps, int wordIndex) {
+        long remaining = steps - ((long) wordIndex << 6);
+        return remaining >= WORD_BITS ? -1L : (1L << remaining) - 1;
+    }
+
+    public int getChannels() { return channels; }
+    public long getSteps() { return steps; }
+    public int getWordCount() { return wordCount; }
+    public PatternMemory getMemory() { return memory; }
+    int getChunkCount() { return channels == 0 ? 0 : stamps[0].length; }
+
+    int getStamp(int channel) { return channelStamps.get(channel); }
+    int getStamp(int channel, int chunk) { return stamps[channel][chunk]; }
+
+    // What a chunk's contents come from: its words, else the periodic source, else null for
+    // zeros. Words shared between stores are never written again, so two stores with the same
+    // steps and the same source for a chunk hold the same bits there.
+    Object getChunkSource(int channel, int chunk) {
+        Words words = chunks[channel][chunk];
+        return words != null ? words : periodic[channel];
+    }
+
+    int getChunkLength(int chunk) { return chunkLength(chunk); }
+
+    public boolean get(int channel, long step) {
+        Words chunk = chunks[channel][(int) (step >>> (6 + CHUNK_SHIFT))];
+        if (chunk != null) return (chunk.get((int) (step >>> 6) & CHUNK_MASK) & (1L << step)) != 0;
+        Periodic p = periodic[channel];
+        return p != null && p.bit(step);
+    }
+
+    public void set(int channel, long step, boolean value) {
+        int index = (int) (step >>> 6);
+        Words chunk = writableChunk(channel, index >>> CHUNK_SHIFT, true);
+        long word = chunk.get(index & CHUNK_MASK);
+        chunk.set(index & CHUNK_MASK, value ? word | 1L << step : word & ~(1L << step));
+    }
+
+    public long getWord(int channel, int wordIndex) {
+        Words chunk = chunks[channel][wordIndex >>> CHUNK_SHIFT];
+        if (chunk != null) return chunk.get(wordIndex & CHUNK_MASK);
+        Periodic p = periodic[channel];
+        return p == null ? 0L : p.word(wordIndex);
+    }
+
+    public void setWord(int channel, int wordIndex, long value) {
+        writableChunk(channel, wordIndex >>> CHUNK_SHIFT, true).set(wordIndex & CHUNK_MASK, value & validMask(steps, wordIndex));
+    }
+
+    // Copies `count` words of a channel starting at `fromWord` into `dest`, materializing nothing.
+    public void readWords(int channel, int fromWord, long[] dest, int destPos, int count) {
+        Periodic p = periodic[channel];
+        int end = fromWord + count;
+        for (int w = fromWord; w < end; ) {
+            int chunkEnd = Math.min(end, ((w >>> CHUNK_SHIFT) + 1) << CHUNK_SHIFT);
+            Words chunk = chunks[channel][w >>> CHUNK_SHIFT];
+            if (chunk != null) {
+                chunk.read(w & CHUNK_MASK, dest, destPos, chunkEnd - w);
+                destPos += chunkEnd - w;
+                w = chunkEnd;
+            } else {
+                if (p == null) {
+                    Arrays.fill(dest, destPos, destPos + chunkEnd - w, 0L);
+                } else {
+                    p.words(w, dest, destPos, chunkEnd - w);
+                }
+                destPos += chunkEnd - w;
+                w = chunkEnd;
+            }
+        }
+    }
+
+    // Writes `count` words from `src` into a channel starting at `fromWord`; the tail is masked.
+    public void writeWords(int channel, int fromWord, long[] src, int srcPos, int count) {
+        int end = fromWord + count;
+        for (int w = fromWord; w < end; ) {
+            int c = w >>> CHUNK_SHIFT;
+            int chunkEnd = Math.min(end, (c + 1) << CHUNK_SHIFT);
+            writableChunk(channel, c, !coversChunk(c, w, chunkEnd)).write(w & CHUNK_MASK, src, srcPos, chunkEnd - w);
+            srcPos += chunkEnd - w;
+            w = chunkEnd;
+        }
+        if (end == wordCount) maskTail(channel);
+    }
+
+    // 64 steps of a channel starting at any step; steps past the end read as zero.
+    long extractBits(int channel, long bitOffset) {
+        int index = (int) (bitOffset >>> 6);
+        int shift = (int) (bitOffset & 63);
+        long low = getWord(channel, index) >>> shift;
+        if (shift == 0) return low;
+        long high = index + 1 < wordCount ? getWord(channel, index + 1) << (WORD_BITS - shift) : 0L;
+        return low | high;
+    }
+
+    private int chunkLength(int chunk) {
+        return Math.min(CHUNK_WORDS, wordCount - (chunk << CHUNK_SHIFT));
+    }
+
+    private boolean coversChunk(int chunk, int fromWord, int toWord) {
+        return fromWord <= chunk << CHUNK_SHIFT && toWord >= (chunk << CHUNK_SHIFT) + chunkLength(chunk);
+    }
+
+    // The chunk's concrete words, allocating them on first write. With `keepContents`, an implicit
+    // chunk is first filled from the periodic source; callers that overwrite the whole chunk pass false.
+    private Words writableChunk(int channel, int chunk, boolean keepContents) {
+        touch(channel, chunk);
+        Words words = chunks[channel][chunk];
+        if (words == null) {
+            words = memory.allocate(chunkLength(chunk));
+            Periodic p = periodic[channel];
+            if (keepContents && p != null) periodicWords(p, chunk << CHUNK_SHIFT, words, 0, words.length());
+        } else if (!owned[channel][chunk]) {
+            Words copy = memory.allocate(words.length());
+            if (keepContents) copy.copyFrom(words, words.length());
+            words = copy;
+        } else {
+            return words;
+        }
+        chunks[channel][chunk] = words;
+        owned[channel][chunk] = true;
+        return words;
+    }
+
+    public void clear() {
+        for (int channel = 0; channel < channels; channel++) clearChannel(channel);
+    }
+
+    // Drops the channel's storage; it reads as zero afterwards.
+    public void clearChannel(int channel) {
+        Arrays.fill(chunks[channel], null);
+        periodic[channel] = null;
+        touchAll(channel);
+    }
+
+    // Periodic words [fromWord, fromWord + count) into `words` at `destPos`.
+    private static void periodicWords(Periodic p, int fromWord, Words words, int destPos, int count) {
+        if (words instanceof PatternMemory.HeapWords) {
+            p.words(fromWord, ((PatternMemory.HeapWords) words).words, destPos, count);
+        } else {
+            long[] buffer = new long[count];
+            p.words(fromWord, buffer, 0, count);
+            words.write(destPos, buffer, 0, count);
+        }
+    }
+
+    private void touch(int channel, int chunk) {
+        stamps[channel][chunk]++;
+        channelStamps.incrementAndGet(channel);
+    }
+
+    private void touchAll(int channel) {
+        for (int c = 0; c < stamps[channel].length; c++) stamps[channel][c]++;
+        channelStamps.incrementAndGet(channel);
+    }
+
+    // Sets steps [from, to) of a channel to `value`, whole words at a time.
+    public void fill(int channel, long from, long to, boolean value) {
+        applyRange(channel, from, to, value ? 1 : 0);
+    }
+
+    // Flips steps [from, to) of a channel.
+    public void invert(int channel, long from, long to) {
+        applyRange(channel, from, to, 2);
+    }
+
+    private void applyRange(int channel, long from, long to, int op) {
+        if (from >= to) return;
+        int first = (int) (from >>> 6);
+        int last = (int) ((to - 1) >>> 6);
+        for (int c = first >>> CHUNK_SHIFT; c <= last >>> CHUNK_SHIFT; c++) {
+            int lo = Math.max(first, c << CHUNK_SHIFT);
+            int hi = Math.min(last, ((c + 1) << CHUNK_SHIFT) - 1);
+            // A fill that covers every step of the chunk does not need its previous contents.
+            long chunkFirstStep = (long) c << (CHUNK_SHIFT + 6);
+            long chunkEndStep = Math.min(steps, chunkFirstStep + ((long) chunkLength(c) << 6));
+            boolean whole = op != 2 && from <= chunkFirstStep && to >= chunkEndStep;
+            Words chunk = writableChunk(channel, c, !whole);
+            // Heap chunks are edited in place, others through a copy of the affected words.
+            boolean onHeap = chunk instanceof PatternMemory.HeapWords;
+            long[] words = onHeap ? ((PatternMemory.HeapWords) chunk).words : new long[hi - lo + 1];
+            int offset = onHeap ? c << CHUNK_SHIFT : lo;
+            if (!onHeap) chunk.read(lo & CHUNK_MASK, words, 0, words.length);
+            for (int i = lo; i <= hi; i++) {
+                long mask = -1L;
+                if (i == first) mask &= -1L << from;
+                if (i == last) mask &= -1L >>> (63 - ((to - 1) & 63));
+                int j = i - offset;
+                switch (op) {
+                    case 0: words[j] &= ~mask; break;
+                    case 1: words[j] |= mask; break;
+                    default: words[j] ^= mask; break;
+                }
+            }
+            if (!onHeap) chunk.write(lo & CHUNK_MASK, words, 0, words.length);
+        }
+        if (last == wordCount - 1) maskTail(channel);
+    }
+
+    public void copyChannel(int from, int to) {
+        if (from == to) return;
+        copyChannelFrom(this, from, to);
+    }
+
+    // Copies words [fromWord, toWord) of channel `from` to channel `to`.
+    public void copyChannel(int from, int to, int fromWord, int toWord) {
+        if (from == to) return;
+        for (int w = fromWord; w < toWord; ) {
+            int c = w >>> CHUNK_SHIFT;
+            int chunkEnd = Math.min(toWord, (c + 1) << CHUNK_SHIFT);
+            boolean whole = coversChunk(c, w, chunkEnd);
+            if (whole && (chunks[from][c] != null || periodic[from] == periodic[to])) {
+                // Whole chunk: share it (or the shared periodic source) instead of copying.
+                chunks[to][c] = chunks[from][c];
+                touch(to, c);
+                owned[to][c] = false;
+                owned[from][c] = false;
+            } else {
+                long[] words = new long[chunkEnd - w];
+                readWords(from, w, words, 0, words.length);
+                writableChunk(to, c, !whole).write(w & CHUNK_MASK, words, 0, words.length);
+            }
+            w = chunkEnd;
+        }
+    }
+
+    // Copies a channel of another store with the same step count into channel `to` of this one.
+    // Periodic sources and chunks are shared; either side copies a chunk when it next writes to it.
+    // Chunks of a store on another memory are copied into this store's memory instead, so a store
+    // never holds, or keeps alive, chunks of a memory it was not given.
+    public void copyChannelFrom(PatternStore source, int from, int to) {
+        if (source.steps != steps) throw new IllegalArgumentException("Step counts differ: " + source.steps + " vs " + steps);
+        periodic[to] = source.periodic[from];
+        if (source.memory == memory) {
+            System.arraycopy(source.chunks[from], 0, chunks[to], 0, chunks[to].length);
+            Arrays.fill(source.owned[from], false);
+            Arrays.fill(owned[to], false);
+        } else {
+            for (int c = 0; c < chunks[to].length; c++) {
+                Words words = source.chunks[from][c];
+                Words copy = null;
+                if (words != null) {
+                    copy = memory.allocate(words.length());
+                    copy.copyFrom(words, words.length());
+                }
+                chunks[to][c] = copy;
+                owned[to][c] = copy != null;
+            }
+        }
+        touchAll(to);
+    }
+
+    public PatternStore resized(int newChannels, long newSteps) {
+        PatternStore result = new PatternStore(newChannels, newSteps, memory);
+        int minChannels = Math.min(channels, newChannels);
+        int minWords = Math.min(wordCount, result.wordCount);
+        int minChunks = (minWords + CHUNK_WORDS - 1) >>> CHUNK_SHIFT;
+        for (int i = 0; i < minChannels; i++) {
+            if (periodic[i] != null) result.periodic[i] = periodic[i].truncated(Math.min(steps, newSteps));
+            for (int c = 0; c < minChunks; c++) {
+                Words src = chunks[i][c];
+                if (src == null) continue;
+                if (src.length() == result.chunkLength(c) && (c + 1) << CHUNK_SHIFT <= minWords) {
+                    // Unchanged chunk: share it.
+                    result.chunks[i][c] = src;
+                    owned[i][c] = false;
+                    continue;
+                }
+                Words dst = memory.allocate(result.chunkLength(c));
+                dst.copyFrom(src, Math.min(Math.min(src.length(), dst.length()), minWords - (c << CHUNK_SHIFT)));
+                result.chunks[i][c] = dst;
+                result.owned[i][c] = true;
+            }
+            if (minWords > 0 && newSteps < steps) result.maskWord(i, minWords - 1);
+        }
+        return result;
+    }
+
+    // Fills a channel with a repeating pulse: `high` ones followed by `period - high` zeros,
+    // starting `phase` steps into the cycle. Each word is assembled from whole runs.
+    public void fillPulse(int channel, long period, long high, long phase) {
+        fillPulse(channel, period, high, phase, 0, getWordCount());
+    }
+
+    // Range form of fillPulse for words [fromWord, toWord); the cycle position is derived from the
+    // word index, so any split of the range produces the same bits.
+    public void fillPulse(int channel, long period, long high, long phase, int fromWord, int toWord) {
+        if (period <= 0) throw new IllegalArgumentException("Period must be positive");
+        long cycleStep = Math.floorMod(phase + ((long) fromWord << 6) % period, period);
+        Words chunk = null;
+        for (int i = fromWord; i < toWord; i++) {
+            if (chunk == null || (i & CHUNK_MASK) == 0) {
+                int c = i >>> CHUNK_SHIFT;
+                chunk = writableChunk(channel, c, !coversChunk(c, i, toWord));
+            }
+            long word = 0;
+            int filled = 0;
+            while (filled < WORD_BITS) {
+                long run;
+                if (cycleStep < high) {
+                    run = Math.min(high - cycleStep, WORD_BITS - filled);
+                    word |= runMask((int) run) << filled;
+                } else {
+                    run = Math.min(period - cycleStep, WORD_BITS - filled);
+                }
+                filled += (int) run;
+                cycleStep += run;
+                if (cycleStep == period) cycleStep = 0;
+            }
+            chunk.set(i & CHUNK_MASK, word);
+        }
+        if (toWord == wordCount) maskTail(channel);
+    }
+
+    // One period of a pulse as packed bits, for setPeriodic.
+    public static long[] pulsePeriod(int period, int high) {
+        long[] bits = new long[wordCount(period)];
+        for (int w = 0; w < bits.length && ((long) w << 6) < high; w++) {
+            bits[w] = runMask((int) Math.min(WORD_BITS, high - ((long) w << 6)));
+        }
+        return bits;
+    }
+
+    // Makes the channel the first `periodBits` bits of `period` repeated, starting `phase` bits in.
+    // Only the period is stored; chunks are materialized when written.
+    public void fillPeriodic(int channel, long[] period, int periodBits, long phase) {
+        setUnrolled(channel, unrollPeriod(period, periodBits), periodBits, phase);
+    }
+
+    // fillPeriodic with a period already prepared by unrollPeriod, which may be shared between channels.
+    public void setUnrolled(int channel, long[] unrolled, int periodBits, long phase) {
+        Arrays.fill(chunks[channel], null);
+        periodic[channel] = new Periodic(unrolled, periodBits, phase, steps);
+        touchAll(channel);
+    }
+
+    // Period length of a channel that is fully described by its periodic source, or 0.
+    public long getPeriod(int channel) {
+        Periodic p = periodic[channel];
+        if (p == null || p.end < steps) return 0;
+        for (Words chunk : chunks[channel]) {
+            if (chunk != null) return 0;
+        }
+        return p.periodBits;
+    }
+
+    // Bytes held for pattern data, on or off the heap: concrete chunks plus periodic sources (shared
+    // ones counted once).
+    public long getStorageBytes() {
+        return getStorageBytesNotIn(null);
+    }
+
+    // Bytes of pattern data this store holds that `other` does not share at the same channel and
+    // chunk, i.e. roughly what keeping this store costs on top of `other`. Null counts everything.
+    public long getStorageBytesNotIn(PatternStore other) {
+        long bytes = 0;
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int channel = 0; channel < channels; channel++) {
+            boolean comparable = other != null && channel < other.channels;
+            for (int c = 0; c < chunks[channel].length; c++) {
+                Words chunk = chunks[channel][c];
+                if (chunk == null || !seen.add(chunk)) continue;
+                if (comparable && c < other.chunks[channel].length && other.chunks[channel][c] == chunk) continue;
+                bytes += (long) chunk.length() * Long.BYTES;
+            }
+            Periodic p = periodic[channel];
+            if (p == null || !seen.add(p.unrolled)) continue;
+            if (comparable && other.periodic[channel] != null && other.periodic[channel].unrolled == p.unrolled) continue;
+            bytes += (long) p.unrolled.length * Long.BYTES;
+        }
+        return bytes;
+    }
+
+    // Repeats the period so that any 64-bit window starting inside the first period is contiguous.
+    public static long[] unrollPeriod(long[] period, int periodBits) {
+        if (periodBits <= 0) throw new IllegalArgumentException("Period must be positive");
+        int unrolledBits = periodBits + WORD_BITS;
+        long[] unrolled = new long[(unrolledBits + WORD_BITS - 1) / WORD_BITS + 1];
+        // A period of a word or more is copied whole; only the bits after it are placed one at a time.
+        int first = 0;
+        if (periodBits >= WORD_BITS) {
+            int words = wordCount(periodBits);
+            System.arraycopy(period, 0, unrolled, 0, words);
+            unrolled[words - 1] &= runMask(periodBits - ((words - 1) << 6));
+            first = periodBits;
+        }
+        for (int bit = first; bit < unrolledBits; bit++) {
+            int src = bit % periodBits;
+            if ((period[src >>> 6] & (1L << src)) != 0) unrolled[bit >>> 6] |= 1L << bit;
+        }
+        return unrolled;
+    }
+
+    // Range fill from a period prepared by unrollPeriod, for words [fromWord, toWord).
+    public void fillUnrolled(int channel, long[] unrolled, int periodBits, long phase, int fromWord, int toWord) {
+        Periodic p = new Periodic(unrolled, periodBits, phase, Long.MAX_VALUE);
+        for (int w = fromWord; w < toWord; ) {
+            int c = w >>> CHUNK_SHIFT;
+            int chunkEnd = Math.min(toWord, (c + 1) << CHUNK_SHIFT);
+            periodicWords(p, w, writableChunk(channel, c, !coversChunk(c, w, chunkEnd)), w & CHUNK_MASK, chunkEnd - w);
+            w = chunkEnd;
+        }
+        if (toWord == wordCount) maskTail(channel);
+    }
+
+    // Reads 64 bits starting at an arbitrary bit offset.
+    static long extractWord(long[] source, long bitOffset) {
+        int index = (int) (bitOffset >>> 6);
+        int shift = (int) (bitOffset & 63);
+        long low = source[index] >>> shift;
+        if (shift == 0) return low;
+        long high = index + 1 < source.length ? source[index + 1] << (WORD_BITS - shift) : 0L;
+        return low | high;
+    }
+
+    static long runMask(int length) {
+        return length >= WORD_BITS ? -1L : (1L << length) - 1;
+    }
+
+    void maskTail(int channel) {
+        if (wordCount > 0) maskWord(channel, wordCount - 1);
+    }
+
+    // Clears the bits of a concrete word past the last step, copying its chunk only if that changes it.
+    private void maskWord(int channel, int wordIndex) {
+        Words chunk = chunks[channel][wordIndex >>> CHUNK_SHIFT];
+        int j = wordIndex & CHUNK_MASK;
+        long mask = validMask(steps, wordIndex);
+        if (chunk == null || (chunk.get(j) & ~mask) == 0) return;
+        chunk = writableChunk(channel, wordIndex >>> CHUNK_SHIFT, true);
+        chunk.set(j, chunk.get(j) & mask);
+    }
+
+    public int[][] toIntArray() {
+        if (steps > Integer.MAX_VALUE - 8) throw new IllegalStateException("Pattern too large for an int[][] view");
+        int[][] result = new int[channels][(int) steps];
+        for (int i = 0; i < channels; i++) {
+            int[] row = result[i];
+            for (int step = 0; step < row.length; step++) {
+                row[step] = get(i, step) ? 1 : 0;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,94 @@
+package pattern.generator.core;
+
+import java.util.concurrent.locks.LockSupport;
+
+// Streams a pattern into a WordRing the way the generator hardware plays it: every channel at
+// once, looping back to step 0 after the last step. The ring carries frames of one word per
+// channel, channel 0 first, each word 64 consecutive steps; the stream is continuous across the
+// loop even when the step count is not a multiple of 64.
+//
+// Run it on its own thread. It writes a block of frames at a time and parks briefly while the
+// ring is full, so it runs as far ahead of the consumer as the ring allows. The loop allocates
+// nothing; all buffers are made up front. The source must not be written to while it streams, so
+// give it a snapshot, and swap in a new snapshot with setSource() after edits.
+public final class PatternStreamer implements Runnable {
+    private static final long PARK_NANOS = 200_000;
+
+    private final WordRing ring;
+    private final int channels;
+    private final int blockFrames;
+    private final long[] block; // frames staged for one offer
+    private final long[] words; // one channel's aligned words
+    private volatile PatternStore source;
+    private volatile boolean stopped;
+    private volatile long framesProduced;
+    private long position; // next step to stream, within the source
+
+    public PatternStreamer(PatternStore source, WordRing ring, int blockFrames) {
+        if ((long) blockFrames * source.getChannels() > ring.capacity()) {
+            throw new IllegalArgumentException("Ring too small for " + blockFrames + " frames of " + source.getChannels() + " channels");
+        }
+        this.ring = ring;
+        this.channels = source.getChannels();
+        this.blockFrames = blockFrames;
+        this.block = new long[blockFrames * channels];
+        this.words = new long[blockFrames];
+        this.source = source;
+    }
+
+    public int getChannels() { return channels; }
+    public long getFramesProduced() { return framesProduced; }
+
+    // Streams `source` from the next block on, continuing at the same step if it still exists.
+    public void setSource(PatternStore source) {
+        if (source.getChannels() != channels) throw new IllegalArgumentException("Source has " + source.getChannels() + " channels, not " + channels);
+        this.source = source;
+    }
+
+    // Ends run() after the block in progress; unpark the thread to end it sooner.
+    public void stop() {
+        stopped = true;
+    }
+
+    @Override
+    public void run() {
+        while (!stopped) {
+            PatternStore store = source;
+            long steps = store.getSteps();
+            if (position >= steps) position = 0;
+            if ((position & 63) == 0 && position + (long) blockFrames * PatternStore.WORD_BITS <= steps) {
+                // Whole words in place: read them per channel and interleave.
+                for (int channel = 0; channel < channels; channel++) {
+                    store.readWords(channel, (int) (position >>> 6), words, 0, blockFrames);
+                    for (int f = 0; f < blockFrames; f++) block[f * channels + channel] = words[f];
+                }
+                position += (long) blockFrames * PatternStore.WORD_BITS;
+            } else {
+                for (int f = 0; f < blockFrames; f++) {
+                    for (int channel = 0; channel < channels; channel++) block[f * channels + channel] = frameBits(store, channel, position);
+                    position = (position + PatternStore.WORD_BITS) % steps;
+                }
+            }
+            while (!ring.offer(block, 0, block.length)) {
+                if (stopped) return;
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+            framesProduced += blockFrames;
+        }
+    }
+
+    // 64 steps from `from`, wrapping to step 0 at the end of the pattern as often as needed.
+    private static long frameBits(PatternStore store, int channel, long from) {
+        long steps = store.getSteps();
+        long word = 0;
+        int filled = 0;
+        while (filled < PatternStore.WORD_BITS) {
+            int n = (int) Math.min(PatternStore.WORD_BITS - filled, steps - from);
+            word |= (store.extractBits(channel, from) & PatternStore.runMask(n)) << filled;
+            filled += n;
+            from += n;
+            if (from == steps) from = 0;
+        }
+        return word;
+    }
+}
@@ -0,0 +1,54 @@
+package pattern.generator.core;
+
+import java.util.SplittableRandom;
+
+// Random bits with a given probability of 1, reproducible from a seed. Each chunk of each channel
+// draws from its own SplittableRandom seeded from (seed, channel, chunk), so a word's value depends
+// only on those and its place in the chunk: any split of the work over threads gives the same bits.
+//
+// A word takes 64 samples per nextLong(). Other densities combine several draws bitwise, one per
+// bit of the density as a binary fraction: starting from the lowest set bit, OR-ing in a fresh
+// draw for a 1 and AND-ing one for a 0 sets each bit with exactly that probability. The density is
+// rounded to 1/65536, so at most 16 draws per word; 50% takes one.
+final class RandomBits {
+    static final int DENSITY_BITS = 16;
+
+    private final long seed;
+    private final int density; // probability of 1 in units of 2^-DENSITY_BITS
+
+    RandomBits(long seed, double probability) {
+        if (!(probability >= 0 && probability <= 1)) throw new IllegalArgumentException("Density must be 0-100%");
+        this.seed = seed;
+        this.density = (int) Math.round(probability * (1 << DENSITY_BITS));
+    }
+
+    void fill(PatternStore store, int channel, int fromWord, int toWord) {
+        long[] words = new long[Math.min(PatternStore.CHUNK_WORDS, toWord - fromWord)];
+        for (int w = fromWord; w < toWord; ) {
+            int chunk = w >>> PatternStore.CHUNK_SHIFT;
+            int end = Math.min(toWord, (chunk + 1) << PatternStore.CHUNK_SHIFT);
+            SplittableRandom random = stream(channel, chunk);
+            // A range that starts inside a chunk skips the words before it to stay on the same stream.
+            for (int skip = chunk << PatternStore.CHUNK_SHIFT; skip < w; skip++) next(random);
+            for (int i = 0; i < end - w; i++) words[i] = next(random);
+            store.writeWords(channel, w, words, 0, end - w);
+            w = end;
+        }
+    }
+
+    private SplittableRandom stream(int channel, int chunk) {
+        long key = new SplittableRandom(seed).nextLong() ^ ((long) channel << 32 | chunk);
+        return new SplittableRandom(new SplittableRandom(key).nextLong());
+    }
+
+    private long next(SplittableRandom random) {
+        if (density == 0) return 0L;
+        if (density == 1 << DENSITY_BITS) return -1L;
+        int bit = Integer.numberOfTrailingZeros(density);
+        long word = random.nextLong();
+        for (bit++; bit < DENSITY_BITS; bit++) {
+            word = (density >>> bit & 1) != 0 ? word | random.nextLong() : word & random.nextLong();
+        }
+        return word;
+    }
+}
@@ -0,0 +1,61 @@
+package pattern.generator.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+// Headerless binary: one little-endian sample per step, as wide as the model's bit width (8, 16 or
+// 32 bits); bit c of a sample is channel c, unused high bits are zero.
+final class RawExporter implements PatternExporter {
+    @Override
+    public String getName() { return "Raw binary"; }
+
+    @Override
+    public String getExtension() { return "bin"; }
+
+    @Override
+    public void write(PatternModel model, WritableByteChannel out, TaskProgress progress) throws IOException {
+        writeSamples(model.getStore(), bytesPerStep(model), out, progress);
+    }
+
+    // The samples of `store` at `bytesPerStep` bytes each, for callers without a model.
+    static void writeSamples(PatternStore store, int bytesPerStep, WritableByteChannel out, TaskProgress progress) throws IOException {
+        new Writer(store, bytesPerStep, out).run(progress);
+    }
+
+    // Bytes per sample: the bit width rounded up to whole bytes, wider if channels exceed it.
+    static int bytesPerStep(PatternModel model) {
+        return (Math.max(model.getMaxChannels(), model.getChannels()) + 7) / 8;
+    }
+
+    private static final class Writer extends BlockWriter {
+        private final int bytesPerStep;
+        private final long[][] masks;
+        private final ByteBuffer samples;
+
+        Writer(PatternStore store, int bytesPerStep, WritableByteChannel channel) {
+            super(store, channel);
+            this.bytesPerStep = bytesPerStep;
+            masks = newMasks(bytesPerStep * 8);
+            samples = ByteBuffer.allocate(PatternStore.WORD_BITS * bytesPerStep).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        @Override
+        void word(int index, long firstStep, int steps) throws IOException {
+            stepMasks(index, masks);
+            samples.clear();
+            long[] low = masks[0];
+            for (int s = 0; s < steps; s++) {
+                switch (bytesPerStep) {
+                    case 1: samples.put((byte) low[s]); break;
+                    case 2: samples.putShort((short) low[s]); break;
+                    case 4: samples.putInt((int) low[s]); break;
+                    default:
+                        for (int b = 0; b < bytesPerStep; b++) samples.put((byte) (masks[b >>> 3][s] >>> ((b & 7) << 3)));
+                }
+            }
+            out.put(samples.array(), 0, samples.position());
+        }
+    }
+}
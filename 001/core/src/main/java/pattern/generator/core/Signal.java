@@ -0,0 +1,355 @@
+package pattern.generator.core;
+
+import java.util.Arrays;
+
+// One channel of bits as a lazy expression for composing stimuli: channels of a pattern, constants
+// and pulses combined with and/or/xor/not, shifted, rotated, sliced, concatenated and repeated.
+// Building an expression does no work. Evaluating it (writeTo, readWords, materialize) pulls a block
+// of words at a time through the whole tree, so a chain of operations makes one pass over the data
+// with block-sized intermediates, and every operation works on 64 steps per long.
+//
+// Signals are immutable, but evaluation keeps per-node buffers: evaluate a signal on one thread at a
+// time. materialize() evaluates once into packed storage, which is worth it for a signal that is
+// read many times or by more than one thread.
+public abstract class Signal {
+    private static final int BLOCK_WORDS = BlockWriter.BLOCK_WORDS;
+
+    final long steps;
+    final int wordCount;
+    private long[] unaligned; // readAt's buffer
+
+    Signal(long steps) {
+        if (steps < 0) throw new IllegalArgumentException("Steps must not be negative");
+        this.steps = steps;
+        this.wordCount = PatternStore.wordCount(steps);
+    }
+
+    public long getSteps() { return steps; }
+
+    // A channel of a store as it is now; later writes to the store do not affect the signal.
+    public static Signal of(PatternStore store, int channel) {
+        PatternStore copy = new PatternStore(1, store.getSteps());
+        copy.copyChannelFrom(store, channel, 0);
+        return new Stored(copy);
+    }
+
+    public static Signal constant(long steps, boolean value) {
+        return value ? pulse(steps, 1, 1, 0) : new Stored(new PatternStore(1, steps));
+    }
+
+    // `high` ones followed by `period - high` zeros, repeated, starting `phase` steps into the cycle.
+    public static Signal pulse(long steps, int period, int high, long phase) {
+        if (period <= 0 || high < 0 || high > period) throw new IllegalArgumentException("Invalid pulse " + high + "/" + period);
+        return new Repeat(steps, PatternStore.unrollPeriod(PatternStore.pulsePeriod(period, high), period), period, phase);
+    }
+
+    public Signal and(Signal other) {
+        return new Bitwise(this, other, Bitwise.AND);
+    }
+
+    public Signal or(Signal other) {
+        return new Bitwise(this, other, Bitwise.OR);
+    }
+
+    public Signal xor(Signal other) {
+        return new Bitwise(this, other, Bitwise.XOR);
+    }
+
+    public Signal not() {
+        return new Not(this);
+    }
+
+    // Delays by `n` steps (advances for negative n) at the same length; vacated steps read as zero.
+    public Signal shift(long n) {
+        return n == 0 ? this : new Shift(this, n);
+    }
+
+    // Circular shift by `n` steps: step s of the result is step (s - n) mod length of this one.
+    public Signal rotate(long n) {
+        if (steps == 0) return this;
+        long k = Math.floorMod(n, steps);
+        return k == 0 ? this : slice(steps - k, steps).concat(slice(0, steps - k));
+    }
+
+    // Steps [from, to).
+    public Signal slice(long from, long to) {
+        if (from < 0 || to > steps || from > to) throw new IllegalArgumentException("Invalid slice " + from + ".." + to + " of " + steps);
+        return from == 0 && to == steps ? this : new Slice(this, from, to - from);
+    }
+
+    // This signal followed by `next`.
+    public Signal concat(Signal next) {
+        return new Concat(this, next);
+    }
+
+    // This signal `times` times over. Stored as one period like a generated clock, so writing a
+    // repeat to a channel keeps it O(period) in memory.
+    public Signal repeat(int times) {
+        if (times < 1) throw new IllegalArgumentException("Repeat count must be positive");
+        if (steps == 0 || steps > Integer.MAX_VALUE - PatternStore.WORD_BITS) {
+            throw new IllegalArgumentException("Cannot repeat a signal of " + steps + " steps");
+        }
+        return times == 1 ? this : new Repeat(this, Math.multiplyExact(steps, (long) times));
+    }
+
+    // Evaluates into packed storage, cutting the expression off from its inputs.
+    public Signal materialize(TaskProgress progress) {
+        PatternStore store = new PatternStore(1, steps);
+        writeTo(store, 0, progress);
+        return new Stored(store);
+    }
+
+    // Evaluates into a channel of a store with the same step count, replacing its contents.
+    public void writeTo(PatternStore store, int channel, TaskProgress progress) {
+        if (store.getSteps() != steps) throw new IllegalArgumentException("Step counts differ: " + steps + " vs " + store.getSteps());
+        long[] block = new long[Math.min(BLOCK_WORDS, wordCount)];
+        for (int from = 0; from < wordCount; from += BLOCK_WORDS) {
+            progress.checkCancelled();
+            int count = Math.min(BLOCK_WORDS, wordCount - from);
+            read(from, block, 0, count);
+            store.writeWords(channel, from, block, 0, count);
+            progress.update(from + count, wordCount);
+        }
+    }
+
+    // Same contract as PatternStore.readWords; words past the end read as zero.
+    public void readWords(int fromWord, long[] dest, int destPos, int count) {
+        for (int done = 0; done < count; done += BLOCK_WORDS) {
+            read((long) fromWord + done, dest, destPos + done, Math.min(BLOCK_WORDS, count - done));
+        }
+    }
+
+    // Words [fromWord, fromWord + count) of the signal, for fromWord + count within wordCount.
+    // The last word of the signal need not be masked; read() does that.
+    abstract void compute(int fromWord, long[] dest, int destPos, int count);
+
+    // `count` words starting at word `firstWord`, which may be negative or past the end: steps
+    // outside the signal read as zero.
+    final void read(long firstWord, long[] dest, int destPos, int count) {
+        long from = Math.max(firstWord, 0);
+        long to = Math.min(firstWord + count, wordCount);
+        if (from >= to) {
+            Arrays.fill(dest, destPos, destPos + count, 0L);
+            return;
+        }
+        int lead = (int) (from - firstWord);
+        int n = (int) (to - from);
+        Arrays.fill(dest, destPos, destPos + lead, 0L);
+        compute((int) from, dest, destPos + lead, n);
+        if (to == wordCount) dest[destPos + lead + n - 1] &= PatternStore.validMask(steps, wordCount - 1);
+        Arrays.fill(dest, destPos + lead + n, destPos + count, 0L);
+    }
+
+    // `count` words' worth of steps starting at any step, negative or unaligned.
+    final void readAt(long fromStep, long[] dest, int destPos, int count) {
+        long firstWord = fromStep >> 6;
+        int shift = (int) (fromStep & 63);
+        if (shift == 0) {
+            read(firstWord, dest, destPos, count);
+            return;
+        }
+        if (unaligned == null || unaligned.length < count + 1) unaligned = new long[count + 1];
+        long[] words = unaligned;
+        read(firstWord, words, 0, count + 1);
+        for (int i = 0; i < count; i++) {
+            dest[destPos + i] = (words[i] >>> shift) | (words[i + 1] << (PatternStore.WORD_BITS - shift));
+        }
+    }
+
+    static long[] buffer(long[] buffer, int count) {
+        return buffer != null && buffer.length >= count ? buffer : new long[count];
+    }
+
+    // Packed data: a channel of a pattern or an evaluated signal. Written out by sharing chunks.
+    private static final class Stored extends Signal {
+        final PatternStore store;
+
+        Stored(PatternStore store) {
+            super(store.getSteps());
+            this.store = store;
+        }
+
+        @Override
+        void compute(int fromWord, long[] dest, int destPos, int count) {
+            store.readWords(0, fromWord, dest, destPos, count);
+        }
+
+        @Override
+        public Signal materialize(TaskProgress progress) {
+            return this;
+        }
+
+        @Override
+        public void writeTo(PatternStore target, int channel, TaskProgress progress) {
+            if (target.getSteps() != steps) throw new IllegalArgumentException("Step counts differ: " + steps + " vs " + target.getSteps());
+            target.copyChannelFrom(store, 0, channel);
+        }
+    }
+
+    // One period repeated, read through the same unrolled form as periodic pattern channels. A
+    // repeat of an expression evaluates it into the period on first use.
+    private static final class Repeat extends Signal {
+        private Signal source;
+        private long[] unrolled;
+        private final int periodBits;
+        private final long phase;
+        private PatternStore.Periodic periodic;
+
+        Repeat(Signal source, long steps) {
+            super(steps);
+            this.source = source;
+            this.periodBits = (int) source.steps;
+            this.phase = 0;
+        }
+
+        Repeat(long steps, long[] unrolled, int periodBits, long phase) {
+            super(steps);
+            this.unrolled = unrolled;
+            this.periodBits = periodBits;
+            this.phase = phase;
+        }
+
+        private PatternStore.Periodic periodic() {
+            if (periodic == null) {
+                if (unrolled == null) {
+                    long[] period = new long[source.wordCount];
+                    source.readWords(0, period, 0, period.length);
+                    unrolled = PatternStore.unrollPeriod(period, periodBits);
+                    source = null;
+                }
+                periodic = new PatternStore.Periodic(unrolled, periodBits, phase, steps);
+            }
+            return periodic;
+        }
+
+        @Override
+        void compute(int fromWord, long[] dest, int destPos, int count) {
+            periodic().words(fromWord, dest, destPos, count);
+        }
+
+        @Override
+        public Signal materialize(TaskProgress progress) {
+            periodic();
+            return this;
+        }
+
+        @Override
+        public void writeTo(PatternStore target, int channel, TaskProgress progress) {
+            if (target.getSteps() != steps) throw new IllegalArgumentException("Step counts differ: " + steps + " vs " + target.getSteps());
+            periodic();
+            target.setUnrolled(channel, unrolled, periodBits, phase);
+        }
+    }
+
+    private static final class Bitwise extends Signal {
+        static final int AND = 0;
+        static final int OR = 1;
+        static final int XOR = 2;
+
+        private final Signal left;
+        private final Signal right;
+        private final int op;
+        private long[] operand;
+
+        Bitwise(Signal left, Signal right, int op) {
+            super(left.steps);
+            if (left.steps != right.steps) throw new IllegalArgumentException("Lengths differ: " + left.steps + " vs " + right.steps);
+            this.left = left;
+            this.right = right;
+            this.op = op;
+        }
+
+        @Override
+        void compute(int fromWord, long[] dest, int destPos, int count) {
+            left.read(fromWord, dest, destPos, count);
+            long[] b = operand = buffer(operand, count);
+            right.read(fromWord, b, 0, count);
+            switch (op) {
+                case AND:
+                    for (int i = 0; i < count; i++) dest[destPos + i] &= b[i];
+                    break;
+                case OR:
+                    for (int i = 0; i < count; i++) dest[destPos + i] |= b[i];
+                    break;
+                default:
+                    for (int i = 0; i < count; i++) dest[destPos + i] ^= b[i];
+                    break;
+            }
+        }
+    }
+
+    private static final class Not extends Signal {
+        private final Signal source;
+
+        Not(Signal source) {
+            super(source.steps);
+            this.source = source;
+        }
+
+        @Override
+        void compute(int fromWord, long[] dest, int destPos, int count) {
+            source.read(fromWord, dest, destPos, count);
+            for (int i = 0; i < count; i++) dest[destPos + i] = ~dest[destPos + i];
+        }
+
+        @Override
+        public Signal not() {
+            return source;
+        }
+    }
+
+    private static final class Shift extends Signal {
+        private final Signal source;
+        private final long n;
+
+        Shift(Signal source, long n) {
+            super(source.steps);
+            this.source = source;
+            this.n = n;
+        }
+
+        @Override
+        void compute(int fromWord, long[] dest, int destPos, int count) {
+            source.readAt(((long) fromWord << 6) - n, dest, destPos, count);
+        }
+    }
+
+    private static final class Slice extends Signal {
+        private final Signal source;
+        private final long offset;
+
+        Slice(Signal source, long offset, long steps) {
+            super(steps);
+            this.source = source;
+            this.offset = offset;
+        }
+
+        @Override
+        void compute(int fromWord, long[] dest, int destPos, int count) {
+            source.readAt(((long) fromWord << 6) + offset, dest, destPos, count);
+        }
+    }
+
+    private static final class Concat extends Signal {
+        private final Signal first;
+        private final Signal second;
+        private long[] operand;
+
+        Concat(Signal first, Signal second) {
+            super(first.steps + second.steps);
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        void compute(int fromWord, long[] dest, int destPos, int count) {
+            long fromStep = (long) fromWord << 6;
+            long toStep = fromStep + ((long) count << 6);
+            first.read(fromWord, dest, destPos, count);
+            if (toStep <= first.steps) return;
+            long[] b = operand = buffer(operand, count);
+            second.readAt(fromStep - first.steps, b, 0, count);
+            for (int i = 0; i < count; i++) dest[destPos + i] |= b[i];
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package pattern.generator.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Wire format between PatternSender and a receiver (the generator hardware, an emulator or
+// LoopbackReceiver). Everything is little-endian and comes in frames of an 8-byte header, int type
+// and int payload length, followed by the payload.
+//
+// Sender to receiver:
+//   HELLO  int magic "PGS1", int version, int bytesPerStep, int channels, long stepsPerLoop,
+//          long loops (0: until stopped), double sampleRate (Hz); once, first.
+//   DATA   samples as in the raw binary export, one per step, whole steps only; the stream is
+//          the pattern repeated back to back, so a frame may span the end of one loop.
+//   END    no payload; the sender then shuts down its output and waits for the receiver to close.
+// Receiver to sender:
+//   CREDIT long bytes; the sender may send that many more DATA payload bytes. The receiver grants
+//          its first window after HELLO and more as it consumes data.
+final class StreamProtocol {
+    static final int MAGIC = 0x31534750; // "PGS1" as little-endian bytes
+    static final int VERSION = 1;
+
+    static final int HELLO = 1;
+    static final int DATA = 2;
+    static final int END = 3;
+    static final int CREDIT = 16;
+
+    static final int HEADER_BYTES = 8;
+    static final int HELLO_BYTES = 40;
+    static final int CREDIT_BYTES = 8;
+    static final int MAX_FRAME_BYTES = 1 << 24; // larger lengths are taken as a corrupt stream
+
+    private StreamProtocol() {}
+
+    static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    static void putHeader(ByteBuffer buffer, int type, int length) {
+        buffer.putInt(type).putInt(length);
+    }
+}
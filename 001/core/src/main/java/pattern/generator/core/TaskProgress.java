@@ -0,0 +1,23 @@
+package pattern.generator.core;
+
+import java.util.concurrent.CancellationException;
+
+// Progress sink and cancellation flag for long-running work (generation, load, save). Work calls
+// update() as it goes and polls cancelled() between units, stopping with a CancellationException.
+public interface TaskProgress {
+    TaskProgress NONE = new TaskProgress() {
+        @Override
+        public void update(long done, long total) {}
+
+        @Override
+        public boolean cancelled() { return false; }
+    };
+
+    void update(long done, long total);
+
+    boolean cancelled();
+
+    default void checkCancelled() {
+        if (cancelled()) throw new CancellationException();
+    }
+}
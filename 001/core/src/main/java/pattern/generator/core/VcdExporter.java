@@ -0,0 +1,115 @@
+package pattern.generator.core;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+// Value Change Dump (IEEE 1364): one 1-bit wire per channel in module "pattern", timescale 1 ps.
+// Only transitions are written, found a word at a time by comparing every step with the one
+// before, so the output grows with the number of edges rather than the number of steps.
+final class VcdExporter implements PatternExporter {
+    @Override
+    public String getName() { return "VCD"; }
+
+    @Override
+    public String getExtension() { return "vcd"; }
+
+    @Override
+    public void write(PatternModel model, WritableByteChannel out, TaskProgress progress) throws IOException {
+        new Writer(model, out).run(progress);
+    }
+
+    // Identifier codes use the printable characters '!'..'~'.
+    static String identifier(int channel) {
+        StringBuilder id = new StringBuilder();
+        do {
+            id.append((char) ('!' + channel % 94));
+            channel = channel / 94 - 1;
+        } while (channel >= 0);
+        return id.toString();
+    }
+
+    private static final class Writer extends BlockWriter {
+        private final PatternModel model;
+        private final byte[][] ids;
+        private final long[] last; // value of each channel at the previous step
+        private final long[] changes;
+        private final long[][] changedChannels; // per step, see stepMasks
+        private final double psPerStep;
+        private final long exactPsPerStep; // 0 unless a step is a whole number of picoseconds
+
+        Writer(PatternModel model, WritableByteChannel channel) {
+            super(model.getStore(), channel);
+            this.model = model;
+            ids = new byte[channels][];
+            for (int i = 0; i < channels; i++) ids[i] = identifier(i).getBytes(StandardCharsets.US_ASCII);
+            last = new long[channels];
+            changes = new long[channels];
+            changedChannels = newMasks(channels);
+            psPerStep = 1_000_000.0 / model.getSampleRate();
+            exactPsPerStep = psPerStep == Math.rint(psPerStep) ? (long) psPerStep : 0;
+        }
+
+        private long time(long step) {
+            return exactPsPerStep > 0 ? step * exactPsPerStep : Math.round(step * psPerStep);
+        }
+
+        @Override
+        void begin() throws IOException {
+            out.putAscii("$version Pattern Generator $end\n");
+            out.putAscii("$comment " + channels + " channels, " + store.getSteps() + " steps at " + model.getSampleRate()
+                    + " MHz, " + model.getIoStandard() + " $end\n");
+            out.putAscii("$timescale 1ps $end\n");
+            out.putAscii("$scope module pattern $end\n");
+            for (int i = 0; i < channels; i++) out.putAscii("$var wire 1 " + identifier(i) + " ch" + i + " $end\n");
+            out.putAscii("$upscope $end\n$enddefinitions $end\n#0\n$dumpvars\n");
+            for (int i = 0; i < channels; i++) {
+                last[i] = store.getSteps() > 0 && store.get(i, 0) ? 1 : 0;
+                putValue(i, last[i]);
+            }
+            out.putAscii("$end\n");
+        }
+
+        @Override
+        void word(int index, long firstStep, int steps) throws IOException {
+            long any = 0;
+            long valid = PatternStore.runMask(steps);
+            for (int i = 0; i < channels; i++) {
+                long w = words[i][index];
+                changes[i] = (w ^ ((w << 1) | last[i])) & valid;
+                any |= changes[i];
+                last[i] = (w >>> (steps - 1)) & 1;
+            }
+            if (any == 0) return;
+            for (int g = 0; g < changedChannels.length; g++) {
+                long[] m = changedChannels[g];
+                for (int c = 0; c < 64; c++) m[c] = (g << 6) + c < channels ? changes[(g << 6) + c] : 0L;
+                transpose64(m);
+            }
+            while (any != 0) {
+                int bit = Long.numberOfTrailingZeros(any);
+                any &= any - 1;
+                out.put((byte) '#');
+                out.putDecimal(time(firstStep + bit));
+                out.put((byte) '\n');
+                for (int g = 0; g < changedChannels.length; g++) {
+                    for (long m = changedChannels[g][bit]; m != 0; m &= m - 1) {
+                        int i = (g << 6) + Long.numberOfTrailingZeros(m);
+                        putValue(i, words[i][index] >>> bit & 1);
+                    }
+                }
+            }
+        }
+
+        @Override
+        void end() throws IOException {
+            out.put((byte) '#');
+            out.putDecimal(time(store.getSteps()));
+            out.put((byte) '\n');
+        }
+
+        private void putValue(int channel, long value) throws IOException {
+            out.putLine((byte) ('0' + value), ids[channel]);
+        }
+    }
+}
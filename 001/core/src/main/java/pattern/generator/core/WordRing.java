@@ -0,0 +1,71 @@
+package pattern.generator.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded ring of 64-bit words between exactly one producer thread and one consumer thread,
+// without locks. Each side owns one position and publishes it with a release store; the other side
+// reads it with an acquire load, and only when the copy it cached has run out of room or data.
+// Positions count words ever written or read, so they never wrap; the capacity is a power of two
+// and the slot is the position masked. Neither side allocates.
+public final class WordRing {
+    private final long[] words;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // next word to read, written by the consumer
+    private final AtomicLong tail = new AtomicLong(); // next word to write, written by the producer
+    private long producerHead; // producer's last view of head
+    private long consumerTail; // consumer's last view of tail
+
+    // Room for at least `capacity` words, rounded up to a power of two.
+    public WordRing(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) throw new IllegalArgumentException("Ring capacity must be 1.." + (1 << 30));
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        this.words = new long[size];
+        this.mask = size - 1;
+    }
+
+    public int capacity() { return words.length; }
+
+    // Words waiting to be read; exact on the consumer thread, a snapshot elsewhere.
+    public int size() {
+        return (int) (tail.getAcquire() - head.getAcquire());
+    }
+
+    // Producer: writes all `count` words or, if they do not fit, none; returns whether it wrote them.
+    public boolean offer(long[] src, int srcPos, int count) {
+        long t = tail.getPlain();
+        if (t + count - producerHead > words.length) {
+            producerHead = head.getAcquire();
+            if (t + count - producerHead > words.length) return false;
+        }
+        copyIn(src, srcPos, t, count);
+        tail.setRelease(t + count);
+        return true;
+    }
+
+    // Consumer: reads up to `count` words, as many as are there; returns how many it read.
+    public int poll(long[] dest, int destPos, int count) {
+        long h = head.getPlain();
+        if (consumerTail - h < count) consumerTail = tail.getAcquire();
+        int n = (int) Math.min(count, consumerTail - h);
+        if (n == 0) return 0;
+        copyOut(h, dest, destPos, n);
+        head.setRelease(h + n);
+        return n;
+    }
+
+    // Copies into the ring at position `to`, in at most two pieces around the end of the array.
+    private void copyIn(long[] src, int srcPos, long to, int count) {
+        int slot = (int) (to & mask);
+        int first = Math.min(count, words.length - slot);
+        System.arraycopy(src, srcPos, words, slot, first);
+        System.arraycopy(src, srcPos + first, words, 0, count - first);
+    }
+
+    private void copyOut(long from, long[] dest, int destPos, int count) {
+        int slot = (int) (from & mask);
+        int first = Math.min(count, words.length - slot);
+        System.arraycopy(words, slot, dest, destPos, first);
+        System.arraycopy(words, 0, dest, destPos + first, count - first);
+    }
+}
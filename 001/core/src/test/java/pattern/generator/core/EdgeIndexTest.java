@@ -0,0 +1,194 @@
+package pattern.generator.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// EdgeIndex against edges found by reading the store step by step, on random stores and again
+// after editing them, so the chunks the index summarized before the edits must be redone.
+class EdgeIndexTest {
+    private static final long CHUNK_STEPS = (long) PatternStore.CHUNK_WORDS * PatternStore.WORD_BITS;
+    private static final long[] STEPS = {1, 63, 64, 65, 1000, 4097, CHUNK_STEPS - 1, CHUNK_STEPS + 1, 3 * CHUNK_STEPS + 77};
+    // Mean run lengths: a few steps, about a block (4K steps) and longer than a chunk.
+    private static final int[] RUNS = {3, 5000, 400_000};
+
+    @Test
+    void queriesMatchBruteForce() {
+        Random random = new Random(1);
+        for (long steps : STEPS) {
+            PatternStore store = randomStore(random, steps);
+            EdgeIndex index = new EdgeIndex(store);
+            for (int channel = 0; channel < store.getChannels(); channel++) {
+                check(random, index, channel, "steps " + steps + " channel " + channel);
+            }
+        }
+    }
+
+    @Test
+    void followsEdits() {
+        Random random = new Random(2);
+        for (long steps : STEPS) {
+            PatternStore store = randomStore(random, steps);
+            EdgeIndex index = new EdgeIndex(store);
+            for (int round = 0; round < 4; round++) {
+                for (int channel = 0; channel < store.getChannels(); channel++) {
+                    check(random, index, channel, "steps " + steps + " round " + round + " channel " + channel);
+                }
+                edit(random, store);
+            }
+            // An index for a snapshot taken after more edits reuses the chunks they left alone.
+            PatternStore snapshot = store.snapshot();
+            edit(random, snapshot);
+            EdgeIndex derived = new EdgeIndex(snapshot, index);
+            for (int channel = 0; channel < snapshot.getChannels(); channel++) {
+                check(random, derived, channel, "steps " + steps + " snapshot channel " + channel);
+            }
+        }
+    }
+
+    // One channel per mean run length, plus one that never changes.
+    private static PatternStore randomStore(Random random, long steps) {
+        PatternStore store = new PatternStore(RUNS.length + 1, steps);
+        for (int channel = 0; channel < RUNS.length; channel++) {
+            boolean value = random.nextBoolean();
+            for (long step = 0; step < steps; ) {
+                long end = Math.min(steps, step + 1 + (long) (-Math.log(1 - random.nextDouble()) * RUNS[channel]));
+                store.fill(channel, step, end, value);
+                value = !value;
+                step = end;
+            }
+        }
+        store.fill(RUNS.length, 0, steps, random.nextBoolean());
+        return store;
+    }
+
+    private static void edit(Random random, PatternStore store) {
+        long steps = store.getSteps();
+        for (int channel = 0; channel < store.getChannels(); channel++) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    for (int i = 0; i < 10; i++) store.set(channel, (long) (random.nextDouble() * steps), random.nextBoolean());
+                    break;
+                case 1: {
+                    long from = (long) (random.nextDouble() * steps);
+                    store.fill(channel, from, Math.min(steps, from + 1 + random.nextInt(70_000)), random.nextBoolean());
+                    break;
+                }
+                case 2: {
+                    long from = (long) (random.nextDouble() * steps);
+                    store.invert(channel, from, Math.min(steps, from + 1 + random.nextInt(70_000)));
+                    break;
+                }
+                default: {
+                    int count = 1 + random.nextInt(Math.min(store.getWordCount(), 3000));
+                    long[] src = new long[count];
+                    for (int i = 0; i < count; i++) src[i] = random.nextLong();
+                    store.writeWords(channel, random.nextInt(store.getWordCount() - count + 1), src, 0, count);
+                }
+            }
+        }
+    }
+
+    private static void check(Random random, EdgeIndex index, int channel, String where) {
+        PatternStore store = index.getStore();
+        long steps = store.getSteps();
+        long ones = 0;
+        long[] edges = new long[16];
+        int count = 0;
+        boolean previous = false;
+        for (long step = 0; step < steps; step++) {
+            boolean bit = store.get(channel, step);
+            if (bit) ones++;
+            if (step > 0 && bit != previous) {
+                if (count == edges.length) edges = Arrays.copyOf(edges, 2 * count);
+                edges[count++] = step;
+            }
+            previous = bit;
+        }
+        edges = Arrays.copyOf(edges, count);
+        boolean first = store.get(channel, 0);
+
+        assertEquals(count, index.getTransitions(channel), where + ": transitions");
+        assertEquals(ones, index.getOnes(channel), where + ": ones");
+        for (int k = -1; k <= count; k++) {
+            long expected = k < 0 || k == count ? -1 : edges[k];
+            if (index.edge(channel, k) != expected) fail(where + ": edge " + k);
+            int rising = first ? 2 * k + 1 : 2 * k;
+            if (index.risingEdge(channel, k) != (k < 0 || rising >= count ? -1 : edges[rising])) fail(where + ": rising edge " + k);
+            int falling = first ? 2 * k : 2 * k + 1;
+            if (index.fallingEdge(channel, k) != (k < 0 || falling >= count ? -1 : edges[falling])) fail(where + ": falling edge " + k);
+        }
+
+        // Every step of short stores; around each edge, the chunk bounds and at random in long ones.
+        long[] probes;
+        if (steps <= 5000) {
+            probes = new long[(int) steps + 2];
+            for (int i = 0; i < probes.length; i++) probes[i] = i - 1;
+        } else {
+            probes = new long[3 * count + 200];
+            int n = 0;
+            for (long edge : edges) {
+                probes[n++] = edge - 1;
+                probes[n++] = edge;
+                probes[n++] = edge + 1;
+            }
+            for (int i = 0; i < 100; i++) probes[n++] = Math.min(steps, i * CHUNK_STEPS);
+            while (n < probes.length) probes[n++] = (long) (random.nextDouble() * (steps + 2)) - 1;
+        }
+        for (long step : probes) {
+            int before = lowerBound(edges, step);
+            if (index.edgesBefore(channel, step) != before) fail(where + ": edges before " + step);
+            if (index.previousEdge(channel, step) != (before == 0 ? -1 : edges[before - 1])) fail(where + ": previous edge of " + step);
+            int after = lowerBound(edges, step + 1);
+            if (index.nextEdge(channel, step) != (after == count ? -1 : edges[after])) fail(where + ": next edge of " + step);
+        }
+
+        long longestHigh = 0;
+        long longestLow = 0;
+        long runStart = 0;
+        for (int k = 0; k <= count; k++) {
+            long runEnd = k == count ? steps : edges[k];
+            if (first ^ (k % 2 == 1)) longestHigh = Math.max(longestHigh, runEnd - runStart);
+            else longestLow = Math.max(longestLow, runEnd - runStart);
+            runStart = runEnd;
+        }
+        long rising = 0;
+        long minPeriod = 0;
+        long maxPeriod = 0;
+        for (int k = first ? 1 : 0; k < count; k += 2) {
+            if (rising > 0) {
+                long period = edges[k] - edges[k - 2];
+                minPeriod = rising == 1 ? period : Math.min(minPeriod, period);
+                maxPeriod = Math.max(maxPeriod, period);
+            }
+            rising++;
+        }
+        ChannelStats stats = index.stats(channel, 1e6);
+        assertEquals(steps, stats.getSteps(), where + ": stats steps");
+        assertEquals(ones, stats.getOnes(), where + ": stats ones");
+        assertEquals(count, stats.getTransitions(), where + ": stats transitions");
+        assertEquals(rising, stats.getRisingEdges(), where + ": rising edges");
+        assertEquals(count - rising, stats.getFallingEdges(), where + ": falling edges");
+        assertEquals(Math.max(0, rising - 1), stats.getPeriods(), where + ": periods");
+        assertEquals(minPeriod, stats.getMinPeriod(), where + ": min period");
+        assertEquals(maxPeriod, stats.getMaxPeriod(), where + ": max period");
+        assertEquals(longestHigh, stats.getLongestHigh(), where + ": longest high");
+        assertEquals(longestLow, stats.getLongestLow(), where + ": longest low");
+    }
+
+    // Number of edges before `step`.
+    private static int lowerBound(long[] edges, long step) {
+        int lo = 0;
+        int hi = edges.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (edges[mid] < step) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
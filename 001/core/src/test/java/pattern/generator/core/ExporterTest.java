@@ -0,0 +1,162 @@
+package pattern.generator.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// The block exporters against writers that go one step and one channel at a time, on small patterns
+// whose step counts are not a multiple of 64 and, for the last one, run past one block.
+class ExporterTest {
+    private static final long[] STEPS = {1, 63, 64, 130, BlockWriter.BLOCK_WORDS * 64L + 130};
+    private static final int[] CHANNELS = {1, 5, 70};
+
+    @Test
+    void transpose64MatchesNaive() {
+        Random random = new Random(16);
+        for (int i = 0; i < 100; i++) {
+            long[] a = new long[64];
+            for (int r = 0; r < 64; r++) a[r] = random.nextLong() & random.nextLong();
+            long[] expected = new long[64];
+            for (int r = 0; r < 64; r++) {
+                for (int c = 0; c < 64; c++) {
+                    if ((a[r] >>> c & 1) != 0) expected[c] |= 1L << r;
+                }
+            }
+            BlockWriter.transpose64(a);
+            for (int r = 0; r < 64; r++) {
+                if (a[r] != expected[r]) fail("row " + r + " of matrix " + i);
+            }
+        }
+    }
+
+    @Test
+    void vcdMatchesNaive() throws IOException {
+        Random random = new Random(17);
+        for (double rateMHz : new double[]{100.0, 3.0}) {
+            for (int channels : CHANNELS) {
+                for (long steps : STEPS) {
+                    PatternModel model = model(random, channels, channels, steps, rateMHz);
+                    assertSameBytes(naiveVcd(model), export(new VcdExporter(), model), "VCD " + channels + " ch, " + steps + " steps at " + rateMHz + " MHz");
+                }
+            }
+        }
+    }
+
+    @Test
+    void csvMatchesNaive() throws IOException {
+        Random random = new Random(18);
+        for (int channels : CHANNELS) {
+            for (long steps : STEPS) {
+                PatternModel model = model(random, channels, channels, steps, 100.0);
+                assertSameBytes(naiveCsv(model), export(new CsvExporter(), model), "CSV " + channels + " ch, " + steps + " steps");
+            }
+        }
+    }
+
+    @Test
+    void rawMatchesNaive() throws IOException {
+        Random random = new Random(19);
+        // 8, 16 and 32-bit samples with unused channels, a full byte, and a width past 64 bits.
+        int[][] widths = {{8, 5}, {8, 8}, {16, 13}, {32, 29}, {70, 70}};
+        for (int[] width : widths) {
+            for (long steps : STEPS) {
+                PatternModel model = model(random, width[0], width[1], steps, 100.0);
+                String where = "Raw " + width[0] + " bits, " + width[1] + " ch, " + steps + " steps";
+                byte[] actual = export(new RawExporter(), model);
+                assertEquals(steps * ((width[0] + 7) / 8), actual.length, where);
+                assertSameBytes(naiveRaw(model), actual, where);
+            }
+        }
+    }
+
+    // Channels alternate between dense random bits and runs of a few hundred steps, so there are
+    // both words full of edges and words without any.
+    private static PatternModel model(Random random, int maxChannels, int channels, long steps, double rateMHz) {
+        PatternModel model = new PatternModel(maxChannels, channels, steps, rateMHz, "TTL", "Manual", 50.0, 1000.0, "");
+        PatternStore store = model.getStore();
+        for (int channel = 0; channel < channels; channel++) {
+            boolean value = random.nextBoolean();
+            for (long step = 0; step < steps; step++) {
+                if (channel % 2 == 0) value = random.nextBoolean();
+                else if (random.nextInt(300) == 0) value = !value;
+                store.set(channel, step, value);
+            }
+        }
+        return model;
+    }
+
+    private static byte[] export(PatternExporter exporter, PatternModel model) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        exporter.write(model, Channels.newChannel(bytes), TaskProgress.NONE);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] naiveVcd(PatternModel model) {
+        PatternStore store = model.getStore();
+        int channels = store.getChannels();
+        long steps = store.getSteps();
+        double psPerStep = 1_000_000.0 / model.getSampleRate();
+        StringBuilder vcd = new StringBuilder();
+        vcd.append("$version Pattern Generator $end\n");
+        vcd.append("$comment ").append(channels).append(" channels, ").append(steps).append(" steps at ")
+                .append(model.getSampleRate()).append(" MHz, ").append(model.getIoStandard()).append(" $end\n");
+        vcd.append("$timescale 1ps $end\n$scope module pattern $end\n");
+        for (int i = 0; i < channels; i++) vcd.append("$var wire 1 ").append(VcdExporter.identifier(i)).append(" ch").append(i).append(" $end\n");
+        vcd.append("$upscope $end\n$enddefinitions $end\n#0\n$dumpvars\n");
+        for (int i = 0; i < channels; i++) vcd.append(store.get(i, 0) ? '1' : '0').append(VcdExporter.identifier(i)).append('\n');
+        vcd.append("$end\n");
+        for (long step = 1; step < steps; step++) {
+            boolean stamped = false;
+            for (int i = 0; i < channels; i++) {
+                boolean value = store.get(i, step);
+                if (value == store.get(i, step - 1)) continue;
+                if (!stamped) vcd.append('#').append(Math.round(step * psPerStep)).append('\n');
+                stamped = true;
+                vcd.append(value ? '1' : '0').append(VcdExporter.identifier(i)).append('\n');
+            }
+        }
+        vcd.append('#').append(Math.round(steps * psPerStep)).append('\n');
+        return vcd.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] naiveCsv(PatternModel model) {
+        PatternStore store = model.getStore();
+        StringBuilder csv = new StringBuilder("step");
+        for (int i = 0; i < store.getChannels(); i++) csv.append(",ch").append(i);
+        csv.append('\n');
+        for (long step = 0; step < store.getSteps(); step++) {
+            csv.append(step);
+            for (int i = 0; i < store.getChannels(); i++) csv.append(store.get(i, step) ? ",1" : ",0");
+            csv.append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] naiveRaw(PatternModel model) {
+        PatternStore store = model.getStore();
+        int bytesPerStep = (model.getMaxChannels() + 7) / 8;
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        for (long step = 0; step < store.getSteps(); step++) {
+            byte[] sample = new byte[bytesPerStep];
+            for (int i = 0; i < store.getChannels(); i++) {
+                if (store.get(i, step)) sample[i >>> 3] |= (byte) (1 << (i & 7));
+            }
+            raw.writeBytes(sample);
+        }
+        return raw.toByteArray();
+    }
+
+    private static void assertSameBytes(byte[] expected, byte[] actual, String where) {
+        for (int i = 0; i < Math.min(expected.length, actual.length); i++) {
+            if (expected[i] != actual[i]) fail(where + ": differs at byte " + i);
+        }
+        assertEquals(expected.length, actual.length, where + ": length");
+    }
+}
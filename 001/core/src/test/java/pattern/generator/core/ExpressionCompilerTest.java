@@ -0,0 +1,110 @@
+package pattern.generator.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// The expression parser, constant folding and where errors point, the legacy expression forms,
+// and fill against evaluating every step on its own.
+class ExpressionCompilerTest {
+    private static final double RATE_HZ = 1e6;
+    private static final double FREQUENCY = 1000.0;
+
+    @Test
+    void precedence() {
+        assertValue(-4, "-2^2");
+        assertValue(512, "2^3^2");
+        assertValue(0.25, "2^-2");
+        assertValue(7, "1 + 2 * 3");
+        assertValue(9, "(1 + 2) * 3");
+        assertValue(1, "7 % 3");
+        assertValue(1, "1 < 2 && 2 <= 2");
+        assertValue(0, "!(1 == 1) || 3 != 3");
+        assertValue(5, "0 ? 4 : 1 ? 5 : 6");
+        assertValue(3, "clamp(7, 1, 3)");
+        assertValue(2e-3, "2e-3");
+    }
+
+    @Test
+    void constantsFold() {
+        assertTrue(compile("sin(pi / 2) * freq").isConstant());
+        assertTrue(compile("steps > 100").isConstant());
+        assertFalse(compile("x > 0.5").isConstant());
+        assertFalse(compile("x > 0.5").dependsOnChannel());
+        assertTrue(compile("bit(n, ch)").dependsOnChannel());
+        ExpressionCompiler.CompiledExpression time = compile("t * rate");
+        assertEquals(123, time.evaluate(123, 0), 1e-9);
+    }
+
+    @Test
+    void errorPositions() {
+        assertError("1 +", 3, "Unexpected end of expression");
+        assertError("sin(x", 5, "Expected ')'");
+        assertError("foo + 1", 0, "Unknown identifier 'foo'");
+        assertError("2 * bar(1)", 4, "Unknown function 'bar'");
+        assertError("1 + min(1)", 4, "Wrong number of arguments for min()");
+        assertError("1 2", 2, "Unexpected '2'");
+        assertError("(x > 0.5) ? 1", 13, "Expected ':'");
+        assertThrows(IllegalArgumentException.class, () -> compile(" "));
+    }
+
+    @Test
+    void legacyExpressions() {
+        assertEquals("x", PatternModel.normalizeLegacyExpression("t"));
+        assertEquals("x", PatternModel.normalizeLegacyExpression(" T "));
+        assertEquals("0.5*(1+sin(2*pi*x))", PatternModel.normalizeLegacyExpression("sin(2 * pi * x)"));
+        assertEquals("0.5*(1+cos(x))", PatternModel.normalizeLegacyExpression("Cos(x)"));
+        // Only a whole sin()/cos() is rescaled.
+        assertEquals("sin(x) + 1", PatternModel.normalizeLegacyExpression("sin(x) + 1"));
+        assertEquals("x > 0.5", PatternModel.normalizeLegacyExpression("x > 0.5"));
+    }
+
+    @Test
+    void fillMatchesEvaluate() {
+        // Past one store chunk and not a whole number of words.
+        long steps = (long) PatternStore.CHUNK_WORDS * 64 + 130;
+        String[] sources = {"square(n / 37 + ch / 4)", "bit(n, ch)", "x < 0.3 || n % 5 == 0", "1", "0.2"};
+        for (String source : sources) {
+            ExpressionCompiler.CompiledExpression compiled = ExpressionCompiler.compile(source, RATE_HZ, FREQUENCY, steps);
+            PatternStore store = new PatternStore(3, steps);
+            store.fill(0, 0, steps, true);
+            store.fill(2, 0, steps, true);
+            // Channel 1 in two ranges that split a chunk, channel 2 only in part.
+            int words = store.getWordCount();
+            compiled.fill(store, 1, 0, 100, 7);
+            compiled.fill(store, 1, 100, words, 7);
+            compiled.fill(store, 2, 5, words, 7);
+            for (long step = 0; step < steps; step++) {
+                assertStep(store, source, 1, step, compiled.evaluate(step + 7, 1) >= ExpressionCompiler.CompiledExpression.THRESHOLD);
+                boolean before = step < 5 * 64;
+                assertStep(store, source, 2, step, before || compiled.evaluate(step + 7, 2) >= ExpressionCompiler.CompiledExpression.THRESHOLD);
+            }
+            for (int w = 0; w < words; w++) {
+                if (store.getWord(0, w) != (w == words - 1 ? (1L << (steps & 63)) - 1 : -1L)) fail(source + ": channel 0 touched at word " + w);
+            }
+        }
+    }
+
+    private static void assertStep(PatternStore store, String source, int channel, long step, boolean expected) {
+        if (store.get(channel, step) != expected) fail(source + ": channel " + channel + " differs at step " + step);
+    }
+
+    private static ExpressionCompiler.CompiledExpression compile(String source) {
+        return ExpressionCompiler.compile(source, RATE_HZ, FREQUENCY, 1000);
+    }
+
+    private static void assertValue(double expected, String source) {
+        ExpressionCompiler.CompiledExpression compiled = compile(source);
+        assertTrue(compiled.isConstant(), source + " not folded");
+        assertEquals(expected, compiled.evaluate(0, 0), 1e-12, source);
+    }
+
+    private static void assertError(String source, int position, String message) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> compile(source), source);
+        assertTrue(e.getMessage().contains(message + " at position " + position + " "), e.getMessage());
+    }
+}
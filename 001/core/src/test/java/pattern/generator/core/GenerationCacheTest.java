@@ -0,0 +1,114 @@
+package pattern.generator.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Cache hits, misses and eviction, and how cached channels cross pattern memories.
+class GenerationCacheTest {
+    private static final double RATE_HZ = 100e6;
+    private static final long STEPS = 1 << 22; // 16 chunks of 4K words
+    private static final long CHANNEL_BYTES = STEPS / 8;
+
+    @Test
+    void offHeapPatternsCopyHitsAndAreNotCached() throws IOException {
+        GenerationCache cache = new GenerationCache(64L << 20);
+        PatternGenerator generator = new PatternGenerator(RATE_HZ, cache);
+        ChannelConfig[] configs = {random(1), random(2)};
+        try (PatternMemory memory = PatternMemory.offHeap()) {
+            generator.generate(new PatternStore(2, STEPS, memory), configs);
+            assertEquals(0, cache.getEntries(), "off-heap channels cached");
+        }
+
+        PatternStore heap = new PatternStore(2, STEPS);
+        generator.generate(heap, configs);
+        assertEquals(2, cache.getEntries());
+        try (PatternMemory memory = PatternMemory.offHeap()) {
+            PatternStore offHeap = new PatternStore(2, STEPS, memory);
+            String status = generator.generate(offHeap, configs);
+            assertTrue(status.contains("2 of 2 channels from cache"), status);
+            // Every chunk of both channels was copied into the mapped memory.
+            assertTrue(memory.getReservedBytes() >= 2 * STEPS / 8, "reserved " + memory.getReservedBytes());
+            assertSameWords(heap, offHeap);
+        }
+    }
+
+    @Test
+    void leastRecentlyUsedIsEvictedFirst() {
+        GenerationCache cache = new GenerationCache(2 * CHANNEL_BYTES + CHANNEL_BYTES / 2);
+        PatternGenerator generator = new PatternGenerator(RATE_HZ, cache);
+        generate(generator, 1);
+        generate(generator, 2);
+        assertEquals(2, cache.getEntries());
+        assertEquals(2 * CHANNEL_BYTES, cache.getBytes());
+        // Using 1 again leaves 2 as the least recently used.
+        assertTrue(generate(generator, 1).contains("from cache"));
+        generate(generator, 3);
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.getEntries());
+        assertTrue(generate(generator, 1).contains("from cache"), "1 evicted");
+        assertTrue(generate(generator, 3).contains("from cache"), "3 evicted");
+        assertFalse(generate(generator, 2).contains("from cache"), "2 kept");
+        // Generating 2 again evicted 1, the least recently used by then.
+        assertEquals(2, cache.getEvictions());
+        assertFalse(generate(generator, 1).contains("from cache"), "1 kept");
+        assertEquals(3, cache.getHits());
+    }
+
+    @Test
+    void bytesStayWithinTheCap() {
+        GenerationCache cache = new GenerationCache(3 * CHANNEL_BYTES);
+        PatternGenerator generator = new PatternGenerator(RATE_HZ, cache);
+        ChannelConfig[] configs = {random(1), random(2), random(3), random(4)};
+        generator.generate(new PatternStore(4, STEPS), configs);
+        assertEquals(3, cache.getEntries());
+        assertEquals(3 * CHANNEL_BYTES, cache.getBytes());
+        assertEquals(1, cache.getEvictions());
+
+        cache.setCapacity(CHANNEL_BYTES + 1);
+        assertEquals(1, cache.getEntries());
+        assertEquals(CHANNEL_BYTES, cache.getBytes());
+        assertEquals(3, cache.getEvictions());
+        // Channel 3 was put last, so it is the one left.
+        String status = generator.generate(new PatternStore(4, STEPS), configs);
+        assertTrue(status.contains("1 of 4 channels from cache"), status);
+        assertEquals(1, cache.getEntries());
+
+        // An entry larger than the whole cache is not kept.
+        cache.setCapacity(CHANNEL_BYTES - 1);
+        assertEquals(0, cache.getEntries());
+        assertEquals(0, cache.getBytes());
+        generate(generator, 5);
+        assertEquals(0, cache.getEntries());
+
+        // Capacity 0 turns lookups off.
+        cache.setCapacity(0);
+        long misses = cache.getMisses();
+        generate(generator, 5);
+        assertEquals(misses, cache.getMisses());
+        assertEquals(0, cache.getEntries());
+    }
+
+    private static String generate(PatternGenerator generator, long seed) {
+        return generator.generate(new PatternStore(1, STEPS), new ChannelConfig[]{random(seed)});
+    }
+
+    static ChannelConfig random(long seed) {
+        return new ChannelConfig("Random", 1000.0, 50.0, 0.0, "").withRandom(seed, 0.5);
+    }
+
+    static void assertSameWords(PatternStore expected, PatternStore actual) {
+        assertEquals(expected.getChannels(), actual.getChannels());
+        assertEquals(expected.getSteps(), actual.getSteps());
+        for (int channel = 0; channel < expected.getChannels(); channel++) {
+            for (int w = 0; w < expected.getWordCount(); w++) {
+                if (expected.getWord(channel, w) != actual.getWord(channel, w)) fail("Channel " + channel + " differs at word " + w);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package pattern.generator.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Lfsr.fill against a bit-serial reference: s[n] is the XOR of s[n - tap] over the taps, with the
+// seed holding s[-1 - i] in bit i, inverted on output if asked.
+class LfsrTest {
+    private static final int[][] TAPS = {{7, 6}, {9, 5}, {15, 14}, {23, 18}, {31, 28}};
+    private static final long[] STARTS = {0, 1, 63, 64, 127, 1000, 65_537, 1_000_003};
+
+    @Test
+    void fillMatchesSerialReference() {
+        Random random = new Random(1);
+        for (int p = 0; p < TAPS.length; p++) {
+            for (boolean inverted : new boolean[]{false, true}) {
+                long seed = 1 + random.nextInt((int) Lfsr.registerMask(TAPS[p][0]));
+                Lfsr lfsr = Lfsr.parse(Lfsr.STANDARD[p], seed, inverted);
+                for (long start : STARTS) {
+                    for (int fromWord : new int[]{0, 3}) {
+                        int toWord = fromWord + 40; // past the serial head into the leap-forward part
+                        PatternStore store = new PatternStore(1, (long) toWord * PatternStore.WORD_BITS);
+                        lfsr.fill(store, 0, start, fromWord, toWord);
+                        boolean[] expected = reference(TAPS[p], seed, inverted, start + (toWord - fromWord) * 64L);
+                        for (int i = 0; i < (toWord - fromWord) * 64; i++) {
+                            long step = (long) fromWord * 64 + i;
+                            if (store.get(0, step) != expected[(int) (start + i)]) {
+                                fail(Lfsr.STANDARD[p] + " seed " + seed + (inverted ? " inverted" : "") + " start " + start
+                                        + " word " + fromWord + ": bit " + i + " differs");
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void periodOfShortSequences() {
+        for (int p = 0; p < 3; p++) {
+            Lfsr lfsr = Lfsr.parse(Lfsr.STANDARD[p], 1, false);
+            long period = lfsr.getPeriod();
+            assertEquals((1L << TAPS[p][0]) - 1, period);
+            assertEquals(lfsr.stateAt(0), lfsr.stateAt(period), Lfsr.STANDARD[p]);
+            boolean[] expected = reference(TAPS[p], 1, false, 2 * period + 64);
+            PatternStore store = new PatternStore(1, 64);
+            lfsr.fill(store, 0, period + 5, 0, 1);
+            for (int i = 0; i < 64; i++) assertEquals(expected[5 + i], store.get(0, i), Lfsr.STANDARD[p] + " bit " + i);
+        }
+    }
+
+    private static boolean[] reference(int[] taps, long seed, boolean inverted, long length) {
+        int degree = taps[0];
+        boolean[] s = new boolean[degree + (int) length];
+        for (int i = 0; i < degree; i++) s[degree - 1 - i] = (seed >>> i & 1) != 0;
+        for (int n = degree; n < s.length; n++) {
+            boolean bit = false;
+            for (int tap : taps) bit ^= s[n - tap];
+            s[n] = bit;
+        }
+        boolean[] out = new boolean[(int) length];
+        for (int i = 0; i < length; i++) out[i] = s[degree + i] ^ inverted;
+        return out;
+    }
+}
@@ -0,0 +1,76 @@
+package pattern.generator.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Save/load round trips through the per-channel encodings.
+class PatternFileTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void periodicChannelsRoundTrip() throws IOException {
+        PatternModel model = new PatternModel(8, 3, 1_000_003, 100.0, "TTL", "Clock", 50.0, 1_000_000.0, "");
+        ChannelConfig[] configs = {
+                model.getDefaultConfig(),
+                model.getDefaultConfig().withPrbs("PRBS15", 1L, false, false),
+                new ChannelConfig("Random", 1_000_000.0, 50.0, 0.0, "").withRandom(7L, 0.3)};
+        new PatternGenerator(model.getSampleRate() * 1_000_000).generate(model.getStore(), configs);
+        assertRoundTrip(model, PatternMemory.HEAP);
+    }
+
+    // A channel that repeats exactly with a period just past MAX_PERIOD must not be saved as PERIODIC.
+    // Only the pulses' chunks are allocated, so the 4G steps cost a scan and no memory.
+    @Test
+    void periodsPastMaxPeriodAreNotPeriodic() {
+        for (long period : new long[]{ChannelCodec.MAX_PERIOD, ChannelCodec.MAX_PERIOD + 1}) {
+            long steps = 2 * period + 1000;
+            PatternStore store = new PatternStore(1, steps);
+            for (long step = 100; step < steps; step += period) store.set(0, step, true);
+            long found = ChannelCodec.findPeriod(store, 0);
+            assertEquals(period <= ChannelCodec.MAX_PERIOD ? period : 0, found, "period " + period);
+            ChannelCodec.Choice choice = ChannelCodec.choose(store, 0);
+            assertEquals(ChannelCodec.ENCODING_RUNS, choice.encoding, "period " + period);
+        }
+    }
+
+    // PRBS31 repeats after 2^31 - 1 steps, longer than a PERIODIC period can be, so a channel over
+    // two periods long must be saved another way and still load. Takes about 20 s and 512 MiB of
+    // mapped memory, so it runs only with -Dpattern.generator.slowTests=true.
+    @Test
+    @EnabledIfSystemProperty(named = "pattern.generator.slowTests", matches = "true")
+    void prbs31PastTwoPeriodsRoundTrips() throws IOException {
+        long steps = (1L << 32) + (1L << 16);
+        try (PatternMemory memory = PatternMemory.offHeap()) {
+            PatternModel model = new PatternModel(8, 1, steps, 100.0, "TTL", "PRBS", 50.0, 1_000_000.0, "");
+            model.setMemory(memory);
+            ChannelConfig[] configs = {model.getDefaultConfig().withPrbs("PRBS31", 1L, false, false)};
+            new PatternGenerator(model.getSampleRate() * 1_000_000).generate(model.getStore(), configs);
+            assertRoundTrip(model, memory);
+        }
+    }
+
+    private void assertRoundTrip(PatternModel model, PatternMemory memory) throws IOException {
+        File file = dir.resolve("pattern.pat").toFile();
+        PatternFileHandler.savePattern(model, file);
+        PatternModel loaded = PatternFileHandler.loadPattern(file, TaskProgress.NONE, memory);
+        PatternStore expected = model.getStore();
+        PatternStore actual = loaded.getStore();
+        assertEquals(expected.getChannels(), actual.getChannels());
+        assertEquals(expected.getSteps(), actual.getSteps());
+        for (int channel = 0; channel < expected.getChannels(); channel++) {
+            for (int w = 0; w < expected.getWordCount(); w++) {
+                if (expected.getWord(channel, w) != actual.getWord(channel, w)) fail("Channel " + channel + " differs at word " + w);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,142 @@
+package pattern.generator.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Undo and redo through a mix of edits, each state compared word by word with what the model held
+// before, and which entries the budget drops.
+class PatternHistoryTest {
+    // Four whole chunks per channel.
+    private static final long STEPS = 4L * PatternStore.CHUNK_WORDS * PatternStore.WORD_BITS;
+    private static final long STATE_BYTES = STEPS / 8;
+
+    // What undo must bring back: data, channel configs and the pattern's shape.
+    private static final class State {
+        final String label;
+        final long[][] words;
+        final ChannelConfig[] configs;
+        final int maxChannels;
+
+        State(PatternModel model, String label) {
+            this.label = label;
+            PatternStore store = model.getStore();
+            this.words = new long[store.getChannels()][store.getWordCount()];
+            for (int channel = 0; channel < words.length; channel++) {
+                store.readWords(channel, 0, words[channel], 0, words[channel].length);
+            }
+            this.configs = new ChannelConfig[model.getChannels()];
+            for (int channel = 0; channel < configs.length; channel++) {
+                if (model.hasChannelConfig(channel)) configs[channel] = model.getChannelConfig(channel);
+            }
+            this.maxChannels = model.getMaxChannels();
+        }
+
+        void assertRestored(PatternModel model, String where) {
+            State actual = new State(model, label);
+            assertEquals(maxChannels, actual.maxChannels, where);
+            assertEquals(words.length, actual.words.length, where + ": channels");
+            assertEquals(words[0].length, actual.words[0].length, where + ": words");
+            assertEquals(words.length, model.getChannels(), where);
+            for (int channel = 0; channel < words.length; channel++) {
+                for (int w = 0; w < words[channel].length; w++) {
+                    if (words[channel][w] != actual.words[channel][w]) fail(where + ": channel " + channel + " differs at word " + w);
+                }
+            }
+            assertArrayEquals(configs, actual.configs, where + ": configs");
+        }
+    }
+
+    @Test
+    void undoAndRedoRestoreDataAndConfigs() {
+        PatternModel model = new PatternModel(8, 4, 300_001, 100.0, "TTL", "Clock", 50.0, 1_000_000.0, "");
+        List<State> states = new ArrayList<>();
+        states.add(new State(model, null));
+        model.randomize(1, 0.5);
+        states.add(new State(model, "Randomize"));
+
+        model.checkpoint("Configure");
+        model.setChannelConfig(1, new ChannelConfig("PRBS", 1_000_000.0, 50.0, 0.0, "").withPrbs("PRBS7", 3L, false, false));
+        model.setChannelConfig(2, new ChannelConfig("Manual", 1_000_000.0, 50.0, 0.0, ""));
+        model.fillRange(3, 1000, 200_000, true);
+        states.add(new State(model, "Configure"));
+
+        model.generatePattern();
+        states.add(new State(model, "Generate"));
+        model.resize(6, 250_000);
+        states.add(new State(model, "Resize"));
+        model.remapChannels(new int[]{5, 0, -1, 1});
+        states.add(new State(model, "Remap channels"));
+        Signal[] signals = {null, model.signal(0).xor(model.signal(3)), model.signal(1).shift(17)};
+        model.applySignals("Signals", signals);
+        states.add(new State(model, "Signals"));
+        model.clear();
+        states.add(new State(model, "Clear"));
+
+        PatternHistory history = model.getHistory();
+        assertEquals(states.size() - 1, history.getUndoCount());
+        for (int i = states.size() - 1; i > 0; i--) {
+            assertEquals(states.get(i).label, model.undo());
+            states.get(i - 1).assertRestored(model, "undo of " + states.get(i).label);
+        }
+        assertNull(model.undo());
+        for (int i = 1; i < states.size(); i++) {
+            assertEquals(states.get(i).label, model.redo());
+            states.get(i).assertRestored(model, "redo of " + states.get(i).label);
+        }
+        assertNull(model.redo());
+
+        // A new edit after undoing drops what could be redone.
+        model.undo();
+        model.undo();
+        model.checkpoint("Edit");
+        model.setPattern(0, 5, 1);
+        assertEquals(0, history.getRedoCount());
+        assertEquals("Edit", model.undo());
+        states.get(states.size() - 3).assertRestored(model, "undo of Edit");
+    }
+
+    @Test
+    void budgetDropsOldestUndoThenFurthestRedo() {
+        PatternModel model = new PatternModel(8, 1, STEPS, 100.0, "TTL", "Random", 50.0, 1_000_000.0, "");
+        PatternHistory history = model.getHistory();
+        model.randomize(0, 0.5);
+        history.clear();
+        // Room for two states that differ from their newer neighbour in every chunk, and a half.
+        history.setBudget(2 * STATE_BYTES + STATE_BYTES / 2);
+        List<State> states = new ArrayList<>();
+        states.add(new State(model, null));
+        for (int seed = 1; seed <= 5; seed++) {
+            model.randomize(seed, 0.5);
+            states.add(new State(model, "Randomize"));
+            assertTrue(history.getUsedBytes() <= history.getBudget(), "used " + history.getUsedBytes());
+        }
+        // The newest entry still shares every chunk with the live pattern, so three fit.
+        assertEquals(3, history.getUndoCount());
+        assertEquals(2, history.getEvicted());
+        // Undoing makes the state left behind a full-size redo entry, which costs the oldest undo entry.
+        model.undo();
+        states.get(4).assertRestored(model, "undo to state 4");
+        assertEquals(1, history.getUndoCount());
+        assertEquals(3, history.getEvicted());
+        model.undo();
+        states.get(3).assertRestored(model, "undo to state 3");
+        assertNull(model.undo());
+        assertEquals(2, history.getRedoCount());
+
+        // Shrinking the budget drops the redo entry furthest from the current state.
+        history.setBudget(STATE_BYTES + STATE_BYTES / 2);
+        assertTrue(history.getUsedBytes() <= history.getBudget(), "used " + history.getUsedBytes());
+        assertEquals(1, history.getRedoCount());
+        model.redo();
+        states.get(4).assertRestored(model, "redo to state 4");
+        assertNull(model.redo());
+    }
+}
@@ -0,0 +1,114 @@
+package pattern.generator.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// PatternSearch against a matcher that tries every start step, and how bus words are read.
+class PatternSearchTest {
+    private static final int CHANNELS = 5;
+    private static final long[] STEPS = {1, 100, 64 * 1024 + 37, 3 * 64 * 1024 + 5};
+    private static final int LIMIT = 50;
+
+    @Test
+    void findAllMatchesNaiveSearch() {
+        Random random = new Random(1);
+        for (long steps : STEPS) {
+            PatternStore store = new PatternStore(CHANNELS, steps);
+            for (int channel = 0; channel < CHANNELS; channel++) {
+                for (long step = 0; step < steps; step++) store.set(channel, step, random.nextBoolean());
+            }
+            List<BitPattern> patterns = new ArrayList<>();
+            List<char[][]> expected = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                // Mostly windows of the store with a few bits kept, so there is something to find.
+                int length = 1 + random.nextInt(i < 6 ? 12 : 150);
+                long from = (long) (random.nextDouble() * Math.max(1, steps - length + 1));
+                boolean bus = i % 2 == 1;
+                char[][] rows = new char[bus ? CHANNELS : 1][length];
+                int channel = random.nextInt(CHANNELS);
+                for (int r = 0; r < rows.length; r++) {
+                    for (int o = 0; o < length; o++) {
+                        int ch = bus ? r : channel;
+                        boolean keep = r == 0 && o == 0 || from + o < steps && random.nextInt(length) < 6;
+                        rows[r][o] = !keep ? 'x' : (store.get(ch, from + o) ^ random.nextInt(20) == 0) ? '1' : '0';
+                    }
+                }
+                if (bus) {
+                    StringBuilder words = new StringBuilder();
+                    for (int o = 0; o < length; o++) {
+                        if (o > 0) words.append(',');
+                        // The highest channel first, with ? for any: "0x.." would read as hex.
+                        for (int r = CHANNELS - 1; r >= 0; r--) words.append(rows[r][o] == 'x' ? '?' : rows[r][o]);
+                    }
+                    patterns.add(BitPattern.bus(CHANNELS, words.toString()));
+                } else {
+                    patterns.add(BitPattern.channel(channel, new String(rows[0])));
+                    char[][] all = new char[CHANNELS][length];
+                    for (char[] row : all) Arrays.fill(row, 'x');
+                    all[channel] = rows[0];
+                    rows = all;
+                }
+                expected.add(rows);
+            }
+            List<PatternSearch.Result> results = PatternSearch.findAll(store, patterns, LIMIT, TaskProgress.NONE);
+            for (int p = 0; p < patterns.size(); p++) {
+                long[] matches = naive(store, expected.get(p));
+                PatternSearch.Result result = results.get(p);
+                String where = "steps " + steps + " " + patterns.get(p);
+                assertEquals(matches.length, result.getCount(), where + ": count");
+                assertArrayEquals(Arrays.copyOf(matches, Math.min(LIMIT, matches.length)), result.getPositions(), where + ": positions");
+            }
+        }
+    }
+
+    @Test
+    void hexBusWords() {
+        // Four characters from [01xX?] on a 4-channel bus, but hex all the same: channel 0 high.
+        BitPattern pattern = BitPattern.bus(4, "0x01");
+        assertFixed(pattern, new int[]{0, 1, 2, 3}, new boolean[]{true, false, false, false});
+        pattern = BitPattern.bus(8, "0x?F");
+        assertFixed(pattern, new int[]{0, 1, 2, 3}, new boolean[]{true, true, true, true});
+        pattern = BitPattern.bus(4, "1x01");
+        assertFixed(pattern, new int[]{3, 1, 0}, new boolean[]{true, false, true});
+        assertThrows(IllegalArgumentException.class, () -> BitPattern.bus(4, "0x10"));
+    }
+
+    private static void assertFixed(BitPattern pattern, int[] channels, boolean[] values) {
+        for (int i = 0; i < channels.length; i++) {
+            int t = 0;
+            while (t < pattern.channels.length && pattern.channels[t] != channels[i]) t++;
+            if (t == pattern.channels.length) fail(pattern + ": channel " + channels[i] + " not fixed");
+            assertEquals(values[i], pattern.values[t], pattern + ": channel " + channels[i]);
+        }
+        assertEquals(channels.length, pattern.channels.length, pattern + ": fixed bits");
+    }
+
+    // Starts where every fixed character of `rows` (one row per channel, x for any) matches.
+    private static long[] naive(PatternStore store, char[][] rows) {
+        int length = rows[0].length;
+        long[] matches = new long[16];
+        int count = 0;
+        for (long start = 0; start + length <= store.getSteps(); start++) {
+            boolean match = true;
+            for (int ch = 0; ch < rows.length && match; ch++) {
+                for (int o = 0; o < length && match; o++) {
+                    char c = rows[ch][o];
+                    if (c != 'x' && c != '?') match = store.get(ch, start + o) == (c == '1');
+                }
+            }
+            if (!match) continue;
+            if (count == matches.length) matches = Arrays.copyOf(matches, 2 * count);
+            matches[count++] = start;
+        }
+        return Arrays.copyOf(matches, count);
+    }
+}
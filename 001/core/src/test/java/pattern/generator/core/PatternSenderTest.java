@@ -0,0 +1,79 @@
+package pattern.generator.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// PatternSender to a LoopbackReceiver: what arrives is the pattern's samples, byte for byte, at
+// every raw sample width, through the per-pass encoder and the cached loop, with a credit window
+// far smaller than the pattern.
+class PatternSenderTest {
+    private static final long STEPS = 10_007;
+    private static final int WINDOW_BYTES = 4096;
+
+    @Test
+    void receiverGetsEverySample() throws Exception {
+        for (int maxChannels : new int[]{8, 16, 32}) {
+            for (long loops : new long[]{1, 3}) {
+                PatternModel model = new PatternModel(maxChannels, maxChannels - 3, STEPS, 100.0, "TTL", "Manual", 50.0, 1000.0, "");
+                model.randomize(maxChannels, 0.5);
+                PatternStore expected = model.getStore().snapshot();
+                PatternSender sender = new PatternSender(model);
+                // Edits after the sender is made do not reach the stream.
+                model.randomize(-1L, 0.5);
+
+                LoopbackReceiver.Stream stream = send(sender, loops);
+                String where = maxChannels + " bits, " + loops + " loops";
+                assertNull(stream.getError(), where);
+                assertTrue(stream.isEnded(), where);
+                int bytesPerStep = maxChannels / 8;
+                assertEquals(bytesPerStep, stream.getBytesPerStep(), where);
+                assertEquals(maxChannels - 3, stream.getChannels(), where);
+                assertEquals(STEPS, stream.getStepsPerLoop(), where);
+                assertEquals(loops, stream.getLoops(), where);
+                assertEquals(loops * STEPS * bytesPerStep, stream.getBytes(), where);
+                // No frame is larger than the credit the window allows.
+                assertTrue(stream.getFrames() * WINDOW_BYTES >= stream.getBytes(), where + ": " + stream.getFrames() + " frames");
+                assertEquals(crc(expected, bytesPerStep, loops), stream.getCrc(), where);
+            }
+        }
+    }
+
+    private static LoopbackReceiver.Stream send(PatternSender sender, long loops) throws IOException, InterruptedException {
+        BlockingQueue<LoopbackReceiver.Stream> streams = new LinkedBlockingQueue<>();
+        try (LoopbackReceiver receiver = new LoopbackReceiver(0, WINDOW_BYTES, streams::add)) {
+            Thread thread = new Thread(receiver, "loopback-receiver");
+            thread.setDaemon(true);
+            thread.start();
+            PatternSender.Result result = sender.send(receiver.getAddress(), loops, TaskProgress.NONE);
+            assertEquals(loops, result.getLoops());
+            LoopbackReceiver.Stream stream = streams.poll(10, TimeUnit.SECONDS);
+            assertNotNull(stream, "no stream received");
+            return stream;
+        }
+    }
+
+    // CRC-32 of the samples written one step at a time: little-endian, bit c is channel c.
+    private static long crc(PatternStore store, int bytesPerStep, long loops) {
+        CRC32 crc = new CRC32();
+        for (long loop = 0; loop < loops; loop++) {
+            for (long step = 0; step < store.getSteps(); step++) {
+                long sample = 0;
+                for (int channel = 0; channel < store.getChannels(); channel++) {
+                    if (store.get(channel, step)) sample |= 1L << channel;
+                }
+                for (int b = 0; b < bytesPerStep; b++) crc.update((int) (sample >>> (8 * b)) & 0xFF);
+            }
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,117 @@
+package pattern.generator.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Edits on lazily periodic channels against a boolean[] reference: every bit still reads right and
+// only the chunks an edit touched are stored.
+class PatternStoreTest {
+    private static final double RATE_HZ = 100e6;
+    // Five chunks and a partial one, not a whole number of words.
+    private static final long STEPS = 5L * PatternStore.CHUNK_WORDS * PatternStore.WORD_BITS + 77;
+
+    @Test
+    void editsMaterializeOnlyTouchedChunks() {
+        ChannelConfig[] configs = {
+                new ChannelConfig("Clock", 100_000.0, 30.0, 0.0, ""),
+                new ChannelConfig("PRBS", 100_000.0, 50.0, 0.0, "").withPrbs("PRBS15", 1L, false, false)};
+        long[] periods = {1000, (1 << 15) - 1};
+        PatternGenerator generator = new PatternGenerator(RATE_HZ);
+        PatternStore store = new PatternStore(configs.length, STEPS);
+        generator.generate(store, configs);
+        boolean[][] expected = new boolean[configs.length][];
+        long periodBytes = 0;
+        for (int channel = 0; channel < configs.length; channel++) {
+            assertEquals(periods[channel], store.getPeriod(channel), "channel " + channel + " not lazy");
+            expected[channel] = eager(generator, configs[channel], channel);
+            periodBytes += unrolledBytes(periods[channel]);
+        }
+        assertEquals(periodBytes, store.getStorageBytes());
+        assertBits(expected, store);
+
+        Random random = new Random(13);
+        boolean[][] touched = new boolean[configs.length][chunkCount()];
+        for (int i = 0; i < 40; i++) {
+            int channel = random.nextInt(configs.length);
+            // Mostly short edits inside the first three chunks, now and then one across a boundary.
+            long span = i % 8 == 7 ? 3L * PatternStore.CHUNK_WORDS * PatternStore.WORD_BITS / 2 : 1 + random.nextInt(200);
+            long from = (long) (random.nextDouble() * 3 * PatternStore.CHUNK_WORDS * PatternStore.WORD_BITS);
+            long to = Math.min(STEPS, from + span);
+            switch (random.nextInt(3)) {
+                case 0:
+                    boolean value = random.nextBoolean();
+                    store.set(channel, from, value);
+                    expected[channel][(int) from] = value;
+                    to = from + 1;
+                    break;
+                case 1:
+                    boolean fill = random.nextBoolean();
+                    store.fill(channel, from, to, fill);
+                    Arrays.fill(expected[channel], (int) from, (int) to, fill);
+                    break;
+                default:
+                    store.invert(channel, from, to);
+                    for (long step = from; step < to; step++) expected[channel][(int) step] ^= true;
+                    break;
+            }
+            for (long step = from; step < to; step += PatternStore.WORD_BITS) touched[channel][chunkOf(step)] = true;
+            touched[channel][chunkOf(to - 1)] = true;
+        }
+        assertBits(expected, store);
+        long chunkBytes = 0;
+        for (boolean[] chunks : touched) {
+            for (int c = 0; c < chunks.length; c++) {
+                if (chunks[c]) chunkBytes += chunkWords(c) * Long.BYTES;
+            }
+        }
+        assertEquals(periodBytes + chunkBytes, store.getStorageBytes());
+        // Chunks past the edits are still read from the period.
+        if (touched[0][chunkCount() - 1] || touched[1][chunkCount() - 1]) fail("edits reached the last chunk");
+        for (int channel = 0; channel < configs.length; channel++) assertEquals(0, store.getPeriod(channel));
+    }
+
+    // The channel written word by word, as it would be without lazy storage.
+    private static boolean[] eager(PatternGenerator generator, ChannelConfig config, int channel) {
+        PatternStore store = new PatternStore(channel + 1, STEPS);
+        generator.prepare(config, STEPS).fill.fill(store, channel, 0, store.getWordCount());
+        boolean[] bits = new boolean[(int) STEPS];
+        for (int step = 0; step < STEPS; step++) bits[step] = store.get(channel, step);
+        return bits;
+    }
+
+    private static void assertBits(boolean[][] expected, PatternStore store) {
+        for (int channel = 0; channel < expected.length; channel++) {
+            for (int step = 0; step < STEPS; step++) {
+                if (store.get(channel, step) != expected[channel][step]) fail("Channel " + channel + " differs at step " + step);
+            }
+            for (int w = 0; w < store.getWordCount(); w++) {
+                long word = 0;
+                for (int bit = 0; bit < PatternStore.WORD_BITS && ((long) w << 6) + bit < STEPS; bit++) {
+                    if (expected[channel][(w << 6) + bit]) word |= 1L << bit;
+                }
+                if (store.getWord(channel, w) != word) fail("Channel " + channel + " differs at word " + w);
+            }
+        }
+    }
+
+    private static long unrolledBytes(long period) {
+        return (long) PatternStore.unrollPeriod(new long[PatternStore.wordCount(period)], (int) period).length * Long.BYTES;
+    }
+
+    private static int chunkOf(long step) {
+        return (int) (step >>> 6 >>> PatternStore.CHUNK_SHIFT);
+    }
+
+    private static int chunkCount() {
+        return chunkOf(STEPS - 1) + 1;
+    }
+
+    private static long chunkWords(int chunk) {
+        return Math.min(PatternStore.CHUNK_WORDS, PatternStore.wordCount(STEPS) - ((long) chunk << PatternStore.CHUNK_SHIFT));
+    }
+}
@@ -0,0 +1,184 @@
+package pattern.generator.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Random Signal expressions against the same operations on boolean[], read whole, in blocks and
+// at arbitrary word ranges, and read again so every node's buffers are reused. Subtrees are often
+// shared, e.g. x.xor(x.shift(3)), so one node is evaluated more than once per block.
+class SignalTest {
+    // Not multiples of 64, one word, and past one evaluation block.
+    private static final long[] STEPS = {1, 63, 64, 130, 1000, BlockWriter.BLOCK_WORDS * 64L + 130, 200_003};
+
+    // A signal and what it should evaluate to.
+    private static final class Ref {
+        final Signal signal;
+        final boolean[] bits;
+
+        Ref(Signal signal, boolean[] bits) {
+            this.signal = signal;
+            this.bits = bits;
+            assertEquals(bits.length, signal.getSteps());
+        }
+    }
+
+    @Test
+    void randomExpressionsMatchReference() {
+        Random random = new Random(17);
+        for (int i = 0; i < 300; i++) {
+            long steps = STEPS[random.nextInt(STEPS.length)];
+            Ref ref = generate(random, 1 + random.nextInt(4), (int) steps);
+            String where = "expression " + i + " of " + steps + " steps";
+            for (int pass = 0; pass < 2; pass++) {
+                assertWritten(ref, where + ", pass " + pass);
+                assertWords(random, ref, where + ", pass " + pass);
+            }
+            assertWritten(new Ref(ref.signal.materialize(TaskProgress.NONE), ref.bits), where + ", materialized");
+        }
+    }
+
+    private static Ref generate(Random random, int depth, int steps) {
+        if (depth == 0 || steps == 0) return leaf(random, steps);
+        switch (random.nextInt(8)) {
+            case 0: {
+                Ref a = generate(random, depth - 1, steps);
+                boolean[] bits = new boolean[steps];
+                for (int s = 0; s < steps; s++) bits[s] = !a.bits[s];
+                return new Ref(a.signal.not(), bits);
+            }
+            case 1: {
+                Ref a = generate(random, depth - 1, steps);
+                // The same node on both sides, or shifted on one.
+                Ref b = random.nextBoolean() ? a : shift(a, random.nextInt(200) - 100);
+                if (random.nextBoolean()) b = generate(random, depth - 1, steps);
+                int op = random.nextInt(3);
+                boolean[] bits = new boolean[steps];
+                for (int s = 0; s < steps; s++) bits[s] = op == 0 ? a.bits[s] & b.bits[s] : op == 1 ? a.bits[s] | b.bits[s] : a.bits[s] ^ b.bits[s];
+                return new Ref(op == 0 ? a.signal.and(b.signal) : op == 1 ? a.signal.or(b.signal) : a.signal.xor(b.signal), bits);
+            }
+            case 2:
+                return shift(generate(random, depth - 1, steps), random.nextInt(2 * steps + 21) - steps - 10);
+            case 3: {
+                Ref a = generate(random, depth - 1, steps);
+                long n = random.nextBoolean() ? random.nextInt(2 * steps + 1) - steps : random.nextLong();
+                boolean[] bits = new boolean[steps];
+                for (int s = 0; s < steps; s++) bits[s] = a.bits[(int) Math.floorMod(s - n, (long) steps)];
+                return new Ref(a.signal.rotate(n), bits);
+            }
+            case 4: {
+                int before = random.nextInt(130);
+                int after = random.nextInt(130);
+                Ref a = generate(random, depth - 1, before + steps + after);
+                boolean[] bits = new boolean[steps];
+                System.arraycopy(a.bits, before, bits, 0, steps);
+                return new Ref(a.signal.slice(before, before + steps), bits);
+            }
+            case 5: {
+                int split = random.nextInt(steps + 1);
+                Ref a = generate(random, depth - 1, split);
+                Ref b = generate(random, depth - 1, steps - split);
+                boolean[] bits = new boolean[steps];
+                System.arraycopy(a.bits, 0, bits, 0, split);
+                System.arraycopy(b.bits, 0, bits, split, steps - split);
+                return new Ref(a.signal.concat(b.signal), bits);
+            }
+            case 6: {
+                int times = 2 + random.nextInt(4);
+                int period = steps / times;
+                if (period == 0) return leaf(random, steps);
+                Ref a = generate(random, depth - 1, period);
+                boolean[] bits = new boolean[period * times];
+                for (int s = 0; s < bits.length; s++) bits[s] = a.bits[s % period];
+                Ref repeated = new Ref(a.signal.repeat(times), bits);
+                if (bits.length == steps) return repeated;
+                Ref rest = generate(random, depth - 1, steps - bits.length);
+                boolean[] all = new boolean[steps];
+                System.arraycopy(bits, 0, all, 0, bits.length);
+                System.arraycopy(rest.bits, 0, all, bits.length, rest.bits.length);
+                return new Ref(repeated.signal.concat(rest.signal), all);
+            }
+            default:
+                return leaf(random, steps);
+        }
+    }
+
+    private static Ref shift(Ref a, long n) {
+        int steps = a.bits.length;
+        boolean[] bits = new boolean[steps];
+        for (int s = 0; s < steps; s++) {
+            long from = s - n;
+            bits[s] = from >= 0 && from < steps && a.bits[(int) from];
+        }
+        return new Ref(a.signal.shift(n), bits);
+    }
+
+    private static Ref leaf(Random random, int steps) {
+        boolean[] bits = new boolean[steps];
+        switch (random.nextInt(3)) {
+            case 0: {
+                PatternStore store = new PatternStore(2, steps);
+                for (int s = 0; s < steps; s++) {
+                    bits[s] = random.nextBoolean();
+                    store.set(1, s, bits[s]);
+                }
+                return new Ref(Signal.of(store, 1), bits);
+            }
+            case 1: {
+                boolean value = random.nextBoolean();
+                for (int s = 0; s < steps; s++) bits[s] = value;
+                return new Ref(Signal.constant(steps, value), bits);
+            }
+            default: {
+                int period = 1 + random.nextInt(150);
+                int high = random.nextInt(period + 1);
+                long phase = random.nextInt(1000) - 500;
+                for (int s = 0; s < steps; s++) bits[s] = Math.floorMod(s + phase, (long) period) < high;
+                return new Ref(Signal.pulse(steps, period, high, phase), bits);
+            }
+        }
+    }
+
+    private static void assertWritten(Ref ref, String where) {
+        int steps = ref.bits.length;
+        PatternStore store = new PatternStore(2, steps);
+        store.fill(0, 0, steps, true);
+        ref.signal.writeTo(store, 0, TaskProgress.NONE);
+        for (int s = 0; s < steps; s++) {
+            if (store.get(0, s) != ref.bits[s]) fail(where + ": differs at step " + s);
+        }
+        for (int w = 0; w < store.getWordCount(); w++) {
+            if (store.getWord(0, w) != word(ref.bits, w)) fail(where + ": word " + w + " not masked");
+        }
+    }
+
+    // Ranges that start anywhere in the signal, some running past its end.
+    private static void assertWords(Random random, Ref ref, String where) {
+        int wordCount = PatternStore.wordCount(ref.bits.length);
+        for (int i = 0; i < 6; i++) {
+            int from = random.nextInt(wordCount + 1);
+            int count = i == 0 ? wordCount + 3 : 1 + random.nextInt(wordCount + 3);
+            if (i == 0) from = 0;
+            long[] dest = new long[count + 2];
+            dest[0] = 1;
+            dest[count + 1] = 1;
+            ref.signal.readWords(from, dest, 1, count);
+            if (dest[0] != 1 || dest[count + 1] != 1) fail(where + ": wrote outside " + from + "+" + count);
+            for (int w = 0; w < count; w++) {
+                if (dest[1 + w] != word(ref.bits, from + w)) fail(where + ": word " + (from + w) + " of range " + from + "+" + count);
+            }
+        }
+    }
+
+    private static long word(boolean[] bits, long index) {
+        long word = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            long s = (index << 6) + bit;
+            if (s < bits.length && bits[(int) s]) word |= 1L << bit;
+        }
+        return word;
+    }
+}
@@ -0,0 +1,115 @@
+package pattern.generator.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// WordRing between two real threads, checked for order, loss and duplication, and PatternStreamer's
+// frames against the pattern read step by step, looping at step counts that are not a multiple of 64.
+class WordRingTest {
+    private static final long WORDS = 2_000_000;
+    private static final int FRAMES = 5000;
+
+    @Test
+    void offerIsAllOrNothing() {
+        WordRing ring = new WordRing(100);
+        assertEquals(128, ring.capacity());
+        long[] words = new long[128];
+        assertTrue(ring.offer(words, 0, 100));
+        assertFalse(ring.offer(words, 0, 29));
+        assertEquals(100, ring.size());
+        assertTrue(ring.offer(words, 0, 28));
+        assertEquals(0, ring.poll(words, 0, 0));
+        assertEquals(128, ring.poll(words, 0, 128));
+        assertEquals(0, ring.poll(words, 0, 1));
+    }
+
+    @Test
+    void twoThreadsSeeEveryWordInOrder() throws InterruptedException {
+        WordRing ring = new WordRing(1000);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            Random random = new Random(24);
+            long[] batch = new long[ring.capacity()];
+            long next = 0;
+            while (next < WORDS) {
+                // Batches up to the whole ring, so it is often full.
+                int count = (int) Math.min(WORDS - next, 1 + random.nextInt(random.nextBoolean() ? 16 : ring.capacity()));
+                for (int i = 0; i < count; i++) batch[i] = next + i;
+                while (!ring.offer(batch, 0, count)) Thread.yield();
+                next += count;
+            }
+        }, "ring-producer");
+        producer.setDaemon(true);
+        producer.setUncaughtExceptionHandler((thread, e) -> failure.set(e));
+        producer.start();
+
+        Random random = new Random(42);
+        long[] dest = new long[ring.capacity() + 2];
+        long expected = 0;
+        long deadline = System.nanoTime() + 60_000_000_000L;
+        while (expected < WORDS) {
+            int n = ring.poll(dest, 1, 1 + random.nextInt(ring.capacity() + 1));
+            if (n == 0) {
+                if (System.nanoTime() > deadline) fail("stalled at word " + expected);
+                Thread.yield();
+                continue;
+            }
+            for (int i = 0; i < n; i++) {
+                if (dest[1 + i] != expected) fail("word " + expected + " read as " + dest[1 + i]);
+                expected++;
+            }
+        }
+        producer.join();
+        assertNull(failure.get());
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    void streamerLoopsAtAnyStepCount() throws InterruptedException {
+        Random random = new Random(7);
+        int blockFrames = 4;
+        long[] stepCounts = {1, 63, 64, 100, 130, 256, 3L * blockFrames * 64 + 5, 10_007};
+        for (long steps : stepCounts) {
+            PatternStore store = new PatternStore(3, steps);
+            for (int channel = 0; channel < 3; channel++) {
+                for (long step = 0; step < steps; step++) store.set(channel, step, random.nextBoolean());
+            }
+            WordRing ring = new WordRing(3 * blockFrames * 4);
+            PatternStreamer streamer = new PatternStreamer(store, ring, blockFrames);
+            Thread thread = new Thread(streamer, "pattern-streamer");
+            thread.setDaemon(true);
+            thread.start();
+            try {
+                long[] frame = new long[3];
+                for (long f = 0; f < FRAMES; f++) {
+                    int read = 0;
+                    while (read < 3) {
+                        read += ring.poll(frame, read, 3 - read);
+                        if (!thread.isAlive()) fail("streamer ended");
+                    }
+                    for (int channel = 0; channel < 3; channel++) {
+                        long expected = 0;
+                        for (int bit = 0; bit < 64; bit++) {
+                            if (store.get(channel, (f * 64 + bit) % steps)) expected |= 1L << bit;
+                        }
+                        if (frame[channel] != expected) fail(steps + " steps: frame " + f + " channel " + channel);
+                    }
+                }
+            } finally {
+                streamer.stop();
+                LockSupport.unpark(thread);
+                thread.join(10_000);
+            }
+            assertFalse(thread.isAlive(), steps + " steps: streamer did not stop");
+        }
+    }
+}